@@ -0,0 +1,17 @@
+package ua.lviv.iot.greenhouse.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+
+// Same sensor API as GreenHouseApplication on WebFlux and R2DBC. Components are scanned only in this package,
+// the shared classes of GreenHouse it needs are imported
+@SpringBootApplication
+@Import(DateRangeResolver.class)
+public class ReactiveGreenHouseApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveGreenHouseApplication.class, args);
+    }
+}
@@ -0,0 +1,117 @@
+package ua.lviv.iot.greenhouse.reactive.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorTemperatureDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.mappers.AirSensorMapper;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.reactive.services.ReactiveSensorService;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/sensors/air-sensor")
+@RequiredArgsConstructor
+public class AirSensorController {
+
+    private final ReactiveSensorService<AirSensor, AirSensorDTO> airSensorService;
+    private final DateRangeResolver dateRangeResolver;
+
+    // Written as a JSON array while rows are read, or as newline delimited JSON when asked for application/x-ndjson
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<AirSensor> getAllSensorData(@RequestParam(required = false) String date,
+                                            @RequestParam(required = false) String from,
+                                            @RequestParam(required = false) String to,
+                                            @RequestParam(required = false) String zone) {
+        return airSensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+
+    @GetMapping("/latest")
+    public Mono<AirSensor> getLatestSensorData() {
+        return airSensorService.getLatestSensorData();
+    }
+
+    @GetMapping("/page")
+    public Mono<KeysetPageDTO<AirSensor>> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return airSensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<AirSensor> exportAllSensorData() {
+        return airSensorService.exportAllSensorData();
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public Flux<AirSensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                         @RequestParam String to,
+                                                         @RequestParam(required = false) String zone,
+                                                         @RequestParam(defaultValue = "5m") String bucket) {
+        return airSensorService.getAggregatedData(dateRangeResolver.resolve(null, from, to, zone), bucket,
+                AirSensorMapper::mapRowToAirSensorAggregateDTO);
+    }
+
+    @GetMapping("/humidity-data")
+    public Flux<AirSensorHumidityDTO> getHumidity(@RequestParam(required = false) String date,
+                                                  @RequestParam(required = false) String from,
+                                                  @RequestParam(required = false) String to,
+                                                  @RequestParam(required = false) String zone) {
+        return airSensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone))
+                .map(AirSensorMapper::mapAirSensorToAirSensorHumidityDTO);
+    }
+
+    @GetMapping("/temperature-data")
+    public Flux<AirSensorTemperatureDTO> getTemperature(@RequestParam(required = false) String date,
+                                                        @RequestParam(required = false) String from,
+                                                        @RequestParam(required = false) String to,
+                                                        @RequestParam(required = false) String zone) {
+        return airSensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone))
+                .map(AirSensorMapper::mapAirSensorToAirSensorTemperatureDTO);
+    }
+
+    @PostMapping
+    public Mono<AirSensor> addAirSensorData(final @RequestBody AirSensorDTO airSensorDTO) {
+        airSensorDTO.setLocalDateTime(LocalDateTime.now());
+        return airSensorService.createSensorData(airSensorDTO);
+    }
+
+    @PostMapping("/batch")
+    public Mono<BatchResultDTO<AirSensor>> addAirSensorDataBatch(final @RequestBody List<AirSensorDTO> airSensorDTOs) {
+        LocalDateTime now = LocalDateTime.now();
+        airSensorDTOs.stream()
+                .filter(airSensorDTO -> airSensorDTO != null && airSensorDTO.getLocalDateTime() == null)
+                .forEach(airSensorDTO -> airSensorDTO.setLocalDateTime(now));
+        return airSensorService.createSensorDataBatch(airSensorDTOs);
+    }
+
+    @DeleteMapping
+    public Mono<Long> deleteAllSensorData(@RequestParam(required = false) String date,
+                                          @RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to,
+                                          @RequestParam(required = false) String zone) {
+        return airSensorService.deleteAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+
+    @PutMapping("{id}")
+    public Mono<AirSensor> updateCurrentDataById(final @RequestBody AirSensorDTO airSensorDTO,
+                                                 final @PathVariable("id") Long id) {
+        return airSensorService.updateDataById(id, sensor -> {
+            sensor.getData().setAirHumidity(airSensorDTO.getAirHumidity());
+            sensor.getData().setAirTemperature(airSensorDTO.getAirTemperature());
+        });
+    }
+}
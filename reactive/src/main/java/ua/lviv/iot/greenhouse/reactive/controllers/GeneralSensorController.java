@@ -0,0 +1,84 @@
+package ua.lviv.iot.greenhouse.reactive.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.mappers.GeneralSensorMapper;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.reactive.services.ReactiveSensorService;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/sensors")
+@RequiredArgsConstructor
+public class GeneralSensorController {
+
+    private final ReactiveSensorService<GeneralSensor, GeneralSensorDTO> generalSensorService;
+    private final DateRangeResolver dateRangeResolver;
+
+    // Written as a JSON array while rows are read, or as newline delimited JSON when asked for application/x-ndjson
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<GeneralSensor> getAllSensorData(@RequestParam(required = false) String date,
+                                                @RequestParam(required = false) String from,
+                                                @RequestParam(required = false) String to,
+                                                @RequestParam(required = false) String zone) {
+        return generalSensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+
+    @GetMapping("/latest")
+    public Mono<GeneralSensor> getLatestSensorData() {
+        return generalSensorService.getLatestSensorData();
+    }
+
+    @GetMapping("/page")
+    public Mono<KeysetPageDTO<GeneralSensor>> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return generalSensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<GeneralSensor> exportAllSensorData() {
+        return generalSensorService.exportAllSensorData();
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public Flux<GeneralSensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                             @RequestParam String to,
+                                                             @RequestParam(required = false) String zone,
+                                                             @RequestParam(defaultValue = "5m") String bucket) {
+        return generalSensorService.getAggregatedData(dateRangeResolver.resolve(null, from, to, zone), bucket,
+                GeneralSensorMapper::mapRowToGeneralSensorAggregateDTO);
+    }
+
+    @PostMapping
+    public Mono<GeneralSensor> addGeneralSensorData(final @RequestBody GeneralSensorDTO generalSensorDTO) {
+        return generalSensorService.createSensorData(generalSensorDTO);
+    }
+
+    @PostMapping("/batch")
+    public Mono<BatchResultDTO<GeneralSensor>> addGeneralSensorDataBatch(
+            final @RequestBody List<GeneralSensorDTO> generalSensorDTOs) {
+        return generalSensorService.createSensorDataBatch(generalSensorDTOs);
+    }
+
+    @DeleteMapping
+    public Mono<Long> deleteAllSensorData(@RequestParam(required = false) String date,
+                                          @RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to,
+                                          @RequestParam(required = false) String zone) {
+        return generalSensorService.deleteAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+}
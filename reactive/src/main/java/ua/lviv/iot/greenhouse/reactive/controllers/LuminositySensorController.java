@@ -0,0 +1,97 @@
+package ua.lviv.iot.greenhouse.reactive.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.mappers.LuminositySensorMapper;
+import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.reactive.services.ReactiveSensorService;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/sensors/luminosity-sensor")
+@RequiredArgsConstructor
+public class LuminositySensorController {
+
+    private final ReactiveSensorService<LuminositySensor, LuminositySensorDTO> luminositySensorService;
+    private final DateRangeResolver dateRangeResolver;
+
+    // Written as a JSON array while rows are read, or as newline delimited JSON when asked for application/x-ndjson
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<LuminositySensor> getAllSensorData(@RequestParam(required = false) String date,
+                                                   @RequestParam(required = false) String from,
+                                                   @RequestParam(required = false) String to,
+                                                   @RequestParam(required = false) String zone) {
+        return luminositySensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+
+    @GetMapping("/latest")
+    public Mono<LuminositySensor> getLatestSensorData() {
+        return luminositySensorService.getLatestSensorData();
+    }
+
+    @GetMapping("/page")
+    public Mono<KeysetPageDTO<LuminositySensor>> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return luminositySensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<LuminositySensor> exportAllSensorData() {
+        return luminositySensorService.exportAllSensorData();
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public Flux<LuminositySensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                                @RequestParam String to,
+                                                                @RequestParam(required = false) String zone,
+                                                                @RequestParam(defaultValue = "5m") String bucket) {
+        return luminositySensorService.getAggregatedData(dateRangeResolver.resolve(null, from, to, zone), bucket,
+                LuminositySensorMapper::mapRowToLuminositySensorAggregateDTO);
+    }
+
+    @PostMapping
+    public Mono<LuminositySensor> addLuminositySensorData(final @RequestBody LuminositySensorDTO luminositySensorDTO) {
+        luminositySensorDTO.setLocalDateTime(LocalDateTime.now());
+        return luminositySensorService.createSensorData(luminositySensorDTO);
+    }
+
+    @PostMapping("/batch")
+    public Mono<BatchResultDTO<LuminositySensor>> addLuminositySensorDataBatch(
+            final @RequestBody List<LuminositySensorDTO> luminositySensorDTOs) {
+        LocalDateTime now = LocalDateTime.now();
+        luminositySensorDTOs.stream()
+                .filter(luminositySensorDTO -> luminositySensorDTO != null
+                        && luminositySensorDTO.getLocalDateTime() == null)
+                .forEach(luminositySensorDTO -> luminositySensorDTO.setLocalDateTime(now));
+        return luminositySensorService.createSensorDataBatch(luminositySensorDTOs);
+    }
+
+    @DeleteMapping
+    public Mono<Long> deleteAllSensorData(@RequestParam(required = false) String date,
+                                          @RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to,
+                                          @RequestParam(required = false) String zone) {
+        return luminositySensorService.deleteAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+
+    @PutMapping("{id}")
+    public Mono<LuminositySensor> updateCurrentDataById(final @RequestBody LuminositySensorDTO luminositySensorDTO,
+                                                        final @PathVariable("id") Long id) {
+        return luminositySensorService.updateDataById(id,
+                sensor -> sensor.getData().setLuminosity(luminositySensorDTO.getLuminosity()));
+    }
+}
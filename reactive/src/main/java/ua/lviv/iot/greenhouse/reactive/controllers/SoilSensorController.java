@@ -0,0 +1,118 @@
+package ua.lviv.iot.greenhouse.reactive.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.mappers.SoilSensorMapper;
+import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.reactive.services.ReactiveSensorService;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/sensors/soil-sensor")
+@RequiredArgsConstructor
+public class SoilSensorController {
+
+    private final ReactiveSensorService<SoilSensor, SoilSensorDTO> soilSensorService;
+    private final DateRangeResolver dateRangeResolver;
+
+    // Written as a JSON array while rows are read, or as newline delimited JSON when asked for application/x-ndjson
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<SoilSensor> getAllSensorData(@RequestParam(required = false) String date,
+                                             @RequestParam(required = false) String from,
+                                             @RequestParam(required = false) String to,
+                                             @RequestParam(required = false) String zone) {
+        return soilSensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+
+    @GetMapping("/latest")
+    public Mono<SoilSensor> getLatestSensorData() {
+        return soilSensorService.getLatestSensorData();
+    }
+
+    @GetMapping("/page")
+    public Mono<KeysetPageDTO<SoilSensor>> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return soilSensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<SoilSensor> exportAllSensorData() {
+        return soilSensorService.exportAllSensorData();
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public Flux<SoilSensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                          @RequestParam String to,
+                                                          @RequestParam(required = false) String zone,
+                                                          @RequestParam(defaultValue = "5m") String bucket) {
+        return soilSensorService.getAggregatedData(dateRangeResolver.resolve(null, from, to, zone), bucket,
+                SoilSensorMapper::mapRowToSoilSensorAggregateDTO);
+    }
+
+    @GetMapping("/humidity-data")
+    public Flux<SoilSensorHumidityDTO> getHumidity(@RequestParam(required = false) String date,
+                                                   @RequestParam(required = false) String from,
+                                                   @RequestParam(required = false) String to,
+                                                   @RequestParam(required = false) String zone) {
+        return soilSensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone))
+                .map(SoilSensorMapper::mapSoilSensorToSoilSensorHumidityDTO);
+    }
+
+    @GetMapping("/temperature-data")
+    public Flux<SoilSensorTemperatureDTO> getTemperature(@RequestParam(required = false) String date,
+                                                         @RequestParam(required = false) String from,
+                                                         @RequestParam(required = false) String to,
+                                                         @RequestParam(required = false) String zone) {
+        return soilSensorService.getAllSensorData(dateRangeResolver.resolve(date, from, to, zone))
+                .map(SoilSensorMapper::mapSoilSensorToSoilSensorTemperatureDTO);
+    }
+
+    @PostMapping
+    public Mono<SoilSensor> addSoilSensorData(final @RequestBody SoilSensorDTO soilSensorDTO) {
+        soilSensorDTO.setLocalDateTime(LocalDateTime.now());
+        return soilSensorService.createSensorData(soilSensorDTO);
+    }
+
+    @PostMapping("/batch")
+    public Mono<BatchResultDTO<SoilSensor>> addSoilSensorDataBatch(
+            final @RequestBody List<SoilSensorDTO> soilSensorDTOs) {
+        LocalDateTime now = LocalDateTime.now();
+        soilSensorDTOs.stream()
+                .filter(soilSensorDTO -> soilSensorDTO != null && soilSensorDTO.getLocalDateTime() == null)
+                .forEach(soilSensorDTO -> soilSensorDTO.setLocalDateTime(now));
+        return soilSensorService.createSensorDataBatch(soilSensorDTOs);
+    }
+
+    @DeleteMapping
+    public Mono<Long> deleteAllSensorData(@RequestParam(required = false) String date,
+                                          @RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to,
+                                          @RequestParam(required = false) String zone) {
+        return soilSensorService.deleteAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
+    }
+
+    @PutMapping("{id}")
+    public Mono<SoilSensor> updateCurrentDataById(final @RequestBody SoilSensorDTO soilSensorDTO,
+                                                  final @PathVariable("id") Long id) {
+        return soilSensorService.updateDataById(id, sensor -> {
+            sensor.getData().setSoilHumidity(soilSensorDTO.getSoilHumidity());
+            sensor.getData().setSoilTemperature(soilSensorDTO.getSoilTemperature());
+        });
+    }
+}
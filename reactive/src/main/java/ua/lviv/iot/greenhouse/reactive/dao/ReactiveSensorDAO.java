@@ -0,0 +1,240 @@
+package ua.lviv.iot.greenhouse.reactive.dao;
+
+import lombok.Getter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// Non-blocking counterpart of the JPA DAOs of GreenHouse, running the same SQL on one sensor table.
+// Queries that return many rows are read with a fetch size, so rows come from the DB as subscribers request them
+public class ReactiveSensorDAO<T> {
+
+    private static final int FETCH_SIZE = 1000;
+    // Rows per multi-row insert, which keeps statements far below the limit of bound parameters
+    private static final int INSERT_CHUNK_SIZE = 500;
+
+    @Getter
+    private final SensorTable<T> table;
+    private final DatabaseClient databaseClient;
+    private final SequenceIdAllocator idAllocator;
+    private final String select;
+    private final String time;
+
+    public ReactiveSensorDAO(SensorTable<T> table, DatabaseClient databaseClient,
+                             TransactionalOperator transactionalOperator) {
+        this.table = table;
+        this.databaseClient = databaseClient;
+        this.idAllocator = new SequenceIdAllocator(databaseClient, transactionalOperator, table.getName());
+        this.time = table.getTimeColumn();
+        this.select = "SELECT id, " + time + ", " + String.join(", ", table.getMetricColumns()) +
+                ", modified_at FROM " + table.getName() + " ";
+    }
+
+    public Flux<T> findAll() {
+        return databaseClient.sql(select + "ORDER BY id")
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map((row, metadata) -> table.map(row))
+                .all();
+    }
+
+    // Both ends are included, like "between" of the JPA DAOs
+    public Flux<T> findBetween(LocalDateTime after, LocalDateTime before) {
+        return databaseClient.sql(select + "WHERE " + time + " BETWEEN :after AND :before ORDER BY " + time + ", id")
+                .bind("after", after)
+                .bind("before", before)
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map((row, metadata) -> table.map(row))
+                .all();
+    }
+
+    public Mono<T> findLatest() {
+        return databaseClient.sql(select + "ORDER BY " + time + " DESC, id DESC LIMIT 1")
+                .map((row, metadata) -> table.map(row))
+                .one();
+    }
+
+    public Mono<T> findById(long id) {
+        return databaseClient.sql(select + "WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> table.map(row))
+                .one();
+    }
+
+    // Keyset pagination: every page continues right after the last row of the previous one
+    public Flux<T> findPageAfterId(long afterId, int limit) {
+        return databaseClient.sql(select + "WHERE id > :afterId ORDER BY id LIMIT :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map((row, metadata) -> table.map(row))
+                .all();
+    }
+
+    public Flux<T> findPageAfterTimestamp(LocalDateTime afterTimestamp, long afterId, int limit) {
+        return databaseClient.sql(select + "WHERE " + time + " > :afterTimestamp OR (" + time +
+                        " = :afterTimestamp AND id > :afterId) ORDER BY " + time + ", id LIMIT :limit")
+                .bind("afterTimestamp", afterTimestamp)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map((row, metadata) -> table.map(row))
+                .all();
+    }
+
+    // Rows of [after, before) in the layout AggregateMapper reads: bucket number and row count, followed by min,
+    // max, sum, count and last value of every metric. Last values come from the newest reading by time, then by ID.
+    // Computed from raw readings, there are no rollups here
+    public Flux<Object[]> aggregateByBucket(LocalDateTime after, LocalDateTime before, long bucketSeconds) {
+        List<String> metrics = table.getMetricColumns();
+        String aggregates = metrics.stream()
+                .map(metric -> "MIN(r." + metric + "), MAX(r." + metric + "), SUM(r." + metric + "), COUNT(r." +
+                        metric + "), MAX(CASE WHEN r.rn = 1 THEN r." + metric + " END)")
+                .collect(Collectors.joining(", "));
+        String sql = "SELECT r.bucket, COUNT(*) AS row_count, " + aggregates + " " +
+                "FROM (SELECT q.bucket, q." + String.join(", q.", metrics) + ", " +
+                "ROW_NUMBER() OVER (PARTITION BY q.bucket ORDER BY q." + time + " DESC, q.id DESC) AS rn " +
+                "FROM (SELECT FLOOR(TIMESTAMPDIFF(SECOND, TIMESTAMP '1970-01-01 00:00:00', s." + time +
+                ") / :bucketSeconds) AS bucket, s.id, s." + time + ", s." + String.join(", s.", metrics) + " " +
+                "FROM " + table.getName() + " s WHERE s." + time + " >= :after AND s." + time + " < :before) q) r " +
+                "GROUP BY r.bucket ORDER BY r.bucket";
+        int width = 2 + metrics.size() * 5;
+
+        return databaseClient.sql(sql)
+                .bind("after", after)
+                .bind("before", before)
+                .bind("bucketSeconds", bucketSeconds)
+                .map((row, metadata) -> {
+                    Object[] values = new Object[width];
+                    for (int i = 0; i < width; i++) {
+                        values[i] = row.get(i);
+                    }
+                    return values;
+                })
+                .all();
+    }
+
+    public Mono<T> insert(T sensor) {
+        return insertAll(List.of(sensor)).next();
+    }
+
+    // IDs are allocated up front, so every chunk of rows is a single multi-row insert
+    public Flux<T> insertAll(List<T> sensors) {
+        if (sensors.isEmpty()) {
+            return Flux.empty();
+        }
+        LocalDateTime modifiedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        return idAllocator.allocate(sensors.size()).flatMapMany(ids -> {
+            for (int i = 0; i < sensors.size(); i++) {
+                table.setId(sensors.get(i), ids.get(i));
+                table.setModifiedAt(sensors.get(i), modifiedAt);
+            }
+            List<List<T>> chunks = new ArrayList<>();
+            for (int from = 0; from < sensors.size(); from += INSERT_CHUNK_SIZE) {
+                chunks.add(sensors.subList(from, Math.min(from + INSERT_CHUNK_SIZE, sensors.size())));
+            }
+            return Flux.fromIterable(chunks)
+                    .concatMap(chunk -> insertChunk(chunk, modifiedAt).thenMany(Flux.fromIterable(chunk)));
+        });
+    }
+
+    private Mono<Void> insertChunk(List<T> sensors, LocalDateTime modifiedAt) {
+        int columns = 3 + table.getMetricColumns().size();
+        List<String> rows = new ArrayList<>(sensors.size());
+        for (int i = 0; i < sensors.size(); i++) {
+            List<String> parameters = new ArrayList<>(columns);
+            for (int column = 0; column < columns; column++) {
+                parameters.add(":p" + i + "_" + column);
+            }
+            rows.add("(" + String.join(", ", parameters) + ")");
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("INSERT INTO " + table.getName() +
+                " (id, " + time + ", " + String.join(", ", table.getMetricColumns()) + ", modified_at) VALUES " +
+                String.join(", ", rows));
+
+        for (int i = 0; i < sensors.size(); i++) {
+            T sensor = sensors.get(i);
+            spec = spec.bind("p" + i + "_0", table.getId(sensor));
+            spec = bindNullable(spec, "p" + i + "_1", table.getTime(sensor), LocalDateTime.class);
+            List<Double> metrics = table.getMetrics(sensor);
+            for (int metric = 0; metric < metrics.size(); metric++) {
+                spec = bindNullable(spec, "p" + i + "_" + (metric + 2), metrics.get(metric), Double.class);
+            }
+            spec = spec.bind("p" + i + "_" + (columns - 1), modifiedAt);
+        }
+        return spec.then();
+    }
+
+    public Mono<T> update(T sensor) {
+        List<String> metrics = table.getMetricColumns();
+        String assignments = metrics.stream()
+                .map(metric -> metric + " = :" + metric)
+                .collect(Collectors.joining(", "));
+        LocalDateTime modifiedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        table.setModifiedAt(sensor, modifiedAt);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("UPDATE " + table.getName() + " SET " +
+                assignments + ", modified_at = :modifiedAt WHERE id = :id");
+        List<Double> values = table.getMetrics(sensor);
+        for (int i = 0; i < metrics.size(); i++) {
+            spec = bindNullable(spec, metrics.get(i), values.get(i), Double.class);
+        }
+        return spec.bind("modifiedAt", modifiedAt)
+                .bind("id", table.getId(sensor))
+                .then()
+                .thenReturn(sensor);
+    }
+
+    // Smallest and biggest ID, empty when there are no rows
+    public Mono<Tuple2<Long, Long>> findIdRange() {
+        return databaseClient.sql("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM " + table.getName())
+                .map((row, metadata) -> idRange(row.get("min_id", Long.class), row.get("max_id", Long.class)))
+                .one()
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    public Mono<Tuple2<Long, Long>> findIdRangeBetween(LocalDateTime after, LocalDateTime before) {
+        return databaseClient.sql("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM " + table.getName() +
+                        " WHERE " + time + " BETWEEN :after AND :before")
+                .bind("after", after)
+                .bind("before", before)
+                .map((row, metadata) -> idRange(row.get("min_id", Long.class), row.get("max_id", Long.class)))
+                .one()
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    public Mono<Integer> deleteChunk(long fromId, long toId) {
+        return databaseClient.sql("DELETE FROM " + table.getName() + " WHERE id BETWEEN :fromId AND :toId")
+                .bind("fromId", fromId)
+                .bind("toId", toId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Integer> deleteChunkBetween(long fromId, long toId, LocalDateTime after, LocalDateTime before) {
+        return databaseClient.sql("DELETE FROM " + table.getName() + " WHERE id BETWEEN :fromId AND :toId AND " +
+                        time + " BETWEEN :after AND :before")
+                .bind("fromId", fromId)
+                .bind("toId", toId)
+                .bind("after", after)
+                .bind("before", before)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Optional<Tuple2<Long, Long>> idRange(Long minId, Long maxId) {
+        return minId == null ? Optional.empty() : Optional.of(Tuples.of(minId, maxId));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                  String name, Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+}
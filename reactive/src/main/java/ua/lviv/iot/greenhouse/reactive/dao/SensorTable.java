@@ -0,0 +1,36 @@
+package ua.lviv.iot.greenhouse.reactive.dao;
+
+import io.r2dbc.spi.Row;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Table of one sensor type and how its rows map to the models shared with GreenHouse.
+// Metric columns are in the order of SensorType metrics, which is the order AggregateMapper expects
+@Getter
+public abstract class SensorTable<T> {
+
+    private final String name;
+    private final String timeColumn;
+    private final List<String> metricColumns;
+
+    protected SensorTable(String name, String timeColumn, List<String> metricColumns) {
+        this.name = name;
+        this.timeColumn = timeColumn;
+        this.metricColumns = metricColumns;
+    }
+
+    public abstract T map(Row row);
+
+    public abstract Long getId(T sensor);
+
+    public abstract void setId(T sensor, long id);
+
+    public abstract void setModifiedAt(T sensor, LocalDateTime modifiedAt);
+
+    public abstract LocalDateTime getTime(T sensor);
+
+    // Values of the metric columns in the same order
+    public abstract List<Double> getMetrics(T sensor);
+}
@@ -0,0 +1,181 @@
+package ua.lviv.iot.greenhouse.reactive.dao;
+
+import io.r2dbc.spi.Row;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SoilSensor;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+// Tables created by the Flyway migrations of GreenHouse
+public class SensorTables {
+
+    public static final SensorTable<AirSensor> AIR = new SensorTable<>("air_sensor", "local_date_time",
+            List.of("air_humidity", "air_temperature")) {
+
+        @Override
+        public AirSensor map(Row row) {
+            AirSensor sensor = new AirSensor(row.get("id", Long.class), new AirSensor.Data(
+                    row.get("local_date_time", LocalDateTime.class),
+                    row.get("air_humidity", Double.class),
+                    row.get("air_temperature", Double.class)
+            ));
+            sensor.setModifiedAt(row.get("modified_at", LocalDateTime.class));
+            return sensor;
+        }
+
+        @Override
+        public Long getId(AirSensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public void setId(AirSensor sensor, long id) {
+            sensor.setId(id);
+        }
+
+        @Override
+        public void setModifiedAt(AirSensor sensor, LocalDateTime modifiedAt) {
+            sensor.setModifiedAt(modifiedAt);
+        }
+
+        @Override
+        public LocalDateTime getTime(AirSensor sensor) {
+            return sensor.getData().getLocalDateTime();
+        }
+
+        @Override
+        public List<Double> getMetrics(AirSensor sensor) {
+            return List.of(sensor.getData().getAirHumidity(), sensor.getData().getAirTemperature());
+        }
+    };
+
+    public static final SensorTable<SoilSensor> SOIL = new SensorTable<>("soil_sensor", "local_date_time",
+            List.of("soil_humidity", "soil_temperature")) {
+
+        @Override
+        public SoilSensor map(Row row) {
+            SoilSensor sensor = new SoilSensor(row.get("id", Long.class), new SoilSensor.Data(
+                    row.get("local_date_time", LocalDateTime.class),
+                    row.get("soil_humidity", Double.class),
+                    row.get("soil_temperature", Double.class)
+            ));
+            sensor.setModifiedAt(row.get("modified_at", LocalDateTime.class));
+            return sensor;
+        }
+
+        @Override
+        public Long getId(SoilSensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public void setId(SoilSensor sensor, long id) {
+            sensor.setId(id);
+        }
+
+        @Override
+        public void setModifiedAt(SoilSensor sensor, LocalDateTime modifiedAt) {
+            sensor.setModifiedAt(modifiedAt);
+        }
+
+        @Override
+        public LocalDateTime getTime(SoilSensor sensor) {
+            return sensor.getData().getLocalDateTime();
+        }
+
+        @Override
+        public List<Double> getMetrics(SoilSensor sensor) {
+            return List.of(sensor.getData().getSoilHumidity(), sensor.getData().getSoilTemperature());
+        }
+    };
+
+    public static final SensorTable<LuminositySensor> LUMINOSITY = new SensorTable<>("luminosity_sensor",
+            "local_date_time", List.of("luminosity")) {
+
+        @Override
+        public LuminositySensor map(Row row) {
+            LuminositySensor sensor = new LuminositySensor(row.get("id", Long.class), new LuminositySensor.Data(
+                    row.get("local_date_time", LocalDateTime.class),
+                    row.get("luminosity", Double.class)
+            ));
+            sensor.setModifiedAt(row.get("modified_at", LocalDateTime.class));
+            return sensor;
+        }
+
+        @Override
+        public Long getId(LuminositySensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public void setId(LuminositySensor sensor, long id) {
+            sensor.setId(id);
+        }
+
+        @Override
+        public void setModifiedAt(LuminositySensor sensor, LocalDateTime modifiedAt) {
+            sensor.setModifiedAt(modifiedAt);
+        }
+
+        @Override
+        public LocalDateTime getTime(LuminositySensor sensor) {
+            return sensor.getData().getLocalDateTime();
+        }
+
+        @Override
+        public List<Double> getMetrics(LuminositySensor sensor) {
+            return List.of(sensor.getData().getLuminosity());
+        }
+    };
+
+    public static final SensorTable<GeneralSensor> GENERAL = new SensorTable<>("general_sensor", "time",
+            List.of("temperature", "humidity", "luminosity", "soil_moisture")) {
+
+        @Override
+        public GeneralSensor map(Row row) {
+            GeneralSensor sensor = new GeneralSensor(row.get("id", Long.class), new GeneralSensor.Data(
+                    row.get("temperature", Double.class),
+                    row.get("humidity", Double.class),
+                    row.get("luminosity", Double.class),
+                    row.get("soil_moisture", Double.class),
+                    row.get("time", LocalDateTime.class)
+            ));
+            sensor.setModifiedAt(row.get("modified_at", LocalDateTime.class));
+            return sensor;
+        }
+
+        @Override
+        public Long getId(GeneralSensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public void setId(GeneralSensor sensor, long id) {
+            sensor.setId(id);
+        }
+
+        @Override
+        public void setModifiedAt(GeneralSensor sensor, LocalDateTime modifiedAt) {
+            sensor.setModifiedAt(modifiedAt);
+        }
+
+        @Override
+        public LocalDateTime getTime(GeneralSensor sensor) {
+            return sensor.getData().getTime();
+        }
+
+        // Metrics of general sensor are nullable, so the list may contain nulls
+        @Override
+        public List<Double> getMetrics(GeneralSensor sensor) {
+            return Arrays.asList(sensor.getData().getTemperature(), sensor.getData().getHumidity(),
+                    sensor.getData().getLuminosity(), sensor.getData().getSoilMoisture());
+        }
+    };
+
+    private SensorTables() {
+    }
+}
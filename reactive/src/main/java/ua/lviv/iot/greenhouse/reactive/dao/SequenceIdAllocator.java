@@ -0,0 +1,65 @@
+package ua.lviv.iot.greenhouse.reactive.dao;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hands out IDs from the same <table>_seq tables Hibernate uses, so both applications can write to one database.
+// Like Hibernate's pooled optimizer, a stored value v reserves IDs (v - 50, v] and the table is moved 50 ahead.
+// Batches that need more IDs reserve several blocks with one update
+public class SequenceIdAllocator {
+
+    public static final int BLOCK_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final String sequenceTable;
+    private long nextId = 1;
+    private long lastId = 0;
+
+    public SequenceIdAllocator(DatabaseClient databaseClient, TransactionalOperator transactionalOperator,
+                               String table) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.sequenceTable = table + "_seq";
+    }
+
+    public Mono<List<Long>> allocate(int count) {
+        return allocate(new ArrayList<>(count), count);
+    }
+
+    private Mono<List<Long>> allocate(List<Long> ids, int count) {
+        synchronized (this) {
+            while (ids.size() < count && nextId <= lastId) {
+                ids.add(nextId++);
+            }
+        }
+        if (ids.size() == count) {
+            return Mono.just(ids);
+        }
+        int blocks = (count - ids.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        // Blocks fetched at the same time by concurrent requests replace each other, which only leaves gaps
+        return reserveBlocks(blocks).flatMap(value -> {
+            synchronized (this) {
+                // The initial value of the table is 1, which reserves only ID 1
+                nextId = Math.max(value - BLOCK_SIZE + 1, 1);
+                lastId = value + (long) (blocks - 1) * BLOCK_SIZE;
+            }
+            return allocate(ids, count);
+        });
+    }
+
+    private Mono<Long> reserveBlocks(int blocks) {
+        return databaseClient.sql("SELECT next_val FROM " + sequenceTable + " FOR UPDATE")
+                .map(row -> row.get("next_val", Long.class))
+                .one()
+                .flatMap(value -> databaseClient.sql("UPDATE " + sequenceTable + " SET next_val = :nextVal")
+                        .bind("nextVal", value + (long) blocks * BLOCK_SIZE)
+                        .then()
+                        .thenReturn(value))
+                .as(transactionalOperator::transactional);
+    }
+}
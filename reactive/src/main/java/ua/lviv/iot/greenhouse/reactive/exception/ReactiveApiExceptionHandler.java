@@ -0,0 +1,39 @@
+package ua.lviv.iot.greenhouse.reactive.exception;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import ua.lviv.iot.greenhouse.exception.ApiException;
+import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
+import ua.lviv.iot.greenhouse.exception.WrongBucketFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+
+import java.time.ZonedDateTime;
+
+// Answers errors with the same payload and status as ApiExceptionHandler of GreenHouse
+@ControllerAdvice
+@RequiredArgsConstructor
+public class ReactiveApiExceptionHandler {
+
+    private final MeterRegistry meterRegistry;
+
+    @ExceptionHandler(value = {NoDataFoundException.class})
+    public ResponseEntity<Object> handleNoDataFoundException(NoDataFoundException e) {
+        return handle(e, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(value = {WrongDateFormatException.class, WrongBucketFormatException.class,
+            WrongDateRangeException.class})
+    public ResponseEntity<Object> handleBadRequest(RuntimeException e) {
+        return handle(e, HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<Object> handle(RuntimeException e, HttpStatus httpStatus) {
+        meterRegistry.counter("greenhouse.api.exceptions", "exception", e.getClass().getSimpleName()).increment();
+        return new ResponseEntity<>(new ApiException(e.getMessage(), httpStatus, ZonedDateTime.now()), httpStatus);
+    }
+}
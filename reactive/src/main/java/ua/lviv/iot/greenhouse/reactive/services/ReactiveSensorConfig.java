@@ -0,0 +1,58 @@
+package ua.lviv.iot.greenhouse.reactive.services;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
+import ua.lviv.iot.greenhouse.mappers.AirSensorMapper;
+import ua.lviv.iot.greenhouse.mappers.GeneralSensorMapper;
+import ua.lviv.iot.greenhouse.mappers.LuminositySensorMapper;
+import ua.lviv.iot.greenhouse.mappers.SoilSensorMapper;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.reactive.dao.ReactiveSensorDAO;
+import ua.lviv.iot.greenhouse.reactive.dao.SensorTables;
+
+@Configuration
+public class ReactiveSensorConfig {
+
+    @Bean
+    public ReactiveSensorService<AirSensor, AirSensorDTO> airSensorService(
+            DatabaseClient databaseClient, TransactionalOperator transactionalOperator) {
+        return new ReactiveSensorService<>(
+                new ReactiveSensorDAO<>(SensorTables.AIR, databaseClient, transactionalOperator),
+                "air sensor", AirSensorMapper::mapAirSensorDTOtoAirSensor, SensorDataValidation::validate);
+    }
+
+    @Bean
+    public ReactiveSensorService<SoilSensor, SoilSensorDTO> soilSensorService(
+            DatabaseClient databaseClient, TransactionalOperator transactionalOperator) {
+        return new ReactiveSensorService<>(
+                new ReactiveSensorDAO<>(SensorTables.SOIL, databaseClient, transactionalOperator),
+                "soil sensor", SoilSensorMapper::mapSoilSensorDTOtoSoilSensor, SensorDataValidation::validate);
+    }
+
+    @Bean
+    public ReactiveSensorService<LuminositySensor, LuminositySensorDTO> luminositySensorService(
+            DatabaseClient databaseClient, TransactionalOperator transactionalOperator) {
+        return new ReactiveSensorService<>(
+                new ReactiveSensorDAO<>(SensorTables.LUMINOSITY, databaseClient, transactionalOperator),
+                "luminosity sensor", LuminositySensorMapper::mapLuminositySensorDTOtoLuminositySensor,
+                SensorDataValidation::validate);
+    }
+
+    @Bean
+    public ReactiveSensorService<GeneralSensor, GeneralSensorDTO> generalSensorService(
+            DatabaseClient databaseClient, TransactionalOperator transactionalOperator) {
+        return new ReactiveSensorService<>(
+                new ReactiveSensorDAO<>(SensorTables.GENERAL, databaseClient, transactionalOperator),
+                "general sensor", GeneralSensorMapper::mapGeneralSensorDTOtoGeneralSensor,
+                SensorDataValidation::validate);
+    }
+}
@@ -0,0 +1,139 @@
+package ua.lviv.iot.greenhouse.reactive.services;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
+import ua.lviv.iot.greenhouse.reactive.dao.ReactiveSensorDAO;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.TimeBuckets;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Sensor service of the reactive API. Sensor types differ only in their DAO, the mapper of their DTO from
+// GreenHouse and the validation of batch rows
+public class ReactiveSensorService<T, D> {
+
+    private static final int MAX_PAGE_LIMIT = 10_000;
+    private static final long DELETE_CHUNK_SIZE = 10_000;
+
+    private final ReactiveSensorDAO<T> sensorDAO;
+    private final String sensorName;
+    private final Function<D, T> mapper;
+    private final Function<D, String> validator;
+
+    public ReactiveSensorService(ReactiveSensorDAO<T> sensorDAO, String sensorName, Function<D, T> mapper,
+                                 Function<D, String> validator) {
+        this.sensorDAO = sensorDAO;
+        this.sensorName = sensorName;
+        this.mapper = mapper;
+        this.validator = validator;
+    }
+
+    public Mono<T> createSensorData(D sensorDTO) {
+        return sensorDAO.insert(mapper.apply(sensorDTO));
+    }
+
+    public Mono<BatchResultDTO<T>> createSensorDataBatch(List<D> sensorDTOs) {
+        List<T> sensors = new ArrayList<>(sensorDTOs.size());
+        List<RejectedRowDTO> rejected = new ArrayList<>();
+
+        for (int i = 0; i < sensorDTOs.size(); i++) {
+            String reason = validator.apply(sensorDTOs.get(i));
+            if (reason != null) {
+                rejected.add(new RejectedRowDTO(i, reason));
+            } else {
+                sensors.add(mapper.apply(sensorDTOs.get(i)));
+            }
+        }
+        return sensorDAO.insertAll(sensors)
+                .collectList()
+                .map(saved -> new BatchResultDTO<>(saved, rejected));
+    }
+
+    // Rows are emitted as the DB returns them, nothing is collected in memory
+    public Flux<T> getAllSensorData(DateRange range) {
+        if (range == null) {
+            return sensorDAO.findAll();
+        }
+        range.checkMaxLength();
+        return sensorDAO.findBetween(range.getFrom(), range.getLast());
+    }
+
+    public Mono<T> getLatestSensorData() {
+        return sensorDAO.findLatest()
+                .switchIfEmpty(Mono.error(() -> new NoDataFoundException("There is no data for the " +
+                        sensorName + " yet")));
+    }
+
+    public Mono<KeysetPageDTO<T>> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT);
+        long fromId = afterId == null ? 0 : afterId;
+        Flux<T> sensors = afterTimestamp == null
+                ? sensorDAO.findPageAfterId(fromId, pageSize)
+                : sensorDAO.findPageAfterTimestamp(afterTimestamp, fromId, pageSize);
+
+        return sensors.collectList().map(page -> {
+            if (page.size() < pageSize) {
+                return new KeysetPageDTO<>(page, null, null);
+            }
+            T last = page.get(page.size() - 1);
+            return new KeysetPageDTO<>(page, sensorDAO.getTable().getId(last), sensorDAO.getTable().getTime(last));
+        });
+    }
+
+    public Flux<T> exportAllSensorData() {
+        return sensorDAO.findAll();
+    }
+
+    public <A> Flux<A> getAggregatedData(DateRange range, String bucket, BiFunction<Object[], Long, A> rowMapper) {
+        long bucketSeconds = TimeBuckets.parseBucketSeconds(bucket);
+        TimeBuckets.checkBucketCount(range.getFrom(), range.getTo(), bucketSeconds);
+
+        return sensorDAO.aggregateByBucket(range.getFrom(), range.getTo(), bucketSeconds)
+                .map(row -> rowMapper.apply(row, bucketSeconds));
+    }
+
+    public Mono<T> updateDataById(long id, Consumer<T> update) {
+        return sensorDAO.findById(id)
+                .switchIfEmpty(Mono.error(() -> new NoDataFoundException("There is no data for the " +
+                        sensorName + " with ID " + id)))
+                .flatMap(sensor -> {
+                    update.accept(sensor);
+                    return sensorDAO.update(sensor);
+                });
+    }
+
+    // Chunks are deleted one after another, each by its own statement, like in GreenHouse
+    public Mono<Long> deleteAllSensorData(DateRange range) {
+        if (range == null) {
+            return sensorDAO.findIdRange()
+                    .flatMap(idRange -> deleteInChunks(idRange.getT1(), idRange.getT2(), sensorDAO::deleteChunk))
+                    .defaultIfEmpty(0L);
+        }
+        return sensorDAO.findIdRangeBetween(range.getFrom(), range.getLast())
+                .flatMap(idRange -> deleteInChunks(idRange.getT1(), idRange.getT2(), (fromId, toId) ->
+                        sensorDAO.deleteChunkBetween(fromId, toId, range.getFrom(), range.getLast())))
+                .defaultIfEmpty(0L);
+    }
+
+    private static Mono<Long> deleteInChunks(long minId, long maxId,
+                                             BiFunction<Long, Long, Mono<Integer>> deleteChunk) {
+        return Flux.<Long, Long>generate(() -> minId, (fromId, sink) -> {
+                    sink.next(fromId);
+                    if (fromId + DELETE_CHUNK_SIZE > maxId) {
+                        sink.complete();
+                    }
+                    return fromId + DELETE_CHUNK_SIZE;
+                })
+                .concatMap(fromId -> deleteChunk.apply(fromId, Math.min(fromId + DELETE_CHUNK_SIZE - 1, maxId)))
+                .reduce(0L, (deleted, chunk) -> deleted + chunk);
+    }
+}
@@ -0,0 +1,62 @@
+package ua.lviv.iot.greenhouse.reactive.services;
+
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
+
+import java.util.stream.Stream;
+
+// Checks of batch rows. Each returns the reason a row is rejected or null when it is valid,
+// with the same reasons the services of GreenHouse give
+public class SensorDataValidation {
+
+    private SensorDataValidation() {
+    }
+
+    public static String validate(AirSensorDTO airSensorDTO) {
+        if (airSensorDTO == null || airSensorDTO.getLocalDateTime() == null) {
+            return "Row must contain local date time";
+        }
+        if (!Double.isFinite(airSensorDTO.getAirHumidity()) || !Double.isFinite(airSensorDTO.getAirTemperature())) {
+            return "Air humidity and air temperature must be finite numbers";
+        }
+        return null;
+    }
+
+    public static String validate(SoilSensorDTO soilSensorDTO) {
+        if (soilSensorDTO == null || soilSensorDTO.getLocalDateTime() == null) {
+            return "Row must contain local date time";
+        }
+        if (!Double.isFinite(soilSensorDTO.getSoilHumidity()) || !Double.isFinite(soilSensorDTO.getSoilTemperature())) {
+            return "Soil humidity and soil temperature must be finite numbers";
+        }
+        return null;
+    }
+
+    public static String validate(LuminositySensorDTO luminositySensorDTO) {
+        if (luminositySensorDTO == null || luminositySensorDTO.getLocalDateTime() == null) {
+            return "Row must contain local date time";
+        }
+        if (!Double.isFinite(luminositySensorDTO.getLuminosity())) {
+            return "Luminosity must be a finite number";
+        }
+        return null;
+    }
+
+    public static String validate(GeneralSensorDTO generalSensorDTO) {
+        if (generalSensorDTO == null || generalSensorDTO.getTime() == null) {
+            return "Row must contain time";
+        }
+        boolean allFinite = Stream.of(
+                generalSensorDTO.getTemperature(),
+                generalSensorDTO.getHumidity(),
+                generalSensorDTO.getLuminosity(),
+                generalSensorDTO.getSoilMoisture()
+        ).allMatch(value -> value != null && Double.isFinite(value));
+        if (!allFinite) {
+            return "Temperature, humidity, luminosity and soil moisture must be finite numbers";
+        }
+        return null;
+    }
+}
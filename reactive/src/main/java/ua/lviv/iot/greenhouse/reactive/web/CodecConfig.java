@@ -0,0 +1,18 @@
+package ua.lviv.iot.greenhouse.reactive.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+@Configuration
+public class CodecConfig {
+
+    // Runs after the customizer of Spring Boot, which registers the default Jackson encoder
+    @Bean
+    @Order(1)
+    public CodecCustomizer jsonArrayCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> configurer.defaultCodecs().jackson2JsonEncoder(new JsonArrayEncoder(objectMapper));
+    }
+}
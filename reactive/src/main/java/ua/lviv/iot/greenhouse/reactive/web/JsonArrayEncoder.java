@@ -0,0 +1,48 @@
+package ua.lviv.iot.greenhouse.reactive.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Jackson2JsonEncoder collects a Flux into a list before writing it as a JSON array. This one writes every
+// element as soon as it comes, so big results are never held in memory and the client reads them at its own pace.
+// Single values and streaming media types like application/x-ndjson are left to Jackson2JsonEncoder
+public class JsonArrayEncoder extends Jackson2JsonEncoder {
+
+    private static final byte[] START = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END = "]".getBytes(StandardCharsets.UTF_8);
+
+    public JsonArrayEncoder(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono || getStreamingMediaTypeSeparator(mimeType) != null) {
+            return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+        }
+        Flux<DataBuffer> elements = Flux.from(inputStream)
+                .index()
+                .concatMap(element -> {
+                    DataBuffer value = encodeValue(element.getT2(), bufferFactory, elementType, mimeType, hints);
+                    return element.getT1() == 0 ? Mono.just(value)
+                            : Flux.just(bufferFactory.wrap(SEPARATOR), value);
+                });
+        return Flux.concat(
+                Mono.fromSupplier(() -> bufferFactory.wrap(START)),
+                elements,
+                Mono.fromSupplier(() -> bufferFactory.wrap(END))
+        );
+    }
+}
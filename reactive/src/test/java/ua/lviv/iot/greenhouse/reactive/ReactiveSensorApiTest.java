@@ -0,0 +1,281 @@
+package ua.lviv.iot.greenhouse.reactive;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReactiveSensorApiTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, Month.MAY, 1);
+
+    @TestConfiguration
+    static class SchemaConfig {
+
+        @Bean
+        public ConnectionFactoryInitializer schemaInitializer(ConnectionFactory connectionFactory) {
+            ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+            initializer.setConnectionFactory(connectionFactory);
+            initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")));
+            return initializer;
+        }
+    }
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void setUp() {
+        Flux.just("air_sensor", "general_sensor")
+                .concatMap(table -> databaseClient.sql("DELETE FROM " + table).then())
+                .blockLast();
+    }
+
+    @Test
+    void createSensorDataBatch() {
+
+        // given
+        List<AirSensorDTO> airSensorDTOs = readings(120);
+        airSensorDTOs.add(null);
+
+        // when
+        BatchResultDTO<AirSensor> result = postBatch(airSensorDTOs);
+
+        // then
+        List<Long> ids = result.getSaved().stream().map(AirSensor::getId).collect(Collectors.toList());
+        assertThat(ids).hasSize(120).doesNotHaveDuplicates().doesNotContainNull();
+        assertThat(result.getRejected()).containsExactly(new RejectedRowDTO(120, "Row must contain local date time"));
+        // Pooled IDs of a batch come from blocks of 50, which the sequence table is moved past
+        Long nextVal = databaseClient.sql("SELECT next_val FROM air_sensor_seq")
+                .map(row -> row.get("next_val", Long.class))
+                .one()
+                .block();
+        assertThat(ids).allMatch(id -> id <= nextVal - 50);
+    }
+
+    @Test
+    void getAllSensorDataStreamsReadingsOfTheDay() {
+
+        // given
+        postBatch(readings(30));
+
+        // when
+        List<AirSensor> sensors = webTestClient.get()
+                .uri("/sensors/air-sensor?date={date}", DAY)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(AirSensor.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertThat(sensors).hasSize(30);
+        assertThat(sensors).extracting(sensor -> sensor.getData().getLocalDateTime())
+                .isSorted()
+                .allMatch(time -> time.toLocalDate().equals(DAY));
+    }
+
+    @Test
+    void exportAllSensorDataAsNdjson() {
+
+        // given
+        postBatch(readings(10));
+
+        // when
+        Flux<AirSensor> sensors = webTestClient.get()
+                .uri("/sensors/air-sensor/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(AirSensor.class)
+                .getResponseBody();
+
+        // then
+        StepVerifier.create(sensors)
+                .expectNextCount(10)
+                .verifyComplete();
+    }
+
+    @Test
+    void getHumidityData() {
+
+        // given
+        postBatch(readings(5));
+
+        // then
+        webTestClient.get()
+                .uri("/sensors/air-sensor/humidity-data?from={from}&to={to}", DAY, DAY.plusDays(1))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(AirSensorHumidityDTO.class)
+                .hasSize(5);
+    }
+
+    @Test
+    void getAggregatedData() {
+
+        // given
+        postBatch(readings(90));
+
+        // when
+        List<AirSensorAggregateDTO> buckets = webTestClient.get()
+                .uri("/sensors/air-sensor/aggregate?from={from}&to={to}&bucket=1h", DAY, DAY.plusDays(1))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(AirSensorAggregateDTO.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertThat(buckets).extracting(AirSensorAggregateDTO::getCount).containsExactly(60L, 30L);
+        assertThat(buckets.get(0).getBucketStart()).isEqualTo(DAY.atTime(1, 0));
+        assertThat(buckets.get(0).getAirHumidity().getMin()).isEqualTo(60.0);
+        assertThat(buckets.get(0).getAirHumidity().getMax()).isEqualTo(119.0);
+        assertThat(buckets.get(1).getAirHumidity().getLast()).isEqualTo(149.0);
+    }
+
+    @Test
+    void getSensorDataPage() {
+
+        // given
+        postBatch(readings(25));
+
+        // then
+        webTestClient.get()
+                .uri("/sensors/air-sensor/page?limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(10)
+                .jsonPath("$.nextAfterId").isNumber();
+    }
+
+    @Test
+    void updateDataById() {
+
+        // given
+        AirSensor sensor = postBatch(readings(1)).getSaved().get(0);
+
+        // when
+        webTestClient.put()
+                .uri("/sensors/air-sensor/{id}", sensor.getId())
+                .bodyValue(new AirSensorDTO(null, 10.0, 20.0))
+                .exchange()
+                .expectStatus().isOk();
+
+        // then
+        webTestClient.get()
+                .uri("/sensors/air-sensor/latest")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(sensor.getId())
+                .jsonPath("$.data.airHumidity").isEqualTo(10.0)
+                .jsonPath("$.data.airTemperature").isEqualTo(20.0);
+    }
+
+    @Test
+    void updateDataByUnknownId() {
+        webTestClient.put()
+                .uri("/sensors/air-sensor/{id}", 42)
+                .bodyValue(new AirSensorDTO(null, 10.0, 20.0))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("There is no data for the air sensor with ID 42");
+    }
+
+    @Test
+    void getAllSensorDataWithWrongDate() {
+        webTestClient.get()
+                .uri("/sensors/air-sensor?date=2021-13-01")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void deleteAllSensorDataOfTheDay() {
+
+        // given
+        postBatch(readings(20));
+
+        // then
+        webTestClient.delete()
+                .uri("/sensors/air-sensor?date={date}", DAY)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).isEqualTo(20L);
+        webTestClient.get()
+                .uri("/sensors/air-sensor/latest")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void createGeneralSensorData() {
+
+        // given
+        GeneralSensorDTO generalSensorDTO = new GeneralSensorDTO(21.5, 60.0, 300.0, null, DAY.atTime(12, 0));
+
+        // then
+        webTestClient.post()
+                .uri("/sensors")
+                .bodyValue(generalSensorDTO)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isNumber()
+                .jsonPath("$.data.temperature").isEqualTo(21.5)
+                .jsonPath("$.data.soilMoisture").doesNotExist();
+    }
+
+    // One reading a minute from 01:00 of the day, humidity is 60 plus the number of the minute
+    private static List<AirSensorDTO> readings(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new AirSensorDTO(DAY.atTime(1, 0).plusMinutes(i), 60.0 + i, 23.38))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private BatchResultDTO<AirSensor> postBatch(List<AirSensorDTO> airSensorDTOs) {
+        return webTestClient.post()
+                .uri("/sensors/air-sensor/batch")
+                .bodyValue(airSensorDTOs)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<BatchResultDTO<AirSensor>>() {
+                })
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -0,0 +1,86 @@
+package ua.lviv.iot.greenhouse.reactive.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonArrayEncoderTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2021, 5, 1, 12, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final JsonArrayEncoder encoder = new JsonArrayEncoder(objectMapper);
+
+    @Test
+    void writesElementsBeforeTheFluxCompletes() {
+
+        // given
+        Flux<AirSensorHumidityDTO> values = Flux.just(new AirSensorHumidityDTO(TIME, 60.0))
+                .concatWith(Flux.never());
+
+        // then
+        StepVerifier.create(encode(values, MediaType.APPLICATION_JSON).map(JsonArrayEncoderTest::toString))
+                .expectNext("[")
+                .assertNext(value -> assertThat(value).contains("\"airHumidity\":60.0"))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void writesJsonArray() throws Exception {
+
+        // given
+        Flux<AirSensorHumidityDTO> values = Flux.just(new AirSensorHumidityDTO(TIME, 60.0),
+                new AirSensorHumidityDTO(TIME.plusMinutes(1), 61.0));
+
+        // when
+        String json = join(encode(values, MediaType.APPLICATION_JSON));
+
+        // then
+        List<?> written = objectMapper.readValue(json, List.class);
+        assertThat(written).hasSize(2);
+    }
+
+    @Test
+    void writesEmptyJsonArray() {
+        assertThat(join(encode(Flux.empty(), MediaType.APPLICATION_JSON))).isEqualTo("[]");
+    }
+
+    @Test
+    void leavesSingleValuesToJackson() {
+        assertThat(join(encode(Mono.just(new AirSensorHumidityDTO(TIME, 60.0)), MediaType.APPLICATION_JSON)))
+                .startsWith("{");
+    }
+
+    private Flux<DataBuffer> encode(Publisher<?> values, MediaType mediaType) {
+        return encoder.encode(values, DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(AirSensorHumidityDTO.class), mediaType, Collections.emptyMap());
+    }
+
+    private static String join(Flux<DataBuffer> buffers) {
+        return buffers.map(JsonArrayEncoderTest::toString).collect(Collectors.joining()).block();
+    }
+
+    private static String toString(DataBuffer buffer) {
+        String value = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return value;
+    }
+}
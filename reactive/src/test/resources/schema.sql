@@ -0,0 +1,47 @@
+-- Sensor tables of the Flyway migrations of GreenHouse without the parts H2 doesn't understand
+
+CREATE TABLE IF NOT EXISTS air_sensor
+(
+    id              BIGINT NOT NULL PRIMARY KEY,
+    local_date_time DATETIME(6),
+    air_humidity    DOUBLE NOT NULL,
+    air_temperature DOUBLE NOT NULL,
+    modified_at     DATETIME(6)
+);
+
+CREATE TABLE IF NOT EXISTS soil_sensor
+(
+    id               BIGINT NOT NULL PRIMARY KEY,
+    local_date_time  DATETIME(6),
+    soil_humidity    DOUBLE NOT NULL,
+    soil_temperature DOUBLE NOT NULL,
+    modified_at      DATETIME(6)
+);
+
+CREATE TABLE IF NOT EXISTS luminosity_sensor
+(
+    id              BIGINT NOT NULL PRIMARY KEY,
+    local_date_time DATETIME(6),
+    luminosity      DOUBLE NOT NULL,
+    modified_at     DATETIME(6)
+);
+
+CREATE TABLE IF NOT EXISTS general_sensor
+(
+    id            BIGINT NOT NULL PRIMARY KEY,
+    temperature   DOUBLE,
+    humidity      DOUBLE,
+    luminosity    DOUBLE,
+    soil_moisture DOUBLE,
+    time          DATETIME(6),
+    modified_at   DATETIME(6)
+);
+
+CREATE TABLE IF NOT EXISTS air_sensor_seq (next_val BIGINT);
+CREATE TABLE IF NOT EXISTS soil_sensor_seq (next_val BIGINT);
+CREATE TABLE IF NOT EXISTS luminosity_sensor_seq (next_val BIGINT);
+CREATE TABLE IF NOT EXISTS general_sensor_seq (next_val BIGINT);
+INSERT INTO air_sensor_seq (next_val) VALUES (1);
+INSERT INTO soil_sensor_seq (next_val) VALUES (1);
+INSERT INTO luminosity_sensor_seq (next_val) VALUES (1);
+INSERT INTO general_sensor_seq (next_val) VALUES (1);
@@ -0,0 +1,138 @@
+package ua.lviv.iot.greenhouse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Runs benchmarks like org.openjdk.jmh.Main does and fails when a score got worse than the baseline
+// by more than the tolerance. Own options go before JMH ones:
+//   --baseline=target/jmh-baseline.json  file with results of an earlier run, in JMH JSON format
+//   --tolerance=0.2                      allowed slowdown, 0.2 is 20%
+//   --update-baseline                    saves results of this run in the baseline instead of checking them,
+//                                        results of benchmarks that didn't run stay as they are
+// Scores can be compared only when they are measured on the same machine, so the baseline is never committed:
+// run the base revision with --update-baseline first, then the changed one right after it. Baselines measured
+// on another JVM are refused
+public class BenchmarkRegressionGate {
+
+    private static final String RESULT_FILE = "target/jmh-result.json";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Path baseline = Paths.get("target/jmh-baseline.json");
+        double tolerance = 0.2;
+        boolean updateBaseline = false;
+        List<String> jmhArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--baseline=")) {
+                baseline = Paths.get(arg.substring("--baseline=".length()));
+            } else if (arg.startsWith("--tolerance=")) {
+                tolerance = Double.parseDouble(arg.substring("--tolerance=".length()));
+            } else if (arg.equals("--update-baseline")) {
+                updateBaseline = true;
+            } else {
+                jmhArgs.add(arg);
+            }
+        }
+
+        new File(RESULT_FILE).getParentFile().mkdirs();
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT_FILE)
+                .shouldFailOnError(true)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        if (updateBaseline) {
+            Map<String, JsonNode> scores = Files.exists(baseline) ? readScores(baseline) : new HashMap<>();
+            scores.putAll(readScores(Paths.get(RESULT_FILE)));
+            ArrayNode merged = OBJECT_MAPPER.createArrayNode();
+            new TreeMap<>(scores).values().forEach(merged::add);
+            OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(baseline.toFile(), merged);
+            System.out.println("Saved " + results.size() + " results in the baseline " + baseline);
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            System.out.println("There is no baseline in " + baseline + ", run with --update-baseline first");
+            return;
+        }
+
+        Map<String, JsonNode> baselineScores = readScores(baseline);
+        Map<String, JsonNode> currentScores = readScores(Paths.get(RESULT_FILE));
+        String baselineJvm = jvm(baselineScores);
+        String currentJvm = jvm(currentScores);
+        if (baselineJvm != null && currentJvm != null && !baselineJvm.equals(currentJvm)) {
+            System.out.println("The baseline is measured on " + baselineJvm + ", and this run on " + currentJvm +
+                    ". Run the base revision with --update-baseline on this machine first");
+            System.exit(1);
+        }
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : new TreeMap<>(currentScores).entrySet()) {
+            JsonNode before = baselineScores.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW   %s %.3f%n", entry.getKey(), score(entry.getValue()));
+                continue;
+            }
+            // Throughput gets better when it grows, all the other modes measure time
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().path("mode").asText());
+            double change = score(entry.getValue()) / score(before) - 1;
+            boolean regressed = higherIsBetter ? change < -tolerance : change > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%s %s %.3f -> %.3f %s (%+.1f%%)%n", regressed ? "WORSE" : "OK   ", entry.getKey(),
+                    score(before), score(entry.getValue()),
+                    entry.getValue().path("primaryMetric").path("scoreUnit").asText(), change * 100);
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmarks are more than " + Math.round(tolerance * 100) +
+                    "% worse than the baseline");
+            System.exit(1);
+        }
+    }
+
+    // Keys results by benchmark name and parameters, e.g. JsonSerializationBenchmark.writeList{size=1000}
+    private static Map<String, JsonNode> readScores(Path file) throws Exception {
+        Map<String, JsonNode> scores = new HashMap<>();
+        for (JsonNode result : OBJECT_MAPPER.readTree(file.toFile())) {
+            String benchmark = result.path("benchmark").asText();
+            String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            scores.put(params.isEmpty() ? name : name + params, result);
+        }
+        return scores;
+    }
+
+    // JVM and its path, which tell apart most machines and setups
+    private static String jvm(Map<String, JsonNode> scores) {
+        return scores.values().stream()
+                .findFirst()
+                .map(result -> result.path("vmName").asText() + " " + result.path("vmVersion").asText() +
+                        " (" + result.path("jvm").asText() + ")")
+                .orElse(null);
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+}
@@ -0,0 +1,119 @@
+package ua.lviv.iot.greenhouse.mappers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SoilSensor;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Cost of mapping a single reading or aggregate row, which every request pays once per row
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SensorMapperBenchmark {
+
+    private static final long BUCKET_SECONDS = 300;
+    private static final LocalDateTime TIME = LocalDateTime.of(2021, 5, 1, 12, 30, 15);
+
+    private final AirSensorDTO airSensorDTO = new AirSensorDTO(TIME, 70.6, 23.38);
+    private final SoilSensorDTO soilSensorDTO = new SoilSensorDTO(TIME, 41.2, 19.7);
+    private final LuminositySensorDTO luminositySensorDTO = new LuminositySensorDTO(TIME, 512.0);
+    private final GeneralSensorDTO generalSensorDTO = new GeneralSensorDTO(23.4, 70.6, 512.0, 41.2, TIME);
+    private final AirSensor airSensor = new AirSensor(1L, new AirSensor.Data(TIME, 70.6, 23.38));
+    private final SoilSensor soilSensor = new SoilSensor(1L, new SoilSensor.Data(TIME, 41.2, 19.7));
+    private final Object[] oneMetricRow = aggregateRow(1);
+    private final Object[] twoMetricRow = aggregateRow(2);
+    private final Object[] fourMetricRow = aggregateRow(4);
+
+    // Same types the MySQL driver returns for native aggregate queries
+    private static Object[] aggregateRow(int metrics) {
+        Object[] row = new Object[2 + metrics * AggregateMapper.METRIC_COLUMNS + 1];
+        row[0] = BigInteger.valueOf(TIME.toLocalDate().toEpochDay() * 288);
+        row[1] = BigInteger.valueOf(10);
+        for (int i = 0; i < metrics; i++) {
+            int offset = 2 + i * AggregateMapper.METRIC_COLUMNS;
+            row[offset] = 19.5;
+            row[offset + 1] = 24.0;
+            row[offset + 2] = 215.0;
+            row[offset + 3] = BigInteger.valueOf(10);
+            row[offset + 4] = 23.38;
+        }
+        row[row.length - 1] = BigInteger.valueOf(1234);
+        return row;
+    }
+
+    @Benchmark
+    public AirSensor airDTOtoEntity() {
+        return AirSensorMapper.mapAirSensorDTOtoAirSensor(airSensorDTO);
+    }
+
+    @Benchmark
+    public AirSensorHumidityDTO airEntityToHumidityDTO() {
+        return AirSensorMapper.mapAirSensorToAirSensorHumidityDTO(airSensor);
+    }
+
+    @Benchmark
+    public AirSensorAggregateDTO airRowToAggregateDTO() {
+        return AirSensorMapper.mapRowToAirSensorAggregateDTO(twoMetricRow, BUCKET_SECONDS);
+    }
+
+    @Benchmark
+    public SoilSensor soilDTOtoEntity() {
+        return SoilSensorMapper.mapSoilSensorDTOtoSoilSensor(soilSensorDTO);
+    }
+
+    @Benchmark
+    public SoilSensorHumidityDTO soilEntityToHumidityDTO() {
+        return SoilSensorMapper.mapSoilSensorToSoilSensorHumidityDTO(soilSensor);
+    }
+
+    @Benchmark
+    public SoilSensorAggregateDTO soilRowToAggregateDTO() {
+        return SoilSensorMapper.mapRowToSoilSensorAggregateDTO(twoMetricRow, BUCKET_SECONDS);
+    }
+
+    @Benchmark
+    public LuminositySensor luminosityDTOtoEntity() {
+        return LuminositySensorMapper.mapLuminositySensorDTOtoLuminositySensor(luminositySensorDTO);
+    }
+
+    @Benchmark
+    public LuminositySensorAggregateDTO luminosityRowToAggregateDTO() {
+        return LuminositySensorMapper.mapRowToLuminositySensorAggregateDTO(oneMetricRow, BUCKET_SECONDS);
+    }
+
+    @Benchmark
+    public GeneralSensor generalDTOtoEntity() {
+        return GeneralSensorMapper.mapGeneralSensorDTOtoGeneralSensor(generalSensorDTO);
+    }
+
+    @Benchmark
+    public GeneralSensorAggregateDTO generalRowToAggregateDTO() {
+        return GeneralSensorMapper.mapRowToGeneralSensorAggregateDTO(fourMetricRow, BUCKET_SECONDS);
+    }
+}
@@ -0,0 +1,124 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ua.lviv.iot.greenhouse.GreenHouseApplication;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.services.AirSensorService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Air sensor service against the in-memory H2 database the tests use, with 30 days of readings every 30 seconds.
+// Shows what the service and Hibernate add on top of the DB, not how fast MySQL is
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SensorServiceBenchmark {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2021, 5, 1);
+    private static final int DAYS = 30;
+    private static final int READINGS_PER_DAY = 2880;
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"true", "false"})
+    private boolean queryCache;
+
+    private ConfigurableApplicationContext context;
+    private AirSensorService airSensorService;
+    private DateRange day;
+    private DateRange week;
+    private List<AirSensorDTO> batch;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(GreenHouseApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("greenhouse.query-cache.enabled=" + queryCache,
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "logging.level.root=WARN", "spring.main.banner-mode=off")
+                .run();
+        airSensorService = context.getBean(AirSensorService.class);
+
+        List<AirSensorDTO> readings = new ArrayList<>(READINGS_PER_DAY);
+        for (int day = 0; day < DAYS; day++) {
+            readings.clear();
+            for (int i = 0; i < READINGS_PER_DAY; i++) {
+                readings.add(new AirSensorDTO(FIRST_DAY.plusDays(day).atStartOfDay().plusSeconds(i * 30L),
+                        60 + i % 20, 18 + i % 7));
+            }
+            airSensorService.createSensorDataBatch(readings);
+        }
+        // The first run only notes the newest ID, the second one rolls readings up to it
+        RollupService rollupService = context.getBean(RollupService.class);
+        rollupService.rollUp();
+        rollupService.rollUp();
+
+        day = DateRange.ofDay(FIRST_DAY.plusDays(10));
+        week = DateRange.of(FIRST_DAY.plusDays(10).atStartOfDay(), FIRST_DAY.plusDays(17).atStartOfDay());
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new AirSensorDTO(LocalDateTime.now(), 65.0, 21.0));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<AirSensor> getDay() {
+        return airSensorService.getAllSensorData(day);
+    }
+
+    @Benchmark
+    public List<AirSensorHumidityDTO> getHumidityOfDay() {
+        return airSensorService.getHumidityData(day);
+    }
+
+    @Benchmark
+    public List<AirSensor> getWeek() {
+        return airSensorService.getAllSensorData(week);
+    }
+
+    @Benchmark
+    public List<AirSensorAggregateDTO> aggregateWeekByHour() {
+        return airSensorService.getAggregatedData(week, "1h");
+    }
+
+    @Benchmark
+    public AirSensor createOne() {
+        return airSensorService.createSensorData(new AirSensorDTO(LocalDateTime.now(), 65.0, 21.0));
+    }
+
+    @Benchmark
+    public BatchResultDTO<AirSensor> createBatch() {
+        return airSensorService.createSensorDataBatch(batch);
+    }
+}
@@ -0,0 +1,76 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares the resolver with parsing the way services did it before: LocalDate.parse inside try/catch,
+// where wrong input costs a DateTimeParseException and an exception with a full stack trace.
+// Run with: mvn -P jmh test-compile exec:exec -Djmh.args="DateRangeResolverBenchmark -prof gc"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DateRangeResolverBenchmark {
+
+    private static final int INPUTS = 1024;
+    private static final String[] WRONG_DATES = {"2021.05.01", "2021-02-30", "yesterday", "2021-13-01", "01-05-2021"};
+
+    // Share of requests with a wrong date
+    @Param({"0", "10", "50"})
+    private int wrongPercent;
+
+    private final DateRangeResolver dateRangeResolver = new DateRangeResolver();
+    private String[] dates;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDate firstDay = LocalDate.of(2021, 5, 1);
+        dates = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            dates[i] = random.nextInt(100) < wrongPercent
+                    ? WRONG_DATES[random.nextInt(WRONG_DATES.length)]
+                    : firstDay.plusDays(random.nextInt(90)).toString();
+        }
+    }
+
+    @Benchmark
+    public Object resolver() {
+        String date = dates[next++ & (INPUTS - 1)];
+        try {
+            return dateRangeResolver.resolve(date, null, null, null);
+        } catch (WrongDateFormatException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object parseInService() {
+        String date = dates[next++ & (INPUTS - 1)];
+        try {
+            LocalDate localDate = LocalDate.parse(date);
+            return new Object[]{localDate.atTime(LocalTime.MIN), localDate.atTime(LocalTime.MAX)};
+        } catch (Exception e) {
+            return new IllegalArgumentException("Wrong date format. Change to match yyyy-mm-dd and " +
+                    "and make sure entered values are valid");
+        }
+    }
+}
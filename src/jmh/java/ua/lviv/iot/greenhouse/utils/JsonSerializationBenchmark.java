@@ -0,0 +1,66 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.StreamUtils;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Serialization of air sensor readings, as list endpoints return them and as /export streams them.
+// Output goes nowhere, so only Jackson is measured
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    // Same settings as the ObjectMapper Spring Boot configures for the controllers
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    // Jackson closes streams it writes to, which Spring prevents for responses the same way
+    private final OutputStream outputStream = StreamUtils.nonClosing(OutputStream.nullOutputStream());
+    private List<AirSensor> sensors;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime time = LocalDateTime.of(2021, 5, 1, 0, 0);
+        sensors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sensors.add(new AirSensor((long) i + 1, new AirSensor.Data(time.plusSeconds(i), 70.6 + i % 10, 23.38)));
+        }
+    }
+
+    @Benchmark
+    public void writeList() throws IOException {
+        objectMapper.writeValue(outputStream, sensors);
+    }
+
+    @Benchmark
+    public void writeStreamed() throws IOException {
+        JsonArrayWriter.<AirSensor>write(outputStream, objectMapper, consumer -> sensors.forEach(consumer));
+    }
+}
@@ -0,0 +1,173 @@
+package ua.lviv.iot.greenhouse.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ua.lviv.iot.greenhouse.GreenHouseApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Starts the application on a random port with the in-memory database of the tests and runs a fleet of
+// greenhouses against it. Every greenhouse posts a reading of each sensor type at a fixed rate, no matter how
+// fast the application answers, while dashboards read at a fixed rate too. Prints latencies per endpoint
+// measured after the warmup. Run with:
+//   mvn -P load-test test-compile exec:exec -Dload-test.args="--greenhouses=50 --duration=120s"
+public class LoadTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestOptions options;
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    // Every request in flight holds a connection, so the max is how many devices were connected at once
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile boolean measuring;
+
+    private LoadTest(LoadTestOptions options, HttpClient httpClient, String baseUrl) {
+        this.options = options;
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        List<String> properties = new ArrayList<>(List.of("server.port=0",
+                "spring.jpa.properties.hibernate.generate_statistics=false", "logging.level.root=WARN",
+                "spring.main.banner-mode=off"));
+        properties.addAll(options.getApplicationProperties());
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(GreenHouseApplication.class)
+                .properties(properties.toArray(new String[0]))
+                .run();
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+        try {
+            new LoadTest(options, httpClient, baseUrl).run();
+        } finally {
+            clientExecutor.shutdownNow();
+            context.close();
+        }
+    }
+
+    private void run() throws InterruptedException {
+        System.out.println("Load test: " + options);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        long intervalNanos = options.getPostInterval().toNanos();
+
+        for (int greenhouse = 0; greenhouse < options.getGreenhouses(); greenhouse++) {
+            Random random = new Random(options.getSeed() + greenhouse);
+            // Greenhouses are spread over the interval, so they don't all post at the same moment
+            long delay = intervalNanos * greenhouse / options.getGreenhouses();
+            schedule(scheduler, delay, intervalNanos, "POST /sensors", () -> post("/sensors",
+                    String.format(Locale.ROOT, "{\"temperature\":%.2f,\"humidity\":%.2f,\"luminosity\":%.1f,\"soilMoisture\":%.2f," +
+                                    "\"time\":\"%s\"}", 18 + random.nextDouble() * 10, 50 + random.nextDouble() * 40,
+                            random.nextDouble() * 1000, 20 + random.nextDouble() * 50,
+                            LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))));
+            schedule(scheduler, delay, intervalNanos, "POST /sensors/air-sensor", () -> post("/sensors/air-sensor",
+                    String.format(Locale.ROOT, "{\"airHumidity\":%.2f,\"airTemperature\":%.2f}",
+                            50 + random.nextDouble() * 40, 18 + random.nextDouble() * 10)));
+            schedule(scheduler, delay, intervalNanos, "POST /sensors/soil-sensor", () -> post("/sensors/soil-sensor",
+                    String.format(Locale.ROOT, "{\"soilHumidity\":%.2f,\"soilTemperature\":%.2f}",
+                            20 + random.nextDouble() * 50, 12 + random.nextDouble() * 10)));
+            schedule(scheduler, delay, intervalNanos, "POST /sensors/luminosity-sensor",
+                    () -> post("/sensors/luminosity-sensor",
+                            String.format(Locale.ROOT, "{\"luminosity\":%.1f}", random.nextDouble() * 1000)));
+        }
+
+        if (options.getReadsPerSecond() > 0) {
+            String today = LocalDate.now().toString();
+            String from = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(23).toString();
+            String to = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1).toString();
+            List<String> reads = List.of(
+                    "/sensors/air-sensor/latest",
+                    "/sensors/soil-sensor/latest",
+                    "/sensors/air-sensor/temperature-data?date=" + today,
+                    "/sensors/soil-sensor/humidity-data?date=" + today,
+                    "/sensors/luminosity-sensor/aggregate?bucket=5m&from=" + from + "&to=" + to,
+                    "/sensors/aggregate?bucket=1h&from=" + from + "&to=" + to);
+            AtomicLong nextRead = new AtomicLong();
+            schedule(scheduler, 0, TimeUnit.SECONDS.toNanos(1) / options.getReadsPerSecond(), null, () -> {
+                String path = reads.get((int) (nextRead.getAndIncrement() % reads.size()));
+                return get(path);
+            });
+        }
+
+        Thread.sleep(options.getWarmup().toMillis());
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(options.getDuration().toMillis());
+        measuring = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(REQUEST_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+
+        System.out.println(EndpointStats.header());
+        new TreeMap<>(stats).forEach((endpoint, endpointStats) ->
+                System.out.println(endpointStats.format(endpoint, seconds)));
+        System.out.println("Max requests in flight: " + maxInFlight.get());
+    }
+
+    // Endpoint is the name latencies are reported under, null means the path of the request
+    private void schedule(ScheduledExecutorService scheduler, long delayNanos, long periodNanos, String endpoint,
+                          Supplier<HttpRequest> request) {
+        scheduler.scheduleAtFixedRate(() -> send(endpoint, request.get()), delayNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void send(String endpoint, HttpRequest request) {
+        long start = System.nanoTime();
+        int requests = inFlight.incrementAndGet();
+        if (measuring) {
+            maxInFlight.accumulateAndGet(requests, Math::max);
+        }
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    inFlight.decrementAndGet();
+                    if (measuring) {
+                        String name = endpoint != null ? endpoint : "GET " + request.uri().getPath();
+                        boolean success = error == null && response.statusCode() < 400;
+                        stats.computeIfAbsent(name, key -> new EndpointStats()).record(System.nanoTime() - start, success);
+                    }
+                });
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+    }
+}
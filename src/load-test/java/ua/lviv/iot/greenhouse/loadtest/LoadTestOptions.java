@@ -0,0 +1,68 @@
+package ua.lviv.iot.greenhouse.loadtest;
+
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Options are given as --name=value. Durations are like 500ms, 30s or PT1M.
+// Any other --name=value is passed to the application, e.g. --greenhouse.ingestion.async=true
+@Getter
+public class LoadTestOptions {
+
+    // Every greenhouse has one sensor of each type
+    private int greenhouses = 20;
+    // How often every sensor posts a reading
+    private Duration postInterval = Duration.ofSeconds(1);
+    // Dashboard reads of all greenhouses together, spread over read endpoints
+    private int readsPerSecond = 20;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(60);
+    private long seed = 42;
+    private final List<String> applicationProperties = new ArrayList<>();
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Options must look like --name=value, but got " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "greenhouses":
+                    options.greenhouses = Integer.parseInt(value);
+                    break;
+                case "post-interval":
+                    options.postInterval = DurationStyle.detectAndParse(value);
+                    break;
+                case "reads-per-second":
+                    options.readsPerSecond = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    options.warmup = DurationStyle.detectAndParse(value);
+                    break;
+                case "duration":
+                    options.duration = DurationStyle.detectAndParse(value);
+                    break;
+                case "seed":
+                    options.seed = Long.parseLong(value);
+                    break;
+                default:
+                    options.applicationProperties.add(name + "=" + value);
+            }
+        }
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return greenhouses + " greenhouses posting every " + postInterval.toMillis() + " ms, " +
+                readsPerSecond + " dashboard reads per second, " + warmup.toSeconds() + " s warmup, " +
+                duration.toSeconds() + " s measured, seed " + seed +
+                (applicationProperties.isEmpty() ? "" : ", application properties " + applicationProperties);
+    }
+}
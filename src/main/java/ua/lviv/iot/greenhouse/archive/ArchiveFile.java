@@ -0,0 +1,142 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import lombok.Value;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+// Readings of one sensor type and day, one compressed column after another:
+//   magic, format version, metric count, epoch day, row count,
+//   version of the day (row count, max ID, last modified) when it was exported,
+//   end offsets of the columns, then the columns: times, IDs, modification times and every metric.
+// Times are epoch microseconds. Rows are ordered by time and ID
+final class ArchiveFile {
+
+    private static final int MAGIC = 0x47484131;
+    private static final short FORMAT_VERSION = 1;
+    private static final int FIXED_COLUMNS = 3;
+    // Size of the header up to the column offsets
+    private static final int FIXED_HEADER_SIZE = 43;
+
+    private ArchiveFile() {
+    }
+
+    @Value
+    static class Header {
+        int metricCount;
+        LocalDate day;
+        int rowCount;
+        DataVersionDTO version;
+        int[] columnEnds;
+
+        private int columnStart(int column) {
+            return column == 0 ? headerSize(metricCount) : columnEnds[column - 1];
+        }
+    }
+
+    static void write(Path path, LocalDate day, DataVersionDTO version, ReadingRing readings, int metricCount)
+            throws IOException {
+        BitWriter[] columns = new BitWriter[FIXED_COLUMNS + metricCount];
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = new BitWriter();
+        }
+        Gorilla.DeltaEncoder times = new Gorilla.DeltaEncoder(columns[0]);
+        Gorilla.DeltaEncoder ids = new Gorilla.DeltaEncoder(columns[1]);
+        Gorilla.DeltaEncoder modifiedAts = new Gorilla.DeltaEncoder(columns[2]);
+        Gorilla.XorEncoder[] metrics = new Gorilla.XorEncoder[metricCount];
+        for (int metric = 0; metric < metricCount; metric++) {
+            metrics[metric] = new Gorilla.XorEncoder(columns[FIXED_COLUMNS + metric]);
+        }
+        for (int position = 0; position < readings.size(); position++) {
+            times.add(readings.getTime(position));
+            ids.add(readings.getId(position));
+            modifiedAts.add(readings.getModifiedAt(position));
+            for (int metric = 0; metric < metricCount; metric++) {
+                metrics[metric].add(readings.getMetric(position, metric));
+            }
+        }
+
+        byte[][] bytes = new byte[columns.length][];
+        ByteBuffer header = ByteBuffer.allocate(headerSize(metricCount));
+        header.putInt(MAGIC)
+                .putShort(FORMAT_VERSION)
+                .put((byte) metricCount)
+                .putLong(day.toEpochDay())
+                .putInt(readings.size())
+                .putLong(version.getRowCount())
+                .putLong(version.getMaxId() == null ? 0 : version.getMaxId())
+                .putLong(ReadingRing.toMicros(version.getLastModified()));
+        int end = header.capacity();
+        for (int column = 0; column < columns.length; column++) {
+            bytes[column] = columns[column].toByteArray();
+            end += bytes[column].length;
+            header.putInt(end);
+        }
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(header);
+            for (byte[] column : bytes) {
+                channel.write(ByteBuffer.wrap(column));
+            }
+            channel.force(true);
+        }
+    }
+
+    static Header readHeader(ByteBuffer file) {
+        if (file.getInt(0) != MAGIC || file.getShort(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Not an archive file of format version " + FORMAT_VERSION);
+        }
+        int metricCount = file.get(6);
+        long maxId = file.getLong(27);
+        int[] columnEnds = new int[FIXED_COLUMNS + metricCount];
+        for (int column = 0; column < columnEnds.length; column++) {
+            columnEnds[column] = file.getInt(FIXED_HEADER_SIZE + column * Integer.BYTES);
+        }
+        return new Header(metricCount, LocalDate.ofEpochDay(file.getLong(7)), file.getInt(15),
+                new DataVersionDTO(file.getLong(19), maxId == 0 ? null : maxId,
+                        ReadingRing.toTime(file.getLong(35))),
+                columnEnds);
+    }
+
+    // Decodes readings up to the given time, the ones after it are left out
+    static ReadingRing read(ByteBuffer file, long last) {
+        Header header = readHeader(file);
+        Gorilla.DeltaDecoder times = new Gorilla.DeltaDecoder(new BitReader(file, header.columnStart(0)));
+        long[] decodedTimes = new long[header.getRowCount()];
+        int count = 0;
+        while (count < decodedTimes.length) {
+            long time = times.next();
+            if (time > last) {
+                break;
+            }
+            decodedTimes[count++] = time;
+        }
+
+        ReadingRing readings = new ReadingRing(count, header.getMetricCount());
+        Gorilla.DeltaDecoder ids = new Gorilla.DeltaDecoder(new BitReader(file, header.columnStart(1)));
+        Gorilla.DeltaDecoder modifiedAts = new Gorilla.DeltaDecoder(new BitReader(file, header.columnStart(2)));
+        for (int position = 0; position < count; position++) {
+            readings.insert(decodedTimes[position], ids.next(), modifiedAts.next());
+        }
+        for (int metric = 0; metric < header.getMetricCount(); metric++) {
+            Gorilla.XorDecoder values = new Gorilla.XorDecoder(
+                    new BitReader(file, header.columnStart(FIXED_COLUMNS + metric)));
+            for (int position = 0; position < count; position++) {
+                readings.setMetric(position, metric, values.next());
+            }
+        }
+        return readings;
+    }
+
+    private static int headerSize(int metricCount) {
+        return FIXED_HEADER_SIZE + (FIXED_COLUMNS + metricCount) * Integer.BYTES;
+    }
+}
@@ -0,0 +1,22 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "greenhouse.archive")
+@Getter
+@Setter
+public class ArchiveProperties {
+
+    // When false, closed days are not exported and raw readings are purged without being archived
+    private boolean enabled = false;
+    // Files of every sensor type go to a directory of its own
+    private String directory = "archive";
+    // Delay between runs. It is also read by @Scheduled, so it must be written in ISO-8601 format, e.g. PT1H
+    private Duration interval = Duration.ofHours(1);
+    // Max number of day files kept memory-mapped at once
+    private int openFiles = 256;
+}
@@ -0,0 +1,20 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.services.ArchiveService;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "greenhouse.archive.enabled", havingValue = "true")
+public class ArchiveScheduler {
+
+    private final ArchiveService archiveService;
+
+    @Scheduled(fixedDelayString = "${greenhouse.archive.interval:PT1H}")
+    public void export() {
+        archiveService.export();
+    }
+}
@@ -0,0 +1,38 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import java.nio.ByteBuffer;
+
+// Reads bits written by BitWriter. Bytes are read by absolute index, so readers of the same buffer don't
+// share any state and a mapped file can be read by many requests at once
+class BitReader {
+
+    private final ByteBuffer buffer;
+    private int index;
+    private int current;
+    // Bits of the current byte that are not read yet
+    private int available;
+
+    BitReader(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.index = offset;
+    }
+
+    long read(int count) {
+        long value = 0;
+        while (count > 0) {
+            if (available == 0) {
+                current = buffer.get(index++) & 0xFF;
+                available = 8;
+            }
+            int taken = Math.min(count, available);
+            value = value << taken | (current >>> (available - taken)) & ((1 << taken) - 1);
+            available -= taken;
+            count -= taken;
+        }
+        return value;
+    }
+
+    boolean readBit() {
+        return read(1) == 1;
+    }
+}
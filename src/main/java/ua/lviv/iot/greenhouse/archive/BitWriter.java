@@ -0,0 +1,38 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import java.util.Arrays;
+
+// Bits written most significant first into a growing array of bytes
+class BitWriter {
+
+    private byte[] bytes = new byte[256];
+    private int length;
+    // Bits of the last byte that are already taken
+    private int used = 8;
+
+    // Writes the lowest count bits of the value, count is at most 64
+    void write(long value, int count) {
+        while (count > 0) {
+            if (used == 8) {
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                length++;
+                used = 0;
+            }
+            int taken = Math.min(count, 8 - used);
+            int chunk = (int) (value >>> (count - taken)) & ((1 << taken) - 1);
+            bytes[length - 1] |= chunk << (8 - used - taken);
+            used += taken;
+            count -= taken;
+        }
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+}
@@ -0,0 +1,157 @@
+package ua.lviv.iot.greenhouse.archive;
+
+// Compression of time series from Facebook's Gorilla paper. Timestamps and IDs grow by about the same step,
+// so they are stored as delta-of-delta, which is mostly zero or tiny. Consecutive metrics of a sensor are close,
+// so a double is stored as the XOR with the previous one, of which only the bits that differ are written.
+// Timestamps are in microseconds rather than the seconds of the paper, so deltas-of-delta get wider buckets
+final class Gorilla {
+
+    // Bits of the value stored after each prefix 0, 10, 110, 1110, 11110 and 11111
+    private static final int[] DELTA_BITS = {0, 7, 12, 20, 32, 64};
+
+    private Gorilla() {
+    }
+
+    static class DeltaEncoder {
+
+        private final BitWriter out;
+        private boolean first = true;
+        private long previous;
+        private long previousDelta;
+
+        DeltaEncoder(BitWriter out) {
+            this.out = out;
+        }
+
+        // Arithmetic overflows on purpose, decoder wraps around the same way
+        void add(long value) {
+            if (first) {
+                out.write(value, 64);
+                first = false;
+            } else {
+                long delta = value - previous;
+                long zigZag = zigZag(delta - previousDelta);
+                int bucket = 0;
+                while (bucket < DELTA_BITS.length - 1 && zigZag >>> DELTA_BITS[bucket] != 0) {
+                    bucket++;
+                }
+                // Prefix is a 1 per bucket followed by 0, the last bucket has no 0
+                int prefixLength = Math.min(bucket + 1, DELTA_BITS.length - 1);
+                out.write(((1L << bucket) - 1) << (prefixLength - bucket), prefixLength);
+                out.write(zigZag, DELTA_BITS[bucket]);
+                previousDelta = delta;
+            }
+            previous = value;
+        }
+    }
+
+    static class DeltaDecoder {
+
+        private final BitReader in;
+        private boolean first = true;
+        private long previous;
+        private long previousDelta;
+
+        DeltaDecoder(BitReader in) {
+            this.in = in;
+        }
+
+        long next() {
+            if (first) {
+                previous = in.read(64);
+                first = false;
+                return previous;
+            }
+            int bucket = 0;
+            while (bucket < DELTA_BITS.length - 1 && in.readBit()) {
+                bucket++;
+            }
+            long delta = previousDelta + unZigZag(in.read(DELTA_BITS[bucket]));
+            previous += delta;
+            previousDelta = delta;
+            return previous;
+        }
+    }
+
+    static class XorEncoder {
+
+        private final BitWriter out;
+        private boolean first = true;
+        private long previous;
+        // Window of meaningful bits of the previous XOR, reused while the next ones fit into it
+        private int leading = -1;
+        private int trailing;
+
+        XorEncoder(BitWriter out) {
+            this.out = out;
+        }
+
+        void add(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (first) {
+                out.write(bits, 64);
+                first = false;
+                previous = bits;
+                return;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                return;
+            }
+            out.writeBit(true);
+            // Leading zeros are written in 5 bits
+            int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                out.writeBit(false);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+                return;
+            }
+            leading = newLeading;
+            trailing = newTrailing;
+            int meaningful = 64 - leading - trailing;
+            out.writeBit(true);
+            out.write(leading, 5);
+            // 1 to 64 meaningful bits fit into 6 bits as 0 to 63
+            out.write(meaningful - 1, 6);
+            out.write(xor >>> trailing, meaningful);
+        }
+    }
+
+    static class XorDecoder {
+
+        private final BitReader in;
+        private boolean first = true;
+        private long previous;
+        private int leading;
+        private int trailing;
+
+        XorDecoder(BitReader in) {
+            this.in = in;
+        }
+
+        double next() {
+            if (first) {
+                previous = in.read(64);
+                first = false;
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.read(5);
+                    trailing = 64 - leading - ((int) in.read(6) + 1);
+                }
+                previous ^= in.read(64 - leading - trailing) << trailing;
+            }
+            return Double.longBitsToDouble(previous);
+        }
+    }
+
+    private static long zigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unZigZag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
@@ -0,0 +1,143 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Closed days of readings exported into compressed column files, a file per sensor type and day. Once raw
+// readings of a day are purged from the DB, queries of the day are answered from its memory-mapped file
+@Component
+public class SensorArchive {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Cache<Path, ByteBuffer> mappedFiles;
+    // Raw readings before this time are purged from the DB, so they can only be read from the archive
+    private final Map<SensorType, LocalDateTime> purgedBefore = new ConcurrentHashMap<>();
+    private final Map<SensorType, ReadingColumns<?>> columns = new EnumMap<>(SensorType.class);
+
+    public SensorArchive(ArchiveProperties archiveProperties) {
+        this.enabled = archiveProperties.isEnabled();
+        this.directory = Paths.get(archiveProperties.getDirectory());
+        this.mappedFiles = Caffeine.newBuilder()
+                .maximumSize(archiveProperties.getOpenFiles())
+                .build();
+        columns.put(SensorType.AIR, ReadingColumns.AIR);
+        columns.put(SensorType.SOIL, ReadingColumns.SOIL);
+        columns.put(SensorType.LUMINOSITY, ReadingColumns.LUMINOSITY);
+        columns.put(SensorType.GENERAL, ReadingColumns.GENERAL);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void markPurged(SensorType sensorType, LocalDateTime before) {
+        if (enabled && before != null) {
+            purgedBefore.merge(sensorType, before, (old, time) -> time.isAfter(old) ? time : old);
+        }
+    }
+
+    // Version of the day's readings at the time they were exported, empty when the day isn't archived
+    public Optional<DataVersionDTO> findVersion(SensorType sensorType, LocalDate day) {
+        return findFile(sensorType, day).map(file -> ArchiveFile.readHeader(file).getVersion());
+    }
+
+    // Readings are given in order of time and ID. The file is written next to the old one and moved over it,
+    // so readers see either the old or the new file
+    public void write(SensorType sensorType, LocalDate day, DataVersionDTO version, ReadingRing readings) {
+        Path file = path(sensorType, day);
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            ArchiveFile.write(tempFile, day, version, readings, sensorType.getMetrics().size());
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive " + sensorType + " readings of " + day, e);
+        }
+        mappedFiles.invalidate(file);
+    }
+
+    public void delete(SensorType sensorType, LocalDate day) {
+        Path file = path(sensorType, day);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete archived " + sensorType + " readings of " + day, e);
+        }
+        mappedFiles.invalidate(file);
+    }
+
+    public <T> List<T> find(SensorType sensorType, DateRange range, Function<DateRange, List<T>> live) {
+        return find(sensorType, range, this.<T>columns(sensorType)::toSensor, live);
+    }
+
+    // Part of the range before the purge time is read from the archive, the rest is given to the live query
+    public <R> List<R> find(SensorType sensorType, DateRange range, Function<ReadingRing.Row, R> mapper,
+                            Function<DateRange, List<R>> live) {
+        LocalDateTime purged = enabled ? purgedBefore.get(sensorType) : null;
+        if (purged == null || !range.getFrom().isBefore(purged)) {
+            return live.apply(range);
+        }
+
+        DateRange archived = DateRange.of(range.getFrom(), range.getTo().isAfter(purged) ? purged : range.getTo());
+        long from = ReadingRing.toMicros(archived.getFrom());
+        long last = ReadingRing.toMicros(archived.getLast());
+        List<R> result = new ArrayList<>();
+        for (LocalDate day : archived.getDays()) {
+            findFile(sensorType, day).ifPresent(file -> ArchiveFile.read(file, last).map(from, last, mapper, result));
+        }
+        if (range.getTo().isAfter(purged)) {
+            result.addAll(live.apply(DateRange.of(purged, range.getTo())));
+        }
+        return result;
+    }
+
+    private Optional<ByteBuffer> findFile(SensorType sensorType, LocalDate day) {
+        return Optional.ofNullable(mappedFiles.get(path(sensorType, day), SensorArchive::map));
+    }
+
+    // Mapping stays valid after the channel is closed, and even after the file is replaced
+    private static ByteBuffer map(Path file) {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map archive file " + file, e);
+        }
+    }
+
+    private Path path(SensorType sensorType, LocalDate day) {
+        return directory.resolve(sensorType.name().toLowerCase()).resolve(day + ".gorilla");
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ReadingColumns<T> columns(SensorType sensorType) {
+        return (ReadingColumns<T>) columns.get(sensorType);
+    }
+}
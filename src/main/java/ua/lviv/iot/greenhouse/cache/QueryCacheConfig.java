@@ -0,0 +1,9 @@
+package ua.lviv.iot.greenhouse.cache;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(QueryCacheProperties.class)
+public class QueryCacheConfig {
+}
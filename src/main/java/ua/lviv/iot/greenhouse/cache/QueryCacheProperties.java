@@ -0,0 +1,21 @@
+package ua.lviv.iot.greenhouse.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "greenhouse.query-cache")
+@Getter
+@Setter
+public class QueryCacheProperties {
+
+    // When false, every query goes to the DB
+    private boolean enabled = true;
+    // Max total weight of cached results. Every result weighs its number of rows plus one
+    private long maxWeight = 1_000_000;
+    // Results are dropped this long after they were cached. Only writes of this instance invalidate them,
+    // so this bounds how long changes made by other instances stay invisible
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
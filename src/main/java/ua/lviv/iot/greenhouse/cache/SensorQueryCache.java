@@ -0,0 +1,121 @@
+package ua.lviv.iot.greenhouse.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.Transactions;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+// Results of per-day queries for days that are already over. Today's and future days are never cached,
+// and writes invalidate their day after commit, so a cached result is never older than the committed data
+@Component
+public class SensorQueryCache {
+
+    public enum QueryType {
+        ALL, HUMIDITY, TEMPERATURE
+    }
+
+    @Value
+    private static class Key {
+        SensorType sensorType;
+        // Bumped to drop all results of the sensor type, including the ones being loaded at the moment
+        long generation;
+        QueryType queryType;
+        LocalDate day;
+    }
+
+    private final Cache<Key, List<?>> cache;
+    private final Map<SensorType, AtomicLong> generations = new EnumMap<>(SensorType.class);
+    private final boolean enabled;
+
+    public SensorQueryCache(QueryCacheProperties queryCacheProperties, MeterRegistry meterRegistry) {
+        this.enabled = queryCacheProperties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(queryCacheProperties.getMaxWeight())
+                .expireAfterWrite(queryCacheProperties.getExpireAfterWrite())
+                .<Key, List<?>>weigher((key, rows) -> rows.size() + 1)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sensor-queries");
+        for (SensorType sensorType : SensorType.values()) {
+            generations.put(sensorType, new AtomicLong());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(SensorType sensorType, QueryType queryType, LocalDate day, Supplier<List<T>> query) {
+        if (!enabled || !day.isBefore(LocalDate.now())) {
+            return query.get();
+        }
+        // Results are shared between requests, so they are made unmodifiable
+        return (List<T>) cache.get(key(sensorType, queryType, day),
+                key -> Collections.unmodifiableList(new ArrayList<>(query.get())));
+    }
+
+    // Only ranges of a single day are cached, results of other ranges are read from the DB every time
+    public <T> List<T> get(SensorType sensorType, QueryType queryType, DateRange range,
+                           BiFunction<LocalDateTime, LocalDateTime, List<T>> query) {
+        if (range.getDay() == null) {
+            return query.apply(range.getFrom(), range.getLast());
+        }
+        return get(sensorType, queryType, range.getDay(), () -> query.apply(range.getFrom(), range.getLast()));
+    }
+
+    // Today's results are not cached, but the day may be over by the time the transaction commits.
+    // Keys are invalidated one by one, because Caffeine waits for loads of them to finish before removing them
+    public void invalidate(SensorType sensorType, LocalDateTime time) {
+        if (time == null) {
+            return;
+        }
+        LocalDate day = time.toLocalDate();
+        Transactions.afterCommit(() -> cache.invalidateAll(keys(sensorType, List.of(day))));
+    }
+
+    public void invalidate(SensorType sensorType, DateRange range) {
+        Transactions.afterCommit(() -> cache.invalidateAll(keys(sensorType, range.getDays())));
+    }
+
+    // Purged days aren't known one by one, and purges run rarely, so all results of the sensor type are dropped
+    public void invalidateBefore(SensorType sensorType, LocalDateTime time) {
+        Transactions.afterCommit(() -> nextGeneration(sensorType));
+    }
+
+    public void invalidateAll(SensorType sensorType) {
+        Transactions.afterCommit(() -> nextGeneration(sensorType));
+    }
+
+    private void nextGeneration(SensorType sensorType) {
+        long generation = generations.get(sensorType).incrementAndGet();
+        // Results of older generations are never read again, they are removed only to free memory
+        cache.asMap().keySet().removeIf(key -> key.getSensorType() == sensorType && key.getGeneration() < generation);
+    }
+
+    private Key key(SensorType sensorType, QueryType queryType, LocalDate day) {
+        return new Key(sensorType, generations.get(sensorType).get(), queryType, day);
+    }
+
+    private List<Key> keys(SensorType sensorType, List<LocalDate> days) {
+        List<Key> keys = new ArrayList<>();
+        for (LocalDate day : days) {
+            for (QueryType queryType : QueryType.values()) {
+                keys.add(key(sensorType, queryType, day));
+            }
+        }
+        return keys;
+    }
+}
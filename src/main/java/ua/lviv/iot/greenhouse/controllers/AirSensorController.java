@@ -1,13 +1,32 @@
 package ua.lviv.iot.greenhouse.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorTemperatureDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
 import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
 import ua.lviv.iot.greenhouse.services.AirSensorService;
+import ua.lviv.iot.greenhouse.services.DataVersionService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ConditionalRequests;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+import ua.lviv.iot.greenhouse.utils.JsonArrayWriter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,31 +37,126 @@ import java.util.List;
 public class AirSensorController {
 
     private final AirSensorService airSensorService;
+    private final DataVersionService dataVersionService;
+    private final DateRangeResolver dateRangeResolver;
+    private final ObjectMapper objectMapper;
+    private final SensorStreamHub sensorStreamHub;
 
     @GetMapping
-    public List<AirSensor> getAllSensorData(@RequestParam(required = false) String date) {
-        return airSensorService.getAllSensorData(date);
+    public List<AirSensor> getAllSensorData(@RequestParam(required = false) String date,
+                                            @RequestParam(required = false) String from,
+                                            @RequestParam(required = false) String to,
+                                            @RequestParam(required = false) String zone,
+                                            WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.AIR, range))) {
+            return null;
+        }
+        return airSensorService.getAllSensorData(range);
+    }
+
+    @GetMapping("/latest")
+    public AirSensor getLatestSensorData(WebRequest webRequest) {
+        AirSensor sensor = airSensorService.getLatestSensorData();
+        // Queued reading has no ID yet, so it has no version either
+        if (sensor.getId() != null && ConditionalRequests.isNotModified(webRequest,
+                new DataVersionDTO(1L, sensor.getId(), sensor.getModifiedAt()))) {
+            return null;
+        }
+        return sensor;
+    }
+
+    @GetMapping("/page")
+    public KeysetPageDTO<AirSensor> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return airSensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    // Server-Sent Events of readings as they are accepted. Readings taken after since, or sent after the
+    // Last-Event-ID of a reconnecting client, are replayed first as long as they are still kept
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSensorData(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return sensorStreamHub.subscribe(SensorType.AIR, since, lastEventId);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody exportAllSensorData(WebRequest webRequest) {
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.AIR, null))) {
+            return null;
+        }
+        return outputStream -> JsonArrayWriter.write(outputStream, objectMapper, airSensorService::exportAllSensorData);
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public List<AirSensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                         @RequestParam String to,
+                                                         @RequestParam(required = false) String zone,
+                                                         @RequestParam(defaultValue = "5m") String bucket,
+                                                         WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(null, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getAggregateVersion(SensorType.AIR, range))) {
+            return null;
+        }
+        return airSensorService.getAggregatedData(range, bucket);
     }
 
     @GetMapping("/humidity-data")
-    public List<AirSensorHumidityDTO> getHumidity(@RequestParam(required = false) String date) {
-        return airSensorService.getHumidityData(date);
+    public List<AirSensorHumidityDTO> getHumidity(@RequestParam(required = false) String date,
+                                                  @RequestParam(required = false) String from,
+                                                  @RequestParam(required = false) String to,
+                                                  @RequestParam(required = false) String zone,
+                                                  WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.AIR, range))) {
+            return null;
+        }
+        return airSensorService.getHumidityData(range);
     }
 
     @GetMapping("/temperature-data")
-    public List<AirSensorTemperatureDTO> getTemperature(@RequestParam(required = false) String date) {
-        return airSensorService.getTemperatureData(date);
+    public List<AirSensorTemperatureDTO> getTemperature(@RequestParam(required = false) String date,
+                                                        @RequestParam(required = false) String from,
+                                                        @RequestParam(required = false) String to,
+                                                        @RequestParam(required = false) String zone,
+                                                        WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.AIR, range))) {
+            return null;
+        }
+        return airSensorService.getTemperatureData(range);
     }
 
     @PostMapping
-    public AirSensor addAirSensorData(final @RequestBody AirSensorDTO airSensorDTO) {
+    public ResponseEntity<AirSensor> addAirSensorData(final @RequestBody AirSensorDTO airSensorDTO) {
         airSensorDTO.setLocalDateTime(LocalDateTime.now());
-        return airSensorService.createSensorData(airSensorDTO);
+        AirSensor airSensor = airSensorService.createSensorData(airSensorDTO);
+        // Data without ID was only queued by asynchronous ingestion and will be saved later
+        HttpStatus status = airSensor.getId() == null ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(airSensor);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResultDTO<AirSensor>> addAirSensorDataBatch(final @RequestBody List<AirSensorDTO> airSensorDTOs) {
+        LocalDateTime now = LocalDateTime.now();
+        airSensorDTOs.stream()
+                .filter(airSensorDTO -> airSensorDTO != null && airSensorDTO.getLocalDateTime() == null)
+                .forEach(airSensorDTO -> airSensorDTO.setLocalDateTime(now));
+        BatchResultDTO<AirSensor> result = airSensorService.createSensorDataBatch(airSensorDTOs);
+        boolean queued = result.getSaved().stream().anyMatch(airSensor -> airSensor.getId() == null);
+        return ResponseEntity.status(queued ? HttpStatus.ACCEPTED : HttpStatus.OK).body(result);
     }
 
     @DeleteMapping
-    public void deleteAllSensorData(@RequestParam(required = false) String date) {
-        airSensorService.deleteAllSensorData(date);
+    public long deleteAllSensorData(@RequestParam(required = false) String date,
+                                    @RequestParam(required = false) String from,
+                                    @RequestParam(required = false) String to,
+                                    @RequestParam(required = false) String zone) {
+        return airSensorService.deleteAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
     }
 
     @PutMapping("{id}")
@@ -1,10 +1,29 @@
 package ua.lviv.iot.greenhouse.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
 import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.services.DataVersionService;
 import ua.lviv.iot.greenhouse.services.GeneralSensorService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ConditionalRequests;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+import ua.lviv.iot.greenhouse.utils.JsonArrayWriter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -15,19 +34,93 @@ import java.util.List;
 public class GeneralSensorController {
 
     private final GeneralSensorService generalSensorService;
+    private final DataVersionService dataVersionService;
+    private final DateRangeResolver dateRangeResolver;
+    private final ObjectMapper objectMapper;
+    private final SensorStreamHub sensorStreamHub;
 
     @GetMapping
-    public List<GeneralSensor> getAllSensorData(@RequestParam(required = false) String date) {
-        return generalSensorService.getAllSensorData(date);
+    public List<GeneralSensor> getAllSensorData(@RequestParam(required = false) String date,
+                                                @RequestParam(required = false) String from,
+                                                @RequestParam(required = false) String to,
+                                                @RequestParam(required = false) String zone,
+                                                WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.GENERAL, range))) {
+            return null;
+        }
+        return generalSensorService.getAllSensorData(range);
+    }
+
+    @GetMapping("/latest")
+    public GeneralSensor getLatestSensorData(WebRequest webRequest) {
+        GeneralSensor sensor = generalSensorService.getLatestSensorData();
+        // Queued reading has no ID yet, so it has no version either
+        if (sensor.getId() != null && ConditionalRequests.isNotModified(webRequest,
+                new DataVersionDTO(1L, sensor.getId(), sensor.getModifiedAt()))) {
+            return null;
+        }
+        return sensor;
+    }
+
+    @GetMapping("/page")
+    public KeysetPageDTO<GeneralSensor> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return generalSensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSensorData(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return sensorStreamHub.subscribe(SensorType.GENERAL, since, lastEventId);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody exportAllSensorData(WebRequest webRequest) {
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.GENERAL, null))) {
+            return null;
+        }
+        return outputStream -> JsonArrayWriter.write(outputStream, objectMapper, generalSensorService::exportAllSensorData);
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public List<GeneralSensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                             @RequestParam String to,
+                                                             @RequestParam(required = false) String zone,
+                                                             @RequestParam(defaultValue = "5m") String bucket,
+                                                             WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(null, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getAggregateVersion(SensorType.GENERAL, range))) {
+            return null;
+        }
+        return generalSensorService.getAggregatedData(range, bucket);
     }
 
     @PostMapping
-    public GeneralSensor addGeneralSensorData(final @RequestBody GeneralSensorDTO generalSensorDTO) {
-        return generalSensorService.createSensorData(generalSensorDTO);
+    public ResponseEntity<GeneralSensor> addGeneralSensorData(final @RequestBody GeneralSensorDTO generalSensorDTO) {
+        GeneralSensor generalSensor = generalSensorService.createSensorData(generalSensorDTO);
+        // Data without ID was only queued by asynchronous ingestion and will be saved later
+        HttpStatus status = generalSensor.getId() == null ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(generalSensor);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResultDTO<GeneralSensor>> addGeneralSensorDataBatch(
+            final @RequestBody List<GeneralSensorDTO> generalSensorDTOs) {
+        BatchResultDTO<GeneralSensor> result = generalSensorService.createSensorDataBatch(generalSensorDTOs);
+        boolean queued = result.getSaved().stream().anyMatch(generalSensor -> generalSensor.getId() == null);
+        return ResponseEntity.status(queued ? HttpStatus.ACCEPTED : HttpStatus.OK).body(result);
     }
 
     @DeleteMapping
-    public void deleteAllSensorData(@RequestParam(required = false) String date) {
-        generalSensorService.deleteSensorData(date);
+    public long deleteAllSensorData(@RequestParam(required = false) String date,
+                                    @RequestParam(required = false) String from,
+                                    @RequestParam(required = false) String to,
+                                    @RequestParam(required = false) String zone) {
+        return generalSensorService.deleteSensorData(dateRangeResolver.resolve(date, from, to, zone));
     }
 }
@@ -1,11 +1,30 @@
 package ua.lviv.iot.greenhouse.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
 import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.services.DataVersionService;
 import ua.lviv.iot.greenhouse.services.LuminositySensorService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ConditionalRequests;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+import ua.lviv.iot.greenhouse.utils.JsonArrayWriter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,21 +35,98 @@ import java.util.List;
 public class LuminositySensorController {
 
     private final LuminositySensorService luminositySensorService;
+    private final DataVersionService dataVersionService;
+    private final DateRangeResolver dateRangeResolver;
+    private final ObjectMapper objectMapper;
+    private final SensorStreamHub sensorStreamHub;
 
     @GetMapping
-    public List<LuminositySensor> getAllSensorData(@RequestParam(required = false) String date) {
-        return luminositySensorService.getAllSensorData(date);
+    public List<LuminositySensor> getAllSensorData(@RequestParam(required = false) String date,
+                                                   @RequestParam(required = false) String from,
+                                                   @RequestParam(required = false) String to,
+                                                   @RequestParam(required = false) String zone,
+                                                   WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.LUMINOSITY, range))) {
+            return null;
+        }
+        return luminositySensorService.getAllSensorData(range);
+    }
+
+    @GetMapping("/latest")
+    public LuminositySensor getLatestSensorData(WebRequest webRequest) {
+        LuminositySensor sensor = luminositySensorService.getLatestSensorData();
+        // Queued reading has no ID yet, so it has no version either
+        if (sensor.getId() != null && ConditionalRequests.isNotModified(webRequest,
+                new DataVersionDTO(1L, sensor.getId(), sensor.getModifiedAt()))) {
+            return null;
+        }
+        return sensor;
+    }
+
+    @GetMapping("/page")
+    public KeysetPageDTO<LuminositySensor> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return luminositySensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSensorData(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return sensorStreamHub.subscribe(SensorType.LUMINOSITY, since, lastEventId);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody exportAllSensorData(WebRequest webRequest) {
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.LUMINOSITY, null))) {
+            return null;
+        }
+        return outputStream -> JsonArrayWriter.write(outputStream, objectMapper, luminositySensorService::exportAllSensorData);
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public List<LuminositySensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                                @RequestParam String to,
+                                                                @RequestParam(required = false) String zone,
+                                                                @RequestParam(defaultValue = "5m") String bucket,
+                                                                WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(null, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getAggregateVersion(SensorType.LUMINOSITY, range))) {
+            return null;
+        }
+        return luminositySensorService.getAggregatedData(range, bucket);
     }
 
     @PostMapping
-    public LuminositySensor addLuminositySensorData(final @RequestBody LuminositySensorDTO luminositySensorDTO) {
+    public ResponseEntity<LuminositySensor> addLuminositySensorData(final @RequestBody LuminositySensorDTO luminositySensorDTO) {
         luminositySensorDTO.setLocalDateTime(LocalDateTime.now());
-        return luminositySensorService.createSensorData(luminositySensorDTO);
+        LuminositySensor luminositySensor = luminositySensorService.createSensorData(luminositySensorDTO);
+        // Data without ID was only queued by asynchronous ingestion and will be saved later
+        HttpStatus status = luminositySensor.getId() == null ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(luminositySensor);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResultDTO<LuminositySensor>> addLuminositySensorDataBatch(final @RequestBody List<LuminositySensorDTO> luminositySensorDTOs) {
+        LocalDateTime now = LocalDateTime.now();
+        luminositySensorDTOs.stream()
+                .filter(luminositySensorDTO -> luminositySensorDTO != null && luminositySensorDTO.getLocalDateTime() == null)
+                .forEach(luminositySensorDTO -> luminositySensorDTO.setLocalDateTime(now));
+        BatchResultDTO<LuminositySensor> result = luminositySensorService.createSensorDataBatch(luminositySensorDTOs);
+        boolean queued = result.getSaved().stream().anyMatch(luminositySensor -> luminositySensor.getId() == null);
+        return ResponseEntity.status(queued ? HttpStatus.ACCEPTED : HttpStatus.OK).body(result);
     }
 
     @DeleteMapping
-    public void deleteAllSensorData(@RequestParam(required = false) String date) {
-        luminositySensorService.deleteAllSensorData(date);
+    public long deleteAllSensorData(@RequestParam(required = false) String date,
+                                    @RequestParam(required = false) String from,
+                                    @RequestParam(required = false) String to,
+                                    @RequestParam(required = false) String zone) {
+        return luminositySensorService.deleteAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
     }
 
     @PutMapping("{id}")
@@ -1,13 +1,32 @@
 package ua.lviv.iot.greenhouse.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
 import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.services.DataVersionService;
 import ua.lviv.iot.greenhouse.services.SoilSensorService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ConditionalRequests;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.DateRangeResolver;
+import ua.lviv.iot.greenhouse.utils.JsonArrayWriter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,31 +37,124 @@ import java.util.List;
 public class SoilSensorController {
 
     private final SoilSensorService soilSensorService;
+    private final DataVersionService dataVersionService;
+    private final DateRangeResolver dateRangeResolver;
+    private final ObjectMapper objectMapper;
+    private final SensorStreamHub sensorStreamHub;
 
     @GetMapping
-    public List<SoilSensor> getAllSensorData(@RequestParam(required = false) String date) {
-        return soilSensorService.getAllSensorData(date);
+    public List<SoilSensor> getAllSensorData(@RequestParam(required = false) String date,
+                                             @RequestParam(required = false) String from,
+                                             @RequestParam(required = false) String to,
+                                             @RequestParam(required = false) String zone,
+                                             WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.SOIL, range))) {
+            return null;
+        }
+        return soilSensorService.getAllSensorData(range);
+    }
+
+    @GetMapping("/latest")
+    public SoilSensor getLatestSensorData(WebRequest webRequest) {
+        SoilSensor sensor = soilSensorService.getLatestSensorData();
+        // Queued reading has no ID yet, so it has no version either
+        if (sensor.getId() != null && ConditionalRequests.isNotModified(webRequest,
+                new DataVersionDTO(1L, sensor.getId(), sensor.getModifiedAt()))) {
+            return null;
+        }
+        return sensor;
+    }
+
+    @GetMapping("/page")
+    public KeysetPageDTO<SoilSensor> getSensorDataPage(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return soilSensorService.getSensorDataPage(afterId, afterTimestamp, limit);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSensorData(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return sensorStreamHub.subscribe(SensorType.SOIL, since, lastEventId);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody exportAllSensorData(WebRequest webRequest) {
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.SOIL, null))) {
+            return null;
+        }
+        return outputStream -> JsonArrayWriter.write(outputStream, objectMapper, soilSensorService::exportAllSensorData);
+    }
+
+    // Range is [from, to), both given as yyyy-mm-ddThh:mm:ss or yyyy-mm-dd. Bucket size is like 30s, 5m, 1h or 1d
+    @GetMapping("/aggregate")
+    public List<SoilSensorAggregateDTO> getAggregatedData(@RequestParam String from,
+                                                          @RequestParam String to,
+                                                          @RequestParam(required = false) String zone,
+                                                          @RequestParam(defaultValue = "5m") String bucket,
+                                                          WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(null, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getAggregateVersion(SensorType.SOIL, range))) {
+            return null;
+        }
+        return soilSensorService.getAggregatedData(range, bucket);
     }
 
     @GetMapping("/humidity-data")
-    public List<SoilSensorHumidityDTO> getHumidity(@RequestParam(required = false) String date) {
-        return soilSensorService.getHumidityData(date);
+    public List<SoilSensorHumidityDTO> getHumidity(@RequestParam(required = false) String date,
+                                                   @RequestParam(required = false) String from,
+                                                   @RequestParam(required = false) String to,
+                                                   @RequestParam(required = false) String zone,
+                                                   WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.SOIL, range))) {
+            return null;
+        }
+        return soilSensorService.getHumidityData(range);
     }
 
     @GetMapping("/temperature-data")
-    public List<SoilSensorTemperatureDTO> getTemperature(@RequestParam(required = false) String date) {
-        return soilSensorService.getTemperatureData(date);
+    public List<SoilSensorTemperatureDTO> getTemperature(@RequestParam(required = false) String date,
+                                                         @RequestParam(required = false) String from,
+                                                         @RequestParam(required = false) String to,
+                                                         @RequestParam(required = false) String zone,
+                                                         WebRequest webRequest) {
+        DateRange range = dateRangeResolver.resolve(date, from, to, zone);
+        if (ConditionalRequests.isNotModified(webRequest, dataVersionService.getVersion(SensorType.SOIL, range))) {
+            return null;
+        }
+        return soilSensorService.getTemperatureData(range);
     }
 
     @PostMapping
-    public SoilSensor addSoilSensorData(final @RequestBody SoilSensorDTO soilSensorDTO) {
+    public ResponseEntity<SoilSensor> addSoilSensorData(final @RequestBody SoilSensorDTO soilSensorDTO) {
         soilSensorDTO.setLocalDateTime(LocalDateTime.now());
-        return soilSensorService.createSensorData(soilSensorDTO);
+        SoilSensor soilSensor = soilSensorService.createSensorData(soilSensorDTO);
+        // Data without ID was only queued by asynchronous ingestion and will be saved later
+        HttpStatus status = soilSensor.getId() == null ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(soilSensor);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResultDTO<SoilSensor>> addSoilSensorDataBatch(final @RequestBody List<SoilSensorDTO> soilSensorDTOs) {
+        LocalDateTime now = LocalDateTime.now();
+        soilSensorDTOs.stream()
+                .filter(soilSensorDTO -> soilSensorDTO != null && soilSensorDTO.getLocalDateTime() == null)
+                .forEach(soilSensorDTO -> soilSensorDTO.setLocalDateTime(now));
+        BatchResultDTO<SoilSensor> result = soilSensorService.createSensorDataBatch(soilSensorDTOs);
+        boolean queued = result.getSaved().stream().anyMatch(soilSensor -> soilSensor.getId() == null);
+        return ResponseEntity.status(queued ? HttpStatus.ACCEPTED : HttpStatus.OK).body(result);
     }
 
     @DeleteMapping
-    public void deleteAllSensorData(@RequestParam(required = false) String date) {
-        soilSensorService.deleteAllSensorData(date);
+    public long deleteAllSensorData(@RequestParam(required = false) String date,
+                                    @RequestParam(required = false) String from,
+                                    @RequestParam(required = false) String to,
+                                    @RequestParam(required = false) String zone) {
+        return soilSensorService.deleteAllSensorData(dateRangeResolver.resolve(date, from, to, zone));
     }
 
     @PutMapping("{id}")
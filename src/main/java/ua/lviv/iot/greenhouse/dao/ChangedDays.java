@@ -0,0 +1,9 @@
+package ua.lviv.iot.greenhouse.dao;
+
+// Number and biggest ID of rows marking changed days. Changes whenever a day is marked or recomputed
+public interface ChangedDays {
+
+    Long getRowCount();
+
+    Long getMaxId();
+}
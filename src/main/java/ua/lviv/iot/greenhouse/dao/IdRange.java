@@ -0,0 +1,9 @@
+package ua.lviv.iot.greenhouse.dao;
+
+// Smallest and biggest ID of selected rows. Both are null when nothing is selected
+public interface IdRange {
+
+    Long getMinId();
+
+    Long getMaxId();
+}
@@ -1,19 +1,118 @@
 package ua.lviv.iot.greenhouse.dao;
 
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
 import ua.lviv.iot.greenhouse.models.LuminositySensor;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface LuminositySensorDAO extends JpaRepository<LuminositySensor, Long> {
+public interface LuminositySensorDAO extends SensorDAO<LuminositySensor>, SensorTimeSeriesDAO {
 
     List<LuminositySensor> findSensorByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before);
 
-    void deleteSensorByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before);
+    Optional<LuminositySensor> findFirstByOrderByData_LocalDateTimeDescIdDesc();
+
+    // Newest readings first, to fill the readings kept in memory
+    List<LuminositySensor> findByOrderByData_LocalDateTimeDescIdDesc(Pageable pageable);
+
+    @Override
+    @Query("select min(s.id) as minId, max(s.id) as maxId from luminosity_sensor s")
+    IdRange findIdRange();
+
+    @Query("select min(s.id) as minId, max(s.id) as maxId from luminosity_sensor s " +
+            "where s.data.localDateTime between :after and :before")
+    IdRange findIdRangeByData_LocalDateTimeBetween(@Param("after") LocalDateTime after,
+                                                   @Param("before") LocalDateTime before);
+
+    // Bulk deletes run as a single statement without loading entities. Each call is a separate transaction
+    @Modifying
+    @Transactional
+    @Query("delete from luminosity_sensor s where s.id between :fromId and :toId")
+    int deleteChunk(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from luminosity_sensor s where s.id between :fromId and :toId " +
+            "and s.data.localDateTime between :after and :before")
+    int deleteChunkByData_LocalDateTimeBetween(@Param("fromId") long fromId,
+                                               @Param("toId") long toId,
+                                               @Param("after") LocalDateTime after,
+                                               @Param("before") LocalDateTime before);
+
+    // Rows older than the given time with IDs up to maxId, so only readings that are already rolled up get purged
+    @Override
+    @Query("select min(s.id) as minId, max(s.id) as maxId from luminosity_sensor s " +
+            "where s.data.localDateTime < :before and s.id <= :maxId")
+    IdRange findIdRangeBefore(@Param("before") LocalDateTime before, @Param("maxId") long maxId);
+
+    @Override
+    @Modifying
+    @Transactional
+    @Query("delete from luminosity_sensor s where s.id between :fromId and :toId and s.data.localDateTime < :before")
+    int deleteChunkBefore(@Param("fromId") long fromId, @Param("toId") long toId, @Param("before") LocalDateTime before);
+
+    @Override
+    @Query("select new ua.lviv.iot.greenhouse.dto.version.DataVersionDTO(count(s), max(s.id), max(s.modifiedAt)) " +
+            "from luminosity_sensor s")
+    DataVersionDTO findDataVersion();
+
+    @Override
+    @Query("select min(s.data.localDateTime) from luminosity_sensor s")
+    LocalDateTime findOldestTime();
+
+    @Override
+    @Query("select new ua.lviv.iot.greenhouse.dto.version.DataVersionDTO(count(s), max(s.id), max(s.modifiedAt)) " +
+            "from luminosity_sensor s where s.data.localDateTime between :after and :before")
+    DataVersionDTO findDataVersionBetween(@Param("after") LocalDateTime after, @Param("before") LocalDateTime before);
 
     Optional<LuminositySensor> findSensorById(Long id);
+
+    // Keyset pagination: every page continues right after the last row of the previous one
+    @Query("select s from luminosity_sensor s where s.id > :afterId order by s.id")
+    List<LuminositySensor> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select s from luminosity_sensor s where s.data.localDateTime > :afterTimestamp " +
+            "or (s.data.localDateTime = :afterTimestamp and s.id > :afterId) order by s.data.localDateTime, s.id")
+    List<LuminositySensor> findPageAfterTimestamp(@Param("afterTimestamp") LocalDateTime afterTimestamp,
+                                                  @Param("afterId") Long afterId,
+                                                  Pageable pageable);
+
+    // Streams the whole table with the given JDBC fetch size. Sensors are created by constructor expression,
+    // so they are not kept in persistence context and can be garbage collected right after they are written
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new ua.lviv.iot.greenhouse.models.LuminositySensor(s.id, s.data) from luminosity_sensor s order by s.id")
+    Stream<LuminositySensor> streamAll();
+
+    // Min, max, sum, count and last value of every metric per time bucket, computed by the DB, followed by time and
+    // ID of the last row. Readings can be saved out of order, so the last row is the newest by time, then by ID.
+    // Bucket number is the number of whole buckets since 1970-01-01 00:00:00
+    @Override
+    @Query(value = "SELECT r.bucket, COUNT(*) AS row_count, " +
+            "MIN(r.luminosity), MAX(r.luminosity), SUM(r.luminosity), COUNT(r.luminosity), MAX(CASE WHEN r.rn = 1 THEN r.luminosity END), " +
+            "MAX(CASE WHEN r.rn = 1 THEN r.local_date_time END), MAX(CASE WHEN r.rn = 1 THEN r.id END) " +
+            "FROM (SELECT q.bucket, q.id, q.local_date_time, q.luminosity, " +
+            "ROW_NUMBER() OVER (PARTITION BY q.bucket ORDER BY q.local_date_time DESC, q.id DESC) AS rn " +
+            "FROM (SELECT FLOOR(TIMESTAMPDIFF(SECOND, TIMESTAMP '1970-01-01 00:00:00', s.local_date_time) / :bucketSeconds) AS bucket, " +
+            "s.id, s.local_date_time, s.luminosity FROM luminosity_sensor s " +
+            "WHERE s.local_date_time >= :after AND s.local_date_time < :before AND s.id > :afterId AND s.id <= :toId) q) r " +
+            "GROUP BY r.bucket ORDER BY r.bucket",
+            nativeQuery = true)
+    List<Object[]> aggregateByBucket(@Param("after") LocalDateTime after,
+                                     @Param("before") LocalDateTime before,
+                                     @Param("afterId") long afterId,
+                                     @Param("toId") long toId,
+                                     @Param("bucketSeconds") long bucketSeconds);
 }
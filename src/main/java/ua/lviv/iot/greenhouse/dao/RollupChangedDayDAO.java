@@ -0,0 +1,33 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ua.lviv.iot.greenhouse.models.RollupChangedDay;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface RollupChangedDayDAO extends JpaRepository<RollupChangedDay, Long> {
+
+    @Query("select distinct d.day from rollup_changed_day d where d.sensorType = :sensorType order by d.day")
+    List<LocalDate> findDays(@Param("sensorType") SensorType sensorType);
+
+    @Query("select count(d) as rowCount, max(d.id) as maxId from rollup_changed_day d " +
+            "where d.sensorType = :sensorType and d.day between :from and :to")
+    ChangedDays findChangedDays(@Param("sensorType") SensorType sensorType,
+                                @Param("from") LocalDate from,
+                                @Param("to") LocalDate to);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from rollup_changed_day d where d.sensorType = :sensorType and d.day = :day")
+    int deleteDay(@Param("sensorType") SensorType sensorType, @Param("day") LocalDate day);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from rollup_changed_day d where d.sensorType = :sensorType")
+    int deleteBySensorType(@Param("sensorType") SensorType sensorType);
+}
@@ -0,0 +1,21 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ua.lviv.iot.greenhouse.models.RollupWatermark;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+@Repository
+public interface RollupWatermarkDAO extends JpaRepository<RollupWatermark, SensorType> {
+
+    // Locks the watermark till the end of transaction, so only one node rolls up the sensor type at a time
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from rollup_watermark w where w.sensorType = :sensorType")
+    Optional<RollupWatermark> findForUpdate(@Param("sensorType") SensorType sensorType);
+}
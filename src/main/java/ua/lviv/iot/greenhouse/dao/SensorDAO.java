@@ -0,0 +1,18 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.Repository;
+
+import java.util.List;
+
+// Methods of Spring Data repositories the services call on every sensor DAO. Sensor DAOs extend this rather than
+// JpaRepository, so DAOs that aren't backed by JPA only implement what is actually used
+@NoRepositoryBean
+public interface SensorDAO<T> extends Repository<T, Long> {
+
+    <S extends T> S save(S sensor);
+
+    <S extends T> List<S> saveAll(Iterable<S> sensors);
+
+    List<T> findAll();
+}
@@ -0,0 +1,61 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ua.lviv.iot.greenhouse.models.RollupResolution;
+import ua.lviv.iot.greenhouse.models.SensorRollup;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SensorRollupDAO extends JpaRepository<SensorRollup, SensorRollup.Key> {
+
+    @Query("select r from sensor_rollup r where r.key.sensorType = :sensorType " +
+            "and r.key.resolution = :resolution and r.key.bucketStart in :bucketStarts")
+    List<SensorRollup> findByBucketStarts(@Param("sensorType") SensorType sensorType,
+                                          @Param("resolution") RollupResolution resolution,
+                                          @Param("bucketStarts") Collection<LocalDateTime> bucketStarts);
+
+    @Query("select r from sensor_rollup r where r.key.sensorType = :sensorType " +
+            "and r.key.resolution = :resolution and r.key.bucketStart >= :after and r.key.bucketStart < :before " +
+            "order by r.key.bucketStart")
+    List<SensorRollup> findByBucketStartBetween(@Param("sensorType") SensorType sensorType,
+                                                @Param("resolution") RollupResolution resolution,
+                                                @Param("after") LocalDateTime after,
+                                                @Param("before") LocalDateTime before);
+
+    // Rollups of deleted buckets are saved again right after, so deleted ones must not stay in persistence context
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from sensor_rollup r where r.key.sensorType = :sensorType " +
+            "and r.key.bucketStart >= :after and r.key.bucketStart < :before")
+    int deleteByBucketStartBetween(@Param("sensorType") SensorType sensorType,
+                                   @Param("after") LocalDateTime after,
+                                   @Param("before") LocalDateTime before);
+
+    @Query("select min(r.key.bucketStart) from sensor_rollup r where r.key.sensorType = :sensorType " +
+            "and r.key.resolution = :resolution")
+    Optional<LocalDateTime> findOldestBucketStart(@Param("sensorType") SensorType sensorType,
+                                                  @Param("resolution") RollupResolution resolution);
+
+    // Used by retention. Each call is a separate transaction
+    @Modifying
+    @Transactional
+    @Query("delete from sensor_rollup r where r.key.sensorType = :sensorType and r.key.resolution = :resolution " +
+            "and r.key.bucketStart >= :after and r.key.bucketStart < :before")
+    int deleteChunk(@Param("sensorType") SensorType sensorType,
+                    @Param("resolution") RollupResolution resolution,
+                    @Param("after") LocalDateTime after,
+                    @Param("before") LocalDateTime before);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from sensor_rollup r where r.key.sensorType = :sensorType")
+    int deleteBySensorType(@Param("sensorType") SensorType sensorType);
+}
@@ -0,0 +1,27 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Queries every sensor DAO provides, so rollups and retention work the same way for any sensor type
+public interface SensorTimeSeriesDAO {
+
+    IdRange findIdRange();
+
+    List<Object[]> aggregateByBucket(LocalDateTime after, LocalDateTime before,
+                                     long afterId, long toId, long bucketSeconds);
+
+    IdRange findIdRangeBefore(LocalDateTime before, long maxId);
+
+    int deleteChunkBefore(long fromId, long toId, LocalDateTime before);
+
+    // Index on (time, id, modified_at) covers these, so versions are read without touching the rows
+    DataVersionDTO findDataVersion();
+
+    DataVersionDTO findDataVersionBetween(LocalDateTime after, LocalDateTime before);
+
+    // Null when there are no readings
+    LocalDateTime findOldestTime();
+}
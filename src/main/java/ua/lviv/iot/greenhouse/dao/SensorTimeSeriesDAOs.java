@@ -0,0 +1,28 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// DAO of every sensor type, for services that work the same way with all of them
+@Component
+public class SensorTimeSeriesDAOs {
+
+    private final Map<SensorType, SensorTimeSeriesDAO> sensorDAOs = new EnumMap<>(SensorType.class);
+
+    public SensorTimeSeriesDAOs(AirSensorDAO airSensorDAO,
+                                SoilSensorDAO soilSensorDAO,
+                                LuminositySensorDAO luminositySensorDAO,
+                                GeneralSensorDao generalSensorDao) {
+        sensorDAOs.put(SensorType.AIR, airSensorDAO);
+        sensorDAOs.put(SensorType.SOIL, soilSensorDAO);
+        sensorDAOs.put(SensorType.LUMINOSITY, luminositySensorDAO);
+        sensorDAOs.put(SensorType.GENERAL, generalSensorDao);
+    }
+
+    public SensorTimeSeriesDAO get(SensorType sensorType) {
+        return sensorDAOs.get(sensorType);
+    }
+}
@@ -1,19 +1,140 @@
 package ua.lviv.iot.greenhouse.dao;
 
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
 import ua.lviv.iot.greenhouse.models.SoilSensor;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface SoilSensorDAO extends JpaRepository<SoilSensor, Long> {
+public interface SoilSensorDAO extends SensorDAO<SoilSensor>, SensorTimeSeriesDAO {
 
     List<SoilSensor> findSensorByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before);
 
-    void deleteSensorByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before);
+    Optional<SoilSensor> findFirstByOrderByData_LocalDateTimeDescIdDesc();
+
+    // Newest readings first, to fill the readings kept in memory
+    List<SoilSensor> findByOrderByData_LocalDateTimeDescIdDesc(Pageable pageable);
+
+    // Projections below select only the needed columns into DTOs, which are not tracked by persistence context
+    @Query("select new ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO(s.data.localDateTime, s.data.soilHumidity) " +
+            "from soil_sensor s")
+    List<SoilSensorHumidityDTO> findAllHumidity();
+
+    @Query("select new ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO(s.data.localDateTime, s.data.soilHumidity) " +
+            "from soil_sensor s where s.data.localDateTime between :after and :before")
+    List<SoilSensorHumidityDTO> findHumidityByData_LocalDateTimeBetween(@Param("after") LocalDateTime after,
+                                                                    @Param("before") LocalDateTime before);
+
+    @Query("select new ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO(s.data.localDateTime, s.data.soilTemperature) " +
+            "from soil_sensor s")
+    List<SoilSensorTemperatureDTO> findAllTemperature();
+
+    @Query("select new ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO(s.data.localDateTime, s.data.soilTemperature) " +
+            "from soil_sensor s where s.data.localDateTime between :after and :before")
+    List<SoilSensorTemperatureDTO> findTemperatureByData_LocalDateTimeBetween(@Param("after") LocalDateTime after,
+                                                                          @Param("before") LocalDateTime before);
+
+    @Override
+    @Query("select min(s.id) as minId, max(s.id) as maxId from soil_sensor s")
+    IdRange findIdRange();
+
+    @Query("select min(s.id) as minId, max(s.id) as maxId from soil_sensor s " +
+            "where s.data.localDateTime between :after and :before")
+    IdRange findIdRangeByData_LocalDateTimeBetween(@Param("after") LocalDateTime after,
+                                                   @Param("before") LocalDateTime before);
+
+    // Bulk deletes run as a single statement without loading entities. Each call is a separate transaction
+    @Modifying
+    @Transactional
+    @Query("delete from soil_sensor s where s.id between :fromId and :toId")
+    int deleteChunk(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from soil_sensor s where s.id between :fromId and :toId " +
+            "and s.data.localDateTime between :after and :before")
+    int deleteChunkByData_LocalDateTimeBetween(@Param("fromId") long fromId,
+                                               @Param("toId") long toId,
+                                               @Param("after") LocalDateTime after,
+                                               @Param("before") LocalDateTime before);
+
+    // Rows older than the given time with IDs up to maxId, so only readings that are already rolled up get purged
+    @Override
+    @Query("select min(s.id) as minId, max(s.id) as maxId from soil_sensor s " +
+            "where s.data.localDateTime < :before and s.id <= :maxId")
+    IdRange findIdRangeBefore(@Param("before") LocalDateTime before, @Param("maxId") long maxId);
+
+    @Override
+    @Modifying
+    @Transactional
+    @Query("delete from soil_sensor s where s.id between :fromId and :toId and s.data.localDateTime < :before")
+    int deleteChunkBefore(@Param("fromId") long fromId, @Param("toId") long toId, @Param("before") LocalDateTime before);
+
+    @Override
+    @Query("select new ua.lviv.iot.greenhouse.dto.version.DataVersionDTO(count(s), max(s.id), max(s.modifiedAt)) " +
+            "from soil_sensor s")
+    DataVersionDTO findDataVersion();
+
+    @Override
+    @Query("select min(s.data.localDateTime) from soil_sensor s")
+    LocalDateTime findOldestTime();
+
+    @Override
+    @Query("select new ua.lviv.iot.greenhouse.dto.version.DataVersionDTO(count(s), max(s.id), max(s.modifiedAt)) " +
+            "from soil_sensor s where s.data.localDateTime between :after and :before")
+    DataVersionDTO findDataVersionBetween(@Param("after") LocalDateTime after, @Param("before") LocalDateTime before);
 
     Optional<SoilSensor> findSensorById(Long id);
+
+    // Keyset pagination: every page continues right after the last row of the previous one
+    @Query("select s from soil_sensor s where s.id > :afterId order by s.id")
+    List<SoilSensor> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select s from soil_sensor s where s.data.localDateTime > :afterTimestamp " +
+            "or (s.data.localDateTime = :afterTimestamp and s.id > :afterId) order by s.data.localDateTime, s.id")
+    List<SoilSensor> findPageAfterTimestamp(@Param("afterTimestamp") LocalDateTime afterTimestamp,
+                                            @Param("afterId") Long afterId,
+                                            Pageable pageable);
+
+    // Streams the whole table with the given JDBC fetch size. Sensors are created by constructor expression,
+    // so they are not kept in persistence context and can be garbage collected right after they are written
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new ua.lviv.iot.greenhouse.models.SoilSensor(s.id, s.data) from soil_sensor s order by s.id")
+    Stream<SoilSensor> streamAll();
+
+    // Min, max, sum, count and last value of every metric per time bucket, computed by the DB, followed by time and
+    // ID of the last row. Readings can be saved out of order, so the last row is the newest by time, then by ID.
+    // Bucket number is the number of whole buckets since 1970-01-01 00:00:00
+    @Override
+    @Query(value = "SELECT r.bucket, COUNT(*) AS row_count, " +
+            "MIN(r.soil_humidity), MAX(r.soil_humidity), SUM(r.soil_humidity), COUNT(r.soil_humidity), MAX(CASE WHEN r.rn = 1 THEN r.soil_humidity END), " +
+            "MIN(r.soil_temperature), MAX(r.soil_temperature), SUM(r.soil_temperature), COUNT(r.soil_temperature), MAX(CASE WHEN r.rn = 1 THEN r.soil_temperature END), " +
+            "MAX(CASE WHEN r.rn = 1 THEN r.local_date_time END), MAX(CASE WHEN r.rn = 1 THEN r.id END) " +
+            "FROM (SELECT q.bucket, q.id, q.local_date_time, q.soil_humidity, q.soil_temperature, " +
+            "ROW_NUMBER() OVER (PARTITION BY q.bucket ORDER BY q.local_date_time DESC, q.id DESC) AS rn " +
+            "FROM (SELECT FLOOR(TIMESTAMPDIFF(SECOND, TIMESTAMP '1970-01-01 00:00:00', s.local_date_time) / :bucketSeconds) AS bucket, " +
+            "s.id, s.local_date_time, s.soil_humidity, s.soil_temperature FROM soil_sensor s " +
+            "WHERE s.local_date_time >= :after AND s.local_date_time < :before AND s.id > :afterId AND s.id <= :toId) q) r " +
+            "GROUP BY r.bucket ORDER BY r.bucket",
+            nativeQuery = true)
+    List<Object[]> aggregateByBucket(@Param("after") LocalDateTime after,
+                                     @Param("before") LocalDateTime before,
+                                     @Param("afterId") long afterId,
+                                     @Param("toId") long toId,
+                                     @Param("bucketSeconds") long bucketSeconds);
 }
@@ -0,0 +1,18 @@
+package ua.lviv.iot.greenhouse.dto.aggregate;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class MetricAggregateDTO {
+
+    private Double min;
+    private Double max;
+    private Double avg;
+    // Value of the most recently saved reading in the bucket
+    private Double last;
+}
@@ -0,0 +1,19 @@
+package ua.lviv.iot.greenhouse.dto.air_sensor;
+
+import lombok.*;
+import ua.lviv.iot.greenhouse.dto.aggregate.MetricAggregateDTO;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class AirSensorAggregateDTO {
+
+    private LocalDateTime bucketStart;
+    private long count;
+    private MetricAggregateDTO airHumidity;
+    private MetricAggregateDTO airTemperature;
+}
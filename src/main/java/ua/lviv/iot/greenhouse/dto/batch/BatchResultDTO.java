@@ -0,0 +1,16 @@
+package ua.lviv.iot.greenhouse.dto.batch;
+
+import lombok.*;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class BatchResultDTO<T> {
+
+    private List<T> saved;
+    private List<RejectedRowDTO> rejected;
+}
@@ -0,0 +1,15 @@
+package ua.lviv.iot.greenhouse.dto.batch;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class RejectedRowDTO {
+
+    private int index;
+    private String reason;
+}
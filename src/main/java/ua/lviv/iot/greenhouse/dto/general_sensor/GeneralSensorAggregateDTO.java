@@ -0,0 +1,21 @@
+package ua.lviv.iot.greenhouse.dto.general_sensor;
+
+import lombok.*;
+import ua.lviv.iot.greenhouse.dto.aggregate.MetricAggregateDTO;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class GeneralSensorAggregateDTO {
+
+    private LocalDateTime bucketStart;
+    private long count;
+    private MetricAggregateDTO temperature;
+    private MetricAggregateDTO humidity;
+    private MetricAggregateDTO luminosity;
+    private MetricAggregateDTO soilMoisture;
+}
@@ -0,0 +1,18 @@
+package ua.lviv.iot.greenhouse.dto.luminosity_sensor;
+
+import lombok.*;
+import ua.lviv.iot.greenhouse.dto.aggregate.MetricAggregateDTO;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class LuminositySensorAggregateDTO {
+
+    private LocalDateTime bucketStart;
+    private long count;
+    private MetricAggregateDTO luminosity;
+}
@@ -0,0 +1,20 @@
+package ua.lviv.iot.greenhouse.dto.page;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class KeysetPageDTO<T> {
+
+    private List<T> items;
+    // Values to pass as afterId and afterTimestamp to get the next page. Null when there are no more pages.
+    // Timestamp is only returned for pages requested with afterTimestamp, pages ordered by ID continue from the ID
+    private Long nextAfterId;
+    private LocalDateTime nextAfterTimestamp;
+}
@@ -0,0 +1,19 @@
+package ua.lviv.iot.greenhouse.dto.soil_sesnor;
+
+import lombok.*;
+import ua.lviv.iot.greenhouse.dto.aggregate.MetricAggregateDTO;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class SoilSensorAggregateDTO {
+
+    private LocalDateTime bucketStart;
+    private long count;
+    private MetricAggregateDTO soilHumidity;
+    private MetricAggregateDTO soilTemperature;
+}
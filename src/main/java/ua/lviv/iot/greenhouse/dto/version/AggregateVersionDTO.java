@@ -0,0 +1,17 @@
+package ua.lviv.iot.greenhouse.dto.version;
+
+import lombok.*;
+
+// Changes whenever aggregates of a time range change: aggregates are read from rollups up to the watermark,
+// so readings alone don't tell when they are recomputed
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class AggregateVersionDTO {
+
+    private DataVersionDTO readings;
+    private String rollups;
+}
@@ -0,0 +1,19 @@
+package ua.lviv.iot.greenhouse.dto.version;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Changes whenever readings of a time range are inserted, updated or deleted
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class DataVersionDTO {
+
+    private Long rowCount;
+    private Long maxId;
+    private LocalDateTime lastModified;
+}
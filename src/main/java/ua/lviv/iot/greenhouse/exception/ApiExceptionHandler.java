@@ -1,5 +1,8 @@
 package ua.lviv.iot.greenhouse.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -8,10 +11,14 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import java.time.ZonedDateTime;
 
 @ControllerAdvice
+@RequiredArgsConstructor
 public class ApiExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
     @ExceptionHandler(value = {NoDataFoundException.class})
     public ResponseEntity<Object> handleNoDataFoundException(NoDataFoundException e) {
+        countException(e);
         // Create payload containing exception details
         HttpStatus notFound = HttpStatus.NOT_FOUND;
 
@@ -27,6 +34,39 @@ public class ApiExceptionHandler {
 
     @ExceptionHandler(value = {WrongDateFormatException.class})
     public ResponseEntity<Object> handleWrongDateFormatException(WrongDateFormatException e) {
+        countException(e);
+        // Create payload containing exception details
+        HttpStatus badRequest = HttpStatus.BAD_REQUEST;
+
+        ApiException apiException = new ApiException(
+                e.getMessage(),
+                badRequest,
+                ZonedDateTime.now()
+        );
+
+        // Return response entity
+        return new ResponseEntity<>(apiException, badRequest);
+    }
+
+    @ExceptionHandler(value = {WrongBucketFormatException.class})
+    public ResponseEntity<Object> handleWrongBucketFormatException(WrongBucketFormatException e) {
+        countException(e);
+        // Create payload containing exception details
+        HttpStatus badRequest = HttpStatus.BAD_REQUEST;
+
+        ApiException apiException = new ApiException(
+                e.getMessage(),
+                badRequest,
+                ZonedDateTime.now()
+        );
+
+        // Return response entity
+        return new ResponseEntity<>(apiException, badRequest);
+    }
+
+    @ExceptionHandler(value = {WrongDateRangeException.class})
+    public ResponseEntity<Object> handleWrongDateRangeException(WrongDateRangeException e) {
+        countException(e);
         // Create payload containing exception details
         HttpStatus badRequest = HttpStatus.BAD_REQUEST;
 
@@ -39,4 +79,26 @@ public class ApiExceptionHandler {
         // Return response entity
         return new ResponseEntity<>(apiException, badRequest);
     }
+
+    @ExceptionHandler(value = {IngestionQueueFullException.class})
+    public ResponseEntity<Object> handleIngestionQueueFullException(IngestionQueueFullException e) {
+        countException(e);
+        // Create payload containing exception details
+        HttpStatus serviceUnavailable = HttpStatus.SERVICE_UNAVAILABLE;
+
+        ApiException apiException = new ApiException(
+                e.getMessage(),
+                serviceUnavailable,
+                ZonedDateTime.now()
+        );
+
+        // Return response entity, which asks the client to retry in a second
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>(apiException, headers, serviceUnavailable);
+    }
+
+    private void countException(Exception e) {
+        meterRegistry.counter("greenhouse.api.exceptions", "exception", e.getClass().getSimpleName()).increment();
+    }
 }
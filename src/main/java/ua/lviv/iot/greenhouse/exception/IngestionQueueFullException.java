@@ -0,0 +1,8 @@
+package ua.lviv.iot.greenhouse.exception;
+
+public class IngestionQueueFullException extends RuntimeException {
+
+    public IngestionQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package ua.lviv.iot.greenhouse.exception;
+
+public class WrongBucketFormatException extends RuntimeException {
+
+    public WrongBucketFormatException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -1,8 +1,9 @@
 package ua.lviv.iot.greenhouse.exception;
 
+// Thrown for wrong user input only, so it doesn't fill in the stack trace, which nobody would read
 public class WrongDateFormatException extends RuntimeException {
 
     public WrongDateFormatException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -0,0 +1,8 @@
+package ua.lviv.iot.greenhouse.exception;
+
+public class WrongDateRangeException extends RuntimeException {
+
+    public WrongDateRangeException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,79 @@
+package ua.lviv.iot.greenhouse.ingestion;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.GeneralSensorDao;
+import ua.lviv.iot.greenhouse.dao.LuminositySensorDAO;
+import ua.lviv.iot.greenhouse.dao.SoilSensorDAO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.services.RollupService;
+
+@Configuration
+@EnableConfigurationProperties(IngestionProperties.class)
+public class IngestionConfig {
+
+    @Bean
+    public WriteBehindQueue<AirSensor> airSensorIngestionQueue(IngestionProperties properties,
+                                                               AirSensorDAO airSensorDAO,
+                                                               RollupService rollupService,
+                                                               SensorQueryCache sensorQueryCache,
+                                                               RecentReadings recentReadings,
+                                                               MeterRegistry meterRegistry) {
+        return new WriteBehindQueue<>("air-sensor", properties, meterRegistry, sensors -> airSensorDAO.saveAll(sensors).forEach(sensor -> {
+            rollupService.markSaved(SensorType.AIR, sensor.getId(), sensor.getData().getLocalDateTime());
+            sensorQueryCache.invalidate(SensorType.AIR, sensor.getData().getLocalDateTime());
+            recentReadings.add(SensorType.AIR, sensor);
+        }));
+    }
+
+    @Bean
+    public WriteBehindQueue<SoilSensor> soilSensorIngestionQueue(IngestionProperties properties,
+                                                                 SoilSensorDAO soilSensorDAO,
+                                                                 RollupService rollupService,
+                                                                 SensorQueryCache sensorQueryCache,
+                                                                 RecentReadings recentReadings,
+                                                                 MeterRegistry meterRegistry) {
+        return new WriteBehindQueue<>("soil-sensor", properties, meterRegistry, sensors -> soilSensorDAO.saveAll(sensors).forEach(sensor -> {
+            rollupService.markSaved(SensorType.SOIL, sensor.getId(), sensor.getData().getLocalDateTime());
+            sensorQueryCache.invalidate(SensorType.SOIL, sensor.getData().getLocalDateTime());
+            recentReadings.add(SensorType.SOIL, sensor);
+        }));
+    }
+
+    @Bean
+    public WriteBehindQueue<LuminositySensor> luminositySensorIngestionQueue(IngestionProperties properties,
+                                                                             LuminositySensorDAO luminositySensorDAO,
+                                                                             RollupService rollupService,
+                                                                             SensorQueryCache sensorQueryCache,
+                                                                             RecentReadings recentReadings,
+                                                                             MeterRegistry meterRegistry) {
+        return new WriteBehindQueue<>("luminosity-sensor", properties, meterRegistry, sensors -> luminositySensorDAO.saveAll(sensors).forEach(sensor -> {
+            rollupService.markSaved(SensorType.LUMINOSITY, sensor.getId(), sensor.getData().getLocalDateTime());
+            sensorQueryCache.invalidate(SensorType.LUMINOSITY, sensor.getData().getLocalDateTime());
+            recentReadings.add(SensorType.LUMINOSITY, sensor);
+        }));
+    }
+
+    @Bean
+    public WriteBehindQueue<GeneralSensor> generalSensorIngestionQueue(IngestionProperties properties,
+                                                                       GeneralSensorDao generalSensorDao,
+                                                                       RollupService rollupService,
+                                                                       SensorQueryCache sensorQueryCache,
+                                                                       RecentReadings recentReadings,
+                                                                       MeterRegistry meterRegistry) {
+        return new WriteBehindQueue<>("general-sensor", properties, meterRegistry, sensors -> generalSensorDao.saveAll(sensors).forEach(sensor -> {
+            rollupService.markSaved(SensorType.GENERAL, sensor.getId(), sensor.getData().getTime());
+            sensorQueryCache.invalidate(SensorType.GENERAL, sensor.getData().getTime());
+            recentReadings.add(SensorType.GENERAL, sensor);
+        }));
+    }
+}
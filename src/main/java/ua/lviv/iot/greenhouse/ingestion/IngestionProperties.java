@@ -0,0 +1,28 @@
+package ua.lviv.iot.greenhouse.ingestion;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "greenhouse.ingestion")
+@Getter
+@Setter
+public class IngestionProperties {
+
+    // When true, new readings are queued and written to the DB by a background writer
+    private boolean async = false;
+    // Max number of readings waiting in the queue of one sensor type
+    private int capacity = 10_000;
+    // Writer flushes as soon as it has this many readings...
+    private int flushSize = 500;
+    // ...or when this much time has passed since the previous flush
+    private Duration flushInterval = Duration.ofMillis(200);
+    // Failed batches are written again this many times in total, waiting retryBackoff before the first retry
+    // and twice as long before every next one. Batches that still fail are dropped and counted as lost
+    private int retryAttempts = 5;
+    private Duration retryBackoff = Duration.ofMillis(500);
+    // How long to wait for the queue to drain on shutdown
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,178 @@
+package ua.lviv.iot.greenhouse.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ua.lviv.iot.greenhouse.exception.IngestionQueueFullException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded in-memory queue of readings, which are written to the DB by a dedicated thread
+ * in batches of {@code flushSize} or every {@code flushInterval}, whichever comes first.
+ * Does nothing unless asynchronous ingestion is enabled.
+ * <p>
+ * Delivery is at-most-once: readings are acknowledged once they are queued, and a batch the writer still fails
+ * to write after {@code retryAttempts} attempts is dropped and counted in {@code greenhouse.ingestion.lost.rows}.
+ * Queued readings are lost as well when the process dies.
+ */
+@Slf4j
+public class WriteBehindQueue<T> implements AutoCloseable {
+
+    private final String name;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final long shutdownTimeoutMillis;
+    private final int retryAttempts;
+    private final long retryBackoffMillis;
+    private final Counter retries;
+    private final Counter lostRows;
+    private final Consumer<List<T>> writer;
+    private final BlockingQueue<T> queue = new LinkedBlockingQueue<>();
+    // Free places in the queue. Acquired by producers, released once readings are written
+    private final Semaphore capacity;
+    // Producers hold the read lock while adding, so no reading is added after shutdown has started
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread writerThread;
+    private volatile boolean running;
+
+    public WriteBehindQueue(String name, IngestionProperties properties, MeterRegistry meterRegistry,
+                            Consumer<List<T>> writer) {
+        this.name = name;
+        this.flushSize = properties.getFlushSize();
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+        this.shutdownTimeoutMillis = properties.getShutdownTimeout().toMillis();
+        this.retryAttempts = Math.max(properties.getRetryAttempts(), 1);
+        this.retryBackoffMillis = properties.getRetryBackoff().toMillis();
+        this.retries = meterRegistry.counter("greenhouse.ingestion.retries", "queue", name);
+        this.lostRows = meterRegistry.counter("greenhouse.ingestion.lost.rows", "queue", name);
+        this.writer = writer;
+        this.capacity = new Semaphore(properties.getCapacity());
+
+        if (properties.isAsync()) {
+            running = true;
+            writerThread = new Thread(this::drain, name + "-writer");
+            writerThread.start();
+        } else {
+            writerThread = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return writerThread != null;
+    }
+
+    public void submit(T item) {
+        submitAll(Collections.singletonList(item));
+    }
+
+    // Queues either all the items or none of them
+    public void submitAll(List<T> items) {
+        lock.readLock().lock();
+        try {
+            if (!running || !capacity.tryAcquire(items.size())) {
+                throw new IngestionQueueFullException("Ingestion queue for " + name + " is full. Retry later");
+            }
+            queue.addAll(items);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<>(flushSize);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                T item = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (item != null) {
+                    batch.add(item);
+                    queue.drainTo(batch, flushSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (batch.size() >= flushSize || System.nanoTime() - deadline >= 0) {
+                flush(batch);
+                deadline = System.nanoTime() + flushIntervalNanos;
+            }
+        }
+
+        queue.drainTo(batch);
+        flush(batch);
+    }
+
+    // Capacity of the batch is released only after it is written or dropped, so producers get 503 instead of
+    // piling up readings while the DB is down
+    private void flush(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            long backoffMillis = retryBackoffMillis;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    writer.accept(batch);
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt >= retryAttempts) {
+                        lostRows.increment(batch.size());
+                        log.error("Failed to write {} {} readings after {} attempts, they are lost",
+                                batch.size(), name, attempt, e);
+                        return;
+                    }
+                    log.warn("Failed to write {} {} readings, retrying in {} ms", batch.size(), name,
+                            backoffMillis, e);
+                }
+                retries.increment();
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    lostRows.increment(batch.size());
+                    log.error("Interrupted while retrying, {} {} readings are lost", batch.size(), name);
+                    return;
+                }
+                backoffMillis *= 2;
+            }
+        } finally {
+            capacity.release(batch.size());
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        writerThread.join(shutdownTimeoutMillis);
+        if (writerThread.isAlive()) {
+            log.warn("{} readings were not written in time", queue.size());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ua.lviv.iot.greenhouse.mappers;
+
+import ua.lviv.iot.greenhouse.dto.aggregate.MetricAggregateDTO;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Maps rows of native aggregate queries. Each row starts with bucket number and row count,
+// followed by min, max, sum, count and last value of every metric
+public class AggregateMapper {
+
+    public static final int METRIC_COLUMNS = 5;
+
+    private AggregateMapper() {
+    }
+
+    public static LocalDateTime mapBucketStart(Object[] row, long bucketSeconds) {
+        return LocalDateTime.ofEpochSecond(((Number) row[0]).longValue() * bucketSeconds, 0, ZoneOffset.UTC);
+    }
+
+    public static long mapCount(Object[] row) {
+        return ((Number) row[1]).longValue();
+    }
+
+    // Index is the position of the metric in the query, starting from 0
+    public static MetricAggregateDTO mapMetric(Object[] row, int index) {
+        int offset = 2 + index * METRIC_COLUMNS;
+        Double sum = toDouble(row[offset + 2]);
+        long count = ((Number) row[offset + 3]).longValue();
+
+        return new MetricAggregateDTO(
+                toDouble(row[offset]),
+                toDouble(row[offset + 1]),
+                count == 0 || sum == null ? null : sum / count,
+                toDouble(row[offset + 4])
+        );
+    }
+
+    private static Double toDouble(Object value) {
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+}
@@ -1,5 +1,6 @@
 package ua.lviv.iot.greenhouse.mappers;
 
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorTemperatureDTO;
@@ -31,4 +32,13 @@ public class AirSensorMapper {
                 airSensor.getData().getAirTemperature()
         );
     }
+
+    public static AirSensorAggregateDTO mapRowToAirSensorAggregateDTO(Object[] row, long bucketSeconds) {
+        return new AirSensorAggregateDTO(
+                AggregateMapper.mapBucketStart(row, bucketSeconds),
+                AggregateMapper.mapCount(row),
+                AggregateMapper.mapMetric(row, 0),
+                AggregateMapper.mapMetric(row, 1)
+        );
+    }
 }
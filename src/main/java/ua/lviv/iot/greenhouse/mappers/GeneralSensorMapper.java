@@ -1,5 +1,6 @@
 package ua.lviv.iot.greenhouse.mappers;
 
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
 import ua.lviv.iot.greenhouse.models.GeneralSensor;
 
@@ -17,4 +18,15 @@ public class GeneralSensorMapper {
                 generalSensorDTO.getTime()
         ));
     }
+
+    public static GeneralSensorAggregateDTO mapRowToGeneralSensorAggregateDTO(Object[] row, long bucketSeconds) {
+        return new GeneralSensorAggregateDTO(
+                AggregateMapper.mapBucketStart(row, bucketSeconds),
+                AggregateMapper.mapCount(row),
+                AggregateMapper.mapMetric(row, 0),
+                AggregateMapper.mapMetric(row, 1),
+                AggregateMapper.mapMetric(row, 2),
+                AggregateMapper.mapMetric(row, 3)
+        );
+    }
 }
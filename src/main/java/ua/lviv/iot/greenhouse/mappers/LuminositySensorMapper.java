@@ -1,5 +1,6 @@
 package ua.lviv.iot.greenhouse.mappers;
 
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
 import ua.lviv.iot.greenhouse.models.LuminositySensor;
 
@@ -14,4 +15,12 @@ public class LuminositySensorMapper {
                 airSensorDTO.getLuminosity()
         ));
     }
+
+    public static LuminositySensorAggregateDTO mapRowToLuminositySensorAggregateDTO(Object[] row, long bucketSeconds) {
+        return new LuminositySensorAggregateDTO(
+                AggregateMapper.mapBucketStart(row, bucketSeconds),
+                AggregateMapper.mapCount(row),
+                AggregateMapper.mapMetric(row, 0)
+        );
+    }
 }
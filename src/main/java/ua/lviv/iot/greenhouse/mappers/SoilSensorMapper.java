@@ -1,5 +1,6 @@
 package ua.lviv.iot.greenhouse.mappers;
 
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO;
@@ -31,4 +32,13 @@ public class SoilSensorMapper {
                 airSensor.getData().getSoilTemperature()
         );
     }
+
+    public static SoilSensorAggregateDTO mapRowToSoilSensorAggregateDTO(Object[] row, long bucketSeconds) {
+        return new SoilSensorAggregateDTO(
+                AggregateMapper.mapBucketStart(row, bucketSeconds),
+                AggregateMapper.mapCount(row),
+                AggregateMapper.mapMetric(row, 0),
+                AggregateMapper.mapMetric(row, 1)
+        );
+    }
 }
@@ -0,0 +1,165 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAO;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Times every public method of the sensor services and every DAO call. Controllers are timed by Spring
+// itself as http.server.requests, so they are not advised here
+@Aspect
+@Component
+@Slf4j
+public class MetricsAspect {
+
+    @Value
+    private static class Key {
+        Class<?> type;
+        Method method;
+    }
+
+    private static class DaoMeters {
+        private final String name;
+        private final Timer timer;
+        private final DistributionSummary rows;
+        private final Counter slowQueries;
+        private final AtomicLong lastLoggedAt;
+
+        private DaoMeters(String name, Timer timer, DistributionSummary rows, Counter slowQueries, long createdAt) {
+            this.name = name;
+            this.timer = timer;
+            this.rows = rows;
+            this.slowQueries = slowQueries;
+            this.lastLoggedAt = new AtomicLong(createdAt);
+        }
+    }
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryThreshold;
+    private final long slowQueryLogInterval;
+    private final Map<Key, Timer> serviceTimers = new ConcurrentHashMap<>();
+    private final Map<Key, DaoMeters> daoMeters = new ConcurrentHashMap<>();
+
+    public MetricsAspect(MeterRegistry meterRegistry, MetricsProperties metricsProperties) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = metricsProperties.getSlowQueryThreshold().toNanos();
+        this.slowQueryLogInterval = metricsProperties.getSlowQueryLogInterval().toNanos();
+    }
+
+    @Around("execution(public * ua.lviv.iot.greenhouse.services.impl.*SensorServiceImpl.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            serviceTimers.computeIfAbsent(key(joinPoint), key -> serviceTimer(key, NO_EXCEPTION))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            // Failed calls are rare, so their timers are looked up in the registry every time
+            serviceTimer(key(joinPoint), e.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    // Matched by type, as names of the DAO beans are also names of their repository factory beans
+    @Around("execution(* ua.lviv.iot.greenhouse.dao.*+.*(..)) " +
+            "&& !within(ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs)")
+    public Object timeDao(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        Object result = joinPoint.proceed();
+        long end = System.nanoTime();
+
+        DaoMeters meters = daoMeters.computeIfAbsent(key(joinPoint), key -> daoMeters(key, joinPoint.getThis(), end));
+        meters.timer.record(end - start, TimeUnit.NANOSECONDS);
+        if (result instanceof Collection) {
+            meters.rows.record(((Collection<?>) result).size());
+            SqlStatements.fetched(((Collection<?>) result).size());
+        }
+        if (end - start > slowQueryThreshold) {
+            meters.slowQueries.increment();
+            logSlowQuery(meters, end, end - start, result);
+        }
+        return result;
+    }
+
+    private void logSlowQuery(DaoMeters meters, long now, long duration, Object result) {
+        long lastLoggedAt = meters.lastLoggedAt.get();
+        if (now - lastLoggedAt < slowQueryLogInterval || !meters.lastLoggedAt.compareAndSet(lastLoggedAt, now)) {
+            return;
+        }
+        if (result instanceof Collection) {
+            log.warn("Slow query {} took {} ms and returned {} rows", meters.name,
+                    TimeUnit.NANOSECONDS.toMillis(duration), ((Collection<?>) result).size());
+        } else {
+            log.warn("Slow query {} took {} ms", meters.name, TimeUnit.NANOSECONDS.toMillis(duration));
+        }
+    }
+
+    private Timer serviceTimer(Key key, String exception) {
+        return Timer.builder("greenhouse.service.calls")
+                .description("Calls of sensor service methods")
+                .tag("service", ClassUtils.getUserClass(key.getType()).getSimpleName())
+                .tag("method", key.getMethod().getName())
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private DaoMeters daoMeters(Key key, Object dao, long now) {
+        String daoName = daoName(dao);
+        String method = key.getMethod().getName();
+        Timer timer = Timer.builder("greenhouse.dao.calls")
+                .description("Calls of DAO methods")
+                .tag("dao", daoName)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        DistributionSummary rows = DistributionSummary.builder("greenhouse.dao.rows")
+                .description("Rows returned by DAO methods that return lists")
+                .baseUnit("rows")
+                .tag("dao", daoName)
+                .tag("method", method)
+                .serviceLevelObjectives(1, 10, 100, 1_000, 10_000, 100_000)
+                .register(meterRegistry);
+        Counter slowQueries = Counter.builder("greenhouse.dao.slow")
+                .description("DAO calls that took longer than the slow query threshold")
+                .tag("dao", daoName)
+                .tag("method", method)
+                .register(meterRegistry);
+        return new DaoMeters(daoName + "." + method, timer, rows, slowQueries, now - slowQueryLogInterval);
+    }
+
+    private static Key key(ProceedingJoinPoint joinPoint) {
+        return new Key(joinPoint.getThis().getClass(), ((MethodSignature) joinPoint.getSignature()).getMethod());
+    }
+
+    // Spring Data repositories are proxies, so the DAO is the interface of the proxy from the dao package
+    private static String daoName(Object dao) {
+        for (Class<?> type : dao.getClass().getInterfaces()) {
+            if (type.getPackageName().equals(SensorTimeSeriesDAO.class.getPackageName())) {
+                return type.getSimpleName();
+            }
+        }
+        return AopUtils.getTargetClass(dao).getSimpleName();
+    }
+}
@@ -0,0 +1,22 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "greenhouse.metrics")
+@Getter
+@Setter
+public class MetricsProperties {
+
+    // DAO calls that take longer are logged as slow queries
+    private Duration slowQueryThreshold = Duration.ofMillis(200);
+    // At most one slow query of every DAO method is logged per interval, the rest are only counted
+    private Duration slowQueryLogInterval = Duration.ofSeconds(10);
+    // Requests that execute more SQL statements are counted and logged
+    private int statementBudget = 20;
+    // At most one request over the budget of every endpoint is logged per interval
+    private Duration statementBudgetLogInterval = Duration.ofSeconds(10);
+}
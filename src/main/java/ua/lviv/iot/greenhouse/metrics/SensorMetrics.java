@@ -0,0 +1,50 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Counters of readings by sensor type. They are registered once, so services don't look them up on every write
+@Component
+public class SensorMetrics {
+
+    private final Map<SensorType, Counter> ingested = new EnumMap<>(SensorType.class);
+    private final Map<SensorType, Counter> rejected = new EnumMap<>(SensorType.class);
+    private final Map<SensorType, Counter> deleted = new EnumMap<>(SensorType.class);
+
+    public SensorMetrics(MeterRegistry meterRegistry) {
+        for (SensorType sensorType : SensorType.values()) {
+            String type = sensorType.name().toLowerCase();
+            ingested.put(sensorType, Counter.builder("greenhouse.readings.ingested")
+                    .description("Readings accepted by POST endpoints")
+                    .tag("type", type)
+                    .register(meterRegistry));
+            rejected.put(sensorType, Counter.builder("greenhouse.readings.rejected")
+                    .description("Rows of batches rejected by validation")
+                    .tag("type", type)
+                    .register(meterRegistry));
+            deleted.put(sensorType, Counter.builder("greenhouse.readings.deleted")
+                    .description("Readings deleted by DELETE endpoints")
+                    .tag("type", type)
+                    .register(meterRegistry));
+        }
+    }
+
+    public void ingested(SensorType sensorType, int count) {
+        ingested.get(sensorType).increment(count);
+    }
+
+    public void rejected(SensorType sensorType, int count) {
+        if (count > 0) {
+            rejected.get(sensorType).increment(count);
+        }
+    }
+
+    public void deleted(SensorType sensorType, long count) {
+        deleted.get(sensorType).increment(count);
+    }
+}
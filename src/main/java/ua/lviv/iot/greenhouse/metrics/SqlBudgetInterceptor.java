@@ -0,0 +1,124 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counts SQL statements, their JDBC time and fetched rows of every request by endpoint. Requests with more
+// statements than the budget usually load data lazily or query in a loop, so they are counted and logged.
+// Statements of streaming responses, which run on another thread, are counted for the async dispatch
+@Slf4j
+public class SqlBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    private static class EndpointMeters {
+        private final DistributionSummary statements;
+        private final Timer time;
+        private final DistributionSummary rows;
+        private final Counter overBudget;
+        private final AtomicLong lastLoggedAt;
+
+        private EndpointMeters(DistributionSummary statements, Timer time, DistributionSummary rows,
+                               Counter overBudget, long createdAt) {
+            this.statements = statements;
+            this.time = time;
+            this.rows = rows;
+            this.overBudget = overBudget;
+            this.lastLoggedAt = new AtomicLong(createdAt);
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int statementBudget;
+    private final long logInterval;
+    private final Map<String, EndpointMeters> endpointMeters = new ConcurrentHashMap<>();
+
+    public SqlBudgetInterceptor(MeterRegistry meterRegistry, MetricsProperties metricsProperties) {
+        this.meterRegistry = meterRegistry;
+        this.statementBudget = metricsProperties.getStatementBudget();
+        this.logInterval = metricsProperties.getStatementBudgetLogInterval().toNanos();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlStatements.start();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        SqlStatements.stop();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        SqlStatements statements = SqlStatements.stop();
+        if (statements == null) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        String endpoint = request.getMethod() + " " + uri;
+
+        long now = System.nanoTime();
+        EndpointMeters meters = endpointMeters.computeIfAbsent(endpoint,
+                key -> endpointMeters(request.getMethod(), uri, now));
+        meters.statements.record(statements.getCount());
+        meters.time.record(statements.getNanos(), TimeUnit.NANOSECONDS);
+        meters.rows.record(statements.getRows());
+        if (statements.getCount() > statementBudget) {
+            meters.overBudget.increment();
+            logOverBudget(meters, endpoint, statements, now);
+        }
+    }
+
+    private void logOverBudget(EndpointMeters meters, String endpoint, SqlStatements statements, long now) {
+        long lastLoggedAt = meters.lastLoggedAt.get();
+        if (now - lastLoggedAt < logInterval || !meters.lastLoggedAt.compareAndSet(lastLoggedAt, now)) {
+            return;
+        }
+        log.warn("{} executed {} SQL statements, which is over the budget of {}. JDBC took {} ms, {} rows fetched",
+                endpoint, statements.getCount(), statementBudget, TimeUnit.NANOSECONDS.toMillis(statements.getNanos()),
+                statements.getRows());
+    }
+
+    private EndpointMeters endpointMeters(String method, String uri, long now) {
+        DistributionSummary statements = DistributionSummary.builder("greenhouse.request.sql.statements")
+                .description("SQL statements executed by a request")
+                .tag("method", method)
+                .tag("uri", uri)
+                .serviceLevelObjectives(1, 2, 5, 10, 20, 50, 100)
+                .register(meterRegistry);
+        Timer time = Timer.builder("greenhouse.request.sql.time")
+                .description("JDBC time of SQL statements executed by a request")
+                .tag("method", method)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        DistributionSummary rows = DistributionSummary.builder("greenhouse.request.sql.rows")
+                .description("Rows returned by DAO methods called by a request")
+                .baseUnit("rows")
+                .tag("method", method)
+                .tag("uri", uri)
+                .serviceLevelObjectives(1, 10, 100, 1_000, 10_000, 100_000)
+                .register(meterRegistry);
+        Counter overBudget = Counter.builder("greenhouse.request.sql.over-budget")
+                .description("Requests that executed more SQL statements than the budget")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry);
+        return new EndpointMeters(statements, time, rows, overBudget, now - logInterval);
+    }
+}
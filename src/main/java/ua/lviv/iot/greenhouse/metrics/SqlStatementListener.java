@@ -0,0 +1,30 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+// Hibernate creates a listener for every session, so the start of the running statement is a plain field.
+// Every query, update and JDBC batch counts as one statement
+public class SqlStatementListener extends BaseSessionEventListener {
+
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SqlStatements.executed(System.nanoTime() - start);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SqlStatements.executed(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,43 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import lombok.Getter;
+
+// SQL statements executed by the current thread since start(), e.g. during one request.
+// Nothing is counted on threads that didn't call start()
+@Getter
+public class SqlStatements {
+
+    private static final ThreadLocal<SqlStatements> CURRENT = new ThreadLocal<>();
+
+    private int count;
+    private long nanos;
+    private long rows;
+
+    public static SqlStatements start() {
+        SqlStatements statements = new SqlStatements();
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    // Returns the statements counted since start() or null, when counting wasn't started
+    public static SqlStatements stop() {
+        SqlStatements statements = CURRENT.get();
+        CURRENT.remove();
+        return statements;
+    }
+
+    static void executed(long nanos) {
+        SqlStatements statements = CURRENT.get();
+        if (statements != null) {
+            statements.count++;
+            statements.nanos += nanos;
+        }
+    }
+
+    static void fetched(int rows) {
+        SqlStatements statements = CURRENT.get();
+        if (statements != null) {
+            statements.rows += rows;
+        }
+    }
+}
@@ -1,14 +1,15 @@
 package ua.lviv.iot.greenhouse.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Entity(name = "general_sensor")
-@Table
+@Table(indexes = @Index(name = "idx_general_sensor_time", columnList = "time, id, modifiedAt"))
 @NoArgsConstructor
-@AllArgsConstructor
 @Getter
 @Setter
 @ToString
@@ -16,15 +17,32 @@ import java.time.LocalDateTime;
 public class GeneralSensor {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "general_sensor_seq")
+    @SequenceGenerator(name = "general_sensor_seq", sequenceName = "general_sensor_seq", allocationSize = 50)
     private Long id;
     @Embedded
     private Data data;
+    // Time of the last insert or update, used to tell clients whether data has changed
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime modifiedAt;
 
     public GeneralSensor(Data data) {
         this.data = data;
     }
 
+    public GeneralSensor(Long id, Data data) {
+        this.id = id;
+        this.data = data;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateModifiedAt() {
+        // Truncated to what the column stores, so the value in memory is the same as the one read back
+        modifiedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
     @Embeddable
     @AllArgsConstructor
     @NoArgsConstructor
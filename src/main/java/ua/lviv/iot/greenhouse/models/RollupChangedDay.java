@@ -0,0 +1,32 @@
+package ua.lviv.iot.greenhouse.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+// Day of a sensor type with updated, deleted or late readings, whose rollups the next run recomputes.
+// Kept in the DB, so days changed through any node are recomputed, also after restarts. Every change adds a row
+// of its own, so concurrent changes of a day never conflict, and the recompute deletes all rows of the day
+@Entity(name = "rollup_changed_day")
+@Table(indexes = @Index(name = "idx_rollup_changed_day_day", columnList = "sensorType, day"))
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class RollupChangedDay {
+
+    // Days are marked one by one, so there are no batches the generated keys would get in the way of
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    private SensorType sensorType;
+    private LocalDate day;
+
+    public RollupChangedDay(SensorType sensorType, LocalDate day) {
+        this.sensorType = sensorType;
+        this.day = day;
+    }
+}
@@ -0,0 +1,19 @@
+package ua.lviv.iot.greenhouse.models;
+
+// Sizes of pre-aggregated buckets, from the finest to the coarsest
+public enum RollupResolution {
+
+    MINUTE(60),
+    HOUR(60 * 60),
+    DAY(24 * 60 * 60);
+
+    private final long seconds;
+
+    RollupResolution(long seconds) {
+        this.seconds = seconds;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+}
@@ -0,0 +1,25 @@
+package ua.lviv.iot.greenhouse.models;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Biggest ID of a sensor type, up to which readings are already rolled up
+@Entity(name = "rollup_watermark")
+@Table
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class RollupWatermark {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private SensorType sensorType;
+    private long lastRolledUpId;
+    // Raw readings before this time may be purged, so their days can't be recomputed from raw readings
+    private LocalDateTime rawPurgedBefore;
+}
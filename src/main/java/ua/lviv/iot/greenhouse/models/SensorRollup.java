@@ -0,0 +1,90 @@
+package ua.lviv.iot.greenhouse.models;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Pre-aggregated values of one metric of one sensor type in one time bucket
+@Entity(name = "sensor_rollup")
+@Table
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class SensorRollup implements Persistable<SensorRollup.Key> {
+
+    @EmbeddedId
+    private Key key;
+    @Embedded
+    private Data data;
+    // Keys are assigned by the application, so new rollups are told apart by this flag
+    // instead of a select before every insert
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean persisted;
+
+    public SensorRollup(Key key, Data data) {
+        this.key = key;
+        this.data = data;
+    }
+
+    @Override
+    public Key getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Embeddable
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Getter
+    @Setter
+    @ToString
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        @Enumerated(EnumType.STRING)
+        private SensorType sensorType;
+        @Enumerated(EnumType.STRING)
+        private RollupResolution resolution;
+        private LocalDateTime bucketStart;
+        private String metric;
+    }
+
+    @Embeddable
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Getter
+    @Setter
+    @ToString
+    @EqualsAndHashCode
+    public static class Data {
+        private long readingCount;
+        private Double minValue;
+        private Double maxValue;
+        private Double sumValue;
+        // Number of readings with non-null value
+        private long valueCount;
+        // Value, time and ID of the newest reading by time, then by ID. Rollups written before the time was kept
+        // have none
+        private Double latestValue;
+        private LocalDateTime latestTime;
+        private long latestId;
+    }
+}
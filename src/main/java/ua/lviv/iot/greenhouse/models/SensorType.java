@@ -0,0 +1,24 @@
+package ua.lviv.iot.greenhouse.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public enum SensorType {
+
+    AIR("airHumidity", "airTemperature"),
+    SOIL("soilHumidity", "soilTemperature"),
+    LUMINOSITY("luminosity"),
+    GENERAL("temperature", "humidity", "luminosity", "soilMoisture");
+
+    // Names of the metrics in the order they are returned by aggregate queries
+    private final List<String> metrics;
+
+    SensorType(String... metrics) {
+        this.metrics = Collections.unmodifiableList(Arrays.asList(metrics));
+    }
+
+    public List<String> getMetrics() {
+        return metrics;
+    }
+}
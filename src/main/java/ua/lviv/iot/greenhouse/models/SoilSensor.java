@@ -1,12 +1,14 @@
 package ua.lviv.iot.greenhouse.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Entity(name = "soil_sensor")
-@Table
+@Table(indexes = @Index(name = "idx_soil_sensor_local_date_time", columnList = "localDateTime, id, modifiedAt"))
 @NoArgsConstructor
 @Getter
 @Setter
@@ -15,10 +17,15 @@ import java.time.LocalDateTime;
 public class SoilSensor {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "soil_sensor_seq")
+    @SequenceGenerator(name = "soil_sensor_seq", sequenceName = "soil_sensor_seq", allocationSize = 50)
     private Long id;
     @Embedded
     private Data data;
+    // Time of the last insert or update, used to tell clients whether data has changed
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private LocalDateTime modifiedAt;
 
     public SoilSensor(Data data) {
         this.data = data;
@@ -29,6 +36,13 @@ public class SoilSensor {
         this.data = data;
     }
 
+    @PrePersist
+    @PreUpdate
+    void updateModifiedAt() {
+        // Truncated to what the column stores, so the value in memory is the same as the one read back
+        modifiedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
     @Embeddable
     @AllArgsConstructor
     @NoArgsConstructor
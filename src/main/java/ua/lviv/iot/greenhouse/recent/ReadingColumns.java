@@ -0,0 +1,159 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SoilSensor;
+
+import java.time.LocalDateTime;
+
+// How readings of a sensor type are split into the columns of a ring and put back together.
+// Metrics are in the order of SensorType.getMetrics
+public interface ReadingColumns<T> {
+
+    Long getId(T sensor);
+
+    LocalDateTime getTime(T sensor);
+
+    LocalDateTime getModifiedAt(T sensor);
+
+    double getMetric(T sensor, int metric);
+
+    T toSensor(ReadingRow row);
+
+    ReadingColumns<AirSensor> AIR = new ReadingColumns<>() {
+        @Override
+        public Long getId(AirSensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public LocalDateTime getTime(AirSensor sensor) {
+            return sensor.getData().getLocalDateTime();
+        }
+
+        @Override
+        public LocalDateTime getModifiedAt(AirSensor sensor) {
+            return sensor.getModifiedAt();
+        }
+
+        @Override
+        public double getMetric(AirSensor sensor, int metric) {
+            return metric == 0 ? sensor.getData().getAirHumidity() : sensor.getData().getAirTemperature();
+        }
+
+        @Override
+        public AirSensor toSensor(ReadingRow row) {
+            AirSensor sensor = new AirSensor(row.getId(),
+                    new AirSensor.Data(row.getTime(), row.getMetric(0), row.getMetric(1)));
+            sensor.setModifiedAt(row.getModifiedAt());
+            return sensor;
+        }
+    };
+
+    ReadingColumns<SoilSensor> SOIL = new ReadingColumns<>() {
+        @Override
+        public Long getId(SoilSensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public LocalDateTime getTime(SoilSensor sensor) {
+            return sensor.getData().getLocalDateTime();
+        }
+
+        @Override
+        public LocalDateTime getModifiedAt(SoilSensor sensor) {
+            return sensor.getModifiedAt();
+        }
+
+        @Override
+        public double getMetric(SoilSensor sensor, int metric) {
+            return metric == 0 ? sensor.getData().getSoilHumidity() : sensor.getData().getSoilTemperature();
+        }
+
+        @Override
+        public SoilSensor toSensor(ReadingRow row) {
+            SoilSensor sensor = new SoilSensor(row.getId(),
+                    new SoilSensor.Data(row.getTime(), row.getMetric(0), row.getMetric(1)));
+            sensor.setModifiedAt(row.getModifiedAt());
+            return sensor;
+        }
+    };
+
+    ReadingColumns<LuminositySensor> LUMINOSITY = new ReadingColumns<>() {
+        @Override
+        public Long getId(LuminositySensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public LocalDateTime getTime(LuminositySensor sensor) {
+            return sensor.getData().getLocalDateTime();
+        }
+
+        @Override
+        public LocalDateTime getModifiedAt(LuminositySensor sensor) {
+            return sensor.getModifiedAt();
+        }
+
+        @Override
+        public double getMetric(LuminositySensor sensor, int metric) {
+            return sensor.getData().getLuminosity();
+        }
+
+        @Override
+        public LuminositySensor toSensor(ReadingRow row) {
+            LuminositySensor sensor = new LuminositySensor(row.getId(),
+                    new LuminositySensor.Data(row.getTime(), row.getMetric(0)));
+            sensor.setModifiedAt(row.getModifiedAt());
+            return sensor;
+        }
+    };
+
+    // Metrics of general sensors are optional, missing ones are kept as NaN
+    ReadingColumns<GeneralSensor> GENERAL = new ReadingColumns<>() {
+        @Override
+        public Long getId(GeneralSensor sensor) {
+            return sensor.getId();
+        }
+
+        @Override
+        public LocalDateTime getTime(GeneralSensor sensor) {
+            return sensor.getData().getTime();
+        }
+
+        @Override
+        public LocalDateTime getModifiedAt(GeneralSensor sensor) {
+            return sensor.getModifiedAt();
+        }
+
+        @Override
+        public double getMetric(GeneralSensor sensor, int metric) {
+            GeneralSensor.Data data = sensor.getData();
+            Double value;
+            switch (metric) {
+                case 0:
+                    value = data.getTemperature();
+                    break;
+                case 1:
+                    value = data.getHumidity();
+                    break;
+                case 2:
+                    value = data.getLuminosity();
+                    break;
+                default:
+                    value = data.getSoilMoisture();
+            }
+            return value == null ? ReadingRing.NO_METRIC : value;
+        }
+
+        @Override
+        public GeneralSensor toSensor(ReadingRow row) {
+            GeneralSensor sensor = new GeneralSensor(row.getId(), new GeneralSensor.Data(row.getNullableMetric(0),
+                    row.getNullableMetric(1), row.getNullableMetric(2), row.getNullableMetric(3), row.getTime()));
+            sensor.setModifiedAt(row.getModifiedAt());
+            return sensor;
+        }
+    };
+}
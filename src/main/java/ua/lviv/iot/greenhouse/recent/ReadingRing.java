@@ -0,0 +1,220 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Function;
+
+// Fixed number of readings kept in primitive columns, ordered by time and ID. Readings are usually newer than
+// all the others and are appended; when the ring is full, the oldest reading makes room for the new one.
+// Not thread-safe, RecentReadings guards every ring with a lock
+public class ReadingRing {
+
+    // Stored in place of missing values, which are null in the entities
+    public static final long NO_TIME = Long.MIN_VALUE;
+    public static final double NO_METRIC = Double.NaN;
+
+    private final int capacity;
+    // Epoch microseconds of the reading time, which is all the DB stores of it
+    private final long[] times;
+    private final long[] ids;
+    private final long[] modifiedAts;
+    private final double[][] metrics;
+    // Physical index of the oldest reading
+    private int head;
+    private int size;
+    // Newest time of a reading that didn't fit into the ring
+    private long evictedTime = NO_TIME;
+
+    public ReadingRing(int capacity, int metricCount) {
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.ids = new long[capacity];
+        this.modifiedAts = new long[capacity];
+        this.metrics = new double[metricCount][capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getEvictedTime() {
+        return evictedTime;
+    }
+
+    // Logical position of the reading, or -1 when it is already in the ring or too old to be kept.
+    // Metrics of the new reading are set with setMetric
+    public int insert(long time, long id, long modifiedAt) {
+        int position = lowerBound(time, id);
+        if (position < size && times[physical(position)] == time && ids[physical(position)] == id) {
+            return -1;
+        }
+        if (size == capacity) {
+            if (position == 0) {
+                evictedTime = Math.max(evictedTime, time);
+                return -1;
+            }
+            evictedTime = Math.max(evictedTime, times[head]);
+            head = physical(1);
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            move(physical(i - 1), physical(i));
+        }
+        size++;
+        int index = physical(position);
+        times[index] = time;
+        ids[index] = id;
+        modifiedAts[index] = modifiedAt;
+        return position;
+    }
+
+    public void setMetric(int position, int metric, double value) {
+        metrics[metric][physical(position)] = value;
+    }
+
+    public void setModifiedAt(int position, long modifiedAt) {
+        modifiedAts[physical(position)] = modifiedAt;
+    }
+
+    // Logical position of the reading, or -1 when it isn't in the ring
+    public int find(long time, long id) {
+        int position = lowerBound(time, id);
+        if (position < size && times[physical(position)] == time && ids[physical(position)] == id) {
+            return position;
+        }
+        return -1;
+    }
+
+    // Positions of readings with time in [from, to] are [lowerBound(from), upperBound(to))
+    public int lowerBound(long time) {
+        return lowerBound(time, Long.MIN_VALUE);
+    }
+
+    public int upperBound(long time) {
+        return time == Long.MAX_VALUE ? size : lowerBound(time + 1, Long.MIN_VALUE);
+    }
+
+    // Adds readings with time in [from, last] to the list, in order of time
+    public <R> void map(long from, long last, Function<Row, R> mapper, List<R> into) {
+        Row row = new Row(this);
+        int end = upperBound(last);
+        for (row.position = lowerBound(from); row.position < end; row.position++) {
+            into.add(mapper.apply(row));
+        }
+    }
+
+    // Removes readings in [from, to) of positions, the ones after them are moved back
+    public void remove(int from, int to) {
+        int removed = to - from;
+        if (removed <= 0) {
+            return;
+        }
+        if (from == 0) {
+            head = physical(removed);
+        } else {
+            for (int i = to; i < size; i++) {
+                move(physical(i), physical(i - removed));
+            }
+        }
+        size -= removed;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public long getTime(int position) {
+        return times[physical(position)];
+    }
+
+    public long getId(int position) {
+        return ids[physical(position)];
+    }
+
+    public long getModifiedAt(int position) {
+        return modifiedAts[physical(position)];
+    }
+
+    public double getMetric(int position, int metric) {
+        return metrics[metric][physical(position)];
+    }
+
+    // Position of the first reading not before (time, id)
+    private int lowerBound(long time, long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int index = physical(middle);
+            if (times[index] < time || times[index] == time && ids[index] < id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int physical(int position) {
+        int index = head + position;
+        return index >= capacity ? index - capacity : index;
+    }
+
+    private void move(int from, int to) {
+        times[to] = times[from];
+        ids[to] = ids[from];
+        modifiedAts[to] = modifiedAts[from];
+        for (double[] column : metrics) {
+            column[to] = column[from];
+        }
+    }
+
+    public static long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1000;
+    }
+
+    public static LocalDateTime toTime(long micros) {
+        if (micros == NO_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    // Reading of a ring at the current position
+    public static class Row implements ReadingRow {
+
+        private final ReadingRing ring;
+        private int position;
+
+        private Row(ReadingRing ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public long getId() {
+            return ring.getId(position);
+        }
+
+        @Override
+        public LocalDateTime getTime() {
+            return toTime(ring.getTime(position));
+        }
+
+        @Override
+        public LocalDateTime getModifiedAt() {
+            return toTime(ring.getModifiedAt(position));
+        }
+
+        @Override
+        public double getMetric(int metric) {
+            return ring.getMetric(position, metric);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import java.time.LocalDateTime;
+
+// Reading stored as primitive columns rather than as an entity, given to mappers of query results.
+// Metrics are in the order of SensorType.getMetrics(), missing ones are NaN
+public interface ReadingRow {
+
+    long getId();
+
+    LocalDateTime getTime();
+
+    LocalDateTime getModifiedAt();
+
+    double getMetric(int metric);
+
+    default Double getNullableMetric(int metric) {
+        double value = getMetric(metric);
+        return Double.isNaN(value) ? null : value;
+    }
+}
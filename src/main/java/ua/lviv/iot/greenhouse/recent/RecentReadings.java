@@ -0,0 +1,254 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.Transactions;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+// Newest readings of every sensor type, kept in memory so queries of the last hours don't go to the DB.
+// A ring serves a range only when it holds every reading of it: the ring is filled from the DB once the
+// application is started, and after that only writes of this instance change the readings. Writes change
+// the rings after they commit, like they invalidate the query cache
+@Component
+public class RecentReadings {
+
+    private final boolean enabled;
+    private final int capacity;
+    private final Map<SensorType, Tier<?>> tiers = new EnumMap<>(SensorType.class);
+
+    public RecentReadings(RecentReadingsProperties recentReadingsProperties, MeterRegistry meterRegistry) {
+        this.enabled = recentReadingsProperties.isEnabled() && recentReadingsProperties.getCapacity() > 0;
+        this.capacity = recentReadingsProperties.getCapacity();
+        if (enabled) {
+            tiers.put(SensorType.AIR, new Tier<>(SensorType.AIR, ReadingColumns.AIR, meterRegistry));
+            tiers.put(SensorType.SOIL, new Tier<>(SensorType.SOIL, ReadingColumns.SOIL, meterRegistry));
+            tiers.put(SensorType.LUMINOSITY,
+                    new Tier<>(SensorType.LUMINOSITY, ReadingColumns.LUMINOSITY, meterRegistry));
+            tiers.put(SensorType.GENERAL, new Tier<>(SensorType.GENERAL, ReadingColumns.GENERAL, meterRegistry));
+        }
+    }
+
+    // Query returns at most the given number of the newest readings, newest first
+    public <T> void load(SensorType sensorType, IntFunction<List<T>> query) {
+        if (enabled) {
+            this.<T>tier(sensorType).load(query.apply(capacity));
+        }
+    }
+
+    public <T> void add(SensorType sensorType, T sensor) {
+        addAll(sensorType, Collections.singletonList(sensor));
+    }
+
+    // Readings without an ID are not saved yet and are left out
+    public <T> void addAll(SensorType sensorType, List<T> sensors) {
+        if (enabled && !sensors.isEmpty()) {
+            Transactions.afterCommit(() -> this.<T>tier(sensorType).addAll(sensors));
+        }
+    }
+
+    public <T> void update(SensorType sensorType, T sensor) {
+        if (enabled) {
+            Transactions.afterCommit(() -> this.<T>tier(sensorType).update(sensor));
+        }
+    }
+
+    public void remove(SensorType sensorType, DateRange range) {
+        if (enabled) {
+            Transactions.afterCommit(() -> tier(sensorType).remove(ReadingRing.toMicros(range.getFrom()),
+                    ReadingRing.toMicros(range.getLast())));
+        }
+    }
+
+    public void removeBefore(SensorType sensorType, LocalDateTime time) {
+        if (enabled) {
+            Transactions.afterCommit(() -> tier(sensorType).remove(Long.MIN_VALUE, ReadingRing.toMicros(time) - 1));
+        }
+    }
+
+    public void removeAll(SensorType sensorType) {
+        if (enabled) {
+            Transactions.afterCommit(() -> tier(sensorType).remove(Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+    }
+
+    // Empty when the range starts before the oldest reading the ring is sure to have
+    public <T> Optional<List<T>> find(SensorType sensorType, DateRange range) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Tier<T> tier = tier(sensorType);
+        return tier.find(ReadingRing.toMicros(range.getFrom()), ReadingRing.toMicros(range.getLast()),
+                tier.columns::toSensor);
+    }
+
+    public <R> Optional<List<R>> find(SensorType sensorType, DateRange range, Function<ReadingRing.Row, R> mapper) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return tier(sensorType).find(ReadingRing.toMicros(range.getFrom()), ReadingRing.toMicros(range.getLast()),
+                mapper);
+    }
+
+    // Same version the DB computes from the index on (time, id, modified_at)
+    public Optional<DataVersionDTO> findVersion(SensorType sensorType, DateRange range) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return tier(sensorType).findVersion(ReadingRing.toMicros(range.getFrom()),
+                ReadingRing.toMicros(range.getLast()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Tier<T> tier(SensorType sensorType) {
+        return (Tier<T>) tiers.get(sensorType);
+    }
+
+    private class Tier<T> {
+
+        private final ReadingColumns<T> columns;
+        private final int metricCount;
+        private final ReadingRing ring;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Counter hits;
+        private final Counter misses;
+        private boolean loaded;
+        // Time of the oldest loaded reading, older readings may be missing when the ring was full
+        private long loadedTime = ReadingRing.NO_TIME;
+
+        private Tier(SensorType sensorType, ReadingColumns<T> columns, MeterRegistry meterRegistry) {
+            this.columns = columns;
+            this.metricCount = sensorType.getMetrics().size();
+            this.ring = new ReadingRing(capacity, metricCount);
+            String type = sensorType.name().toLowerCase();
+            this.hits = meterRegistry.counter("greenhouse.recent.queries", "type", type, "result", "hit");
+            this.misses = meterRegistry.counter("greenhouse.recent.queries", "type", type, "result", "miss");
+            Gauge.builder("greenhouse.recent.readings", ring, ReadingRing::size)
+                    .description("Readings kept in memory")
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+
+        // Readings added while the query ran are already in the ring and are skipped
+        private void load(List<T> newestFirst) {
+            lock.writeLock().lock();
+            try {
+                newestFirst.forEach(this::insert);
+                if (newestFirst.size() >= capacity) {
+                    loadedTime = ReadingRing.toMicros(columns.getTime(newestFirst.get(newestFirst.size() - 1)));
+                }
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void addAll(List<T> sensors) {
+            lock.writeLock().lock();
+            try {
+                sensors.forEach(this::insert);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void insert(T sensor) {
+            Long id = columns.getId(sensor);
+            long time = ReadingRing.toMicros(columns.getTime(sensor));
+            if (id == null || time == ReadingRing.NO_TIME) {
+                return;
+            }
+            int position = ring.insert(time, id, ReadingRing.toMicros(columns.getModifiedAt(sensor)));
+            if (position >= 0) {
+                setMetrics(position, sensor);
+            }
+        }
+
+        private void update(T sensor) {
+            lock.writeLock().lock();
+            try {
+                int position = ring.find(ReadingRing.toMicros(columns.getTime(sensor)), columns.getId(sensor));
+                if (position >= 0) {
+                    ring.setModifiedAt(position, ReadingRing.toMicros(columns.getModifiedAt(sensor)));
+                    setMetrics(position, sensor);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void setMetrics(int position, T sensor) {
+            for (int metric = 0; metric < metricCount; metric++) {
+                ring.setMetric(position, metric, columns.getMetric(sensor, metric));
+            }
+        }
+
+        // Deleted readings are gone from the DB as well, so the ring still has all readings after the oldest one
+        private void remove(long from, long last) {
+            lock.writeLock().lock();
+            try {
+                ring.remove(ring.lowerBound(from), ring.upperBound(last));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private boolean covers(long from) {
+            return loaded && from > Math.max(loadedTime, ring.getEvictedTime());
+        }
+
+        private <R> Optional<List<R>> find(long from, long last, Function<ReadingRing.Row, R> mapper) {
+            lock.readLock().lock();
+            try {
+                if (!covers(from)) {
+                    misses.increment();
+                    return Optional.empty();
+                }
+                List<R> result = new ArrayList<>(Math.max(ring.upperBound(last) - ring.lowerBound(from), 0));
+                ring.map(from, last, mapper, result);
+                hits.increment();
+                return Optional.of(result);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private Optional<DataVersionDTO> findVersion(long from, long last) {
+            lock.readLock().lock();
+            try {
+                if (!covers(from)) {
+                    return Optional.empty();
+                }
+                int start = ring.lowerBound(from);
+                int end = ring.upperBound(last);
+                if (start >= end) {
+                    return Optional.of(new DataVersionDTO(0L, null, null));
+                }
+                long maxId = Long.MIN_VALUE;
+                long lastModified = ReadingRing.NO_TIME;
+                for (int position = start; position < end; position++) {
+                    maxId = Math.max(maxId, ring.getId(position));
+                    lastModified = Math.max(lastModified, ring.getModifiedAt(position));
+                }
+                return Optional.of(new DataVersionDTO((long) (end - start), maxId, ReadingRing.toTime(lastModified)));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RecentReadingsProperties.class)
+public class RecentReadingsConfig {
+}
@@ -0,0 +1,17 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "greenhouse.recent-readings")
+@Getter
+@Setter
+public class RecentReadingsProperties {
+
+    // When false, every query goes to the query cache or the DB. Off by default, as the rings only see writes of
+    // this instance: with other nodes or the reactive API writing to the same DB they serve stale readings and versions
+    private boolean enabled;
+    // Newest readings kept in memory per sensor type
+    private int capacity = 100_000;
+}
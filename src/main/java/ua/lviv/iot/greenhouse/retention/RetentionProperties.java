@@ -0,0 +1,65 @@
+package ua.lviv.iot.greenhouse.retention;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ua.lviv.iot.greenhouse.models.RollupResolution;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "greenhouse.retention")
+@Getter
+@Setter
+public class RetentionProperties {
+
+    // When false, nothing is purged and tables grow forever. Purging is opt-in, as readings of purged days are
+    // only available as rollups, or from the archive when it is enabled
+    private boolean enabled;
+    // Delay between runs. It is also read by @Scheduled, so it must be written in ISO-8601 format, e.g. PT1H
+    private Duration interval = Duration.ofHours(1);
+    // Max number of rows deleted by one transaction
+    private int chunkSize = 10_000;
+    // Used for every sensor type, unless overridden in types. Raw readings are kept forever unless configured
+    private Policy defaults = new Policy(null, Duration.ofDays(90), null, null);
+    // Overrides of single values of the default policy, e.g. greenhouse.retention.types.general.raw=30d
+    private Map<SensorType, Policy> types = new EnumMap<>(SensorType.class);
+
+    public Duration getRaw(SensorType sensorType) {
+        Policy policy = types.get(sensorType);
+        return policy != null && policy.getRaw() != null ? policy.getRaw() : defaults.getRaw();
+    }
+
+    public Duration getRollups(SensorType sensorType, RollupResolution resolution) {
+        Policy policy = types.get(sensorType);
+        Duration rollups = policy == null ? null : policy.getRollups(resolution);
+        return rollups != null ? rollups : defaults.getRollups(resolution);
+    }
+
+    // How long data is kept. Empty values mean forever
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Policy {
+        private Duration raw;
+        private Duration minuteRollups;
+        private Duration hourRollups;
+        private Duration dayRollups;
+
+        public Duration getRollups(RollupResolution resolution) {
+            switch (resolution) {
+                case MINUTE:
+                    return minuteRollups;
+                case HOUR:
+                    return hourRollups;
+                default:
+                    return dayRollups;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ua.lviv.iot.greenhouse.retention;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.services.RetentionService;
+
+// Scheduled tasks share one thread, so purges never run at the same time as rollups
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "greenhouse.retention.enabled", havingValue = "true", matchIfMissing = false)
+public class RetentionScheduler {
+
+    private final RetentionService retentionService;
+
+    @Scheduled(fixedDelayString = "${greenhouse.retention.interval:PT1H}")
+    public void purge() {
+        retentionService.purge();
+    }
+}
@@ -0,0 +1,11 @@
+package ua.lviv.iot.greenhouse.rollup;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(RollupProperties.class)
+public class RollupConfig {
+}
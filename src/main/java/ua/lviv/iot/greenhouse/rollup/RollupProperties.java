@@ -0,0 +1,20 @@
+package ua.lviv.iot.greenhouse.rollup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "greenhouse.rollup")
+@Getter
+@Setter
+public class RollupProperties {
+
+    // When false, rollups are not updated and aggregates are computed from raw readings only
+    private boolean enabled = true;
+    // Delay between runs. It is also read by @Scheduled, so it must be written in ISO-8601 format, e.g. PT1M
+    private Duration interval = Duration.ofMinutes(1);
+    // Max number of IDs rolled up by one transaction
+    private int chunkSize = 50_000;
+}
@@ -0,0 +1,20 @@
+package ua.lviv.iot.greenhouse.rollup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.services.RollupService;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "greenhouse.rollup.enabled", havingValue = "true", matchIfMissing = true)
+public class RollupScheduler {
+
+    private final RollupService rollupService;
+
+    @Scheduled(fixedDelayString = "${greenhouse.rollup.interval:PT1M}")
+    public void rollUp() {
+        rollupService.rollUp();
+    }
+}
@@ -1,24 +1,40 @@
 package ua.lviv.iot.greenhouse.services;
 
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorTemperatureDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.utils.DateRange;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface AirSensorService {
 
     AirSensor createSensorData(AirSensorDTO airSensorDTO);
 
-    List<AirSensor> getAllSensorData(String date);
+    BatchResultDTO<AirSensor> createSensorDataBatch(List<AirSensorDTO> airSensorDTOs);
 
-    List<AirSensorHumidityDTO> getHumidityData(String date);
+    List<AirSensor> getAllSensorData(DateRange range);
 
-    List<AirSensorTemperatureDTO> getTemperatureData(String date);
+    AirSensor getLatestSensorData();
+
+    KeysetPageDTO<AirSensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit);
+
+    void exportAllSensorData(Consumer<AirSensor> consumer);
+
+    List<AirSensorAggregateDTO> getAggregatedData(DateRange range, String bucket);
+
+    List<AirSensorHumidityDTO> getHumidityData(DateRange range);
+
+    List<AirSensorTemperatureDTO> getTemperatureData(DateRange range);
 
     AirSensor updateDataById(AirSensorToUpdateDTO airSensorToUpdateDTO);
 
-    void deleteAllSensorData(String date);
+    long deleteAllSensorData(DateRange range);
 }
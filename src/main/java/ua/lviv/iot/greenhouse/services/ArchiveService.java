@@ -0,0 +1,14 @@
+package ua.lviv.iot.greenhouse.services;
+
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.time.LocalDateTime;
+
+public interface ArchiveService {
+
+    // Exports closed days that are not archived yet or changed since they were. Returns number of exported days
+    long export();
+
+    // Latest time raw readings can be purged before without losing readings that are not archived yet
+    LocalDateTime limitPurge(SensorType sensorType, LocalDateTime before);
+}
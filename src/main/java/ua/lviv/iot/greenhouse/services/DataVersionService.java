@@ -0,0 +1,14 @@
+package ua.lviv.iot.greenhouse.services;
+
+import ua.lviv.iot.greenhouse.dto.version.AggregateVersionDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+public interface DataVersionService {
+
+    // Version of readings of the given range, or of all readings when range is null
+    DataVersionDTO getVersion(SensorType sensorType, DateRange range);
+
+    AggregateVersionDTO getAggregateVersion(SensorType sensorType, DateRange range);
+}
@@ -1,14 +1,30 @@
 package ua.lviv.iot.greenhouse.services;
 
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.utils.DateRange;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface GeneralSensorService {
     GeneralSensor createSensorData(GeneralSensorDTO generalSensorDTO);
 
-    List<GeneralSensor> getAllSensorData(String date);
+    BatchResultDTO<GeneralSensor> createSensorDataBatch(List<GeneralSensorDTO> generalSensorDTOs);
 
-    void deleteSensorData(String date);
+    List<GeneralSensor> getAllSensorData(DateRange range);
+
+    GeneralSensor getLatestSensorData();
+
+    KeysetPageDTO<GeneralSensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit);
+
+    void exportAllSensorData(Consumer<GeneralSensor> consumer);
+
+    List<GeneralSensorAggregateDTO> getAggregatedData(DateRange range, String bucket);
+
+    long deleteSensorData(DateRange range);
 }
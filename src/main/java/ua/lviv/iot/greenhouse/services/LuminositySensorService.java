@@ -1,18 +1,34 @@
 package ua.lviv.iot.greenhouse.services;
 
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.utils.DateRange;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LuminositySensorService {
 
     LuminositySensor createSensorData(LuminositySensorDTO luminositySensorDTO);
 
-    List<LuminositySensor> getAllSensorData(String date);
+    BatchResultDTO<LuminositySensor> createSensorDataBatch(List<LuminositySensorDTO> luminositySensorDTOs);
+
+    List<LuminositySensor> getAllSensorData(DateRange range);
+
+    LuminositySensor getLatestSensorData();
+
+    KeysetPageDTO<LuminositySensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit);
+
+    void exportAllSensorData(Consumer<LuminositySensor> consumer);
+
+    List<LuminositySensorAggregateDTO> getAggregatedData(DateRange range, String bucket);
 
     LuminositySensor updateDataById(LuminositySensorToUpdateDTO luminositySensorToUpdateDTO);
 
-    void deleteAllSensorData(String date);
+    long deleteAllSensorData(DateRange range);
 }
@@ -0,0 +1,7 @@
+package ua.lviv.iot.greenhouse.services;
+
+public interface RetentionService {
+
+    // Deletes raw readings and rollups older than their retention periods. Returns number of deleted rows
+    long purge();
+}
@@ -0,0 +1,31 @@
+package ua.lviv.iot.greenhouse.services;
+
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RollupService {
+
+    // Returns rows in the layout of native aggregate queries for readings in [after, before)
+    List<Object[]> aggregate(SensorType sensorType, LocalDateTime after, LocalDateTime before, long bucketSeconds);
+
+    // Changes whenever rollups, which aggregates of readings of the range up to the given ID are read from,
+    // are rolled up further or recomputed
+    String findVersion(SensorType sensorType, DateRange range, Long maxId);
+
+    void markSaved(SensorType sensorType, Long id, LocalDateTime time);
+
+    void markChanged(SensorType sensorType, LocalDateTime time);
+
+    void markChanged(SensorType sensorType, DateRange range);
+
+    void markAllChanged(SensorType sensorType);
+
+    void rollUp();
+
+    // Records that raw readings before the given time are going to be purged.
+    // Returns the watermark, up to which they are already rolled up and can be deleted
+    long markPurged(SensorType sensorType, LocalDateTime before);
+}
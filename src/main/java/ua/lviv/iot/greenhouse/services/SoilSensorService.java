@@ -1,24 +1,40 @@
 package ua.lviv.iot.greenhouse.services;
 
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.utils.DateRange;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface SoilSensorService {
 
     SoilSensor createSensorData(SoilSensorDTO airSensorDTO);
 
-    List<SoilSensor> getAllSensorData(String date);
+    BatchResultDTO<SoilSensor> createSensorDataBatch(List<SoilSensorDTO> soilSensorDTOs);
 
-    List<SoilSensorHumidityDTO> getHumidityData(String date);
+    List<SoilSensor> getAllSensorData(DateRange range);
 
-    List<SoilSensorTemperatureDTO> getTemperatureData(String date);
+    SoilSensor getLatestSensorData();
+
+    KeysetPageDTO<SoilSensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit);
+
+    void exportAllSensorData(Consumer<SoilSensor> consumer);
+
+    List<SoilSensorAggregateDTO> getAggregatedData(DateRange range, String bucket);
+
+    List<SoilSensorHumidityDTO> getHumidityData(DateRange range);
+
+    List<SoilSensorTemperatureDTO> getTemperatureData(DateRange range);
 
     SoilSensor updateDataById(SoilSensorToUpdateDTO soilSensorToUpdateDTO);
 
-    void deleteAllSensorData(String date);
+    long deleteAllSensorData(DateRange range);
 }
@@ -1,69 +1,218 @@
 package ua.lviv.iot.greenhouse.services.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache.QueryType;
 import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorTemperatureDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
-import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.ingestion.WriteBehindQueue;
 import ua.lviv.iot.greenhouse.mappers.AirSensorMapper;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
 import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
 import ua.lviv.iot.greenhouse.services.AirSensorService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ChunkedDeletes;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.LatestReading;
+import ua.lviv.iot.greenhouse.utils.TimeBuckets;
 
 import javax.transaction.Transactional;
-import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class AirSensorServiceImpl implements AirSensorService {
 
+    private static final int MAX_PAGE_LIMIT = 10_000;
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+
     private final AirSensorDAO airSensorDAO;
+    private final WriteBehindQueue<AirSensor> airSensorIngestionQueue;
+    private final RollupService rollupService;
+    private final SensorQueryCache sensorQueryCache;
+    private final SensorMetrics sensorMetrics;
+    private final SensorStreamHub sensorStreamHub;
+    private final RecentReadings recentReadings;
+    private final SensorArchive sensorArchive;
+    private final LatestReading<AirSensor> latestSensorData =
+            new LatestReading<>(sensor -> sensor.getData().getLocalDateTime(), AirSensor::getId);
 
     @Override
     public AirSensor createSensorData(AirSensorDTO airSensorDTO) {
-        return airSensorDAO.save(AirSensorMapper.mapAirSensorDTOtoAirSensor(airSensorDTO));
+        AirSensor sensor = AirSensorMapper.mapAirSensorDTOtoAirSensor(airSensorDTO);
+        sensorMetrics.ingested(SensorType.AIR, 1);
+        if (airSensorIngestionQueue.isEnabled()) {
+            airSensorIngestionQueue.submit(sensor);
+            latestSensorData.offer(sensor);
+            sensorStreamHub.publish(SensorType.AIR, sensor, AirSensor::getId,
+                    reading -> reading.getData().getLocalDateTime());
+            return sensor;
+        }
+        AirSensor savedSensor = airSensorDAO.save(sensor);
+        rollupService.markSaved(SensorType.AIR, savedSensor.getId(), savedSensor.getData().getLocalDateTime());
+        sensorQueryCache.invalidate(SensorType.AIR, savedSensor.getData().getLocalDateTime());
+        latestSensorData.offer(savedSensor);
+        recentReadings.add(SensorType.AIR, savedSensor);
+        sensorStreamHub.publish(SensorType.AIR, savedSensor, AirSensor::getId,
+                reading -> reading.getData().getLocalDateTime());
+        return savedSensor;
     }
 
     @Override
-    public List<AirSensor> getAllSensorData(String date) {
-        if (date == null) {
-            return airSensorDAO.findAll();
-        } else {
-            try {
-                LocalDate localDate = LocalDate.parse(date);
-
-                return airSensorDAO.findSensorByData_LocalDateTimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+    public BatchResultDTO<AirSensor> createSensorDataBatch(List<AirSensorDTO> airSensorDTOs) {
+        List<AirSensor> sensors = new ArrayList<>(airSensorDTOs.size());
+        List<RejectedRowDTO> rejected = new ArrayList<>();
+
+        for (int i = 0; i < airSensorDTOs.size(); i++) {
+            String reason = validate(airSensorDTOs.get(i));
+            if (reason != null) {
+                rejected.add(new RejectedRowDTO(i, reason));
+            } else {
+                sensors.add(AirSensorMapper.mapAirSensorDTOtoAirSensor(airSensorDTOs.get(i)));
             }
         }
+        sensorMetrics.ingested(SensorType.AIR, sensors.size());
+        sensorMetrics.rejected(SensorType.AIR, rejected.size());
+
+        if (airSensorIngestionQueue.isEnabled()) {
+            airSensorIngestionQueue.submitAll(sensors);
+            sensors.forEach(latestSensorData::offer);
+            sensorStreamHub.publishAll(SensorType.AIR, sensors, AirSensor::getId,
+                    reading -> reading.getData().getLocalDateTime());
+            return new BatchResultDTO<>(sensors, rejected);
+        }
+        List<AirSensor> savedSensors = airSensorDAO.saveAll(sensors);
+        savedSensors.forEach(savedSensor -> {
+            rollupService.markSaved(SensorType.AIR, savedSensor.getId(), savedSensor.getData().getLocalDateTime());
+            sensorQueryCache.invalidate(SensorType.AIR, savedSensor.getData().getLocalDateTime());
+            latestSensorData.offer(savedSensor);
+        });
+        recentReadings.addAll(SensorType.AIR, savedSensors);
+        sensorStreamHub.publishAll(SensorType.AIR, savedSensors, AirSensor::getId,
+                reading -> reading.getData().getLocalDateTime());
+        return new BatchResultDTO<>(savedSensors, rejected);
     }
 
     @Override
-    public List<AirSensorHumidityDTO> getHumidityData(String date) {
-        return getAllSensorData(date).stream() // TODO: Read from the DB only needed fields
-                .map(AirSensorMapper::mapAirSensorToAirSensorHumidityDTO)
-                .collect(Collectors.toList());
+    public List<AirSensor> getAllSensorData(DateRange range) {
+        if (range == null) {
+            return airSensorDAO.findAll();
+        }
+        range.checkMaxLength();
+        return sensorArchive.<AirSensor>find(SensorType.AIR, range, liveRange ->
+                recentReadings.<AirSensor>find(SensorType.AIR, liveRange)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.AIR, QueryType.ALL, liveRange,
+                                airSensorDAO::findSensorByData_LocalDateTimeBetween)));
+    }
+
+    // Doesn't start a transaction, so no DB connection is taken
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public AirSensor getLatestSensorData() {
+        return latestSensorData.get()
+                .orElseThrow(() -> new NoDataFoundException("There is no data for the air sensor yet"));
+    }
+
+    // Loads the newest reading once the application is started, so it is available before new readings come
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLatestSensorData() {
+        airSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().ifPresent(latestSensorData::offer);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRecentSensorData() {
+        recentReadings.load(SensorType.AIR, limit ->
+                airSensorDAO.findByOrderByData_LocalDateTimeDescIdDesc(PageRequest.of(0, limit)));
+    }
+
+    @Override
+    public KeysetPageDTO<AirSensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit) {
+        Pageable pageable = PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT));
+        long fromId = afterId == null ? 0 : afterId;
+        List<AirSensor> sensors = afterTimestamp == null
+                ? airSensorDAO.findPageAfterId(fromId, pageable)
+                : airSensorDAO.findPageAfterTimestamp(afterTimestamp, fromId, pageable);
+
+        if (sensors.size() < pageable.getPageSize()) {
+            return new KeysetPageDTO<>(sensors, null, null);
+        }
+        AirSensor last = sensors.get(sensors.size() - 1);
+        // Pages ordered by ID continue from the ID alone, a timestamp would switch the next page to time order
+        return new KeysetPageDTO<>(sensors, last.getId(),
+                afterTimestamp == null ? null : last.getData().getLocalDateTime());
+    }
+
+    @Override
+    public void exportAllSensorData(Consumer<AirSensor> consumer) {
+        try (Stream<AirSensor> sensors = airSensorDAO.streamAll()) {
+            sensors.forEach(consumer);
+        }
     }
 
     @Override
-    public List<AirSensorTemperatureDTO> getTemperatureData(String date) {
-        return getAllSensorData(date).stream() // TODO: Read from the DB only needed fields
-                .map(AirSensorMapper::mapAirSensorToAirSensorTemperatureDTO)
+    public List<AirSensorAggregateDTO> getAggregatedData(DateRange range, String bucket) {
+        long bucketSeconds = TimeBuckets.parseBucketSeconds(bucket);
+        TimeBuckets.checkBucketCount(range.getFrom(), range.getTo(), bucketSeconds);
+
+        return rollupService.aggregate(SensorType.AIR, range.getFrom(), range.getTo(), bucketSeconds).stream()
+                .map(row -> AirSensorMapper.mapRowToAirSensorAggregateDTO(row, bucketSeconds))
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<AirSensorHumidityDTO> getHumidityData(DateRange range) {
+        if (range == null) {
+            return airSensorDAO.findAllHumidity();
+        }
+        range.checkMaxLength();
+        Function<ReadingRing.Row, AirSensorHumidityDTO> mapper =
+                row -> new AirSensorHumidityDTO(row.getTime(), row.getMetric(0));
+        return sensorArchive.find(SensorType.AIR, range, mapper, liveRange ->
+                recentReadings.find(SensorType.AIR, liveRange, mapper)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.AIR, QueryType.HUMIDITY, liveRange,
+                                airSensorDAO::findHumidityByData_LocalDateTimeBetween)));
+    }
+
+    @Override
+    public List<AirSensorTemperatureDTO> getTemperatureData(DateRange range) {
+        if (range == null) {
+            return airSensorDAO.findAllTemperature();
+        }
+        range.checkMaxLength();
+        Function<ReadingRing.Row, AirSensorTemperatureDTO> mapper =
+                row -> new AirSensorTemperatureDTO(row.getTime(), row.getMetric(1));
+        return sensorArchive.find(SensorType.AIR, range, mapper, liveRange ->
+                recentReadings.find(SensorType.AIR, liveRange, mapper)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.AIR, QueryType.TEMPERATURE, liveRange,
+                                airSensorDAO::findTemperatureByData_LocalDateTimeBetween)));
+    }
+
     @Override
     public AirSensor updateDataById(AirSensorToUpdateDTO airSensorToUpdateDTO) {
         AirSensor sensor = airSensorDAO.findSensorById(airSensorToUpdateDTO.getId())
@@ -73,25 +222,57 @@ public class AirSensorServiceImpl implements AirSensorService {
         sensor.getData().setAirHumidity(airSensorToUpdateDTO.getAirHumidity());
         sensor.getData().setAirTemperature(airSensorToUpdateDTO.getAirTemperature());
 
+        rollupService.markChanged(SensorType.AIR, sensor.getData().getLocalDateTime());
+        sensorQueryCache.invalidate(SensorType.AIR, sensor.getData().getLocalDateTime());
+        recentReadings.update(SensorType.AIR, sensor);
+        latestSensorData.offer(sensor);
         return airSensorDAO.save(sensor);
     }
 
+    // Every chunk is deleted by its own transaction, so long purges don't hold locks on all the rows at once
     @Override
-    public void deleteAllSensorData(String date) {
-        if (date == null) {
-            airSensorDAO.deleteAll();
-        } else {
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public long deleteAllSensorData(DateRange range) {
+        if (range == null) {
+            IdRange idRange = airSensorDAO.findIdRange();
+            long deleted;
             try {
-                LocalDate localDate = LocalDate.parse(date);
-
-                airSensorDAO.deleteSensorByData_LocalDateTimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+                deleted = ChunkedDeletes.deleteInChunks(idRange, DELETE_CHUNK_SIZE, airSensorDAO::deleteChunk);
+            } finally {
+                // Chunks before a failed one stay deleted, so derived state is updated either way
+                rollupService.markAllChanged(SensorType.AIR);
+                sensorQueryCache.invalidateAll(SensorType.AIR);
+                recentReadings.removeAll(SensorType.AIR);
+                latestSensorData.reset(airSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().orElse(null));
             }
+            sensorMetrics.deleted(SensorType.AIR, deleted);
+            return deleted;
+        }
+        IdRange idRange = airSensorDAO.findIdRangeByData_LocalDateTimeBetween(range.getFrom(), range.getLast());
+        long deleted;
+        try {
+            deleted = ChunkedDeletes.deleteInChunks(
+                    idRange,
+                    DELETE_CHUNK_SIZE,
+                    (fromId, toId) -> airSensorDAO.deleteChunkByData_LocalDateTimeBetween(fromId, toId, range.getFrom(), range.getLast())
+            );
+        } finally {
+            rollupService.markChanged(SensorType.AIR, range);
+            sensorQueryCache.invalidate(SensorType.AIR, range);
+            recentReadings.remove(SensorType.AIR, range);
+            latestSensorData.reset(airSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().orElse(null));
+        }
+        sensorMetrics.deleted(SensorType.AIR, deleted);
+        return deleted;
+    }
+
+    private static String validate(AirSensorDTO airSensorDTO) {
+        if (airSensorDTO == null || airSensorDTO.getLocalDateTime() == null) {
+            return "Row must contain local date time";
+        }
+        if (!Double.isFinite(airSensorDTO.getAirHumidity()) || !Double.isFinite(airSensorDTO.getAirTemperature())) {
+            return "Air humidity and air temperature must be finite numbers";
         }
+        return null;
     }
 }
@@ -0,0 +1,208 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.GeneralSensorDao;
+import ua.lviv.iot.greenhouse.dao.LuminositySensorDAO;
+import ua.lviv.iot.greenhouse.dao.RollupWatermarkDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.dao.SoilSensorDAO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.RollupWatermark;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+import ua.lviv.iot.greenhouse.services.ArchiveService;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+// Exports closed days of raw readings into the archive before retention purges them. A day is exported again
+// whenever its version in the DB differs from the archived one, until its raw readings are purged
+@Slf4j
+@Service
+public class ArchiveServiceImpl implements ArchiveService {
+
+    private final SensorTimeSeriesDAOs sensorDAOs;
+    private final RollupWatermarkDAO rollupWatermarkDAO;
+    private final SensorArchive sensorArchive;
+    private final MeterRegistry meterRegistry;
+    private final Map<SensorType, DayQuery<?>> dayQueries = new EnumMap<>(SensorType.class);
+
+    public ArchiveServiceImpl(AirSensorDAO airSensorDAO,
+                              SoilSensorDAO soilSensorDAO,
+                              LuminositySensorDAO luminositySensorDAO,
+                              GeneralSensorDao generalSensorDao,
+                              SensorTimeSeriesDAOs sensorDAOs,
+                              RollupWatermarkDAO rollupWatermarkDAO,
+                              SensorArchive sensorArchive,
+                              MeterRegistry meterRegistry) {
+        this.sensorDAOs = sensorDAOs;
+        this.rollupWatermarkDAO = rollupWatermarkDAO;
+        this.sensorArchive = sensorArchive;
+        this.meterRegistry = meterRegistry;
+        dayQueries.put(SensorType.AIR,
+                new DayQuery<>(ReadingColumns.AIR, airSensorDAO::findSensorByData_LocalDateTimeBetween));
+        dayQueries.put(SensorType.SOIL,
+                new DayQuery<>(ReadingColumns.SOIL, soilSensorDAO::findSensorByData_LocalDateTimeBetween));
+        dayQueries.put(SensorType.LUMINOSITY,
+                new DayQuery<>(ReadingColumns.LUMINOSITY, luminositySensorDAO::findSensorByData_LocalDateTimeBetween));
+        dayQueries.put(SensorType.GENERAL,
+                new DayQuery<>(ReadingColumns.GENERAL, generalSensorDao::findSensorByData_TimeBetween));
+    }
+
+    // Archived days of raw readings purged before the application started are served from the archive right away
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPurgedBefore() {
+        if (sensorArchive.isEnabled()) {
+            rollupWatermarkDAO.findAll().forEach(watermark ->
+                    sensorArchive.markPurged(watermark.getSensorType(), watermark.getRawPurgedBefore()));
+        }
+    }
+
+    @Override
+    public long export() {
+        if (!sensorArchive.isEnabled()) {
+            return 0;
+        }
+        long exported = 0;
+        for (SensorType sensorType : SensorType.values()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            exported += export(sensorType);
+            sample.stop(meterRegistry.timer("greenhouse.archive.duration", "type", tag(sensorType)));
+        }
+        return exported;
+    }
+
+    private long export(SensorType sensorType) {
+        // Other instances may have purged readings since the last run
+        LocalDateTime purgedBefore = findPurgedBefore(sensorType);
+        sensorArchive.markPurged(sensorType, purgedBefore);
+
+        Optional<LocalDate> firstDay = findFirstDay(sensorType, purgedBefore);
+        if (firstDay.isEmpty()) {
+            return 0;
+        }
+        LocalDate today = LocalDate.now();
+        long exported = 0;
+        for (LocalDate day = firstDay.get(); day.isBefore(today); day = day.plusDays(1)) {
+            DataVersionDTO version = findDataVersion(sensorType, day);
+            if (isArchived(sensorType, day, version)) {
+                continue;
+            }
+            if (version.getRowCount() == 0) {
+                sensorArchive.delete(sensorType, day);
+            } else {
+                exportDay(sensorType, dayQueries.get(sensorType), day);
+                exported++;
+            }
+        }
+        meterRegistry.counter("greenhouse.archive.exported.days", "type", tag(sensorType)).increment(exported);
+        return exported;
+    }
+
+    private <T> void exportDay(SensorType sensorType, DayQuery<T> dayQuery, LocalDate day) {
+        DateRange range = DateRange.ofDay(day);
+        ReadingColumns<T> columns = dayQuery.columns;
+        List<T> sensors = new ArrayList<>(dayQuery.query.apply(range.getFrom(), range.getLast()));
+        sensors.sort(Comparator.comparing(columns::getTime).thenComparing(columns::getId));
+
+        int metricCount = sensorType.getMetrics().size();
+        ReadingRing readings = new ReadingRing(sensors.size(), metricCount);
+        long maxId = Long.MIN_VALUE;
+        long lastModified = ReadingRing.NO_TIME;
+        for (T sensor : sensors) {
+            long modifiedAt = ReadingRing.toMicros(columns.getModifiedAt(sensor));
+            int position = readings.insert(ReadingRing.toMicros(columns.getTime(sensor)), columns.getId(sensor),
+                    modifiedAt);
+            for (int metric = 0; metric < metricCount; metric++) {
+                readings.setMetric(position, metric, columns.getMetric(sensor, metric));
+            }
+            maxId = Math.max(maxId, columns.getId(sensor));
+            lastModified = Math.max(lastModified, modifiedAt);
+        }
+        // Version of the exported readings rather than a separate query, so a write in between makes the day
+        // differ from the DB and it is exported again by the next run
+        DataVersionDTO version = new DataVersionDTO((long) sensors.size(), maxId, ReadingRing.toTime(lastModified));
+        sensorArchive.write(sensorType, day, version, readings);
+        log.info("Archived {} readings of {} sensor of {}", sensors.size(), tag(sensorType), day);
+    }
+
+    @Override
+    public LocalDateTime limitPurge(SensorType sensorType, LocalDateTime before) {
+        if (!sensorArchive.isEnabled()) {
+            return before;
+        }
+        Optional<LocalDate> firstDay = findFirstDay(sensorType, findPurgedBefore(sensorType));
+        if (firstDay.isEmpty()) {
+            return before;
+        }
+        for (LocalDate day = firstDay.get(); day.atStartOfDay().isBefore(before); day = day.plusDays(1)) {
+            if (!isArchived(sensorType, day, findDataVersion(sensorType, day))) {
+                return day.atStartOfDay();
+            }
+        }
+        return before;
+    }
+
+    private boolean isArchived(SensorType sensorType, LocalDate day, DataVersionDTO version) {
+        Optional<DataVersionDTO> archived = sensorArchive.findVersion(sensorType, day);
+        return version.getRowCount() == 0 ? archived.isEmpty() : archived.equals(Optional.of(version));
+    }
+
+    private DataVersionDTO findDataVersion(SensorType sensorType, LocalDate day) {
+        DateRange range = DateRange.ofDay(day);
+        return sensorDAOs.get(sensorType).findDataVersionBetween(range.getFrom(), range.getLast());
+    }
+
+    private LocalDateTime findPurgedBefore(SensorType sensorType) {
+        return rollupWatermarkDAO.findById(sensorType).map(RollupWatermark::getRawPurgedBefore).orElse(null);
+    }
+
+    // Days that are partly purged can't be exported again, as the DB doesn't have all their readings any more
+    private Optional<LocalDate> findFirstDay(SensorType sensorType, LocalDateTime purgedBefore) {
+        LocalDateTime oldest = sensorDAOs.get(sensorType).findOldestTime();
+        if (oldest == null) {
+            return Optional.empty();
+        }
+        LocalDate firstDay = oldest.toLocalDate();
+        if (purgedBefore != null) {
+            LocalDate firstUnpurgedDay = purgedBefore.toLocalTime().equals(LocalTime.MIDNIGHT)
+                    ? purgedBefore.toLocalDate() : purgedBefore.toLocalDate().plusDays(1);
+            if (firstUnpurgedDay.isAfter(firstDay)) {
+                firstDay = firstUnpurgedDay;
+            }
+        }
+        return Optional.of(firstDay);
+    }
+
+    private static String tag(SensorType sensorType) {
+        return sensorType.name().toLowerCase();
+    }
+
+    private static class DayQuery<T> {
+
+        private final ReadingColumns<T> columns;
+        private final BiFunction<LocalDateTime, LocalDateTime, List<T>> query;
+
+        private DayQuery(ReadingColumns<T> columns, BiFunction<LocalDateTime, LocalDateTime, List<T>> query) {
+            this.columns = columns;
+            this.query = query;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.dto.version.AggregateVersionDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.services.DataVersionService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+@Service
+@RequiredArgsConstructor
+public class DataVersionServiceImpl implements DataVersionService {
+
+    private final SensorTimeSeriesDAOs sensorTimeSeriesDAOs;
+    private final RecentReadings recentReadings;
+    private final RollupService rollupService;
+
+    @Override
+    public DataVersionDTO getVersion(SensorType sensorType, DateRange range) {
+        SensorTimeSeriesDAO sensorDAO = sensorTimeSeriesDAOs.get(sensorType);
+        if (range == null) {
+            return sensorDAO.findDataVersion();
+        }
+        return recentReadings.findVersion(sensorType, range)
+                .orElseGet(() -> sensorDAO.findDataVersionBetween(range.getFrom(), range.getLast()));
+    }
+
+    @Override
+    public AggregateVersionDTO getAggregateVersion(SensorType sensorType, DateRange range) {
+        DataVersionDTO readings = getVersion(sensorType, range);
+        return new AggregateVersionDTO(readings, rollupService.findVersion(sensorType, range, readings.getMaxId()));
+    }
+}
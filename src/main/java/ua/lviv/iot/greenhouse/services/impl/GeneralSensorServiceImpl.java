@@ -1,64 +1,235 @@
 package ua.lviv.iot.greenhouse.services.impl;
 
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache.QueryType;
 import ua.lviv.iot.greenhouse.dao.GeneralSensorDao;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.general_sensor.GeneralSensorDTO;
-import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
+import ua.lviv.iot.greenhouse.ingestion.WriteBehindQueue;
 import ua.lviv.iot.greenhouse.mappers.GeneralSensorMapper;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
 import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
 import ua.lviv.iot.greenhouse.services.GeneralSensorService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ChunkedDeletes;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.LatestReading;
+import ua.lviv.iot.greenhouse.utils.TimeBuckets;
 
-import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
 public class GeneralSensorServiceImpl implements GeneralSensorService {
 
+    private static final int MAX_PAGE_LIMIT = 10_000;
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+
     private final GeneralSensorDao generalSensorDao;
+    private final WriteBehindQueue<GeneralSensor> generalSensorIngestionQueue;
+    private final RollupService rollupService;
+    private final SensorQueryCache sensorQueryCache;
+    private final SensorMetrics sensorMetrics;
+    private final SensorStreamHub sensorStreamHub;
+    private final RecentReadings recentReadings;
+    private final SensorArchive sensorArchive;
+    private final LatestReading<GeneralSensor> latestSensorData =
+            new LatestReading<>(sensor -> sensor.getData().getTime(), GeneralSensor::getId);
 
     @Override
     public GeneralSensor createSensorData(GeneralSensorDTO generalSensorDTO) {
-        return generalSensorDao.save(GeneralSensorMapper.mapGeneralSensorDTOtoGeneralSensor(generalSensorDTO));
+        GeneralSensor sensor = GeneralSensorMapper.mapGeneralSensorDTOtoGeneralSensor(generalSensorDTO);
+        sensorMetrics.ingested(SensorType.GENERAL, 1);
+        if (generalSensorIngestionQueue.isEnabled()) {
+            generalSensorIngestionQueue.submit(sensor);
+            latestSensorData.offer(sensor);
+            sensorStreamHub.publish(SensorType.GENERAL, sensor, GeneralSensor::getId,
+                    reading -> reading.getData().getTime());
+            return sensor;
+        }
+        GeneralSensor savedSensor = generalSensorDao.save(sensor);
+        rollupService.markSaved(SensorType.GENERAL, savedSensor.getId(), savedSensor.getData().getTime());
+        sensorQueryCache.invalidate(SensorType.GENERAL, savedSensor.getData().getTime());
+        latestSensorData.offer(savedSensor);
+        recentReadings.add(SensorType.GENERAL, savedSensor);
+        sensorStreamHub.publish(SensorType.GENERAL, savedSensor, GeneralSensor::getId,
+                reading -> reading.getData().getTime());
+        return savedSensor;
     }
 
     @Override
-    public List<GeneralSensor> getAllSensorData(String date) {
-        if (date == null) {
-            return generalSensorDao.findAll();
-        } else {
-            try {
-                LocalDate localDate = LocalDate.parse(date);
-                return generalSensorDao.findSensorByData_TimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+    @Transactional
+    public BatchResultDTO<GeneralSensor> createSensorDataBatch(List<GeneralSensorDTO> generalSensorDTOs) {
+        List<GeneralSensor> sensors = new ArrayList<>(generalSensorDTOs.size());
+        List<RejectedRowDTO> rejected = new ArrayList<>();
+
+        for (int i = 0; i < generalSensorDTOs.size(); i++) {
+            String reason = validate(generalSensorDTOs.get(i));
+            if (reason != null) {
+                rejected.add(new RejectedRowDTO(i, reason));
+            } else {
+                sensors.add(GeneralSensorMapper.mapGeneralSensorDTOtoGeneralSensor(generalSensorDTOs.get(i)));
             }
         }
+        sensorMetrics.ingested(SensorType.GENERAL, sensors.size());
+        sensorMetrics.rejected(SensorType.GENERAL, rejected.size());
+
+        if (generalSensorIngestionQueue.isEnabled()) {
+            generalSensorIngestionQueue.submitAll(sensors);
+            sensors.forEach(latestSensorData::offer);
+            sensorStreamHub.publishAll(SensorType.GENERAL, sensors, GeneralSensor::getId,
+                    reading -> reading.getData().getTime());
+            return new BatchResultDTO<>(sensors, rejected);
+        }
+        List<GeneralSensor> savedSensors = generalSensorDao.saveAll(sensors);
+        savedSensors.forEach(savedSensor -> {
+            rollupService.markSaved(SensorType.GENERAL, savedSensor.getId(), savedSensor.getData().getTime());
+            sensorQueryCache.invalidate(SensorType.GENERAL, savedSensor.getData().getTime());
+            latestSensorData.offer(savedSensor);
+        });
+        recentReadings.addAll(SensorType.GENERAL, savedSensors);
+        sensorStreamHub.publishAll(SensorType.GENERAL, savedSensors, GeneralSensor::getId,
+                reading -> reading.getData().getTime());
+        return new BatchResultDTO<>(savedSensors, rejected);
     }
 
     @Override
-    @Transactional
-    public void deleteSensorData(String date) {
-        if (date == null) {
-            generalSensorDao.deleteAll();
-        } else {
+    public List<GeneralSensor> getAllSensorData(DateRange range) {
+        if (range == null) {
+            return generalSensorDao.findAll();
+        }
+        range.checkMaxLength();
+        return sensorArchive.<GeneralSensor>find(SensorType.GENERAL, range, liveRange ->
+                recentReadings.<GeneralSensor>find(SensorType.GENERAL, liveRange)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.GENERAL, QueryType.ALL, liveRange,
+                                generalSensorDao::findSensorByData_TimeBetween)));
+    }
+
+    @Override
+    public GeneralSensor getLatestSensorData() {
+        return latestSensorData.get()
+                .orElseThrow(() -> new NoDataFoundException("There is no data for the general sensor yet"));
+    }
+
+    // Loads the newest reading once the application is started, so it is available before new readings come
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLatestSensorData() {
+        generalSensorDao.findFirstByOrderByData_TimeDescIdDesc().ifPresent(latestSensorData::offer);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRecentSensorData() {
+        recentReadings.load(SensorType.GENERAL, limit ->
+                generalSensorDao.findByOrderByData_TimeDescIdDesc(PageRequest.of(0, limit)));
+    }
+
+    @Override
+    public KeysetPageDTO<GeneralSensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit) {
+        Pageable pageable = PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT));
+        long fromId = afterId == null ? 0 : afterId;
+        List<GeneralSensor> sensors = afterTimestamp == null
+                ? generalSensorDao.findPageAfterId(fromId, pageable)
+                : generalSensorDao.findPageAfterTimestamp(afterTimestamp, fromId, pageable);
+
+        if (sensors.size() < pageable.getPageSize()) {
+            return new KeysetPageDTO<>(sensors, null, null);
+        }
+        GeneralSensor last = sensors.get(sensors.size() - 1);
+        // Pages ordered by ID continue from the ID alone, a timestamp would switch the next page to time order
+        return new KeysetPageDTO<>(sensors, last.getId(),
+                afterTimestamp == null ? null : last.getData().getTime());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportAllSensorData(Consumer<GeneralSensor> consumer) {
+        try (Stream<GeneralSensor> sensors = generalSensorDao.streamAll()) {
+            sensors.forEach(consumer);
+        }
+    }
+
+    @Override
+    public List<GeneralSensorAggregateDTO> getAggregatedData(DateRange range, String bucket) {
+        long bucketSeconds = TimeBuckets.parseBucketSeconds(bucket);
+        TimeBuckets.checkBucketCount(range.getFrom(), range.getTo(), bucketSeconds);
+
+        return rollupService.aggregate(SensorType.GENERAL, range.getFrom(), range.getTo(), bucketSeconds).stream()
+                .map(row -> GeneralSensorMapper.mapRowToGeneralSensorAggregateDTO(row, bucketSeconds))
+                .collect(Collectors.toList());
+    }
+
+    // Every chunk is deleted by its own transaction, so long purges don't hold locks on all the rows at once
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long deleteSensorData(DateRange range) {
+        if (range == null) {
+            IdRange idRange = generalSensorDao.findIdRange();
+            long deleted;
             try {
-                LocalDate localDate = LocalDate.parse(date);
-                generalSensorDao.deleteSensorByData_TimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+                deleted = ChunkedDeletes.deleteInChunks(idRange, DELETE_CHUNK_SIZE, generalSensorDao::deleteChunk);
+            } finally {
+                // Chunks before a failed one stay deleted, so derived state is updated either way
+                rollupService.markAllChanged(SensorType.GENERAL);
+                sensorQueryCache.invalidateAll(SensorType.GENERAL);
+                recentReadings.removeAll(SensorType.GENERAL);
+                latestSensorData.reset(generalSensorDao.findFirstByOrderByData_TimeDescIdDesc().orElse(null));
             }
+            sensorMetrics.deleted(SensorType.GENERAL, deleted);
+            return deleted;
+        }
+        IdRange idRange = generalSensorDao.findIdRangeByData_TimeBetween(range.getFrom(), range.getLast());
+        long deleted;
+        try {
+            deleted = ChunkedDeletes.deleteInChunks(
+                    idRange,
+                    DELETE_CHUNK_SIZE,
+                    (fromId, toId) -> generalSensorDao.deleteChunkByData_TimeBetween(fromId, toId, range.getFrom(), range.getLast())
+            );
+        } finally {
+            rollupService.markChanged(SensorType.GENERAL, range);
+            sensorQueryCache.invalidate(SensorType.GENERAL, range);
+            recentReadings.remove(SensorType.GENERAL, range);
+            latestSensorData.reset(generalSensorDao.findFirstByOrderByData_TimeDescIdDesc().orElse(null));
+        }
+        sensorMetrics.deleted(SensorType.GENERAL, deleted);
+        return deleted;
+    }
+
+    private static String validate(GeneralSensorDTO generalSensorDTO) {
+        if (generalSensorDTO == null || generalSensorDTO.getTime() == null) {
+            return "Row must contain time";
+        }
+        boolean allFinite = Stream.of(
+                generalSensorDTO.getTemperature(),
+                generalSensorDTO.getHumidity(),
+                generalSensorDTO.getLuminosity(),
+                generalSensorDTO.getSoilMoisture()
+        ).allMatch(value -> value != null && Double.isFinite(value));
+        if (!allFinite) {
+            return "Temperature, humidity, luminosity and soil moisture must be finite numbers";
         }
+        return null;
     }
 }
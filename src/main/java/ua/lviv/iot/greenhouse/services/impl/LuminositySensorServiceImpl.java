@@ -1,52 +1,184 @@
 package ua.lviv.iot.greenhouse.services.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache.QueryType;
+import ua.lviv.iot.greenhouse.dao.IdRange;
 import ua.lviv.iot.greenhouse.dao.LuminositySensorDAO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
 import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
-import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.ingestion.WriteBehindQueue;
 import ua.lviv.iot.greenhouse.mappers.LuminositySensorMapper;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
 import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
 import ua.lviv.iot.greenhouse.services.LuminositySensorService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ChunkedDeletes;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.LatestReading;
+import ua.lviv.iot.greenhouse.utils.TimeBuckets;
 
 import javax.transaction.Transactional;
-import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class LuminositySensorServiceImpl implements LuminositySensorService {
 
+    private static final int MAX_PAGE_LIMIT = 10_000;
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+
     private final LuminositySensorDAO luminositySensorDAO;
+    private final WriteBehindQueue<LuminositySensor> luminositySensorIngestionQueue;
+    private final RollupService rollupService;
+    private final SensorQueryCache sensorQueryCache;
+    private final SensorMetrics sensorMetrics;
+    private final SensorStreamHub sensorStreamHub;
+    private final RecentReadings recentReadings;
+    private final SensorArchive sensorArchive;
+    private final LatestReading<LuminositySensor> latestSensorData =
+            new LatestReading<>(sensor -> sensor.getData().getLocalDateTime(), LuminositySensor::getId);
 
     @Override
     public LuminositySensor createSensorData(LuminositySensorDTO luminositySensorDTO) {
-        return luminositySensorDAO.save(LuminositySensorMapper
-                .mapLuminositySensorDTOtoLuminositySensor(luminositySensorDTO));
+        LuminositySensor sensor = LuminositySensorMapper.mapLuminositySensorDTOtoLuminositySensor(luminositySensorDTO);
+        sensorMetrics.ingested(SensorType.LUMINOSITY, 1);
+        if (luminositySensorIngestionQueue.isEnabled()) {
+            luminositySensorIngestionQueue.submit(sensor);
+            latestSensorData.offer(sensor);
+            sensorStreamHub.publish(SensorType.LUMINOSITY, sensor, LuminositySensor::getId,
+                    reading -> reading.getData().getLocalDateTime());
+            return sensor;
+        }
+        LuminositySensor savedSensor = luminositySensorDAO.save(sensor);
+        rollupService.markSaved(SensorType.LUMINOSITY, savedSensor.getId(), savedSensor.getData().getLocalDateTime());
+        sensorQueryCache.invalidate(SensorType.LUMINOSITY, savedSensor.getData().getLocalDateTime());
+        latestSensorData.offer(savedSensor);
+        recentReadings.add(SensorType.LUMINOSITY, savedSensor);
+        sensorStreamHub.publish(SensorType.LUMINOSITY, savedSensor, LuminositySensor::getId,
+                reading -> reading.getData().getLocalDateTime());
+        return savedSensor;
     }
 
     @Override
-    public List<LuminositySensor> getAllSensorData(String date) {
-        if (date == null) {
-            return luminositySensorDAO.findAll();
+    public BatchResultDTO<LuminositySensor> createSensorDataBatch(List<LuminositySensorDTO> luminositySensorDTOs) {
+        List<LuminositySensor> sensors = new ArrayList<>(luminositySensorDTOs.size());
+        List<RejectedRowDTO> rejected = new ArrayList<>();
 
-        } else {
-            try {
-                LocalDate localDate = LocalDate.parse(date);
-
-                return luminositySensorDAO.findSensorByData_LocalDateTimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+        for (int i = 0; i < luminositySensorDTOs.size(); i++) {
+            String reason = validate(luminositySensorDTOs.get(i));
+            if (reason != null) {
+                rejected.add(new RejectedRowDTO(i, reason));
+            } else {
+                sensors.add(LuminositySensorMapper.mapLuminositySensorDTOtoLuminositySensor(luminositySensorDTOs.get(i)));
             }
         }
+        sensorMetrics.ingested(SensorType.LUMINOSITY, sensors.size());
+        sensorMetrics.rejected(SensorType.LUMINOSITY, rejected.size());
+
+        if (luminositySensorIngestionQueue.isEnabled()) {
+            luminositySensorIngestionQueue.submitAll(sensors);
+            sensors.forEach(latestSensorData::offer);
+            sensorStreamHub.publishAll(SensorType.LUMINOSITY, sensors, LuminositySensor::getId,
+                    reading -> reading.getData().getLocalDateTime());
+            return new BatchResultDTO<>(sensors, rejected);
+        }
+        List<LuminositySensor> savedSensors = luminositySensorDAO.saveAll(sensors);
+        savedSensors.forEach(savedSensor -> {
+            rollupService.markSaved(SensorType.LUMINOSITY, savedSensor.getId(), savedSensor.getData().getLocalDateTime());
+            sensorQueryCache.invalidate(SensorType.LUMINOSITY, savedSensor.getData().getLocalDateTime());
+            latestSensorData.offer(savedSensor);
+        });
+        recentReadings.addAll(SensorType.LUMINOSITY, savedSensors);
+        sensorStreamHub.publishAll(SensorType.LUMINOSITY, savedSensors, LuminositySensor::getId,
+                reading -> reading.getData().getLocalDateTime());
+        return new BatchResultDTO<>(savedSensors, rejected);
+    }
+
+    @Override
+    public List<LuminositySensor> getAllSensorData(DateRange range) {
+        if (range == null) {
+            return luminositySensorDAO.findAll();
+        }
+        range.checkMaxLength();
+        return sensorArchive.<LuminositySensor>find(SensorType.LUMINOSITY, range, liveRange ->
+                recentReadings.<LuminositySensor>find(SensorType.LUMINOSITY, liveRange)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.LUMINOSITY, QueryType.ALL, liveRange,
+                                luminositySensorDAO::findSensorByData_LocalDateTimeBetween)));
+    }
+
+    // Doesn't start a transaction, so no DB connection is taken
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public LuminositySensor getLatestSensorData() {
+        return latestSensorData.get()
+                .orElseThrow(() -> new NoDataFoundException("There is no data for the luminosity sensor yet"));
+    }
+
+    // Loads the newest reading once the application is started, so it is available before new readings come
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLatestSensorData() {
+        luminositySensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().ifPresent(latestSensorData::offer);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRecentSensorData() {
+        recentReadings.load(SensorType.LUMINOSITY, limit ->
+                luminositySensorDAO.findByOrderByData_LocalDateTimeDescIdDesc(PageRequest.of(0, limit)));
+    }
+
+    @Override
+    public KeysetPageDTO<LuminositySensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit) {
+        Pageable pageable = PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT));
+        long fromId = afterId == null ? 0 : afterId;
+        List<LuminositySensor> sensors = afterTimestamp == null
+                ? luminositySensorDAO.findPageAfterId(fromId, pageable)
+                : luminositySensorDAO.findPageAfterTimestamp(afterTimestamp, fromId, pageable);
+
+        if (sensors.size() < pageable.getPageSize()) {
+            return new KeysetPageDTO<>(sensors, null, null);
+        }
+        LuminositySensor last = sensors.get(sensors.size() - 1);
+        // Pages ordered by ID continue from the ID alone, a timestamp would switch the next page to time order
+        return new KeysetPageDTO<>(sensors, last.getId(),
+                afterTimestamp == null ? null : last.getData().getLocalDateTime());
+    }
+
+    @Override
+    public void exportAllSensorData(Consumer<LuminositySensor> consumer) {
+        try (Stream<LuminositySensor> sensors = luminositySensorDAO.streamAll()) {
+            sensors.forEach(consumer);
+        }
+    }
+
+    @Override
+    public List<LuminositySensorAggregateDTO> getAggregatedData(DateRange range, String bucket) {
+        long bucketSeconds = TimeBuckets.parseBucketSeconds(bucket);
+        TimeBuckets.checkBucketCount(range.getFrom(), range.getTo(), bucketSeconds);
+
+        return rollupService.aggregate(SensorType.LUMINOSITY, range.getFrom(), range.getTo(), bucketSeconds).stream()
+                .map(row -> LuminositySensorMapper.mapRowToLuminositySensorAggregateDTO(row, bucketSeconds))
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -58,25 +190,57 @@ public class LuminositySensorServiceImpl implements LuminositySensorService {
         sensor.getData().setLuminosity(luminositySensorToUpdateDTO.getLuminosity());
         sensor.getData().setLuminosity(luminositySensorToUpdateDTO.getLuminosity());
 
+        rollupService.markChanged(SensorType.LUMINOSITY, sensor.getData().getLocalDateTime());
+        sensorQueryCache.invalidate(SensorType.LUMINOSITY, sensor.getData().getLocalDateTime());
+        recentReadings.update(SensorType.LUMINOSITY, sensor);
+        latestSensorData.offer(sensor);
         return luminositySensorDAO.save(sensor);
     }
 
+    // Every chunk is deleted by its own transaction, so long purges don't hold locks on all the rows at once
     @Override
-    public void deleteAllSensorData(String date) {
-        if (date == null) {
-            luminositySensorDAO.deleteAll();
-        } else {
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public long deleteAllSensorData(DateRange range) {
+        if (range == null) {
+            IdRange idRange = luminositySensorDAO.findIdRange();
+            long deleted;
             try {
-                LocalDate localDate = LocalDate.parse(date);
-
-                luminositySensorDAO.deleteSensorByData_LocalDateTimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+                deleted = ChunkedDeletes.deleteInChunks(idRange, DELETE_CHUNK_SIZE, luminositySensorDAO::deleteChunk);
+            } finally {
+                // Chunks before a failed one stay deleted, so derived state is updated either way
+                rollupService.markAllChanged(SensorType.LUMINOSITY);
+                sensorQueryCache.invalidateAll(SensorType.LUMINOSITY);
+                recentReadings.removeAll(SensorType.LUMINOSITY);
+                latestSensorData.reset(luminositySensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().orElse(null));
             }
+            sensorMetrics.deleted(SensorType.LUMINOSITY, deleted);
+            return deleted;
+        }
+        IdRange idRange = luminositySensorDAO.findIdRangeByData_LocalDateTimeBetween(range.getFrom(), range.getLast());
+        long deleted;
+        try {
+            deleted = ChunkedDeletes.deleteInChunks(
+                    idRange,
+                    DELETE_CHUNK_SIZE,
+                    (fromId, toId) -> luminositySensorDAO.deleteChunkByData_LocalDateTimeBetween(fromId, toId, range.getFrom(), range.getLast())
+            );
+        } finally {
+            rollupService.markChanged(SensorType.LUMINOSITY, range);
+            sensorQueryCache.invalidate(SensorType.LUMINOSITY, range);
+            recentReadings.remove(SensorType.LUMINOSITY, range);
+            latestSensorData.reset(luminositySensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().orElse(null));
+        }
+        sensorMetrics.deleted(SensorType.LUMINOSITY, deleted);
+        return deleted;
+    }
+
+    private static String validate(LuminositySensorDTO luminositySensorDTO) {
+        if (luminositySensorDTO == null || luminositySensorDTO.getLocalDateTime() == null) {
+            return "Row must contain local date time";
+        }
+        if (!Double.isFinite(luminositySensorDTO.getLuminosity())) {
+            return "Luminosity must be a finite number";
         }
+        return null;
     }
 }
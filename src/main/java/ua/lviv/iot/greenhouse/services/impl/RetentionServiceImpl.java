@@ -0,0 +1,125 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.dao.SensorRollupDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.models.RollupResolution;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.retention.RetentionProperties;
+import ua.lviv.iot.greenhouse.services.ArchiveService;
+import ua.lviv.iot.greenhouse.services.RetentionService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.utils.ChunkedDeletes;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+// Raw readings are purged only after they are rolled up, so old data stays available as rollups
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetentionServiceImpl implements RetentionService {
+
+    private static final int ROLLUP_BUCKETS_PER_CHUNK = 1440;
+
+    private final SensorTimeSeriesDAOs sensorDAOs;
+    private final SensorRollupDAO sensorRollupDAO;
+    private final RollupService rollupService;
+    private final SensorQueryCache sensorQueryCache;
+    private final RecentReadings recentReadings;
+    private final ArchiveService archiveService;
+    private final SensorArchive sensorArchive;
+    private final RetentionProperties retentionProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public long purge() {
+        long deleted = 0;
+        for (SensorType sensorType : SensorType.values()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            deleted += purge(sensorType);
+            sample.stop(meterRegistry.timer("greenhouse.retention.duration", "type", tag(sensorType)));
+        }
+        return deleted;
+    }
+
+    private long purge(SensorType sensorType) {
+        LocalDateTime now = LocalDateTime.now();
+        long deleted = 0;
+
+        Duration raw = retentionProperties.getRaw(sensorType);
+        if (raw != null) {
+            // Days that are not archived yet wait for the next run, when the archive is enabled
+            deleted += purgeRaw(sensorType, archiveService.limitPurge(sensorType, now.minus(raw)));
+        }
+        for (RollupResolution resolution : RollupResolution.values()) {
+            Duration rollups = retentionProperties.getRollups(sensorType, resolution);
+            if (rollups != null) {
+                deleted += purgeRollups(sensorType, resolution, now.minus(rollups));
+            }
+        }
+        return deleted;
+    }
+
+    private long purgeRaw(SensorType sensorType, LocalDateTime before) {
+        // Readings above the watermark are not rolled up yet, so they wait for the next run
+        long watermark = rollupService.markPurged(sensorType, before);
+        // Queries of purged readings go to the archive before they are deleted
+        sensorArchive.markPurged(sensorType, before);
+        SensorTimeSeriesDAO sensorDAO = sensorDAOs.get(sensorType);
+
+        IdRange idRange = sensorDAO.findIdRangeBefore(before, watermark);
+        long deleted;
+        try {
+            deleted = ChunkedDeletes.deleteInChunks(
+                    idRange,
+                    retentionProperties.getChunkSize(),
+                    (fromId, toId) -> sensorDAO.deleteChunkBefore(fromId, toId, before)
+            );
+        } finally {
+            // Chunks before a failed one stay deleted, so cached results of them are dropped either way
+            sensorQueryCache.invalidateBefore(sensorType, before);
+            recentReadings.removeBefore(sensorType, before);
+        }
+        countDeleted(sensorType, "raw", deleted);
+        return deleted;
+    }
+
+    private long purgeRollups(SensorType sensorType, RollupResolution resolution, LocalDateTime before) {
+        Optional<LocalDateTime> oldest = sensorRollupDAO.findOldestBucketStart(sensorType, resolution);
+        if (oldest.isEmpty()) {
+            return 0;
+        }
+
+        Duration chunk = Duration.ofSeconds(resolution.getSeconds() * ROLLUP_BUCKETS_PER_CHUNK);
+        long deleted = 0;
+        for (LocalDateTime after = oldest.get(); after.isBefore(before); after = after.plus(chunk)) {
+            LocalDateTime chunkBefore = after.plus(chunk).isBefore(before) ? after.plus(chunk) : before;
+            deleted += sensorRollupDAO.deleteChunk(sensorType, resolution, after, chunkBefore);
+        }
+        countDeleted(sensorType, resolution.name().toLowerCase() + "_rollups", deleted);
+        return deleted;
+    }
+
+    private void countDeleted(SensorType sensorType, String data, long deleted) {
+        meterRegistry.counter("greenhouse.retention.deleted.rows", "type", tag(sensorType), "data", data)
+                .increment(deleted);
+        if (deleted > 0) {
+            log.info("Purged {} {} rows of {} sensor", deleted, data, tag(sensorType));
+        }
+    }
+
+    private static String tag(SensorType sensorType) {
+        return sensorType.name().toLowerCase();
+    }
+}
@@ -0,0 +1,312 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ua.lviv.iot.greenhouse.dao.ChangedDays;
+import ua.lviv.iot.greenhouse.dao.RollupChangedDayDAO;
+import ua.lviv.iot.greenhouse.dao.RollupWatermarkDAO;
+import ua.lviv.iot.greenhouse.dao.SensorRollupDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.mappers.AggregateMapper;
+import ua.lviv.iot.greenhouse.models.RollupChangedDay;
+import ua.lviv.iot.greenhouse.models.RollupResolution;
+import ua.lviv.iot.greenhouse.models.RollupWatermark;
+import ua.lviv.iot.greenhouse.models.SensorRollup;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.rollup.RollupProperties;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.utils.AggregateRows;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Keeps 1-minute, 1-hour and 1-day rollups of every sensor type. Readings with IDs above the watermark are merged
+// into rollups in chunks, and aggregate queries read rollups up to the watermark plus raw readings above it.
+// Days with updated, deleted or late readings below the watermark are marked in the DB by the node that changes them,
+// and recomputed from raw readings by the next run of any node
+@Slf4j
+@Service
+public class RollupServiceImpl implements RollupService {
+
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final int MAX_KEYS_PER_QUERY = 1000;
+
+    private final SensorTimeSeriesDAOs sensorDAOs;
+    private final SensorRollupDAO sensorRollupDAO;
+    private final RollupWatermarkDAO rollupWatermarkDAO;
+    private final RollupChangedDayDAO rollupChangedDayDAO;
+    private final TransactionTemplate transactionTemplate;
+    private final RollupProperties rollupProperties;
+
+    // Max IDs seen by the previous run. Readings up to them had a whole interval to commit, so they are safe to roll up
+    private final Map<SensorType, Long> pendingMaxIds = new ConcurrentHashMap<>();
+    // Watermarks as of the last run of this node, loaded from the DB once the application is started
+    private final Map<SensorType, Long> knownWatermarks = new ConcurrentHashMap<>();
+    private volatile LocalDate lastRunDay;
+
+    public RollupServiceImpl(SensorTimeSeriesDAOs sensorDAOs,
+                             SensorRollupDAO sensorRollupDAO,
+                             RollupWatermarkDAO rollupWatermarkDAO,
+                             RollupChangedDayDAO rollupChangedDayDAO,
+                             PlatformTransactionManager transactionManager,
+                             RollupProperties rollupProperties) {
+        this.sensorDAOs = sensorDAOs;
+        this.sensorRollupDAO = sensorRollupDAO;
+        this.rollupWatermarkDAO = rollupWatermarkDAO;
+        this.rollupChangedDayDAO = rollupChangedDayDAO;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollupProperties = rollupProperties;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Object[]> aggregate(SensorType sensorType, LocalDateTime after, LocalDateTime before, long bucketSeconds) {
+        RollupResolution resolution = coarsestResolution(after, before, bucketSeconds);
+        long watermark = resolution == null ? 0 : rollupWatermarkDAO.findById(sensorType)
+                .map(RollupWatermark::getLastRolledUpId)
+                .orElse(0L);
+        List<Object[]> rawRows = sensorDAOs.get(sensorType)
+                .aggregateByBucket(after, before, watermark, Long.MAX_VALUE, bucketSeconds);
+        if (watermark == 0) {
+            return rawRows;
+        }
+
+        Map<Long, Object[]> rows = new TreeMap<>();
+        sensorRollupDAO.findByBucketStartBetween(sensorType, resolution, after, before).stream()
+                .collect(Collectors.groupingBy(rollup -> rollup.getKey().getBucketStart(), LinkedHashMap::new,
+                        Collectors.toList()))
+                .forEach((bucketStart, rollups) -> {
+                    long bucket = Math.floorDiv(bucketStart.toEpochSecond(ZoneOffset.UTC), bucketSeconds);
+                    rows.merge(bucket, AggregateRows.fromRollups(sensorType, bucket, rollups), AggregateRows::merge);
+                });
+        for (Object[] row : rawRows) {
+            rows.merge(((Number) row[0]).longValue(), row, AggregateRows::merge);
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    // Moving the watermark past the last reading of the range leaves its aggregates as they are
+    @Override
+    @Transactional(readOnly = true)
+    public String findVersion(SensorType sensorType, DateRange range, Long maxId) {
+        long watermark = rollupWatermarkDAO.findById(sensorType)
+                .map(RollupWatermark::getLastRolledUpId)
+                .orElse(0L);
+        ChangedDays changedDays = rollupChangedDayDAO.findChangedDays(sensorType,
+                range.getFrom().toLocalDate(), range.getLast().toLocalDate());
+        return Math.min(watermark, maxId == null ? 0 : maxId) + "-" + changedDays.getRowCount() + "-" +
+                (changedDays.getMaxId() == null ? 0 : changedDays.getMaxId());
+    }
+
+    @Override
+    public void markSaved(SensorType sensorType, Long id, LocalDateTime time) {
+        // IDs are allocated in blocks, so a reading can be saved with an ID the watermark has already passed
+        if (id != null && time != null && id <= knownWatermarks.getOrDefault(sensorType, 0L)) {
+            markChanged(sensorType, time);
+        }
+    }
+
+    @Override
+    public void markChanged(SensorType sensorType, LocalDateTime time) {
+        if (time != null) {
+            markDayChanged(sensorType, time.toLocalDate());
+        }
+    }
+
+    @Override
+    public void markChanged(SensorType sensorType, DateRange range) {
+        rollupChangedDayDAO.saveAll(range.getDays().stream()
+                .map(day -> new RollupChangedDay(sensorType, day))
+                .collect(Collectors.toList()));
+    }
+
+    // Rollups are dropped right away, and the next runs roll up all readings again
+    @Override
+    public void markAllChanged(SensorType sensorType) {
+        transactionTemplate.executeWithoutResult(status -> {
+            lockWatermark(sensorType).setLastRolledUpId(0);
+            sensorRollupDAO.deleteBySensorType(sensorType);
+            rollupChangedDayDAO.deleteBySensorType(sensorType);
+        });
+        knownWatermarks.put(sensorType, 0L);
+    }
+
+    // Late readings are marked from the start rather than after the first run of this node
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadWatermarks() {
+        rollupWatermarkDAO.findAll().forEach(watermark ->
+                knownWatermarks.putIfAbsent(watermark.getSensorType(), watermark.getLastRolledUpId()));
+    }
+
+    @Override
+    public void rollUp() {
+        LocalDate today = LocalDate.now();
+        if (lastRunDay != null && !today.equals(lastRunDay)) {
+            // Yesterday is recomputed once in case some reading slipped past the watermark checks
+            for (SensorType sensorType : SensorType.values()) {
+                markDayChanged(sensorType, today.minusDays(1));
+            }
+        }
+        lastRunDay = today;
+
+        for (SensorType sensorType : SensorType.values()) {
+            rollUp(sensorType);
+        }
+    }
+
+    @Override
+    public long markPurged(SensorType sensorType, LocalDateTime before) {
+        Long watermark = transactionTemplate.execute(status -> {
+            RollupWatermark rollupWatermark = lockWatermark(sensorType);
+            if (rollupWatermark.getRawPurgedBefore() == null || rollupWatermark.getRawPurgedBefore().isBefore(before)) {
+                rollupWatermark.setRawPurgedBefore(before);
+            }
+            return rollupWatermark.getLastRolledUpId();
+        });
+        return watermark == null ? 0 : watermark;
+    }
+
+    // Saved in the transaction of the change, if there is one, so the day is marked only when the change commits
+    private void markDayChanged(SensorType sensorType, LocalDate day) {
+        rollupChangedDayDAO.save(new RollupChangedDay(sensorType, day));
+    }
+
+    private void rollUp(SensorType sensorType) {
+        // A day stays marked until the transaction that recomputes it commits
+        for (LocalDate day : rollupChangedDayDAO.findDays(sensorType)) {
+            transactionTemplate.executeWithoutResult(status -> recomputeDay(sensorType, day));
+        }
+
+        long upperId = pendingMaxIds.getOrDefault(sensorType, 0L);
+        Long maxId = sensorDAOs.get(sensorType).findIdRange().getMaxId();
+        pendingMaxIds.put(sensorType, maxId == null ? 0 : maxId);
+
+        boolean hasMore;
+        do {
+            hasMore = Boolean.TRUE.equals(transactionTemplate.execute(status -> rollUpChunk(sensorType, upperId)));
+        } while (hasMore);
+    }
+
+    private boolean rollUpChunk(SensorType sensorType, long upperId) {
+        RollupWatermark watermark = lockWatermark(sensorType);
+        long fromId = watermark.getLastRolledUpId();
+        knownWatermarks.put(sensorType, fromId);
+        if (fromId >= upperId) {
+            return false;
+        }
+
+        long toId = Math.min(fromId + rollupProperties.getChunkSize(), upperId);
+        for (RollupResolution resolution : RollupResolution.values()) {
+            mergeIntoRollups(sensorType, resolution, sensorDAOs.get(sensorType)
+                    .aggregateByBucket(MIN_TIME, MAX_TIME, fromId, toId, resolution.getSeconds()));
+        }
+        watermark.setLastRolledUpId(toId);
+        knownWatermarks.put(sensorType, toId);
+        return toId < upperId;
+    }
+
+    private void mergeIntoRollups(SensorType sensorType, RollupResolution resolution, List<Object[]> rows) {
+        Map<LocalDateTime, Object[]> rowsByBucketStart = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            rowsByBucketStart.put(AggregateMapper.mapBucketStart(row, resolution.getSeconds()), row);
+        }
+
+        List<LocalDateTime> bucketStarts = new ArrayList<>(rowsByBucketStart.keySet());
+        Map<LocalDateTime, List<SensorRollup>> existing = new LinkedHashMap<>();
+        for (int i = 0; i < bucketStarts.size(); i += MAX_KEYS_PER_QUERY) {
+            sensorRollupDAO.findByBucketStarts(sensorType, resolution,
+                            bucketStarts.subList(i, Math.min(i + MAX_KEYS_PER_QUERY, bucketStarts.size())))
+                    .forEach(rollup -> existing.computeIfAbsent(rollup.getKey().getBucketStart(),
+                            bucketStart -> new ArrayList<>()).add(rollup));
+        }
+
+        List<SensorRollup> created = new ArrayList<>();
+        rowsByBucketStart.forEach((bucketStart, row) -> {
+            List<SensorRollup> current = existing.get(bucketStart);
+            if (current == null) {
+                created.addAll(AggregateRows.toRollups(sensorType, resolution, bucketStart, row));
+                return;
+            }
+
+            // Current rollups are managed, so their new values are written on commit
+            Object[] merged = AggregateRows.merge(AggregateRows.fromRollups(sensorType, 0, current), row);
+            Map<String, SensorRollup> currentByMetric = current.stream()
+                    .collect(Collectors.toMap(rollup -> rollup.getKey().getMetric(), rollup -> rollup));
+            for (SensorRollup rollup : AggregateRows.toRollups(sensorType, resolution, bucketStart, merged)) {
+                SensorRollup currentRollup = currentByMetric.get(rollup.getKey().getMetric());
+                if (currentRollup == null) {
+                    created.add(rollup);
+                } else {
+                    currentRollup.setData(rollup.getData());
+                }
+            }
+        });
+        sensorRollupDAO.saveAll(created);
+    }
+
+    private void recomputeDay(SensorType sensorType, LocalDate day) {
+        RollupWatermark rollupWatermark = lockWatermark(sensorType);
+        if (rollupChangedDayDAO.deleteDay(sensorType, day) == 0) {
+            // Another node has recomputed it already
+            return;
+        }
+        long watermark = rollupWatermark.getLastRolledUpId();
+        LocalDateTime after = day.atStartOfDay();
+        LocalDateTime before = day.plusDays(1).atStartOfDay();
+        if (rollupWatermark.getRawPurgedBefore() != null && after.isBefore(rollupWatermark.getRawPurgedBefore())) {
+            // Rollups are the only copy of purged readings, so they are kept as they are
+            log.warn("Rollups of {} readings for {} are not recomputed, because raw readings are purged", sensorType, day);
+            return;
+        }
+
+        sensorRollupDAO.deleteByBucketStartBetween(sensorType, after, before);
+        if (watermark == 0) {
+            return;
+        }
+        List<SensorRollup> rollups = new ArrayList<>();
+        for (RollupResolution resolution : RollupResolution.values()) {
+            for (Object[] row : sensorDAOs.get(sensorType)
+                    .aggregateByBucket(after, before, 0, watermark, resolution.getSeconds())) {
+                rollups.addAll(AggregateRows.toRollups(sensorType, resolution,
+                        AggregateMapper.mapBucketStart(row, resolution.getSeconds()), row));
+            }
+        }
+        sensorRollupDAO.saveAll(rollups);
+    }
+
+    private RollupWatermark lockWatermark(SensorType sensorType) {
+        return rollupWatermarkDAO.findForUpdate(sensorType)
+                .orElseGet(() -> rollupWatermarkDAO.save(new RollupWatermark(sensorType, 0, null)));
+    }
+
+    // Rollups can answer a query only when their buckets fit into the requested ones and into the range
+    private static RollupResolution coarsestResolution(LocalDateTime after, LocalDateTime before, long bucketSeconds) {
+        RollupResolution coarsest = null;
+        for (RollupResolution resolution : RollupResolution.values()) {
+            long seconds = resolution.getSeconds();
+            if (bucketSeconds % seconds == 0 && isAligned(after, seconds) && isAligned(before, seconds)) {
+                coarsest = resolution;
+            }
+        }
+        return coarsest;
+    }
+
+    private static boolean isAligned(LocalDateTime time, long seconds) {
+        return time.getNano() == 0 && time.toEpochSecond(ZoneOffset.UTC) % seconds == 0;
+    }
+}
@@ -1,69 +1,218 @@
 package ua.lviv.iot.greenhouse.services.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache.QueryType;
+import ua.lviv.iot.greenhouse.dao.IdRange;
 import ua.lviv.iot.greenhouse.dao.SoilSensorDAO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorAggregateDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorToUpdateDTO;
 import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
-import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.ingestion.WriteBehindQueue;
 import ua.lviv.iot.greenhouse.mappers.SoilSensorMapper;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
 import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
 import ua.lviv.iot.greenhouse.services.SoilSensorService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.ChunkedDeletes;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+import ua.lviv.iot.greenhouse.utils.LatestReading;
+import ua.lviv.iot.greenhouse.utils.TimeBuckets;
 
 import javax.transaction.Transactional;
-import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class SoilSensorServiceImpl implements SoilSensorService {
 
+    private static final int MAX_PAGE_LIMIT = 10_000;
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+
     private final SoilSensorDAO soilSensorDAO;
+    private final WriteBehindQueue<SoilSensor> soilSensorIngestionQueue;
+    private final RollupService rollupService;
+    private final SensorQueryCache sensorQueryCache;
+    private final SensorMetrics sensorMetrics;
+    private final SensorStreamHub sensorStreamHub;
+    private final RecentReadings recentReadings;
+    private final SensorArchive sensorArchive;
+    private final LatestReading<SoilSensor> latestSensorData =
+            new LatestReading<>(sensor -> sensor.getData().getLocalDateTime(), SoilSensor::getId);
 
     @Override
     public SoilSensor createSensorData(SoilSensorDTO soilSensorDTO) {
-        return soilSensorDAO.save(SoilSensorMapper.mapSoilSensorDTOtoSoilSensor(soilSensorDTO));
+        SoilSensor sensor = SoilSensorMapper.mapSoilSensorDTOtoSoilSensor(soilSensorDTO);
+        sensorMetrics.ingested(SensorType.SOIL, 1);
+        if (soilSensorIngestionQueue.isEnabled()) {
+            soilSensorIngestionQueue.submit(sensor);
+            latestSensorData.offer(sensor);
+            sensorStreamHub.publish(SensorType.SOIL, sensor, SoilSensor::getId,
+                    reading -> reading.getData().getLocalDateTime());
+            return sensor;
+        }
+        SoilSensor savedSensor = soilSensorDAO.save(sensor);
+        rollupService.markSaved(SensorType.SOIL, savedSensor.getId(), savedSensor.getData().getLocalDateTime());
+        sensorQueryCache.invalidate(SensorType.SOIL, savedSensor.getData().getLocalDateTime());
+        latestSensorData.offer(savedSensor);
+        recentReadings.add(SensorType.SOIL, savedSensor);
+        sensorStreamHub.publish(SensorType.SOIL, savedSensor, SoilSensor::getId,
+                reading -> reading.getData().getLocalDateTime());
+        return savedSensor;
     }
 
     @Override
-    public List<SoilSensor> getAllSensorData(String date) {
-        if (date == null) {
-            return soilSensorDAO.findAll();
-        } else {
-            try {
-                LocalDate localDate = LocalDate.parse(date);
-
-                return soilSensorDAO.findSensorByData_LocalDateTimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+    public BatchResultDTO<SoilSensor> createSensorDataBatch(List<SoilSensorDTO> soilSensorDTOs) {
+        List<SoilSensor> sensors = new ArrayList<>(soilSensorDTOs.size());
+        List<RejectedRowDTO> rejected = new ArrayList<>();
+
+        for (int i = 0; i < soilSensorDTOs.size(); i++) {
+            String reason = validate(soilSensorDTOs.get(i));
+            if (reason != null) {
+                rejected.add(new RejectedRowDTO(i, reason));
+            } else {
+                sensors.add(SoilSensorMapper.mapSoilSensorDTOtoSoilSensor(soilSensorDTOs.get(i)));
             }
         }
+        sensorMetrics.ingested(SensorType.SOIL, sensors.size());
+        sensorMetrics.rejected(SensorType.SOIL, rejected.size());
+
+        if (soilSensorIngestionQueue.isEnabled()) {
+            soilSensorIngestionQueue.submitAll(sensors);
+            sensors.forEach(latestSensorData::offer);
+            sensorStreamHub.publishAll(SensorType.SOIL, sensors, SoilSensor::getId,
+                    reading -> reading.getData().getLocalDateTime());
+            return new BatchResultDTO<>(sensors, rejected);
+        }
+        List<SoilSensor> savedSensors = soilSensorDAO.saveAll(sensors);
+        savedSensors.forEach(savedSensor -> {
+            rollupService.markSaved(SensorType.SOIL, savedSensor.getId(), savedSensor.getData().getLocalDateTime());
+            sensorQueryCache.invalidate(SensorType.SOIL, savedSensor.getData().getLocalDateTime());
+            latestSensorData.offer(savedSensor);
+        });
+        recentReadings.addAll(SensorType.SOIL, savedSensors);
+        sensorStreamHub.publishAll(SensorType.SOIL, savedSensors, SoilSensor::getId,
+                reading -> reading.getData().getLocalDateTime());
+        return new BatchResultDTO<>(savedSensors, rejected);
     }
 
     @Override
-    public List<SoilSensorHumidityDTO> getHumidityData(String date) {
-        return getAllSensorData(date).stream() // TODO: Read from the DB only needed fields
-                .map(SoilSensorMapper::mapSoilSensorToSoilSensorHumidityDTO)
-                .collect(Collectors.toList());
+    public List<SoilSensor> getAllSensorData(DateRange range) {
+        if (range == null) {
+            return soilSensorDAO.findAll();
+        }
+        range.checkMaxLength();
+        return sensorArchive.<SoilSensor>find(SensorType.SOIL, range, liveRange ->
+                recentReadings.<SoilSensor>find(SensorType.SOIL, liveRange)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.SOIL, QueryType.ALL, liveRange,
+                                soilSensorDAO::findSensorByData_LocalDateTimeBetween)));
+    }
+
+    // Doesn't start a transaction, so no DB connection is taken
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public SoilSensor getLatestSensorData() {
+        return latestSensorData.get()
+                .orElseThrow(() -> new NoDataFoundException("There is no data for the soil sensor yet"));
+    }
+
+    // Loads the newest reading once the application is started, so it is available before new readings come
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLatestSensorData() {
+        soilSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().ifPresent(latestSensorData::offer);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRecentSensorData() {
+        recentReadings.load(SensorType.SOIL, limit ->
+                soilSensorDAO.findByOrderByData_LocalDateTimeDescIdDesc(PageRequest.of(0, limit)));
+    }
+
+    @Override
+    public KeysetPageDTO<SoilSensor> getSensorDataPage(Long afterId, LocalDateTime afterTimestamp, int limit) {
+        Pageable pageable = PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_PAGE_LIMIT));
+        long fromId = afterId == null ? 0 : afterId;
+        List<SoilSensor> sensors = afterTimestamp == null
+                ? soilSensorDAO.findPageAfterId(fromId, pageable)
+                : soilSensorDAO.findPageAfterTimestamp(afterTimestamp, fromId, pageable);
+
+        if (sensors.size() < pageable.getPageSize()) {
+            return new KeysetPageDTO<>(sensors, null, null);
+        }
+        SoilSensor last = sensors.get(sensors.size() - 1);
+        // Pages ordered by ID continue from the ID alone, a timestamp would switch the next page to time order
+        return new KeysetPageDTO<>(sensors, last.getId(),
+                afterTimestamp == null ? null : last.getData().getLocalDateTime());
+    }
+
+    @Override
+    public void exportAllSensorData(Consumer<SoilSensor> consumer) {
+        try (Stream<SoilSensor> sensors = soilSensorDAO.streamAll()) {
+            sensors.forEach(consumer);
+        }
     }
 
     @Override
-    public List<SoilSensorTemperatureDTO> getTemperatureData(String date) {
-        return getAllSensorData(date).stream() // TODO: Read from the DB only needed fields
-                .map(SoilSensorMapper::mapSoilSensorToSoilSensorTemperatureDTO)
+    public List<SoilSensorAggregateDTO> getAggregatedData(DateRange range, String bucket) {
+        long bucketSeconds = TimeBuckets.parseBucketSeconds(bucket);
+        TimeBuckets.checkBucketCount(range.getFrom(), range.getTo(), bucketSeconds);
+
+        return rollupService.aggregate(SensorType.SOIL, range.getFrom(), range.getTo(), bucketSeconds).stream()
+                .map(row -> SoilSensorMapper.mapRowToSoilSensorAggregateDTO(row, bucketSeconds))
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<SoilSensorHumidityDTO> getHumidityData(DateRange range) {
+        if (range == null) {
+            return soilSensorDAO.findAllHumidity();
+        }
+        range.checkMaxLength();
+        Function<ReadingRing.Row, SoilSensorHumidityDTO> mapper =
+                row -> new SoilSensorHumidityDTO(row.getTime(), row.getMetric(0));
+        return sensorArchive.find(SensorType.SOIL, range, mapper, liveRange ->
+                recentReadings.find(SensorType.SOIL, liveRange, mapper)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.SOIL, QueryType.HUMIDITY, liveRange,
+                                soilSensorDAO::findHumidityByData_LocalDateTimeBetween)));
+    }
+
+    @Override
+    public List<SoilSensorTemperatureDTO> getTemperatureData(DateRange range) {
+        if (range == null) {
+            return soilSensorDAO.findAllTemperature();
+        }
+        range.checkMaxLength();
+        Function<ReadingRing.Row, SoilSensorTemperatureDTO> mapper =
+                row -> new SoilSensorTemperatureDTO(row.getTime(), row.getMetric(1));
+        return sensorArchive.find(SensorType.SOIL, range, mapper, liveRange ->
+                recentReadings.find(SensorType.SOIL, liveRange, mapper)
+                        .orElseGet(() -> sensorQueryCache.get(SensorType.SOIL, QueryType.TEMPERATURE, liveRange,
+                                soilSensorDAO::findTemperatureByData_LocalDateTimeBetween)));
+    }
+
     @Override
     public SoilSensor updateDataById(SoilSensorToUpdateDTO soilSensorToUpdateDTO) {
         SoilSensor sensor = soilSensorDAO.findSensorById(soilSensorToUpdateDTO.getId())
@@ -73,25 +222,57 @@ public class SoilSensorServiceImpl implements SoilSensorService {
         sensor.getData().setSoilHumidity(soilSensorToUpdateDTO.getSoilHumidity());
         sensor.getData().setSoilTemperature(soilSensorToUpdateDTO.getSoilTemperature());
 
+        rollupService.markChanged(SensorType.SOIL, sensor.getData().getLocalDateTime());
+        sensorQueryCache.invalidate(SensorType.SOIL, sensor.getData().getLocalDateTime());
+        recentReadings.update(SensorType.SOIL, sensor);
+        latestSensorData.offer(sensor);
         return soilSensorDAO.save(sensor);
     }
 
+    // Every chunk is deleted by its own transaction, so long purges don't hold locks on all the rows at once
     @Override
-    public void deleteAllSensorData(String date) {
-        if (date == null) {
-            soilSensorDAO.deleteAll();
-        } else {
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public long deleteAllSensorData(DateRange range) {
+        if (range == null) {
+            IdRange idRange = soilSensorDAO.findIdRange();
+            long deleted;
             try {
-                LocalDate localDate = LocalDate.parse(date);
-
-                soilSensorDAO.deleteSensorByData_LocalDateTimeBetween(
-                        localDate.atTime(LocalTime.MIN),
-                        localDate.atTime(LocalTime.MAX)
-                );
-            } catch (Exception e) {
-                throw new WrongDateFormatException("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+                deleted = ChunkedDeletes.deleteInChunks(idRange, DELETE_CHUNK_SIZE, soilSensorDAO::deleteChunk);
+            } finally {
+                // Chunks before a failed one stay deleted, so derived state is updated either way
+                rollupService.markAllChanged(SensorType.SOIL);
+                sensorQueryCache.invalidateAll(SensorType.SOIL);
+                recentReadings.removeAll(SensorType.SOIL);
+                latestSensorData.reset(soilSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().orElse(null));
             }
+            sensorMetrics.deleted(SensorType.SOIL, deleted);
+            return deleted;
+        }
+        IdRange idRange = soilSensorDAO.findIdRangeByData_LocalDateTimeBetween(range.getFrom(), range.getLast());
+        long deleted;
+        try {
+            deleted = ChunkedDeletes.deleteInChunks(
+                    idRange,
+                    DELETE_CHUNK_SIZE,
+                    (fromId, toId) -> soilSensorDAO.deleteChunkByData_LocalDateTimeBetween(fromId, toId, range.getFrom(), range.getLast())
+            );
+        } finally {
+            rollupService.markChanged(SensorType.SOIL, range);
+            sensorQueryCache.invalidate(SensorType.SOIL, range);
+            recentReadings.remove(SensorType.SOIL, range);
+            latestSensorData.reset(soilSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc().orElse(null));
+        }
+        sensorMetrics.deleted(SensorType.SOIL, deleted);
+        return deleted;
+    }
+
+    private static String validate(SoilSensorDTO soilSensorDTO) {
+        if (soilSensorDTO == null || soilSensorDTO.getLocalDateTime() == null) {
+            return "Row must contain local date time";
+        }
+        if (!Double.isFinite(soilSensorDTO.getSoilHumidity()) || !Double.isFinite(soilSensorDTO.getSoilTemperature())) {
+            return "Soil humidity and soil temperature must be finite numbers";
         }
+        return null;
     }
 }
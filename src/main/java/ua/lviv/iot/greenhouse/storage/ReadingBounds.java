@@ -0,0 +1,33 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import lombok.Value;
+
+// Readings with time in [fromTime, lastTime] and ID in [fromId, toId]. Times are epoch microseconds
+@Value
+class ReadingBounds {
+
+    long fromTime;
+    long lastTime;
+    long fromId;
+    long toId;
+
+    static ReadingBounds all() {
+        return new ReadingBounds(Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    static ReadingBounds ofTime(long fromTime, long lastTime) {
+        return new ReadingBounds(fromTime, lastTime, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    static ReadingBounds ofId(long fromId, long toId) {
+        return new ReadingBounds(Long.MIN_VALUE, Long.MAX_VALUE, fromId, toId);
+    }
+
+    boolean matches(long time, long id) {
+        return time >= fromTime && time <= lastTime && id >= fromId && id <= toId;
+    }
+
+    boolean overlaps(long minTime, long maxTime, long minId, long maxId) {
+        return maxTime >= fromTime && minTime <= lastTime && maxId >= fromId && minId <= toId;
+    }
+}
@@ -0,0 +1,300 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// Readings of one sensor type and day in a memory-mapped file of fixed-size records, in the order they were
+// written. Records are never changed: an update appends a new version of the reading, which supersedes the old one.
+// Every record ends with a checksum, so records torn by a crash are found and dropped when the file is opened.
+// Every block of records has an entry in the time index with the smallest and biggest time and ID of the block.
+// Not thread-safe, SegmentStore guards its segments with a lock
+@Slf4j
+class Segment implements AutoCloseable {
+
+    private static final int MAGIC = 0x47485331;
+    private static final short FORMAT_VERSION = 1;
+    // Magic, format version, metric count and epoch day
+    private static final int HEADER_SIZE = 16;
+    // Time, ID and modification time, then the kind and metrics
+    private static final int KIND_OFFSET = 24;
+    private static final int METRICS_OFFSET = 25;
+    private static final byte INSERT = 0;
+    private static final byte UPDATE = 1;
+    static final int BLOCK_SIZE = 1024;
+
+    private final Path path;
+    private final LocalDate day;
+    private final int metricCount;
+    private final int recordSize;
+    private final int growth;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int count;
+    private int liveCount;
+    // Positions of records that have a newer version
+    private final BitSet superseded = new BitSet();
+    private long[] blockMinTimes = new long[0];
+    private long[] blockMaxTimes = new long[0];
+    private long[] blockMinIds = new long[0];
+    private long[] blockMaxIds = new long[0];
+
+    private Segment(Path path, LocalDate day, int metricCount, int growth, FileChannel channel) {
+        this.path = path;
+        this.day = day;
+        this.metricCount = metricCount;
+        this.recordSize = METRICS_OFFSET + metricCount * Double.BYTES + Integer.BYTES;
+        this.growth = growth;
+        this.channel = channel;
+    }
+
+    static Segment create(Path path, LocalDate day, int metricCount, int growth) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            Segment segment = new Segment(path, day, metricCount, growth, channel);
+            segment.map(Math.max(growth, HEADER_SIZE + segment.recordSize));
+            segment.buffer.putInt(0, MAGIC)
+                    .putShort(4, FORMAT_VERSION)
+                    .putShort(6, (short) metricCount)
+                    .putLong(8, day.toEpochDay());
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment " + path, e);
+        }
+    }
+
+    // Reads records up to the first one with a wrong checksum. Records after it were written by the same
+    // unfinished write, as every write is forced to the disk before the next one starts, so they are dropped too
+    static Segment open(Path path, int metricCount, int growth) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getShort(4) != FORMAT_VERSION
+                    || header.getShort(6) != metricCount) {
+                channel.close();
+                throw new IllegalStateException("Not a segment of format version " + FORMAT_VERSION + " with " +
+                        metricCount + " metrics: " + path);
+            }
+            Segment segment = new Segment(path, LocalDate.ofEpochDay(header.getLong(8)), metricCount, growth,
+                    channel);
+            segment.map(channel.size());
+            segment.recover();
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open segment " + path, e);
+        }
+    }
+
+    private void recover() {
+        while (offset(count + 1) <= buffer.capacity() && checksum(count) == buffer.getInt(crcOffset(count))) {
+            index(count);
+            count++;
+        }
+        // Pages of the file reach the disk in any order, so records of the unfinished write may follow empty ones.
+        // They are zeroed, so they can't look valid once new records are written before them
+        int dropped = 0;
+        for (int position = count; offset(position + 1) <= buffer.capacity(); position++) {
+            if (!isEmpty(position)) {
+                for (int offset = offset(position); offset < offset(position + 1); offset++) {
+                    buffer.put(offset, (byte) 0);
+                }
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            log.warn("Dropped {} torn records at the end of segment {}", dropped, path);
+            buffer.force();
+        }
+
+        Map<Long, Integer> lastVersions = new HashMap<>();
+        for (int position = 0; position < count; position++) {
+            if (buffer.get(offset(position) + KIND_OFFSET) == UPDATE) {
+                lastVersions.put(getId(position), position);
+            }
+        }
+        liveCount = count;
+        if (!lastVersions.isEmpty()) {
+            for (int position = 0; position < count; position++) {
+                Integer lastVersion = lastVersions.get(getId(position));
+                if (lastVersion != null && lastVersion > position) {
+                    supersede(position);
+                }
+            }
+        }
+    }
+
+    LocalDate getDay() {
+        return day;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int getLiveCount() {
+        return liveCount;
+    }
+
+    void append(long time, long id, long modifiedAt, double[] metrics, boolean update) {
+        if (offset(count + 1) > buffer.capacity()) {
+            map((long) buffer.capacity() + growth);
+        }
+        int offset = offset(count);
+        buffer.putLong(offset, time)
+                .putLong(offset + 8, id)
+                .putLong(offset + 16, modifiedAt)
+                .put(offset + KIND_OFFSET, update ? UPDATE : INSERT);
+        for (int metric = 0; metric < metricCount; metric++) {
+            buffer.putDouble(offset + METRICS_OFFSET + metric * Double.BYTES, metrics[metric]);
+        }
+        buffer.putInt(crcOffset(count), checksum(count));
+        index(count);
+        count++;
+        liveCount++;
+    }
+
+    void supersede(int position) {
+        if (!superseded.get(position)) {
+            superseded.set(position);
+            liveCount--;
+        }
+    }
+
+    boolean isLive(int position) {
+        return !superseded.get(position);
+    }
+
+    long getTime(int position) {
+        return buffer.getLong(offset(position));
+    }
+
+    long getId(int position) {
+        return buffer.getLong(offset(position) + 8);
+    }
+
+    long getModifiedAt(int position) {
+        return buffer.getLong(offset(position) + 16);
+    }
+
+    double getMetric(int position, int metric) {
+        return buffer.getDouble(offset(position) + METRICS_OFFSET + metric * Double.BYTES);
+    }
+
+    int blockCount() {
+        return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    boolean blockOverlaps(int block, ReadingBounds bounds) {
+        return bounds.overlaps(blockMinTimes[block], blockMaxTimes[block], blockMinIds[block], blockMaxIds[block]);
+    }
+
+    long getBlockMinId(int block) {
+        return blockMinIds[block];
+    }
+
+    long getBlockMaxId(int block) {
+        return blockMaxIds[block];
+    }
+
+    boolean overlaps(ReadingBounds bounds) {
+        if (liveCount == 0) {
+            return false;
+        }
+        int blocks = blockCount();
+        for (int block = 0; block < blocks; block++) {
+            if (blockOverlaps(block, bounds)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Writes are durable once this returns
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close segment " + path, e);
+        }
+    }
+
+    private void index(int position) {
+        int block = position / BLOCK_SIZE;
+        long time = getTime(position);
+        long id = getId(position);
+        if (block == blockMinTimes.length) {
+            int length = Math.max(blockMinTimes.length * 2, 16);
+            blockMinTimes = Arrays.copyOf(blockMinTimes, length);
+            blockMaxTimes = Arrays.copyOf(blockMaxTimes, length);
+            blockMinIds = Arrays.copyOf(blockMinIds, length);
+            blockMaxIds = Arrays.copyOf(blockMaxIds, length);
+        }
+        if (position % BLOCK_SIZE == 0) {
+            blockMinTimes[block] = time;
+            blockMaxTimes[block] = time;
+            blockMinIds[block] = id;
+            blockMaxIds[block] = id;
+        } else {
+            blockMinTimes[block] = Math.min(blockMinTimes[block], time);
+            blockMaxTimes[block] = Math.max(blockMaxTimes[block], time);
+            blockMinIds[block] = Math.min(blockMinIds[block], id);
+            blockMaxIds[block] = Math.max(blockMaxIds[block], id);
+        }
+    }
+
+    // Mapping a region bigger than the file makes the file bigger
+    private void map(long size) {
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map segment " + path, e);
+        }
+    }
+
+    private int checksum(int position) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer record = buffer.duplicate();
+        record.limit(crcOffset(position)).position(offset(position));
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private boolean isEmpty(int position) {
+        for (int offset = offset(position); offset < offset(position + 1); offset++) {
+            if (buffer.get(offset) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int offset(int position) {
+        return HEADER_SIZE + position * recordSize;
+    }
+
+    private int crcOffset(int position) {
+        return offset(position + 1) - Integer.BYTES;
+    }
+}
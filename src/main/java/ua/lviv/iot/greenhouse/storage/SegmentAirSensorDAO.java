@@ -0,0 +1,74 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.springframework.data.domain.Pageable;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorTemperatureDTO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+class SegmentAirSensorDAO extends SegmentRepository<AirSensor> implements AirSensorDAO {
+
+    SegmentAirSensorDAO(SegmentStore<AirSensor> store) {
+        super(store, ReadingColumns.AIR);
+    }
+
+    @Override
+    protected void stamp(AirSensor sensor, Long id, LocalDateTime modifiedAt) {
+        sensor.setId(id);
+        sensor.setModifiedAt(modifiedAt);
+    }
+
+    @Override
+    public List<AirSensor> findSensorByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findBetween(after, before);
+    }
+
+    @Override
+    public Optional<AirSensor> findFirstByOrderByData_LocalDateTimeDescIdDesc() {
+        return findNewest();
+    }
+
+    @Override
+    public List<AirSensor> findByOrderByData_LocalDateTimeDescIdDesc(Pageable pageable) {
+        return findNewest(pageable);
+    }
+
+    @Override
+    public List<AirSensorHumidityDTO> findAllHumidity() {
+        return findAll(row -> new AirSensorHumidityDTO(row.getTime(), row.getMetric(0)));
+    }
+
+    @Override
+    public List<AirSensorHumidityDTO> findHumidityByData_LocalDateTimeBetween(LocalDateTime after,
+                                                                             LocalDateTime before) {
+        return findBetween(after, before, row -> new AirSensorHumidityDTO(row.getTime(), row.getMetric(0)));
+    }
+
+    @Override
+    public List<AirSensorTemperatureDTO> findAllTemperature() {
+        return findAll(row -> new AirSensorTemperatureDTO(row.getTime(), row.getMetric(1)));
+    }
+
+    @Override
+    public List<AirSensorTemperatureDTO> findTemperatureByData_LocalDateTimeBetween(LocalDateTime after,
+                                                                                   LocalDateTime before) {
+        return findBetween(after, before, row -> new AirSensorTemperatureDTO(row.getTime(), row.getMetric(1)));
+    }
+
+    @Override
+    public IdRange findIdRangeByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findIdRangeBetween(after, before);
+    }
+
+    @Override
+    public int deleteChunkByData_LocalDateTimeBetween(long fromId, long toId,
+                                                      LocalDateTime after, LocalDateTime before) {
+        return deleteChunkBetween(fromId, toId, after, before);
+    }
+}
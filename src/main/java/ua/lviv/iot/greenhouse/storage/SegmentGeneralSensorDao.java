@@ -0,0 +1,49 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.springframework.data.domain.Pageable;
+import ua.lviv.iot.greenhouse.dao.GeneralSensorDao;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+class SegmentGeneralSensorDao extends SegmentRepository<GeneralSensor> implements GeneralSensorDao {
+
+    SegmentGeneralSensorDao(SegmentStore<GeneralSensor> store) {
+        super(store, ReadingColumns.GENERAL);
+    }
+
+    @Override
+    protected void stamp(GeneralSensor sensor, Long id, LocalDateTime modifiedAt) {
+        sensor.setId(id);
+        sensor.setModifiedAt(modifiedAt);
+    }
+
+    @Override
+    public List<GeneralSensor> findSensorByData_TimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findBetween(after, before);
+    }
+
+    @Override
+    public Optional<GeneralSensor> findFirstByOrderByData_TimeDescIdDesc() {
+        return findNewest();
+    }
+
+    @Override
+    public List<GeneralSensor> findByOrderByData_TimeDescIdDesc(Pageable pageable) {
+        return findNewest(pageable);
+    }
+
+    @Override
+    public IdRange findIdRangeByData_TimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findIdRangeBetween(after, before);
+    }
+
+    @Override
+    public int deleteChunkByData_TimeBetween(long fromId, long toId, LocalDateTime after, LocalDateTime before) {
+        return deleteChunkBetween(fromId, toId, after, before);
+    }
+}
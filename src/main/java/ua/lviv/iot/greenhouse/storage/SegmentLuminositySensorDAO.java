@@ -0,0 +1,49 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.springframework.data.domain.Pageable;
+import ua.lviv.iot.greenhouse.dao.LuminositySensorDAO;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+class SegmentLuminositySensorDAO extends SegmentRepository<LuminositySensor> implements LuminositySensorDAO {
+
+    SegmentLuminositySensorDAO(SegmentStore<LuminositySensor> store) {
+        super(store, ReadingColumns.LUMINOSITY);
+    }
+
+    @Override
+    protected void stamp(LuminositySensor sensor, Long id, LocalDateTime modifiedAt) {
+        sensor.setId(id);
+        sensor.setModifiedAt(modifiedAt);
+    }
+
+    @Override
+    public List<LuminositySensor> findSensorByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findBetween(after, before);
+    }
+
+    @Override
+    public Optional<LuminositySensor> findFirstByOrderByData_LocalDateTimeDescIdDesc() {
+        return findNewest();
+    }
+
+    @Override
+    public List<LuminositySensor> findByOrderByData_LocalDateTimeDescIdDesc(Pageable pageable) {
+        return findNewest(pageable);
+    }
+
+    @Override
+    public IdRange findIdRangeByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findIdRangeBetween(after, before);
+    }
+
+    @Override
+    public int deleteChunkByData_LocalDateTimeBetween(long fromId, long toId, LocalDateTime after, LocalDateTime before) {
+        return deleteChunkBetween(fromId, toId, after, before);
+    }
+}
@@ -0,0 +1,198 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.dao.SensorDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+import ua.lviv.iot.greenhouse.recent.ReadingRow;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Sensor DAO on top of a segment store, with the queries the services run. Writes are not part of DB transactions:
+// they are durable once they return, and a rollback doesn't undo them
+abstract class SegmentRepository<T> implements SensorDAO<T>, SensorTimeSeriesDAO, AutoCloseable {
+
+    // Readings streamed at a time, like the fetch size of the DB queries
+    private static final int STREAM_PAGE_SIZE = 1000;
+
+    private final SegmentStore<T> store;
+    private final ReadingColumns<T> columns;
+
+    SegmentRepository(SegmentStore<T> store, ReadingColumns<T> columns) {
+        this.store = store;
+        this.columns = columns;
+    }
+
+    // Sets what the DB would set on insert or update
+    protected abstract void stamp(T sensor, Long id, LocalDateTime modifiedAt);
+
+    @Override
+    public <S extends T> S save(S sensor) {
+        LocalDateTime modifiedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (columns.getId(sensor) == null) {
+            stamp(sensor, store.nextId(), modifiedAt);
+            store.insertAll(Collections.singletonList(sensor));
+        } else {
+            stamp(sensor, columns.getId(sensor), modifiedAt);
+            store.update(sensor);
+        }
+        return sensor;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> sensors) {
+        LocalDateTime modifiedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<S> saved = new ArrayList<>();
+        List<T> inserted = new ArrayList<>();
+        for (S sensor : sensors) {
+            if (columns.getId(sensor) == null) {
+                stamp(sensor, store.nextId(), modifiedAt);
+                inserted.add(sensor);
+            } else {
+                save(sensor);
+            }
+            saved.add(sensor);
+        }
+        store.insertAll(inserted);
+        return saved;
+    }
+
+    public Optional<T> findSensorById(Long id) {
+        return store.find(ReadingBounds.ofId(id, id), columns::toSensor).stream().findFirst();
+    }
+
+    @Override
+    public List<T> findAll() {
+        return store.find(ReadingBounds.all(), columns::toSensor);
+    }
+
+    List<T> findBetween(LocalDateTime after, LocalDateTime before) {
+        return findBetween(after, before, columns::toSensor);
+    }
+
+    <R> List<R> findBetween(LocalDateTime after, LocalDateTime before, Function<ReadingRow, R> mapper) {
+        return store.find(ReadingBounds.ofTime(ReadingRing.toMicros(after), ReadingRing.toMicros(before)), mapper);
+    }
+
+    <R> List<R> findAll(Function<ReadingRow, R> mapper) {
+        return store.find(ReadingBounds.all(), mapper);
+    }
+
+    Optional<T> findNewest() {
+        return store.find(ReadingBounds.all(), true, 1, columns::toSensor).stream().findFirst();
+    }
+
+    List<T> findNewest(Pageable pageable) {
+        return page(store.find(ReadingBounds.all(), true, limit(pageable), columns::toSensor), pageable);
+    }
+
+    IdRange findIdRangeBetween(LocalDateTime after, LocalDateTime before) {
+        return idRange(store.findIdRange(
+                ReadingBounds.ofTime(ReadingRing.toMicros(after), ReadingRing.toMicros(before))));
+    }
+
+    public int deleteChunk(long fromId, long toId) {
+        return store.delete(ReadingBounds.ofId(fromId, toId));
+    }
+
+    int deleteChunkBetween(long fromId, long toId, LocalDateTime after, LocalDateTime before) {
+        return store.delete(new ReadingBounds(ReadingRing.toMicros(after), ReadingRing.toMicros(before), fromId, toId));
+    }
+
+    public List<T> findPageAfterId(Long afterId, Pageable pageable) {
+        return page(store.findAfterId(afterId, limit(pageable), columns::toSensor), pageable);
+    }
+
+    public List<T> findPageAfterTimestamp(LocalDateTime afterTimestamp, Long afterId, Pageable pageable) {
+        return page(store.findAfter(ReadingRing.toMicros(afterTimestamp), afterId, limit(pageable),
+                columns::toSensor), pageable);
+    }
+
+    // Pages are read as the stream is consumed, so the store is never read at once
+    public Stream<T> streamAll() {
+        Pageable page = PageRequest.of(0, STREAM_PAGE_SIZE);
+        return Stream.iterate(findPageAfterId(Long.MIN_VALUE, page), sensors -> !sensors.isEmpty(),
+                sensors -> findPageAfterId(columns.getId(sensors.get(sensors.size() - 1)), page))
+                .flatMap(List::stream);
+    }
+
+    @Override
+    public IdRange findIdRange() {
+        return idRange(store.findIdRange(ReadingBounds.all()));
+    }
+
+    @Override
+    public List<Object[]> aggregateByBucket(LocalDateTime after, LocalDateTime before,
+                                            long afterId, long toId, long bucketSeconds) {
+        return store.aggregateByBucket(new ReadingBounds(ReadingRing.toMicros(after),
+                ReadingRing.toMicros(before) - 1, afterId + 1, toId), bucketSeconds);
+    }
+
+    @Override
+    public IdRange findIdRangeBefore(LocalDateTime before, long maxId) {
+        return idRange(store.findIdRange(
+                new ReadingBounds(Long.MIN_VALUE, ReadingRing.toMicros(before) - 1, Long.MIN_VALUE, maxId)));
+    }
+
+    @Override
+    public int deleteChunkBefore(long fromId, long toId, LocalDateTime before) {
+        return store.delete(new ReadingBounds(Long.MIN_VALUE, ReadingRing.toMicros(before) - 1, fromId, toId));
+    }
+
+    @Override
+    public DataVersionDTO findDataVersion() {
+        return store.findDataVersion(ReadingBounds.all());
+    }
+
+    @Override
+    public DataVersionDTO findDataVersionBetween(LocalDateTime after, LocalDateTime before) {
+        return store.findDataVersion(
+                ReadingBounds.ofTime(ReadingRing.toMicros(after), ReadingRing.toMicros(before)));
+    }
+
+    @Override
+    public LocalDateTime findOldestTime() {
+        return store.findOldestTime();
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    private static int limit(Pageable pageable) {
+        return (int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE);
+    }
+
+    private static <R> List<R> page(List<R> first, Pageable pageable) {
+        return pageable.getOffset() == 0 ? first
+                : first.subList((int) Math.min(pageable.getOffset(), first.size()), first.size());
+    }
+
+    private static IdRange idRange(long[] ids) {
+        Long minId = ids == null ? null : ids[0];
+        Long maxId = ids == null ? null : ids[1];
+        return new IdRange() {
+            @Override
+            public Long getMinId() {
+                return minId;
+            }
+
+            @Override
+            public Long getMaxId() {
+                return maxId;
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.springframework.data.domain.Pageable;
+import ua.lviv.iot.greenhouse.dao.SoilSensorDAO;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorTemperatureDTO;
+import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+class SegmentSoilSensorDAO extends SegmentRepository<SoilSensor> implements SoilSensorDAO {
+
+    SegmentSoilSensorDAO(SegmentStore<SoilSensor> store) {
+        super(store, ReadingColumns.SOIL);
+    }
+
+    @Override
+    protected void stamp(SoilSensor sensor, Long id, LocalDateTime modifiedAt) {
+        sensor.setId(id);
+        sensor.setModifiedAt(modifiedAt);
+    }
+
+    @Override
+    public List<SoilSensor> findSensorByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findBetween(after, before);
+    }
+
+    @Override
+    public Optional<SoilSensor> findFirstByOrderByData_LocalDateTimeDescIdDesc() {
+        return findNewest();
+    }
+
+    @Override
+    public List<SoilSensor> findByOrderByData_LocalDateTimeDescIdDesc(Pageable pageable) {
+        return findNewest(pageable);
+    }
+
+    @Override
+    public List<SoilSensorHumidityDTO> findAllHumidity() {
+        return findAll(row -> new SoilSensorHumidityDTO(row.getTime(), row.getMetric(0)));
+    }
+
+    @Override
+    public List<SoilSensorHumidityDTO> findHumidityByData_LocalDateTimeBetween(LocalDateTime after,
+                                                                             LocalDateTime before) {
+        return findBetween(after, before, row -> new SoilSensorHumidityDTO(row.getTime(), row.getMetric(0)));
+    }
+
+    @Override
+    public List<SoilSensorTemperatureDTO> findAllTemperature() {
+        return findAll(row -> new SoilSensorTemperatureDTO(row.getTime(), row.getMetric(1)));
+    }
+
+    @Override
+    public List<SoilSensorTemperatureDTO> findTemperatureByData_LocalDateTimeBetween(LocalDateTime after,
+                                                                                   LocalDateTime before) {
+        return findBetween(after, before, row -> new SoilSensorTemperatureDTO(row.getTime(), row.getMetric(1)));
+    }
+
+    @Override
+    public IdRange findIdRangeByData_LocalDateTimeBetween(LocalDateTime after, LocalDateTime before) {
+        return findIdRangeBetween(after, before);
+    }
+
+    @Override
+    public int deleteChunkByData_LocalDateTimeBetween(long fromId, long toId,
+                                                      LocalDateTime after, LocalDateTime before) {
+        return deleteChunkBetween(fromId, toId, after, before);
+    }
+}
@@ -0,0 +1,556 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+import ua.lviv.iot.greenhouse.recent.ReadingRow;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// Readings of one sensor type in segments of a day each, kept in a directory of the type. Writes append to the
+// segment of the reading's day, and deletes drop whole segments or write them again without the deleted readings.
+// Readers share a lock, which writers take exclusively. Results of time ranges are ordered by time and ID
+@Slf4j
+class SegmentStore<T> implements AutoCloseable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String LAST_ID_FILE = "last-id";
+    // IDs handed out per write of the last ID file, like the allocation size of the DB sequences
+    private static final int ID_ALLOCATION = 1000;
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+
+    private final Path directory;
+    private final ReadingColumns<T> columns;
+    private final int metricCount;
+    private final int growth;
+    private final boolean sync;
+    private final NavigableMap<LocalDate, Segment> segments = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long lastId;
+    // IDs up to this one are saved as handed out, so they are never handed out again after a restart
+    private long allocatedId;
+
+    SegmentStore(Path directory, SensorType sensorType, ReadingColumns<T> columns,
+                        StorageProperties storageProperties) {
+        this.directory = directory;
+        this.columns = columns;
+        this.metricCount = sensorType.getMetrics().size();
+        this.growth = (int) storageProperties.getSegmentGrowth().toBytes();
+        this.sync = storageProperties.isSync();
+        open();
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(directory);
+            // Segments are written again next to the old ones and moved over them, so a leftover is unfinished
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    Segment segment = Segment.open(file, metricCount, growth);
+                    segments.put(segment.getDay(), segment);
+                }
+            }
+            Path lastIdFile = directory.resolve(LAST_ID_FILE);
+            if (Files.exists(lastIdFile)) {
+                lastId = Long.parseLong(Files.readString(lastIdFile, StandardCharsets.US_ASCII).trim());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open segments in " + directory, e);
+        }
+        for (Segment segment : segments.values()) {
+            for (int block = 0; block < segment.blockCount(); block++) {
+                lastId = Math.max(lastId, segment.getBlockMaxId(block));
+            }
+        }
+        allocatedId = lastId;
+        log.info("Opened {} segments in {}", segments.size(), directory);
+    }
+
+    synchronized long nextId() {
+        if (lastId == allocatedId) {
+            allocatedId += ID_ALLOCATION;
+            Path lastIdFile = directory.resolve(LAST_ID_FILE);
+            Path tempFile = directory.resolve(LAST_ID_FILE + TEMP_SUFFIX);
+            try {
+                Files.writeString(tempFile, Long.toString(allocatedId), StandardCharsets.US_ASCII);
+                Files.move(tempFile, lastIdFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to allocate IDs in " + directory, e);
+            }
+        }
+        return ++lastId;
+    }
+
+    // Readings must have IDs from nextId
+    void insertAll(Collection<T> sensors) {
+        lock.writeLock().lock();
+        try {
+            Set<Segment> written = new HashSet<>();
+            for (T sensor : sensors) {
+                written.add(append(sensor, false));
+            }
+            force(written);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // New version of a saved reading supersedes the old one. When the reading moves to another day, the segment
+    // of the old day is written again without it, as a segment only knows about versions of its own readings.
+    // The new version is written first, so a crash in between leaves both versions rather than none
+    void update(T sensor) {
+        lock.writeLock().lock();
+        try {
+            long id = columns.getId(sensor);
+            ReadingBounds bounds = ReadingBounds.ofId(id, id);
+            Map<Segment, int[]> oldVersions = new HashMap<>();
+            for (Segment segment : segments.values()) {
+                int[] positions = find(segment, bounds);
+                if (positions.length > 0) {
+                    oldVersions.put(segment, positions);
+                }
+            }
+            Segment written = append(sensor, true);
+            force(Set.of(written));
+            oldVersions.forEach((segment, positions) -> {
+                if (segment == written) {
+                    Arrays.stream(positions).forEach(segment::supersede);
+                } else {
+                    rewrite(segment, bounds);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Segment append(T sensor, boolean update) {
+        long time = ReadingRing.toMicros(columns.getTime(sensor));
+        double[] metrics = new double[metricCount];
+        for (int metric = 0; metric < metricCount; metric++) {
+            metrics[metric] = columns.getMetric(sensor, metric);
+        }
+        Segment segment = segment(time);
+        segment.append(time, columns.getId(sensor), ReadingRing.toMicros(columns.getModifiedAt(sensor)), metrics,
+                update);
+        return segment;
+    }
+
+    private Segment segment(long time) {
+        LocalDate day = LocalDate.ofEpochDay(Math.floorDiv(time, MICROS_PER_DAY));
+        return segments.computeIfAbsent(day, key ->
+                Segment.create(directory.resolve(key + SEGMENT_SUFFIX), key, metricCount, growth));
+    }
+
+    private void force(Collection<Segment> written) {
+        if (sync) {
+            written.forEach(Segment::force);
+        }
+    }
+
+    // Readings in the bounds, ordered by time and ID
+    <R> List<R> find(ReadingBounds bounds, Function<ReadingRow, R> mapper) {
+        return find(bounds, false, Integer.MAX_VALUE, mapper);
+    }
+
+    <R> List<R> find(ReadingBounds bounds, boolean newestFirst, int limit, Function<ReadingRow, R> mapper) {
+        return find(bounds, Long.MIN_VALUE, newestFirst, limit, mapper);
+    }
+
+    // Readings after the given time, or at the same time with bigger IDs, ordered by time and ID
+    <R> List<R> findAfter(long time, long afterId, int limit, Function<ReadingRow, R> mapper) {
+        return find(ReadingBounds.ofTime(time, Long.MAX_VALUE), afterId, false, limit, mapper);
+    }
+
+    // Readings at the first time of the bounds must have IDs after the given one
+    private <R> List<R> find(ReadingBounds bounds, long afterId, boolean newestFirst, int limit,
+                             Function<ReadingRow, R> mapper) {
+        lock.readLock().lock();
+        try {
+            List<R> result = new ArrayList<>();
+            Collection<Segment> days = newestFirst ? segments.descendingMap().values() : segments.values();
+            Cursor cursor = new Cursor();
+            for (Segment segment : days) {
+                int[] positions = sortByTime(segment, find(segment, bounds), newestFirst);
+                cursor.segment = segment;
+                for (int i = 0; i < positions.length && result.size() < limit; i++) {
+                    cursor.position = positions[i];
+                    if (segment.getTime(cursor.position) > bounds.getFromTime()
+                            || segment.getId(cursor.position) > afterId) {
+                        result.add(mapper.apply(cursor));
+                    }
+                }
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Readings with IDs after the given one, ordered by ID. Segments and blocks with smaller IDs than the ones
+    // found so far are skipped, so a page reads little more than its own readings
+    <R> List<R> findAfterId(long afterId, int limit, Function<ReadingRow, R> mapper) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Hit> hits = new PriorityQueue<>(Comparator.comparingLong((Hit hit) -> hit.id).reversed());
+            List<Segment> byMinId = new ArrayList<>(segments.values());
+            byMinId.sort(Comparator.comparingLong(SegmentStore::minId));
+            for (Segment segment : byMinId) {
+                if (hits.size() == limit && minId(segment) > hits.peek().id) {
+                    break;
+                }
+                for (int block = 0; block < segment.blockCount(); block++) {
+                    if (segment.getBlockMaxId(block) <= afterId
+                            || hits.size() == limit && segment.getBlockMinId(block) > hits.peek().id) {
+                        continue;
+                    }
+                    int end = Math.min((block + 1) * Segment.BLOCK_SIZE, segment.size());
+                    for (int position = block * Segment.BLOCK_SIZE; position < end; position++) {
+                        long id = segment.getId(position);
+                        if (id > afterId && segment.isLive(position)) {
+                            hits.add(new Hit(segment, position, id));
+                            if (hits.size() > limit) {
+                                hits.poll();
+                            }
+                        }
+                    }
+                }
+            }
+
+            List<Hit> ordered = new ArrayList<>(hits);
+            ordered.sort(Comparator.comparingLong(hit -> hit.id));
+            List<R> result = new ArrayList<>(ordered.size());
+            Cursor cursor = new Cursor();
+            for (Hit hit : ordered) {
+                cursor.segment = hit.segment;
+                cursor.position = hit.position;
+                result.add(mapper.apply(cursor));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Smallest and biggest ID in the bounds, or null when there are no readings in them
+    long[] findIdRange(ReadingBounds bounds) {
+        lock.readLock().lock();
+        try {
+            long minId = Long.MAX_VALUE;
+            long maxId = Long.MIN_VALUE;
+            for (Segment segment : segments.values()) {
+                for (int position : find(segment, bounds)) {
+                    minId = Math.min(minId, segment.getId(position));
+                    maxId = Math.max(maxId, segment.getId(position));
+                }
+            }
+            return minId > maxId ? null : new long[]{minId, maxId};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    DataVersionDTO findDataVersion(ReadingBounds bounds) {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            long maxId = Long.MIN_VALUE;
+            long lastModified = ReadingRing.NO_TIME;
+            for (Segment segment : segments.values()) {
+                for (int position : find(segment, bounds)) {
+                    count++;
+                    maxId = Math.max(maxId, segment.getId(position));
+                    lastModified = Math.max(lastModified, segment.getModifiedAt(position));
+                }
+            }
+            return new DataVersionDTO(count, count == 0 ? null : maxId, ReadingRing.toTime(lastModified));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Oldest day with readings has the oldest reading
+    LocalDateTime findOldestTime() {
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                int[] positions = find(segment, ReadingBounds.all());
+                if (positions.length > 0) {
+                    long oldest = Long.MAX_VALUE;
+                    for (int position : positions) {
+                        oldest = Math.min(oldest, segment.getTime(position));
+                    }
+                    return ReadingRing.toTime(oldest);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long count() {
+        lock.readLock().lock();
+        try {
+            return segments.values().stream().mapToLong(Segment::getLiveCount).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Same rows as aggregateByBucket of the DAOs: bucket, row count, min, max, sum, count and last value of every
+    // metric, and time and ID of the last reading, ordered by bucket
+    List<Object[]> aggregateByBucket(ReadingBounds bounds, long bucketSeconds) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Bucket> buckets = new TreeMap<>();
+            for (Segment segment : segments.values()) {
+                for (int position : find(segment, bounds)) {
+                    long bucket = Math.floorDiv(Math.floorDiv(segment.getTime(position), 1_000_000L), bucketSeconds);
+                    buckets.computeIfAbsent(bucket, key -> new Bucket()).add(segment, position);
+                }
+            }
+            List<Object[]> rows = new ArrayList<>(buckets.size());
+            buckets.forEach((bucket, aggregate) -> rows.add(aggregate.toRow(bucket)));
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Segments with only deleted readings are dropped, the others are written again without them
+    int delete(ReadingBounds bounds) {
+        lock.writeLock().lock();
+        try {
+            int deleted = 0;
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                deleted += rewrite(segment, bounds);
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int rewrite(Segment segment, ReadingBounds deleted) {
+        int[] positions = find(segment, deleted);
+        if (positions.length == 0) {
+            return 0;
+        }
+        Path path = segment.getPath();
+        try {
+            if (positions.length == segment.getLiveCount()) {
+                segment.close();
+                segments.remove(segment.getDay());
+                Files.delete(path);
+                return positions.length;
+            }
+
+            Path tempFile = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+            try (Segment copy = Segment.create(tempFile, segment.getDay(), metricCount, growth)) {
+                double[] metrics = new double[metricCount];
+                for (int position = 0; position < segment.size(); position++) {
+                    if (!segment.isLive(position) || deleted.matches(segment.getTime(position), segment.getId(position))) {
+                        continue;
+                    }
+                    for (int metric = 0; metric < metricCount; metric++) {
+                        metrics[metric] = segment.getMetric(position, metric);
+                    }
+                    copy.append(segment.getTime(position), segment.getId(position), segment.getModifiedAt(position),
+                            metrics, false);
+                }
+                copy.force();
+            }
+            segment.close();
+            Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            segments.put(segment.getDay(), Segment.open(path, metricCount, growth));
+            return positions.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete readings from segment " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            segments.values().forEach(Segment::close);
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Live readings of the segment in the bounds, in the order they were written. Blocks out of the bounds are
+    // skipped by the time index
+    private static int[] find(Segment segment, ReadingBounds bounds) {
+        if (!segment.overlaps(bounds)) {
+            return new int[0];
+        }
+        IntStream.Builder positions = IntStream.builder();
+        for (int block = 0; block < segment.blockCount(); block++) {
+            if (!segment.blockOverlaps(block, bounds)) {
+                continue;
+            }
+            int end = Math.min((block + 1) * Segment.BLOCK_SIZE, segment.size());
+            for (int position = block * Segment.BLOCK_SIZE; position < end; position++) {
+                if (segment.isLive(position) && bounds.matches(segment.getTime(position), segment.getId(position))) {
+                    positions.add(position);
+                }
+            }
+        }
+        return positions.build().toArray();
+    }
+
+    // Readings mostly come in order of time, so the positions usually are sorted already
+    private static int[] sortByTime(Segment segment, int[] positions, boolean newestFirst) {
+        Comparator<Integer> byTime = Comparator.<Integer>comparingLong(segment::getTime)
+                .thenComparingLong(segment::getId);
+        Comparator<Integer> order = newestFirst ? byTime.reversed() : byTime;
+        boolean sorted = true;
+        for (int i = 1; i < positions.length && sorted; i++) {
+            sorted = order.compare(positions[i - 1], positions[i]) <= 0;
+        }
+        if (sorted) {
+            return positions;
+        }
+        return IntStream.of(positions).boxed().sorted(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static long minId(Segment segment) {
+        long minId = Long.MAX_VALUE;
+        for (int block = 0; block < segment.blockCount(); block++) {
+            minId = Math.min(minId, segment.getBlockMinId(block));
+        }
+        return minId;
+    }
+
+    private static class Hit {
+
+        private final Segment segment;
+        private final int position;
+        private final long id;
+
+        private Hit(Segment segment, int position, long id) {
+            this.segment = segment;
+            this.position = position;
+            this.id = id;
+        }
+    }
+
+    private static class Cursor implements ReadingRow {
+
+        private Segment segment;
+        private int position;
+
+        @Override
+        public long getId() {
+            return segment.getId(position);
+        }
+
+        @Override
+        public LocalDateTime getTime() {
+            return ReadingRing.toTime(segment.getTime(position));
+        }
+
+        @Override
+        public LocalDateTime getModifiedAt() {
+            return ReadingRing.toTime(segment.getModifiedAt(position));
+        }
+
+        @Override
+        public double getMetric(int metric) {
+            return segment.getMetric(position, metric);
+        }
+    }
+
+    private class Bucket {
+
+        private long rowCount;
+        private long lastTime = Long.MIN_VALUE;
+        private long lastId = Long.MIN_VALUE;
+        private final double[] min = new double[metricCount];
+        private final double[] max = new double[metricCount];
+        private final double[] sum = new double[metricCount];
+        private final long[] count = new long[metricCount];
+        private final double[] last = new double[metricCount];
+
+        private void add(Segment segment, int position) {
+            rowCount++;
+            long time = segment.getTime(position);
+            long id = segment.getId(position);
+            // Last values come from the newest reading by time, then by ID, like in the native queries
+            boolean newest = time > lastTime || time == lastTime && id > lastId;
+            for (int metric = 0; metric < metricCount; metric++) {
+                double value = segment.getMetric(position, metric);
+                if (newest) {
+                    last[metric] = value;
+                }
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                min[metric] = count[metric] == 0 ? value : Math.min(min[metric], value);
+                max[metric] = count[metric] == 0 ? value : Math.max(max[metric], value);
+                sum[metric] += value;
+                count[metric]++;
+            }
+            if (newest) {
+                lastTime = time;
+                lastId = id;
+            }
+        }
+
+        private Object[] toRow(long bucket) {
+            Object[] row = new Object[4 + metricCount * 5];
+            row[0] = bucket;
+            row[1] = rowCount;
+            for (int metric = 0; metric < metricCount; metric++) {
+                int offset = 2 + metric * 5;
+                boolean empty = count[metric] == 0;
+                row[offset] = empty ? null : min[metric];
+                row[offset + 1] = empty ? null : max[metric];
+                row[offset + 2] = empty ? null : sum[metric];
+                row[offset + 3] = count[metric];
+                row[offset + 4] = Double.isNaN(last[metric]) ? null : last[metric];
+            }
+            row[row.length - 2] = ReadingRing.toTime(lastTime);
+            row[row.length - 1] = lastId;
+            return row;
+        }
+    }
+}
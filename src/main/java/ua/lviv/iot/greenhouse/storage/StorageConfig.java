@@ -0,0 +1,53 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.GeneralSensorDao;
+import ua.lviv.iot.greenhouse.dao.LuminositySensorDAO;
+import ua.lviv.iot.greenhouse.dao.SoilSensorDAO;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+
+import java.nio.file.Path;
+
+// With segment storage, DAOs of the segment stores take the place of the JPA repositories of readings,
+// which stay defined but unused
+@Configuration
+@EnableConfigurationProperties(StorageProperties.class)
+@ConditionalOnProperty(name = "greenhouse.storage.type", havingValue = "segments")
+public class StorageConfig {
+
+    @Bean
+    @Primary
+    public AirSensorDAO segmentAirSensorDAO(StorageProperties properties) {
+        return new SegmentAirSensorDAO(store(properties, SensorType.AIR, ReadingColumns.AIR));
+    }
+
+    @Bean
+    @Primary
+    public SoilSensorDAO segmentSoilSensorDAO(StorageProperties properties) {
+        return new SegmentSoilSensorDAO(store(properties, SensorType.SOIL, ReadingColumns.SOIL));
+    }
+
+    @Bean
+    @Primary
+    public LuminositySensorDAO segmentLuminositySensorDAO(StorageProperties properties) {
+        return new SegmentLuminositySensorDAO(store(properties, SensorType.LUMINOSITY, ReadingColumns.LUMINOSITY));
+    }
+
+    @Bean
+    @Primary
+    public GeneralSensorDao segmentGeneralSensorDao(StorageProperties properties) {
+        return new SegmentGeneralSensorDao(store(properties, SensorType.GENERAL, ReadingColumns.GENERAL));
+    }
+
+    private static <T> SegmentStore<T> store(StorageProperties properties, SensorType sensorType,
+                                             ReadingColumns<T> columns) {
+        Path directory = Path.of(properties.getDirectory(), sensorType.name().toLowerCase());
+        return new SegmentStore<>(directory, sensorType, columns, properties);
+    }
+}
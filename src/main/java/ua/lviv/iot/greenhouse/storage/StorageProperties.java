@@ -0,0 +1,26 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "greenhouse.storage")
+@Getter
+@Setter
+public class StorageProperties {
+
+    public enum Type {
+        JPA, SEGMENTS
+    }
+
+    // Where readings are stored: tables of the DB (jpa) or segment files on the local disk (segments).
+    // Rollups and their watermarks stay in the DB either way
+    private Type type = Type.JPA;
+    // Segments of every sensor type go to a directory of its own
+    private String directory = "data";
+    // Segment files grow by this much at a time, so appends don't have to map the file again every time
+    private DataSize segmentGrowth = DataSize.ofMegabytes(1);
+    // When true, every write is forced to the disk before it returns, like a DB commit
+    private boolean sync = true;
+}
@@ -0,0 +1,13 @@
+package ua.lviv.iot.greenhouse.stream;
+
+import java.io.IOException;
+
+// Connection of one subscriber. Failing sends end the subscription
+public interface EventSink {
+
+    void send(StreamEvent event) throws IOException;
+
+    void heartbeat() throws IOException;
+
+    void close();
+}
@@ -0,0 +1,394 @@
+package ua.lviv.iot.greenhouse.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.utils.Transactions;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Pushes new readings to Server-Sent Events subscribers of their sensor type. Publishers only put readings into
+// the buffers of subscribers, a few sender threads write them out, so slow clients never hold up writes. Every
+// buffer is bounded and drops its oldest reading when full. The last readings of every type are kept in a ring,
+// from which new subscribers can replay what they missed. Sends that miss their deadline end the subscription
+@Component
+@Slf4j
+public class SensorStreamHub implements AutoCloseable {
+
+    // Readings one sender writes to a subscriber before it lets the others go
+    private static final int SEND_BATCH = 64;
+
+    private final ObjectMapper objectMapper;
+    private final int subscriberBufferSize;
+    private final long timeout;
+    private final long sendTimeout;
+    private final Map<SensorType, Topic> topics = new EnumMap<>(SensorType.class);
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService heartbeats;
+
+    public SensorStreamHub(ObjectMapper objectMapper, StreamProperties streamProperties, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.subscriberBufferSize = streamProperties.getSubscriberBufferSize();
+        this.timeout = streamProperties.getTimeout().toMillis();
+        this.sendTimeout = streamProperties.getSendTimeout().toNanos();
+        for (SensorType sensorType : SensorType.values()) {
+            topics.put(sensorType, new Topic(sensorType, streamProperties.getReplaySize(), meterRegistry));
+        }
+
+        AtomicInteger senderNumber = new AtomicInteger();
+        senders = new ThreadPoolExecutor(streamProperties.getSenderThreads(), streamProperties.getSenderThreads(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sensor-stream-sender-" + senderNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-stream-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeatInterval = streamProperties.getHeartbeatInterval().toMillis();
+        heartbeats.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatInterval, heartbeatInterval,
+                TimeUnit.MILLISECONDS);
+        long checkInterval = Math.max(streamProperties.getSendTimeout().toMillis() / 2, 1);
+        heartbeats.scheduleWithFixedDelay(this::closeStuckSubscribers, checkInterval, checkInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // Publishes once the current transaction commits, so subscribers only get readings that are saved.
+    // IDs of the readings become IDs of their events, so they mean the same on every instance and after restarts
+    public <T> void publish(SensorType sensorType, T reading, Function<T, Long> id, Function<T, LocalDateTime> time) {
+        publishAll(sensorType, List.of(reading), id, time);
+    }
+
+    public <T> void publishAll(SensorType sensorType, List<T> readings, Function<T, Long> id,
+                               Function<T, LocalDateTime> time) {
+        if (readings.isEmpty()) {
+            return;
+        }
+        Transactions.afterCommit(() -> topics.get(sensorType).publish(readings, id, time));
+    }
+
+    // Streams readings published from now on. Readings of the ring that come after the event of lastEventId, or
+    // were taken after since when the ring doesn't have that event (it was sent by another instance or before
+    // a restart), are sent first
+    public SseEmitter subscribe(SensorType sensorType, LocalDateTime since, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscriber subscriber = subscribe(sensorType, since, lastEventId, new EmitterSink(emitter));
+        emitter.onCompletion(subscriber::unsubscribe);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.unsubscribe());
+        return emitter;
+    }
+
+    Subscriber subscribe(SensorType sensorType, LocalDateTime since, Long lastEventId, EventSink sink) {
+        return topics.get(sensorType).subscribe(since, lastEventId, sink);
+    }
+
+    private void sendHeartbeats() {
+        topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::offerHeartbeat));
+    }
+
+    private void closeStuckSubscribers() {
+        long now = System.nanoTime();
+        topics.values().forEach(topic -> topic.subscribers.forEach(subscriber -> subscriber.closeIfStuck(now)));
+    }
+
+    // The stuck thread returns to the pool only once its send ends, so the pool has one more thread till then
+    private void addSender() {
+        synchronized (senders) {
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + 1);
+            senders.setCorePoolSize(senders.getCorePoolSize() + 1);
+        }
+    }
+
+    private void removeSender() {
+        synchronized (senders) {
+            senders.setCorePoolSize(senders.getCorePoolSize() - 1);
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() - 1);
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+        topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::close));
+        senders.shutdown();
+    }
+
+    private class Topic {
+
+        private final SensorType sensorType;
+        private final StreamEvent[] ring;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final Counter published;
+        private final Counter dropped;
+        private long lastSequence;
+
+        private Topic(SensorType sensorType, int replaySize, MeterRegistry meterRegistry) {
+            this.sensorType = sensorType;
+            this.ring = new StreamEvent[replaySize];
+            String type = sensorType.name().toLowerCase();
+            this.published = meterRegistry.counter("greenhouse.stream.published", "type", type);
+            this.dropped = meterRegistry.counter("greenhouse.stream.dropped", "type", type);
+            Gauge.builder("greenhouse.stream.subscribers", subscribers, Set::size)
+                    .description("Subscribers of the stream of new readings")
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+
+        // Readings are written as JSON before the lock is taken
+        private <T> void publish(List<T> readings, Function<T, Long> id, Function<T, LocalDateTime> time) {
+            String[] json = new String[readings.size()];
+            for (int i = 0; i < json.length; i++) {
+                try {
+                    json[i] = objectMapper.writeValueAsString(readings.get(i));
+                } catch (JsonProcessingException e) {
+                    log.error("Failed to write {} reading {} as JSON", sensorType, readings.get(i), e);
+                }
+            }
+            synchronized (this) {
+                for (int i = 0; i < json.length; i++) {
+                    if (json[i] == null) {
+                        continue;
+                    }
+                    StreamEvent event = new StreamEvent(++lastSequence, id.apply(readings.get(i)),
+                            time.apply(readings.get(i)), json[i]);
+                    if (ring.length > 0) {
+                        ring[(int) (event.getSequence() % ring.length)] = event;
+                    }
+                    subscribers.forEach(subscriber -> subscriber.offer(event));
+                }
+            }
+            published.increment(json.length);
+        }
+
+        // Replay and registration happen under the lock of publishers, so nothing is missed or sent twice
+        private synchronized Subscriber subscribe(LocalDateTime since, Long lastEventId, EventSink sink) {
+            Subscriber subscriber = new Subscriber(this, sink);
+            long firstSequence = Math.max(lastSequence - ring.length + 1, 1);
+            long lastEventSequence = lastEventId == null ? 0 : findSequence(firstSequence, lastEventId);
+            if (lastEventSequence != 0 || since != null) {
+                for (long sequence = firstSequence; sequence <= lastSequence; sequence++) {
+                    StreamEvent event = ring[(int) (sequence % ring.length)];
+                    boolean missed = lastEventSequence != 0 ? sequence > lastEventSequence
+                            : event.getTime() != null && event.getTime().isAfter(since);
+                    if (missed) {
+                        subscriber.offer(event);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+            return subscriber;
+        }
+
+        // Newest event of the reading, as updates publish it again. Zero when the ring doesn't have it
+        private long findSequence(long firstSequence, long id) {
+            for (long sequence = lastSequence; sequence >= firstSequence; sequence--) {
+                if (Long.valueOf(id).equals(ring[(int) (sequence % ring.length)].getId())) {
+                    return sequence;
+                }
+            }
+            return 0;
+        }
+    }
+
+    class Subscriber {
+
+        private final Topic topic;
+        private final EventSink sink;
+        private final ArrayDeque<StreamEvent> buffer = new ArrayDeque<>();
+        private boolean heartbeat;
+        private boolean scheduled;
+        private boolean closed;
+        // Set while a sender is blocked in a write to the sink
+        private boolean sending;
+        private long sendingSince;
+        private boolean stuck;
+
+        private Subscriber(Topic topic, EventSink sink) {
+            this.topic = topic;
+            this.sink = sink;
+        }
+
+        private void offer(StreamEvent event) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (buffer.size() == subscriberBufferSize) {
+                    buffer.pollFirst();
+                    topic.dropped.increment();
+                }
+                buffer.addLast(event);
+            }
+            schedule();
+        }
+
+        // Only idle subscribers need a heartbeat, busy ones get readings anyway
+        private void offerHeartbeat() {
+            synchronized (this) {
+                if (closed || scheduled || !buffer.isEmpty()) {
+                    return;
+                }
+                heartbeat = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            senders.execute(this::send);
+        }
+
+        private void send() {
+            boolean sendHeartbeat;
+            synchronized (this) {
+                sendHeartbeat = heartbeat;
+                heartbeat = false;
+            }
+            if (sendHeartbeat && !write(sink::heartbeat)) {
+                return;
+            }
+            for (int i = 0; i < SEND_BATCH; i++) {
+                StreamEvent event;
+                synchronized (this) {
+                    event = buffer.pollFirst();
+                }
+                if (event == null) {
+                    break;
+                }
+                if (!write(() -> sink.send(event))) {
+                    return;
+                }
+            }
+            synchronized (this) {
+                scheduled = false;
+                if (buffer.isEmpty() || closed) {
+                    return;
+                }
+            }
+            schedule();
+        }
+
+        // Returns false when the subscriber is closed, because the write failed or missed its deadline
+        private boolean write(SinkWrite write) {
+            synchronized (this) {
+                sending = true;
+                sendingSince = System.nanoTime();
+            }
+            boolean failed = false;
+            try {
+                write.run();
+            } catch (IOException | RuntimeException e) {
+                // Client went away, the container reports it to the emitter as well
+                log.debug("Failed to send {} readings to a subscriber", topic.sensorType, e);
+                failed = true;
+            }
+            boolean wasStuck;
+            synchronized (this) {
+                sending = false;
+                wasStuck = stuck;
+            }
+            if (wasStuck) {
+                sink.close();
+                removeSender();
+                return false;
+            }
+            if (failed) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        // The emitter is locked by the stuck write, so it is completed by the sender once the write returns
+        private void closeIfStuck(long now) {
+            long sendingFor;
+            synchronized (this) {
+                sendingFor = now - sendingSince;
+                if (!sending || stuck || sendingFor < sendTimeout) {
+                    return;
+                }
+                stuck = true;
+            }
+            log.warn("Closing a subscriber of {} readings, which hasn't taken a send for {} ms", topic.sensorType,
+                    TimeUnit.NANOSECONDS.toMillis(sendingFor));
+            unsubscribe();
+            addSender();
+        }
+
+        void unsubscribe() {
+            synchronized (this) {
+                closed = true;
+                buffer.clear();
+            }
+            topic.subscribers.remove(this);
+        }
+
+        void close() {
+            unsubscribe();
+            sink.close();
+        }
+    }
+
+    private interface SinkWrite {
+
+        void run() throws IOException;
+    }
+
+    private static class EmitterSink implements EventSink {
+
+        private final SseEmitter emitter;
+
+        private EmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(StreamEvent event) throws IOException {
+            SseEmitter.SseEventBuilder builder = SseEmitter.event();
+            // Readings that aren't saved yet have no ID, clients keep the ID of the last event that had one
+            if (event.getId() != null) {
+                builder.id(Long.toString(event.getId()));
+            }
+            emitter.send(builder.data(event.getJson(), MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ua.lviv.iot.greenhouse.stream;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// Reading as it is sent to subscribers. JSON is written once when the reading is published,
+// whatever the number of subscribers
+@Value
+public class StreamEvent {
+
+    // Position in the stream of a sensor type, increases with every reading this instance publishes
+    long sequence;
+    // ID of the reading in the DB, clients send it back as Last-Event-ID. Null while the reading waits to be saved
+    Long id;
+    LocalDateTime time;
+    String json;
+}
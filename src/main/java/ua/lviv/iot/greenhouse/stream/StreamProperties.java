@@ -0,0 +1,27 @@
+package ua.lviv.iot.greenhouse.stream;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "greenhouse.stream")
+@Getter
+@Setter
+public class StreamProperties {
+
+    // Readings waiting to be sent to one subscriber. When it is full, the oldest reading is dropped
+    private int subscriberBufferSize = 256;
+    // Recent readings of every sensor type kept for subscribers that ask to replay them
+    private int replaySize = 1000;
+    // Threads that write readings to subscribers
+    private int senderThreads = 2;
+    // A send to one subscriber that takes longer ends its stream, and another sender thread takes the place of the
+    // one it holds, so clients that stopped reading can't take all the senders
+    private Duration sendTimeout = Duration.ofSeconds(10);
+    // Streams are closed after this time, clients reconnect and continue with Last-Event-ID
+    private Duration timeout = Duration.ofMinutes(30);
+    // Idle streams get a comment this often, so proxies keep them open and dead clients are noticed
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+}
@@ -0,0 +1,118 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import ua.lviv.iot.greenhouse.models.RollupResolution;
+import ua.lviv.iot.greenhouse.models.SensorRollup;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ua.lviv.iot.greenhouse.mappers.AggregateMapper.METRIC_COLUMNS;
+
+// Converts and merges rows in the layout of native aggregate queries: bucket number, row count,
+// min, max, sum, count and last value of every metric, time and ID of the last row
+public class AggregateRows {
+
+    private AggregateRows() {
+    }
+
+    public static Object[] fromRollups(SensorType sensorType, long bucket, List<SensorRollup> rollups) {
+        List<String> metrics = sensorType.getMetrics();
+        Object[] row = new Object[4 + metrics.size() * METRIC_COLUMNS];
+        row[0] = bucket;
+        row[1] = 0L;
+        row[row.length - 1] = 0L;
+        for (int i = 0; i < metrics.size(); i++) {
+            row[2 + i * METRIC_COLUMNS + 3] = 0L;
+        }
+
+        for (SensorRollup rollup : rollups) {
+            int offset = 2 + metrics.indexOf(rollup.getKey().getMetric()) * METRIC_COLUMNS;
+            SensorRollup.Data data = rollup.getData();
+            row[1] = data.getReadingCount();
+            row[offset] = data.getMinValue();
+            row[offset + 1] = data.getMaxValue();
+            row[offset + 2] = data.getSumValue();
+            row[offset + 3] = data.getValueCount();
+            row[offset + 4] = data.getLatestValue();
+            row[row.length - 2] = data.getLatestTime();
+            row[row.length - 1] = data.getLatestId();
+        }
+        return row;
+    }
+
+    public static List<SensorRollup> toRollups(SensorType sensorType, RollupResolution resolution,
+                                               LocalDateTime bucketStart, Object[] row) {
+        List<String> metrics = sensorType.getMetrics();
+        List<SensorRollup> rollups = new ArrayList<>(metrics.size());
+
+        for (int i = 0; i < metrics.size(); i++) {
+            int offset = 2 + i * METRIC_COLUMNS;
+            rollups.add(new SensorRollup(
+                    new SensorRollup.Key(sensorType, resolution, bucketStart, metrics.get(i)),
+                    new SensorRollup.Data(
+                            toLong(row[1]),
+                            toDouble(row[offset]),
+                            toDouble(row[offset + 1]),
+                            toDouble(row[offset + 2]),
+                            toLong(row[offset + 3]),
+                            toDouble(row[offset + 4]),
+                            toTime(row[row.length - 2]),
+                            toLong(row[row.length - 1])
+                    )
+            ));
+        }
+        return rollups;
+    }
+
+    // Both rows must belong to the same bucket. Last values are taken from the row whose last row is newer by time,
+    // then by ID. Rollups written before their latest time was kept have no time, those are compared by ID only
+    public static Object[] merge(Object[] left, Object[] right) {
+        LocalDateTime leftTime = toTime(left[left.length - 2]);
+        LocalDateTime rightTime = toTime(right[right.length - 2]);
+        boolean rightIsNewer = leftTime != null && rightTime != null && !leftTime.equals(rightTime)
+                ? rightTime.isAfter(leftTime)
+                : toLong(right[right.length - 1]) > toLong(left[left.length - 1]);
+        Object[] merged = new Object[left.length];
+        merged[0] = left[0];
+        merged[1] = toLong(left[1]) + toLong(right[1]);
+
+        for (int offset = 2; offset < left.length - 2; offset += METRIC_COLUMNS) {
+            merged[offset] = min(toDouble(left[offset]), toDouble(right[offset]));
+            merged[offset + 1] = max(toDouble(left[offset + 1]), toDouble(right[offset + 1]));
+            merged[offset + 2] = sum(toDouble(left[offset + 2]), toDouble(right[offset + 2]));
+            merged[offset + 3] = toLong(left[offset + 3]) + toLong(right[offset + 3]);
+            merged[offset + 4] = rightIsNewer ? right[offset + 4] : left[offset + 4];
+        }
+        merged[left.length - 2] = rightIsNewer ? right[right.length - 2] : left[left.length - 2];
+        merged[left.length - 1] = rightIsNewer ? right[right.length - 1] : left[left.length - 1];
+        return merged;
+    }
+
+    private static Double min(Double left, Double right) {
+        return left == null ? right : right == null ? left : Double.valueOf(Math.min(left, right));
+    }
+
+    private static Double max(Double left, Double right) {
+        return left == null ? right : right == null ? left : Double.valueOf(Math.max(left, right));
+    }
+
+    private static Double sum(Double left, Double right) {
+        return left == null ? right : right == null ? left : Double.valueOf(left + right);
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    private static Double toDouble(Object value) {
+        return value == null ? null : ((Number) value).doubleValue();
+    }
+
+    // Native queries return timestamps, rows of segment files and rollups have local date-times
+    private static LocalDateTime toTime(Object value) {
+        return value instanceof Timestamp ? ((Timestamp) value).toLocalDateTime() : (LocalDateTime) value;
+    }
+}
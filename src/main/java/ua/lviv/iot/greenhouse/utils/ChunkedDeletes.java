@@ -0,0 +1,25 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import ua.lviv.iot.greenhouse.dao.IdRange;
+
+import java.util.function.LongBinaryOperator;
+
+public class ChunkedDeletes {
+
+    private ChunkedDeletes() {
+    }
+
+    // Splits the ID range into chunks of chunkSize IDs and deletes them one by one,
+    // so every chunk is deleted by a short transaction. Returns number of deleted rows
+    public static long deleteInChunks(IdRange idRange, long chunkSize, LongBinaryOperator deleteChunk) {
+        if (idRange == null || idRange.getMinId() == null) {
+            return 0;
+        }
+
+        long deleted = 0;
+        for (long fromId = idRange.getMinId(); fromId <= idRange.getMaxId(); fromId += chunkSize) {
+            deleted += deleteChunk.applyAsLong(fromId, Math.min(fromId + chunkSize - 1, idRange.getMaxId()));
+        }
+        return deleted;
+    }
+}
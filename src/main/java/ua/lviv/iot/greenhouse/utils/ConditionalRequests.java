@@ -0,0 +1,41 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import org.springframework.web.context.request.WebRequest;
+import ua.lviv.iot.greenhouse.dto.version.AggregateVersionDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+// Answers conditional GET requests, so clients that already have the data get 304 without the rows being read
+public class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    // Sets ETag and Last-Modified headers of the response and checks them against the request.
+    // The version has to be read before the data, so a response never gets an ETag newer than its body
+    public static boolean isNotModified(WebRequest request, DataVersionDTO version) {
+        Instant lastModified = toInstant(version);
+        return request.checkNotModified("\"" + etag(version, lastModified) + "\"",
+                lastModified == null ? -1 : lastModified.toEpochMilli());
+    }
+
+    // Sets only ETag: recomputed rollups change aggregates without any reading getting newer than Last-Modified
+    public static boolean isNotModified(WebRequest request, AggregateVersionDTO version) {
+        return request.checkNotModified("\"" + etag(version.getReadings(), toInstant(version.getReadings())) + "-" +
+                version.getRollups() + "\"");
+    }
+
+    // Last-Modified has only seconds, so ETag keeps microseconds to tell apart updates within the same second
+    private static String etag(DataVersionDTO version, Instant lastModified) {
+        return version.getRowCount() + "-" + (version.getMaxId() == null ? 0 : version.getMaxId()) +
+                "-" + (lastModified == null ? 0 : ChronoUnit.MICROS.between(Instant.EPOCH, lastModified));
+    }
+
+    private static Instant toInstant(DataVersionDTO version) {
+        return version.getLastModified() == null ? null
+                : version.getLastModified().atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
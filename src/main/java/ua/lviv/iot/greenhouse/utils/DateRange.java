@@ -0,0 +1,70 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// Range of reading times [from, to) in the zone of the server, which is the zone readings are stored in
+@Getter
+@EqualsAndHashCode
+@ToString
+public class DateRange {
+
+    // Protects the DB and the response from reading months of data at once
+    public static final Duration MAX_LENGTH = Duration.ofDays(31);
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    // Set when the range is a whole day of the server zone, results of such ranges can be cached
+    private final LocalDate day;
+
+    private DateRange(LocalDateTime from, LocalDateTime to, LocalDate day) {
+        this.from = from;
+        this.to = to;
+        this.day = day;
+    }
+
+    public static DateRange ofDay(LocalDate day) {
+        return new DateRange(day.atStartOfDay(), day.plusDays(1).atStartOfDay(), day);
+    }
+
+    public static DateRange of(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new WrongDateRangeException("Start of the range must be before its end");
+        }
+        LocalDate day = from.toLocalTime().equals(LocalTime.MIDNIGHT)
+                && to.equals(from.plusDays(1)) ? from.toLocalDate() : null;
+        return new DateRange(from, to, day);
+    }
+
+    // Readings are compared with "between", which includes both ends, so the end is moved back by the
+    // smallest step the DB stores
+    public LocalDateTime getLast() {
+        return to.minus(1, ChronoUnit.MICROS);
+    }
+
+    public List<LocalDate> getDays() {
+        List<LocalDate> days = new ArrayList<>();
+        LocalDate lastDay = getLast().toLocalDate();
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(lastDay); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        return days;
+    }
+
+    public void checkMaxLength() {
+        if (Duration.between(from, to).compareTo(MAX_LENGTH) > 0) {
+            throw new WrongDateRangeException("Range is too long. Use at most " + MAX_LENGTH.toDays() +
+                    " days or read it in several parts");
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Turns date, from, to and zone request parameters into a DateRange before they reach the services.
+// Dates have a fixed layout, so they are parsed by hand: wrong input is detected without throwing and catching
+// a DateTimeParseException, and ranges of single days are parsed only once
+@Component
+public class DateRangeResolver {
+
+    private static final int MAX_CACHED_DAYS = 4096;
+    private static final String WRONG_DATE = "Wrong date format. Change to match yyyy-mm-dd and " +
+            "and make sure entered values are valid";
+    private static final String WRONG_DATE_TIME = "Wrong date time format. Change to match yyyy-mm-ddThh:mm:ss, " +
+            "optionally followed by Z or an offset like +03:00, or yyyy-mm-dd and make sure entered values are valid";
+    private static final String CONFLICTING_OFFSET = "Offset of the date time doesn't match the zone. " +
+            "Give only one of them";
+
+    private final Cache<String, DateRange> dayRanges = Caffeine.newBuilder().maximumSize(MAX_CACHED_DAYS).build();
+    // Only zones that exist get here, so the map can't grow with every wrong request
+    private final Map<String, ZoneId> zones = new ConcurrentHashMap<>();
+
+    // Accepts either a single date or both from and to. From and to are yyyy-mm-ddThh:mm:ss or yyyy-mm-dd,
+    // the latter meaning the start of the day. Zone is like Europe/Kiev or +03:00, the server zone when not given.
+    // Date times may end with an offset of their own, like Z or +03:00, which has to agree with the zone if both
+    // are given. Returns null when no range is given at all
+    public DateRange resolve(String date, String from, String to, String zone) {
+        if (date == null && from == null && to == null) {
+            return null;
+        }
+        if (date != null && (from != null || to != null)) {
+            throw new WrongDateRangeException("Use either date or from and to, not both");
+        }
+        if (date == null && (from == null || to == null)) {
+            throw new WrongDateRangeException("Both from and to must be given");
+        }
+        ZoneId zoneId = zone == null ? null : resolveZone(zone);
+
+        if (date != null) {
+            if (zoneId == null) {
+                return resolveDay(date);
+            }
+            LocalDate localDate = parseDate(date);
+            return DateRange.of(toServerZone(localDate.atStartOfDay(), zoneId),
+                    toServerZone(localDate.plusDays(1).atStartOfDay(), zoneId));
+        }
+        return DateRange.of(resolveDateTime(from, zoneId), resolveDateTime(to, zoneId));
+    }
+
+    private static LocalDateTime resolveDateTime(String text, ZoneId zoneId) {
+        int offsetStart = offsetStart(text);
+        LocalDateTime dateTime = parseDateTime(text, offsetStart);
+        if (offsetStart == text.length()) {
+            return zoneId == null ? dateTime : toServerZone(dateTime, zoneId);
+        }
+        ZoneOffset offset = parseOffset(text, offsetStart);
+        if (zoneId != null && !zoneId.getRules().isValidOffset(dateTime, offset)) {
+            throw new WrongDateFormatException(CONFLICTING_OFFSET);
+        }
+        return toServerZone(dateTime, offset);
+    }
+
+    private DateRange resolveDay(String date) {
+        DateRange range = dayRanges.getIfPresent(date);
+        if (range == null) {
+            range = DateRange.ofDay(parseDate(date));
+            dayRanges.put(date, range);
+        }
+        return range;
+    }
+
+    private ZoneId resolveZone(String zone) {
+        ZoneId zoneId = zones.get(zone);
+        if (zoneId == null) {
+            try {
+                zoneId = ZoneId.of(zone);
+            } catch (DateTimeException e) {
+                throw new WrongDateFormatException("Wrong time zone. Use a region like Europe/Kiev or an offset like +03:00");
+            }
+            zones.put(zone, zoneId);
+        }
+        return zoneId;
+    }
+
+    private static LocalDateTime toServerZone(LocalDateTime dateTime, ZoneId zoneId) {
+        return dateTime.atZone(zoneId).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    static LocalDate parseDate(String text) {
+        LocalDate date = text.length() == 10 ? readDate(text) : null;
+        if (date == null) {
+            throw new WrongDateFormatException(WRONG_DATE);
+        }
+        return date;
+    }
+
+    // Accepts yyyy-mm-dd, yyyy-mm-ddThh:mm and yyyy-mm-ddThh:mm:ss with up to 9 digits of a second fraction
+    static LocalDateTime parseDateTime(String text) {
+        return parseDateTime(text, text.length());
+    }
+
+    // Parses the first length characters of the text
+    private static LocalDateTime parseDateTime(String text, int length) {
+        LocalDate date = length >= 10 ? readDate(text) : null;
+        if (date != null && length == 10) {
+            return date.atStartOfDay();
+        }
+        if (date == null || length < 16 || text.charAt(10) != 'T' || text.charAt(13) != ':') {
+            throw new WrongDateFormatException(WRONG_DATE_TIME);
+        }
+        int hour = readNumber(text, 11, 2);
+        int minute = readNumber(text, 14, 2);
+        int second = 0;
+        int nano = 0;
+        if (length > 16) {
+            second = length >= 19 && text.charAt(16) == ':' ? readNumber(text, 17, 2) : -1;
+            if (length > 19) {
+                int digits = length - 20;
+                nano = text.charAt(19) == '.' && digits >= 1 && digits <= 9 ? readNumber(text, 20, digits) : -1;
+                for (int i = digits; i < 9 && nano >= 0; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || nano < 0) {
+            throw new WrongDateFormatException(WRONG_DATE_TIME);
+        }
+        return date.atTime(hour, minute, second, nano);
+    }
+
+    // Index of Z or of a +hh:mm or -hh:mm offset that ends a date time, length of the text when there is none
+    private static int offsetStart(String text) {
+        int length = text.length();
+        if (length > 16 && text.charAt(length - 1) == 'Z') {
+            return length - 1;
+        }
+        char sign = length >= 22 ? text.charAt(length - 6) : 0;
+        if ((sign == '+' || sign == '-') && text.charAt(length - 3) == ':') {
+            return length - 6;
+        }
+        return length;
+    }
+
+    private static ZoneOffset parseOffset(String text, int start) {
+        if (text.charAt(start) == 'Z') {
+            return ZoneOffset.UTC;
+        }
+        int hours = readNumber(text, start + 1, 2);
+        int minutes = readNumber(text, start + 4, 2);
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59 || (hours == 18 && minutes > 0)) {
+            throw new WrongDateFormatException(WRONG_DATE_TIME);
+        }
+        int sign = text.charAt(start) == '-' ? -1 : 1;
+        return ZoneOffset.ofHoursMinutes(sign * hours, sign * minutes);
+    }
+
+    // Returns null instead of throwing when the text doesn't start with a valid yyyy-mm-dd date
+    private static LocalDate readDate(String text) {
+        if (text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return null;
+        }
+        int year = readNumber(text, 0, 4);
+        int month = readNumber(text, 5, 2);
+        int day = readNumber(text, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+        return LocalDate.of(year, month, day);
+    }
+
+    // Returns -1 when any of the characters is not a digit
+    private static int readNumber(String text, int start, int digits) {
+        int number = 0;
+        for (int i = start; i < start + digits; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+}
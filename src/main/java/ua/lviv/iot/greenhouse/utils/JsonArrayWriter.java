@@ -0,0 +1,34 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+public class JsonArrayWriter {
+
+    private JsonArrayWriter() {
+    }
+
+    // Writes every element given by the source straight to the output stream as part of one JSON array
+    public static <T> void write(OutputStream outputStream, ObjectMapper objectMapper,
+                                 Consumer<Consumer<T>> source) throws IOException {
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValuesAsArray(outputStream)) {
+            source.accept(element -> {
+                try {
+                    writer.write(element);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
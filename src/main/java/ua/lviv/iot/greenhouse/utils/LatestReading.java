@@ -0,0 +1,36 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+// Newest reading of a sensor type, kept in memory. Reading it is a single volatile read and never touches the DB
+public class LatestReading<T> {
+
+    private final AtomicReference<T> latest = new AtomicReference<>();
+    // Readings are ordered by time and then by ID. Queued readings don't have ID yet, so they go after saved ones
+    private final Comparator<T> order;
+
+    public LatestReading(Function<T, LocalDateTime> time, Function<T, Long> id) {
+        this.order = Comparator.comparing(time, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+                .thenComparing(id, Comparator.nullsLast(Comparator.<Long>naturalOrder()));
+    }
+
+    public Optional<T> get() {
+        return Optional.ofNullable(latest.get());
+    }
+
+    // Replaces the snapshot unless it already holds a newer reading. Within a transaction this happens after commit,
+    // so readings that are rolled back never show up
+    public void offer(T reading) {
+        Transactions.afterCommit(() -> latest.accumulateAndGet(reading,
+                (current, candidate) -> current == null || order.compare(candidate, current) >= 0 ? candidate : current));
+    }
+
+    // Used after deletes, when the snapshot may hold a reading that doesn't exist anymore
+    public void reset(T reading) {
+        Transactions.afterCommit(() -> latest.set(reading));
+    }
+}
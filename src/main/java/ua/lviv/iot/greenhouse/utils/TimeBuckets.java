@@ -0,0 +1,44 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import ua.lviv.iot.greenhouse.exception.WrongBucketFormatException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+public class TimeBuckets {
+
+    // Protects the DB and the response from ranges split into too many tiny buckets
+    public static final long MAX_BUCKETS = 10_000;
+
+    private TimeBuckets() {
+    }
+
+    // Parses bucket size like 30s, 5m, 1h or 1d into seconds
+    public static long parseBucketSeconds(String bucket) {
+        if (bucket != null && bucket.matches("[1-9][0-9]{0,5}[smhd]")) {
+            long amount = Long.parseLong(bucket.substring(0, bucket.length() - 1));
+            switch (bucket.charAt(bucket.length() - 1)) {
+                case 's':
+                    return amount;
+                case 'm':
+                    return Duration.ofMinutes(amount).getSeconds();
+                case 'h':
+                    return Duration.ofHours(amount).getSeconds();
+                default:
+                    return Duration.ofDays(amount).getSeconds();
+            }
+        }
+        throw new WrongBucketFormatException("Wrong bucket format. Use a number followed by s, m, h or d, " +
+                "for example 5m");
+    }
+
+    public static void checkBucketCount(LocalDateTime from, LocalDateTime to, long bucketSeconds) {
+        if (!from.isBefore(to)) {
+            throw new WrongBucketFormatException("Start of the range must be before its end");
+        }
+        if (Duration.between(from, to).getSeconds() / bucketSeconds >= MAX_BUCKETS) {
+            throw new WrongBucketFormatException("Range is split into too many buckets. Use at most " +
+                    MAX_BUCKETS + " buckets");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ua.lviv.iot.greenhouse.web;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.threads.TaskQueue;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Replaces the executor Tomcat runs requests on. Every request holds its thread while it waits for the DB,
+// so with the default pool of 200 threads most of them only wait for one of the few DB connections.
+// Idle keep-alive connections don't hold threads, so how many devices stay connected is limited by
+// server.tomcat.max-connections, not by threads
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(RequestThreadsProperties.class)
+public class RequestThreadsConfig {
+
+    private static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<AbstractProtocol<?>> requestThreadsCustomizer(
+            RequestThreadsProperties properties, ObjectProvider<DataSource> dataSource) {
+        return protocol -> {
+            switch (properties.getMode()) {
+                case VIRTUAL:
+                    Executor virtualThreads = newVirtualThreadPerTaskExecutor();
+                    if (virtualThreads != null) {
+                        log.info("Requests run on virtual threads");
+                        protocol.setExecutor(virtualThreads);
+                        break;
+                    }
+                    log.warn("Virtual threads need Java {}, but it runs on Java {}. Using a bounded pool instead",
+                            VIRTUAL_THREADS_JAVA_VERSION, Runtime.version().feature());
+                    protocol.setExecutor(newBoundedExecutor(properties, dataSource.getIfAvailable()));
+                    break;
+                case BOUNDED:
+                    protocol.setExecutor(newBoundedExecutor(properties, dataSource.getIfAvailable()));
+                    break;
+                default:
+                    break;
+            }
+        };
+    }
+
+    // Same kind of executor Tomcat creates itself, which starts new threads before it queues requests
+    private static Executor newBoundedExecutor(RequestThreadsProperties properties, DataSource dataSource) {
+        HikariDataSource hikari = dataSource == null ? null : DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class);
+        int connections = hikari != null ? hikari.getMaximumPoolSize() : 10;
+        int threads = connections + properties.getExtraThreads();
+        log.info("Requests run on a pool of {} threads for {} DB connections", threads, connections);
+
+        TaskQueue queue = new TaskQueue();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                new TaskThreadFactory("http-bounded-", true, Thread.NORM_PRIORITY));
+        queue.setParent(executor);
+        return executor;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is called by reflection, because the code is compiled for Java 11
+    private static Executor newVirtualThreadPerTaskExecutor() {
+        if (Runtime.version().feature() < VIRTUAL_THREADS_JAVA_VERSION) {
+            return null;
+        }
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Could not create virtual threads", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ua.lviv.iot.greenhouse.web;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "greenhouse.request-threads")
+@Getter
+@Setter
+public class RequestThreadsProperties {
+
+    public enum Mode {
+        // Tomcat's own pool, configured by server.tomcat.threads.*
+        DEFAULT,
+        // Pool sized to the DB connection pool, requests above it wait in Tomcat's queue without a thread
+        BOUNDED,
+        // New virtual thread for every request. Needs JDK 21, on older JDKs BOUNDED is used instead
+        VIRTUAL
+    }
+
+    private Mode mode = Mode.DEFAULT;
+    // Threads of the bounded pool on top of DB connections, for requests served from memory
+    private int extraThreads = 10;
+}
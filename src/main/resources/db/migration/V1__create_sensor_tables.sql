@@ -0,0 +1,78 @@
+-- Tables used to be created by Hibernate (ddl-auto=update), so everything here is created only if missing
+
+CREATE TABLE IF NOT EXISTS air_sensor
+(
+    id              BIGINT NOT NULL,
+    local_date_time DATETIME(6),
+    air_humidity    DOUBLE NOT NULL,
+    air_temperature DOUBLE NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS soil_sensor
+(
+    id               BIGINT NOT NULL,
+    local_date_time  DATETIME(6),
+    soil_humidity    DOUBLE NOT NULL,
+    soil_temperature DOUBLE NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS luminosity_sensor
+(
+    id              BIGINT NOT NULL,
+    local_date_time DATETIME(6),
+    luminosity      DOUBLE NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS general_sensor
+(
+    id            BIGINT NOT NULL,
+    temperature   DOUBLE,
+    humidity      DOUBLE,
+    luminosity    DOUBLE,
+    soil_moisture DOUBLE,
+    time          DATETIME(6),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+-- MySQL has no sequences, so Hibernate keeps the next ID block of every table in a one-row table.
+-- Pooled optimizer hands out IDs up to 49 below the stored value, so it has to stay
+-- at least 50 above the biggest ID, which might have been generated by AUTO_INCREMENT
+
+CREATE TABLE IF NOT EXISTS air_sensor_seq
+(
+    next_val BIGINT
+) ENGINE = InnoDB;
+INSERT INTO air_sensor_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM air_sensor_seq);
+UPDATE air_sensor_seq
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 51 FROM air_sensor));
+
+CREATE TABLE IF NOT EXISTS soil_sensor_seq
+(
+    next_val BIGINT
+) ENGINE = InnoDB;
+INSERT INTO soil_sensor_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM soil_sensor_seq);
+UPDATE soil_sensor_seq
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 51 FROM soil_sensor));
+
+CREATE TABLE IF NOT EXISTS luminosity_sensor_seq
+(
+    next_val BIGINT
+) ENGINE = InnoDB;
+INSERT INTO luminosity_sensor_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM luminosity_sensor_seq);
+UPDATE luminosity_sensor_seq
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 51 FROM luminosity_sensor));
+
+CREATE TABLE IF NOT EXISTS general_sensor_seq
+(
+    next_val BIGINT
+) ENGINE = InnoDB;
+INSERT INTO general_sensor_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM general_sensor_seq);
+UPDATE general_sensor_seq
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 51 FROM general_sensor));
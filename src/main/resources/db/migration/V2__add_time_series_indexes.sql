@@ -0,0 +1,10 @@
+-- Every date filtered read and delete goes through the timestamp column.
+-- InnoDB secondary indexes also contain the primary key, so (timestamp, id) keyset pages are covered too
+
+CREATE INDEX idx_air_sensor_local_date_time ON air_sensor (local_date_time);
+
+CREATE INDEX idx_soil_sensor_local_date_time ON soil_sensor (local_date_time);
+
+CREATE INDEX idx_luminosity_sensor_local_date_time ON luminosity_sensor (local_date_time);
+
+CREATE INDEX idx_general_sensor_time ON general_sensor (time);
@@ -0,0 +1,33 @@
+-- Pre-aggregated values of every metric per 1-minute, 1-hour and 1-day bucket.
+-- Primary key starts with (sensor_type, resolution, bucket_start), so range reads of one resolution are index scans
+
+CREATE TABLE sensor_rollup
+(
+    sensor_type   VARCHAR(255) NOT NULL,
+    resolution    VARCHAR(255) NOT NULL,
+    bucket_start  DATETIME(6)  NOT NULL,
+    metric        VARCHAR(255) NOT NULL,
+    reading_count BIGINT       NOT NULL,
+    min_value     DOUBLE,
+    max_value     DOUBLE,
+    sum_value     DOUBLE,
+    value_count   BIGINT       NOT NULL,
+    latest_value  DOUBLE,
+    latest_id     BIGINT       NOT NULL,
+    PRIMARY KEY (sensor_type, resolution, bucket_start, metric)
+) ENGINE = InnoDB;
+
+-- Biggest ID of every sensor type that is already included into rollups
+
+CREATE TABLE rollup_watermark
+(
+    sensor_type       VARCHAR(255) NOT NULL,
+    last_rolled_up_id BIGINT       NOT NULL,
+    PRIMARY KEY (sensor_type)
+) ENGINE = InnoDB;
+
+INSERT INTO rollup_watermark (sensor_type, last_rolled_up_id)
+VALUES ('AIR', 0),
+       ('SOIL', 0),
+       ('LUMINOSITY', 0),
+       ('GENERAL', 0);
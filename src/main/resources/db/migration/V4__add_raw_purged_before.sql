@@ -0,0 +1,4 @@
+-- Retention purges raw readings before this time, after which their days can't be recomputed from raw readings
+
+ALTER TABLE rollup_watermark
+    ADD COLUMN raw_purged_before DATETIME(6);
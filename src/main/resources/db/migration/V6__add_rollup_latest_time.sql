@@ -0,0 +1,5 @@
+-- Time of the reading the latest value comes from. Rollups are merged by the newest reading by time, then by ID,
+-- as readings can be saved out of order. Rollups written before have none and are merged by ID only
+
+ALTER TABLE sensor_rollup
+    ADD COLUMN latest_time DATETIME(6);
@@ -0,0 +1,12 @@
+-- Days with updated, deleted or late readings, whose rollups are recomputed by the next rollup run.
+-- Written in the transaction of the change, so they aren't lost on restarts and are seen by every node.
+-- Every change adds a row, so changes of the same day by different nodes never wait for each other
+
+CREATE TABLE rollup_changed_day
+(
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    sensor_type VARCHAR(255),
+    day         DATE,
+    PRIMARY KEY (id),
+    INDEX idx_rollup_changed_day_day (sensor_type, day)
+) ENGINE = InnoDB;
@@ -0,0 +1,72 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GorillaTest {
+
+    @Test
+    void restoresLongsOfEveryDeltaSize() {
+
+        // given
+        long[] values = {1_620_000_000_000_000L, 1_620_000_060_000_000L, 1_620_000_120_000_000L,
+                1_620_000_180_000_100L, 1_620_000_240_003_000L, 1_620_000_240_003_000L, 1_620_000_900_000_000L,
+                Long.MIN_VALUE, 1_620_001_000_000_000L, -5L, Long.MAX_VALUE};
+        BitWriter out = new BitWriter();
+        Gorilla.DeltaEncoder encoder = new Gorilla.DeltaEncoder(out);
+
+        // when
+        for (long value : values) {
+            encoder.add(value);
+        }
+        Gorilla.DeltaDecoder decoder = new Gorilla.DeltaDecoder(new BitReader(ByteBuffer.wrap(out.toByteArray()), 0));
+
+        // then
+        for (long value : values) {
+            assertThat(decoder.next()).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void restoresDoublesIncludingMissingOnes() {
+
+        // given
+        double[] values = {21.5, 21.5, 21.625, -3.0, Double.NaN, 0.0, 1e300, Double.MIN_VALUE, 21.5, 21.75};
+        BitWriter out = new BitWriter();
+        Gorilla.XorEncoder encoder = new Gorilla.XorEncoder(out);
+
+        // when
+        for (double value : values) {
+            encoder.add(value);
+        }
+        Gorilla.XorDecoder decoder = new Gorilla.XorDecoder(new BitReader(ByteBuffer.wrap(out.toByteArray()), 0));
+
+        // then
+        for (double value : values) {
+            assertThat(Double.doubleToRawLongBits(decoder.next())).isEqualTo(Double.doubleToRawLongBits(value));
+        }
+    }
+
+    @Test
+    void storesRegularReadingsInAFewBitsEach() {
+
+        // given
+        BitWriter times = new BitWriter();
+        BitWriter metrics = new BitWriter();
+        Gorilla.DeltaEncoder timeEncoder = new Gorilla.DeltaEncoder(times);
+        Gorilla.XorEncoder metricEncoder = new Gorilla.XorEncoder(metrics);
+
+        // when
+        for (int i = 0; i < 1440; i++) {
+            timeEncoder.add(1_620_000_000_000_000L + i * 60_000_000L);
+            metricEncoder.add(20.0 + i % 4 * 0.5);
+        }
+
+        // then
+        assertThat(times.toByteArray().length).isLessThan(200);
+        assertThat(metrics.toByteArray().length).isLessThan(1440 * 2);
+    }
+}
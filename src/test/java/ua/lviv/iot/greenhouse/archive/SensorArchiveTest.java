@@ -0,0 +1,131 @@
+package ua.lviv.iot.greenhouse.archive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorArchiveTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, Month.MAY, 1);
+
+    @TempDir
+    Path directory;
+
+    private ArchiveProperties properties;
+    private SensorArchive sensorArchive;
+    private final List<DateRange> liveRanges = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new ArchiveProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        sensorArchive = new SensorArchive(properties);
+    }
+
+    @Test
+    void servesPurgedPartOfRangeFromArchive() {
+
+        // given
+        sensorArchive.write(SensorType.AIR, DAY, version(3), readings(60.0, 3));
+        sensorArchive.markPurged(SensorType.AIR, DAY.plusDays(1).atStartOfDay());
+
+        // when
+        List<AirSensor> sensors = sensorArchive.find(SensorType.AIR,
+                DateRange.of(DAY.atTime(1, 30), DAY.plusDays(1).atTime(6, 0)), this::live);
+
+        // then
+        assertThat(sensors).extracting(AirSensor::getId).containsExactly(2L, 3L, 100L);
+        assertThat(sensors.get(0).getData().getLocalDateTime()).isEqualTo(DAY.atTime(2, 0));
+        assertThat(sensors.get(0).getData().getAirHumidity()).isEqualTo(61.0);
+        assertThat(sensors.get(0).getData().getAirTemperature()).isEqualTo(21.0);
+        assertThat(liveRanges)
+                .containsExactly(DateRange.of(DAY.plusDays(1).atStartOfDay(), DAY.plusDays(1).atTime(6, 0)));
+    }
+
+    @Test
+    void passesRangesAfterPurgeTimeToLiveQuery() {
+
+        // given
+        sensorArchive.write(SensorType.AIR, DAY, version(3), readings(60.0, 3));
+        sensorArchive.markPurged(SensorType.AIR, DAY.atStartOfDay());
+        DateRange range = DateRange.ofDay(DAY);
+
+        // when
+        List<AirSensor> sensors = sensorArchive.find(SensorType.AIR, range, this::live);
+
+        // then
+        assertThat(sensors).extracting(AirSensor::getId).containsExactly(100L);
+        assertThat(liveRanges).containsExactly(range);
+    }
+
+    @Test
+    void passesEveryRangeToLiveQueryWhenDisabled() {
+
+        // given
+        properties.setEnabled(false);
+        sensorArchive = new SensorArchive(properties);
+        sensorArchive.markPurged(SensorType.AIR, DAY.plusDays(1).atStartOfDay());
+        DateRange range = DateRange.ofDay(DAY);
+
+        // when
+        List<AirSensor> sensors = sensorArchive.find(SensorType.AIR, range, this::live);
+
+        // then
+        assertThat(sensors).extracting(AirSensor::getId).containsExactly(100L);
+        assertThat(liveRanges).containsExactly(range);
+    }
+
+    @Test
+    void replacesDayThatIsExportedAgain() {
+
+        // given
+        sensorArchive.write(SensorType.AIR, DAY, version(3), readings(60.0, 3));
+        sensorArchive.markPurged(SensorType.AIR, DAY.plusDays(1).atStartOfDay());
+        sensorArchive.find(SensorType.AIR, DateRange.ofDay(DAY), this::live);
+
+        // when
+        sensorArchive.write(SensorType.AIR, DAY, version(4), readings(70.0, 4));
+
+        // then
+        assertThat(sensorArchive.findVersion(SensorType.AIR, DAY)).contains(version(4));
+        assertThat(sensorArchive.find(SensorType.AIR, DateRange.ofDay(DAY), this::live))
+                .extracting(sensor -> sensor.getData().getAirHumidity())
+                .containsExactly(70.0, 71.0, 72.0, 73.0);
+        assertThat(sensorArchive.findVersion(SensorType.AIR, DAY.plusDays(1))).isEmpty();
+    }
+
+    // Reading i has ID i + 1 and is taken at i + 1 o'clock
+    private static ReadingRing readings(double firstHumidity, int count) {
+        ReadingRing readings = new ReadingRing(count, 2);
+        for (int i = 0; i < count; i++) {
+            int position = readings.insert(ReadingRing.toMicros(DAY.atTime(i + 1, 0)), i + 1, ReadingRing.NO_TIME);
+            readings.setMetric(position, 0, firstHumidity + i);
+            readings.setMetric(position, 1, 20.0 + i);
+        }
+        return readings;
+    }
+
+    private static DataVersionDTO version(int count) {
+        return new DataVersionDTO((long) count, (long) count, null);
+    }
+
+    private List<AirSensor> live(DateRange range) {
+        liveRanges.add(range);
+        return List.of(new AirSensor(100L, new AirSensor.Data(range.getFrom(), 50.0, 18.0)));
+    }
+}
@@ -0,0 +1,170 @@
+package ua.lviv.iot.greenhouse.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache.QueryType;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorQueryCacheTest {
+
+    private static final LocalDate PAST_DAY = LocalDate.of(2021, Month.MAY, 1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SensorQueryCache sensorQueryCache = new SensorQueryCache(new QueryCacheProperties(), meterRegistry);
+    private final AtomicInteger queries = new AtomicInteger();
+    private final Supplier<List<String>> query = () -> List.of("reading " + queries.incrementAndGet());
+
+    @Test
+    void cachesPastDays() {
+
+        // when
+        List<String> first = sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+        List<String> second = sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+
+        // then
+        assertThat(second).isEqualTo(first);
+        assertThat(queries).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "sensor-queries").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void queriesAgainOnceResultsExpire() throws InterruptedException {
+
+        // given
+        QueryCacheProperties properties = new QueryCacheProperties();
+        properties.setExpireAfterWrite(Duration.ofMillis(20));
+        SensorQueryCache expiringCache = new SensorQueryCache(properties, new SimpleMeterRegistry());
+
+        // when
+        expiringCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+        Thread.sleep(50);
+        expiringCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+
+        // then
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void neverCachesToday() {
+
+        // when
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, LocalDate.now(), query);
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, LocalDate.now(), query);
+
+        // then
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void keysIncludeSensorAndQueryType() {
+
+        // when
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+        sensorQueryCache.get(SensorType.AIR, QueryType.HUMIDITY, PAST_DAY, query);
+        sensorQueryCache.get(SensorType.SOIL, QueryType.ALL, PAST_DAY, query);
+
+        // then
+        assertThat(queries).hasValue(3);
+    }
+
+    @Test
+    void invalidatesOnlyChangedDay() {
+
+        // given
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY.plusDays(1), query);
+
+        // when
+        sensorQueryCache.invalidate(SensorType.AIR, PAST_DAY.atTime(12, 0));
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY.plusDays(1), query);
+
+        // then
+        assertThat(queries).hasValue(3);
+    }
+
+    @Test
+    void invalidatesDaysBeforeGivenTime() {
+
+        // given
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY.plusDays(1), query);
+
+        // when
+        sensorQueryCache.invalidateBefore(SensorType.AIR, PAST_DAY.plusDays(1).atTime(12, 0));
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY.plusDays(1), query);
+
+        // then
+        assertThat(queries).hasValue(4);
+    }
+
+    @Test
+    void invalidatesRangeWhileItIsLoaded() throws Exception {
+
+        // given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        CompletableFuture<List<String>> load = loadBlocked(loading, invalidated);
+        loading.await();
+
+        // when
+        CompletableFuture<Void> invalidate = CompletableFuture.runAsync(() ->
+                sensorQueryCache.invalidate(SensorType.AIR, DateRange.ofDay(PAST_DAY)));
+        // Gives the invalidation time to reach the key that is being loaded
+        Thread.sleep(100);
+        invalidated.countDown();
+        load.get(5, TimeUnit.SECONDS);
+        invalidate.get(5, TimeUnit.SECONDS);
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+
+        // then
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void invalidatesAllWhileDayIsLoaded() throws Exception {
+
+        // given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        CompletableFuture<List<String>> load = loadBlocked(loading, invalidated);
+        loading.await();
+
+        // when
+        sensorQueryCache.invalidateAll(SensorType.AIR);
+        invalidated.countDown();
+        load.get(5, TimeUnit.SECONDS);
+        sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, query);
+
+        // then
+        assertThat(queries).hasValue(2);
+    }
+
+    // Loads the past day, signalling once the query is started and finishing it only after invalidation
+    private CompletableFuture<List<String>> loadBlocked(CountDownLatch loading, CountDownLatch invalidated) {
+        return CompletableFuture.supplyAsync(() -> sensorQueryCache.get(SensorType.AIR, QueryType.ALL, PAST_DAY, () -> {
+            loading.countDown();
+            try {
+                invalidated.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return query.get();
+        }));
+    }
+}
@@ -0,0 +1,216 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.aggregate.MetricAggregateDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.mappers.AirSensorMapper;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class AirSensorDAOTest {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private AirSensorDAO airSensorDAO;
+    @Autowired
+    private EntityManager entityManager;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void savesAreGroupedIntoJdbcBatches() {
+
+        // given
+        int count = 500;
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        List<AirSensor> sensors = IntStream.range(0, count)
+                .mapToObj(i -> new AirSensor(new AirSensor.Data(dateTime.plusSeconds(i), 70.6, 23.38)))
+                .collect(Collectors.toList());
+
+        // when
+        airSensorDAO.saveAll(sensors);
+        entityManager.flush();
+
+        // then
+        // One insert statement per JDBC batch plus one sequence call per allocated block of IDs
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(count);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2L * (count / BATCH_SIZE) + 2);
+    }
+
+    @Test
+    void canReadHumidityProjectionWithoutLoadingEntities() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusDays(1), 71.2, 23.5)));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        // when
+        List<AirSensorHumidityDTO> humidityData = airSensorDAO.findHumidityByData_LocalDateTimeBetween(
+                dateTime.minusHours(1), dateTime.plusHours(1));
+
+        // then
+        assertThat(humidityData).extracting(AirSensorHumidityDTO::getAirHumidity).containsExactly(70.6);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void canReadPagesAfterGivenTimestampAndId() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        AirSensor first = airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38)));
+        AirSensor second = airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime, 71.2, 23.5)));
+        AirSensor third = airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusSeconds(1), 72.0, 23.6)));
+
+        // when
+        List<AirSensor> page = airSensorDAO.findPageAfterTimestamp(dateTime, first.getId(), PageRequest.of(0, 10));
+
+        // then
+        assertThat(page).containsExactly(second, third);
+    }
+
+    @Test
+    void canStreamAllWithoutKeepingSensorsInPersistenceContext() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusSeconds(1), 71.2, 23.5)));
+        entityManager.flush();
+        entityManager.clear();
+
+        // when
+        List<AirSensor> sensors;
+        try (Stream<AirSensor> stream = airSensorDAO.streamAll()) {
+            sensors = stream.collect(Collectors.toList());
+        }
+
+        // then
+        assertThat(sensors).extracting(sensor -> sensor.getData().getAirHumidity()).containsExactly(70.6, 71.2);
+        assertThat(sensors).noneMatch(entityManager::contains);
+    }
+
+    @Test
+    void canDeleteChunkOfDayWithSingleStatement() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        AirSensor first = airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38)));
+        AirSensor second = airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime, 71.2, 23.5)));
+        AirSensor nextDay = airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusDays(1), 72.0, 23.6)));
+        entityManager.flush();
+        statistics.clear();
+
+        // when
+        IdRange idRange = airSensorDAO.findIdRangeByData_LocalDateTimeBetween(dateTime.minusHours(1), dateTime);
+        int deleted = airSensorDAO.deleteChunkByData_LocalDateTimeBetween(
+                idRange.getMinId(), nextDay.getId(), dateTime.minusHours(1), dateTime);
+
+        // then
+        assertThat(idRange.getMinId()).isEqualTo(first.getId());
+        assertThat(idRange.getMaxId()).isEqualTo(second.getId());
+        assertThat(deleted).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(airSensorDAO.findDataVersion().getRowCount()).isEqualTo(1);
+    }
+
+    @Test
+    void canAggregateByTimeBucket() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 10, 0, 0);
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusMinutes(1), 70.0, 20.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusMinutes(3), 80.0, 22.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusMinutes(2), 75.0, 21.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusMinutes(6), 60.0, 19.0)));
+        entityManager.flush();
+        long bucketSeconds = 300;
+
+        // when
+        List<AirSensorAggregateDTO> aggregates = airSensorDAO.aggregateByBucket(
+                dateTime, dateTime.plusHours(1), 0, Long.MAX_VALUE, bucketSeconds).stream()
+                .map(row -> AirSensorMapper.mapRowToAirSensorAggregateDTO(row, bucketSeconds))
+                .collect(Collectors.toList());
+
+        // then
+        assertThat(aggregates).hasSize(2);
+        assertThat(aggregates.get(0).getBucketStart()).isEqualTo(dateTime);
+        assertThat(aggregates.get(0).getCount()).isEqualTo(3);
+        assertThat(aggregates.get(0).getAirHumidity()).isEqualTo(new MetricAggregateDTO(70.0, 80.0, 75.0, 80.0));
+        assertThat(aggregates.get(1).getBucketStart()).isEqualTo(dateTime.plusMinutes(5));
+        assertThat(aggregates.get(1).getAirTemperature()).isEqualTo(new MetricAggregateDTO(19.0, 19.0, 19.0, 19.0));
+    }
+
+    @Test
+    void canFindLatestReading() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 10, 0, 0);
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusMinutes(2), 70.0, 20.0)));
+        AirSensor latest = airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusMinutes(3), 80.0, 22.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(dateTime.plusMinutes(1), 75.0, 21.0)));
+        entityManager.flush();
+
+        // when
+        Optional<AirSensor> found = airSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc();
+
+        // then
+        assertThat(found).contains(latest);
+    }
+
+    @Test
+    void dataVersionOfDayChangesOnlyWithReadingsOfThatDay() {
+
+        // given
+        LocalDateTime day = LocalDateTime.of(2021, Month.MAY, 1, 0, 0, 0);
+        AirSensor first = airSensorDAO.save(new AirSensor(new AirSensor.Data(day.plusHours(1), 70.0, 20.0)));
+        entityManager.flush();
+        DataVersionDTO before = airSensorDAO.findDataVersionBetween(day, day.plusDays(1).minusNanos(1000));
+
+        // when
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(day.plusDays(1).plusHours(1), 75.0, 21.0)));
+        entityManager.flush();
+        DataVersionDTO afterOtherDay = airSensorDAO.findDataVersionBetween(day, day.plusDays(1).minusNanos(1000));
+        AirSensor second = airSensorDAO.save(new AirSensor(new AirSensor.Data(day.plusHours(2), 80.0, 22.0)));
+        entityManager.flush();
+        DataVersionDTO afterSameDay = airSensorDAO.findDataVersionBetween(day, day.plusDays(1).minusNanos(1000));
+
+        // then
+        assertThat(before.getRowCount()).isEqualTo(1);
+        assertThat(before.getMaxId()).isEqualTo(first.getId());
+        assertThat(before.getLastModified()).isEqualTo(first.getModifiedAt());
+        assertThat(afterOtherDay).isEqualTo(before);
+        assertThat(afterSameDay.getRowCount()).isEqualTo(2);
+        assertThat(afterSameDay.getMaxId()).isEqualTo(second.getId());
+        assertThat(airSensorDAO.findDataVersion().getRowCount()).isEqualTo(3);
+    }
+}
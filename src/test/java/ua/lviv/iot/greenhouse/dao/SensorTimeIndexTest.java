@@ -0,0 +1,46 @@
+package ua.lviv.iot.greenhouse.dao;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs on the schema of the migrations rather than the one Hibernate builds from the entities, as that is the schema
+// production queries run on. H2 runs the migrations in MySQL mode, in a database of its own
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:greenhouse_migrations;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.flyway.enabled=true",
+        "spring.flyway.locations=classpath:db/migration,classpath:db/vendor/{vendor}",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.database-platform=org.hibernate.dialect.MySQL8Dialect"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SensorTimeIndexTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @ParameterizedTest
+    @CsvSource({
+            "air_sensor, local_date_time",
+            "soil_sensor, local_date_time",
+            "luminosity_sensor, local_date_time",
+            "general_sensor, time"
+    })
+    void dayRangeQueryUsesTimeIndex(String table, String column) {
+
+        // when
+        String plan = (String) entityManager.createNativeQuery("EXPLAIN SELECT * FROM " + table +
+                " WHERE " + column + " BETWEEN TIMESTAMP '2021-05-01 00:00:00' AND TIMESTAMP '2021-05-01 23:59:59'")
+                .getSingleResult();
+
+        // then
+        assertThat(plan).containsIgnoringCase("idx_" + table + "_" + column);
+        assertThat(plan).doesNotContainIgnoringCase("tableScan");
+    }
+}
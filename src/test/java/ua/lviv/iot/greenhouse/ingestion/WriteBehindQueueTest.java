@@ -0,0 +1,161 @@
+package ua.lviv.iot.greenhouse.ingestion;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.lviv.iot.greenhouse.exception.IngestionQueueFullException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteBehindQueueTest {
+
+    private IngestionProperties properties;
+    private List<List<Integer>> writtenBatches;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new IngestionProperties();
+        properties.setAsync(true);
+        properties.setCapacity(4);
+        properties.setFlushSize(2);
+        properties.setFlushInterval(Duration.ofMillis(50));
+        properties.setRetryAttempts(3);
+        properties.setRetryBackoff(Duration.ofMillis(10));
+        meterRegistry = new SimpleMeterRegistry();
+        writtenBatches = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    void isDisabledWhenIngestionIsSynchronous() throws InterruptedException {
+
+        // given
+        properties.setAsync(false);
+
+        // when
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", properties, meterRegistry,
+                writtenBatches::add);
+
+        // then
+        assertThat(queue.isEnabled()).isFalse();
+        queue.close();
+    }
+
+    @Test
+    void canWriteQueuedItemsInBatches() throws InterruptedException {
+
+        // given
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", properties, meterRegistry,
+                batch -> writtenBatches.add(new ArrayList<>(batch)));
+
+        // when
+        queue.submitAll(Arrays.asList(1, 2, 3));
+        queue.close();
+
+        // then
+        assertThat(writtenBatches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+        assertThat(writtenBatches).flatExtracting(batch -> batch).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void canWriteIncompleteBatchAfterFlushInterval() throws InterruptedException {
+
+        // given
+        CountDownLatch written = new CountDownLatch(1);
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", properties, meterRegistry,
+                batch -> written.countDown());
+
+        // when
+        queue.submit(1);
+
+        // then
+        assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.close();
+    }
+
+    @Test
+    void throwExceptionWhenQueueIsFull() throws InterruptedException {
+
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", properties, meterRegistry, batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        queue.submitAll(Arrays.asList(1, 2, 3, 4));
+
+        // when
+        // then
+        assertThatThrownBy(() -> queue.submit(5))
+                .isInstanceOf(IngestionQueueFullException.class)
+                .hasMessageContaining("Ingestion queue for test is full");
+        release.countDown();
+        queue.close();
+    }
+
+    @Test
+    void throwExceptionWhenQueueIsClosed() throws InterruptedException {
+
+        // given
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", properties, meterRegistry,
+                writtenBatches::add);
+        queue.close();
+
+        // when
+        // then
+        assertThatThrownBy(() -> queue.submit(1))
+                .isInstanceOf(IngestionQueueFullException.class);
+    }
+
+    @Test
+    void canWriteBatchAfterFailedAttempts() throws InterruptedException {
+
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", properties, meterRegistry, batch -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("DB is down");
+            }
+            writtenBatches.add(new ArrayList<>(batch));
+        });
+
+        // when
+        queue.submit(1);
+        queue.close();
+
+        // then
+        assertThat(writtenBatches).containsExactly(Collections.singletonList(1));
+        assertThat(meterRegistry.counter("greenhouse.ingestion.retries", "queue", "test").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("greenhouse.ingestion.lost.rows", "queue", "test").count()).isZero();
+    }
+
+    @Test
+    void countsLostReadingsWhenAllAttemptsFail() throws InterruptedException {
+
+        // given
+        WriteBehindQueue<Integer> queue = new WriteBehindQueue<>("test", properties, meterRegistry, batch -> {
+            throw new IllegalStateException("DB is down");
+        });
+
+        // when
+        queue.submitAll(Arrays.asList(1, 2));
+        queue.close();
+
+        // then
+        assertThat(meterRegistry.counter("greenhouse.ingestion.lost.rows", "queue", "test").count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,68 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Every DAO call of this test is slower than the threshold, so every call is counted as a slow query
+@DataJpaTest(properties = "greenhouse.metrics.slow-query-threshold=0ms")
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+@Import({MetricsAspect.class, MetricsConfig.class, SimpleMeterRegistry.class})
+class MetricsAspectTest {
+
+    @Autowired
+    private AirSensorDAO airSensorDAO;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void daoCallsAreTimedWithTheirRows() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        airSensorDAO.saveAll(List.of(
+                new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38)),
+                new AirSensor(new AirSensor.Data(dateTime.plusMinutes(1), 70.2, 23.4)),
+                new AirSensor(new AirSensor.Data(dateTime.plusMinutes(2), 69.8, 23.5))
+        ));
+
+        // when
+        airSensorDAO.findAll();
+        airSensorDAO.findAll();
+
+        // then
+        assertThat(meterRegistry.get("greenhouse.dao.calls").tags("dao", "AirSensorDAO", "method", "findAll")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("greenhouse.dao.rows").tags("dao", "AirSensorDAO", "method", "findAll")
+                .summary().totalAmount()).isEqualTo(6);
+        assertThat(meterRegistry.get("greenhouse.dao.calls").tags("dao", "AirSensorDAO", "method", "saveAll")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("greenhouse.dao.calls").tag("dao", "JpaRepositoryFactoryBean").timers())
+                .isEmpty();
+    }
+
+    @Test
+    void slowQueriesAreCounted() {
+
+        // when
+        airSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc();
+
+        // then
+        assertThat(meterRegistry.get("greenhouse.dao.slow")
+                .tags("dao", "AirSensorDAO", "method", "findFirstByOrderByData_LocalDateTimeDescIdDesc")
+                .counter().count()).isEqualTo(1);
+    }
+}
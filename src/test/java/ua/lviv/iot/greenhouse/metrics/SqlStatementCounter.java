@@ -0,0 +1,41 @@
+package ua.lviv.iot.greenhouse.metrics;
+
+import javax.persistence.EntityManager;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Asserts how many SQL statements an action executes. When a test runs in a transaction, which never commits,
+// the session is flushed after the action to execute the inserts, updates and deletes a commit would.
+// Needs MetricsConfig in the context, which registers the statement listener in Hibernate
+public class SqlStatementCounter {
+
+    private final EntityManager entityManager;
+
+    public SqlStatementCounter(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public <T> T assertStatements(int expected, Supplier<T> action) {
+        SqlStatements.start();
+        SqlStatements statements;
+        T result;
+        try {
+            result = action.get();
+            if (entityManager.isJoinedToTransaction()) {
+                entityManager.flush();
+            }
+        } finally {
+            statements = SqlStatements.stop();
+        }
+        assertThat(statements.getCount()).as("SQL statements").isEqualTo(expected);
+        return result;
+    }
+
+    public void assertStatements(int expected, Runnable action) {
+        assertStatements(expected, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadingRingTest {
+
+    private final ReadingRing ring = new ReadingRing(4, 1);
+
+    @Test
+    void keepsReadingsOrderedByTimeAndId() {
+
+        // when
+        insert(30, 1);
+        insert(10, 2);
+        insert(20, 4);
+        insert(20, 3);
+
+        // then
+        assertThat(times()).containsExactly(10L, 20L, 20L, 30L);
+        assertThat(ring.getId(1)).isEqualTo(3);
+        assertThat(ring.getMetric(1, 0)).isEqualTo(23.0);
+    }
+
+    @Test
+    void skipsReadingItAlreadyHas() {
+
+        // given
+        insert(10, 1);
+
+        // then
+        assertThat(ring.insert(10, 1, 0)).isEqualTo(-1);
+        assertThat(ring.size()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsOldestReadingWhenFull() {
+
+        // given
+        for (int i = 1; i <= 4; i++) {
+            insert(i * 10, i);
+        }
+
+        // when
+        insert(50, 5);
+        insert(35, 6);
+        insert(5, 7);
+
+        // then
+        assertThat(times()).containsExactly(30L, 35L, 40L, 50L);
+        assertThat(ring.getEvictedTime()).isEqualTo(20);
+    }
+
+    @Test
+    void canRemoveTimeRangeAcrossTheEndOfArrays() {
+
+        // given
+        for (int i = 1; i <= 6; i++) {
+            insert(i * 10, i);
+        }
+
+        // when
+        ring.remove(ring.lowerBound(35), ring.upperBound(50));
+
+        // then
+        assertThat(times()).containsExactly(30L, 60L);
+        assertThat(ring.find(60, 6)).isEqualTo(1);
+        assertThat(ring.find(40, 4)).isEqualTo(-1);
+    }
+
+    @Test
+    void convertsTimesToMicrosAndBack() {
+
+        // given
+        LocalDateTime time = LocalDateTime.of(1969, Month.DECEMBER, 31, 23, 59, 59, 123_456_000);
+
+        // then
+        assertThat(ReadingRing.toTime(ReadingRing.toMicros(time))).isEqualTo(time);
+        assertThat(ReadingRing.toTime(ReadingRing.toMicros(null))).isNull();
+    }
+
+    private void insert(long time, long id) {
+        int position = ring.insert(time, id, 0);
+        if (position >= 0) {
+            ring.setMetric(position, 0, id + 20);
+        }
+    }
+
+    private List<Long> times() {
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < ring.size(); i++) {
+            times.add(ring.getTime(i));
+        }
+        return times;
+    }
+}
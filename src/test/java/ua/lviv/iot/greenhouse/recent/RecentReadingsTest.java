@@ -0,0 +1,141 @@
+package ua.lviv.iot.greenhouse.recent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
+import ua.lviv.iot.greenhouse.dto.version.DataVersionDTO;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.GeneralSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentReadingsTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, Month.MAY, 1);
+
+    private RecentReadingsProperties properties;
+    private RecentReadings recentReadings;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RecentReadingsProperties();
+        properties.setEnabled(true);
+        properties.setCapacity(5);
+        recentReadings = new RecentReadings(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void servesNothingUntilLoaded() {
+
+        // when
+        recentReadings.add(SensorType.AIR, reading(1, 0));
+
+        // then
+        assertThat(recentReadings.find(SensorType.AIR, DateRange.ofDay(DAY))).isEmpty();
+    }
+
+    @Test
+    void servesEverythingWhenDbHasFewerReadingsThanCapacity() {
+
+        // given
+        recentReadings.load(SensorType.AIR, limit -> readings(1, 3));
+
+        // when
+        recentReadings.add(SensorType.AIR, reading(4, 30));
+
+        // then
+        assertThat(recentReadings.<AirSensor>find(SensorType.AIR, DateRange.ofDay(DAY)))
+                .hasValueSatisfying(sensors -> assertThat(sensors).extracting(AirSensor::getId)
+                        .containsExactly(3L, 2L, 1L, 4L));
+        assertThat(recentReadings.find(SensorType.AIR, DateRange.ofDay(DAY.minusYears(1)))).hasValue(List.of());
+    }
+
+    @Test
+    void fallsThroughForRangesBeforeOldestReadingItIsSureToHave() {
+
+        // given
+        recentReadings.load(SensorType.AIR, limit -> readings(1, limit));
+        recentReadings.add(SensorType.AIR, reading(6, 30));
+
+        // then
+        assertThat(recentReadings.find(SensorType.AIR, DateRange.ofDay(DAY))).isEmpty();
+        DateRange recent = DateRange.of(DAY.atTime(1, 2), DAY.atTime(2, 0));
+        assertThat(recentReadings.find(SensorType.AIR, recent,
+                row -> new AirSensorHumidityDTO(row.getTime(), row.getMetric(0))))
+                .hasValueSatisfying(humidity -> assertThat(humidity).extracting(AirSensorHumidityDTO::getAirHumidity)
+                        .containsExactly(62.0, 63.0, 64.0, 90.0));
+    }
+
+    @Test
+    void keepsUpdatesAndDeletes() {
+
+        // given
+        recentReadings.load(SensorType.AIR, limit -> readings(1, 3));
+        AirSensor updated = reading(2, 1);
+        updated.getData().setAirHumidity(10.0);
+        updated.setModifiedAt(DAY.atTime(5, 0));
+
+        // when
+        recentReadings.update(SensorType.AIR, updated);
+        recentReadings.remove(SensorType.AIR, DateRange.of(DAY.atTime(1, 2), DAY.atTime(1, 3)));
+
+        // then
+        assertThat(recentReadings.<AirSensor>find(SensorType.AIR, DateRange.ofDay(DAY)))
+                .hasValue(List.of(reading(3, 0), updated));
+        assertThat(recentReadings.findVersion(SensorType.AIR, DateRange.ofDay(DAY)))
+                .hasValue(new DataVersionDTO(2L, 3L, DAY.atTime(5, 0)));
+    }
+
+    @Test
+    void keepsMissingMetricsOfGeneralSensor() {
+
+        // given
+        GeneralSensor sensor = new GeneralSensor(1L, new GeneralSensor.Data(21.5, null, 300.0, null, DAY.atTime(12, 0)));
+        recentReadings.load(SensorType.GENERAL, limit -> Collections.emptyList());
+
+        // when
+        recentReadings.add(SensorType.GENERAL, sensor);
+
+        // then
+        assertThat(recentReadings.<GeneralSensor>find(SensorType.GENERAL, DateRange.ofDay(DAY)))
+                .hasValue(List.of(sensor));
+    }
+
+    @Test
+    void servesNothingWhenDisabled() {
+
+        // given
+        properties.setEnabled(false);
+        recentReadings = new RecentReadings(properties, new SimpleMeterRegistry());
+
+        // when
+        recentReadings.load(SensorType.AIR, limit -> readings(1, 3));
+
+        // then
+        assertThat(recentReadings.find(SensorType.AIR, DateRange.ofDay(DAY))).isEmpty();
+        assertThat(recentReadings.findVersion(SensorType.AIR, DateRange.ofDay(DAY))).isEmpty();
+    }
+
+    // Newest first, like the DAO returns them. Reading with ID i is taken at 01:00 plus (count - i) minutes
+    private static List<AirSensor> readings(int firstId, int count) {
+        return IntStream.range(firstId, firstId + count)
+                .mapToObj(id -> reading(id, count - id))
+                .collect(Collectors.toList());
+    }
+
+    private static AirSensor reading(long id, int minute) {
+        LocalDateTime time = DAY.atTime(1, 0).plusMinutes(minute);
+        return new AirSensor(id, new AirSensor.Data(time, 60.0 + minute, 23.38));
+    }
+}
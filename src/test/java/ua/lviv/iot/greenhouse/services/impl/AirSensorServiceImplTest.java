@@ -1,40 +1,83 @@
 package ua.lviv.iot.greenhouse.services.impl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import ua.lviv.iot.greenhouse.archive.ArchiveProperties;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.QueryCacheProperties;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.dao.IdRange;
 import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorHumidityDTO;
 import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorToUpdateDTO;
 import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
-import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongBucketFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+import ua.lviv.iot.greenhouse.ingestion.WriteBehindQueue;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
 import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.recent.RecentReadingsProperties;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.DateRange;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class) // Automatically opens and closes Mocks
 class AirSensorServiceImplTest {
 
+    // Readings are stored with microseconds, so this is the last moment of a day the DB can hold
+    private static final LocalTime LAST_MICROSECOND = LocalTime.MAX.truncatedTo(ChronoUnit.MICROS);
+
     @Mock
     private AirSensorDAO airSensorDAO;
+    @Mock
+    private WriteBehindQueue<AirSensor> airSensorIngestionQueue;
+    @Mock
+    private RollupService rollupService;
+    @Mock
+    private SensorStreamHub sensorStreamHub;
     private AirSensorServiceImpl airSensorService;
 
     @BeforeEach
     void setUp() {
-        airSensorService = new AirSensorServiceImpl(airSensorDAO);
+        RecentReadingsProperties recentReadingsProperties = new RecentReadingsProperties();
+        recentReadingsProperties.setEnabled(true);
+        airSensorService = new AirSensorServiceImpl(airSensorDAO, airSensorIngestionQueue, rollupService,
+                new SensorQueryCache(new QueryCacheProperties(), new SimpleMeterRegistry()),
+                new SensorMetrics(new SimpleMeterRegistry()), sensorStreamHub,
+                new RecentReadings(recentReadingsProperties, new SimpleMeterRegistry()),
+                new SensorArchive(new ArchiveProperties()));
     }
 
     @Test
@@ -44,6 +87,7 @@ class AirSensorServiceImplTest {
         LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
         AirSensorDTO airSensorDTO = new AirSensorDTO(dateTime, 70.6, 23.38);
         AirSensor expectedAirSensor = new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38));
+        given(airSensorDAO.save(any())).willAnswer(invocation -> invocation.getArgument(0));
 
         // when
         airSensorService.createSensorData(airSensorDTO);
@@ -55,6 +99,50 @@ class AirSensorServiceImplTest {
         assertThat(capturedAirSensor).isEqualTo(expectedAirSensor);
     }
 
+    @Test
+    void canQueueSensorDataWhenIngestionIsAsync() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        AirSensorDTO airSensorDTO = new AirSensorDTO(dateTime, 70.6, 23.38);
+        AirSensor expectedAirSensor = new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38));
+        given(airSensorIngestionQueue.isEnabled()).willReturn(true);
+
+        // when
+        AirSensor result = airSensorService.createSensorData(airSensorDTO);
+
+        // then
+        verify(airSensorIngestionQueue).submit(expectedAirSensor);
+        verify(airSensorDAO, never()).save(any());
+        assertThat(result.getId()).isNull();
+    }
+
+    @Test
+    void canCreateSensorDataBatchAndRejectInvalidRows() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        List<AirSensorDTO> airSensorDTOs = Arrays.asList(
+                new AirSensorDTO(dateTime, 70.6, 23.38),
+                null,
+                new AirSensorDTO(dateTime, Double.NaN, 23.38),
+                new AirSensorDTO(dateTime, 71.2, 23.5)
+        );
+
+        // when
+        BatchResultDTO<AirSensor> result = airSensorService.createSensorDataBatch(airSensorDTOs);
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AirSensor>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(airSensorDAO).saveAll(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue()).containsExactly(
+                new AirSensor(new AirSensor.Data(dateTime, 70.6, 23.38)),
+                new AirSensor(new AirSensor.Data(dateTime, 71.2, 23.5))
+        );
+        assertThat(result.getRejected()).extracting(RejectedRowDTO::getIndex).containsExactly(1, 2);
+    }
+
     @Test
     void canGetAllSensorDataWhenDateIsNull() {
 
@@ -72,37 +160,230 @@ class AirSensorServiceImplTest {
         LocalDate date = LocalDate.of(2021, Month.MAY, 1);
 
         // when
-        airSensorService.getAllSensorData(date.toString());
+        airSensorService.getAllSensorData(DateRange.ofDay(date));
 
         // then
         verify(airSensorDAO).findSensorByData_LocalDateTimeBetween(
-                date.atTime(LocalTime.MIN),
-                date.atTime(LocalTime.MAX)
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
         );
     }
 
     @Test
-    void throwExceptionInGetAllSensorDataWhenWrongDateFormat() {
+    void queriesPastDayOnlyOnceUntilItChanges() {
 
         // given
-        String date = "2002.11.23";
+        LocalDate date = LocalDate.of(2021, Month.MAY, 1);
+        given(airSensorDAO.findSensorById(1L)).willReturn(Optional.of(
+                new AirSensor(1L, new AirSensor.Data(date.atTime(12, 0), 70.6, 23.38))));
 
         // when
+        airSensorService.getAllSensorData(DateRange.ofDay(date));
+        airSensorService.getAllSensorData(DateRange.ofDay(date));
+        airSensorService.updateDataById(new AirSensorToUpdateDTO(1L, 60.8, 23.2));
+        airSensorService.getAllSensorData(DateRange.ofDay(date));
+
         // then
-        assertThatThrownBy(() -> airSensorService.getAllSensorData(date))
-                .isInstanceOf(WrongDateFormatException.class)
-                .hasMessageContaining("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+        verify(airSensorDAO, times(2)).findSensorByData_LocalDateTimeBetween(
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
+        );
     }
 
     @Test
-    @Disabled("Test completely depends on getAllSensorData() method, which is tested")
-    void canGetHumidityData() {
+    void servesRecentSensorDataFromMemoryOnceLoaded() {
+
+        // given
+        LocalDate date = LocalDate.of(2021, Month.MAY, 1);
+        given(airSensorDAO.findByOrderByData_LocalDateTimeDescIdDesc(any())).willReturn(List.of(
+                new AirSensor(1L, new AirSensor.Data(date.atTime(11, 0), 70.6, 23.38))));
+        given(airSensorDAO.save(any()))
+                .willAnswer(invocation -> new AirSensor(2L, invocation.<AirSensor>getArgument(0).getData()));
+        airSensorService.loadRecentSensorData();
+        airSensorService.createSensorData(new AirSensorDTO(date.atTime(12, 0), 60.8, 23.2));
+
+        // when
+        List<AirSensor> sensors = airSensorService.getAllSensorData(DateRange.ofDay(date));
+
+        // then
+        assertThat(sensors).extracting(AirSensor::getId).containsExactly(1L, 2L);
+        assertThat(airSensorService.getHumidityData(DateRange.ofDay(date)))
+                .extracting(AirSensorHumidityDTO::getAirHumidity)
+                .containsExactly(70.6, 60.8);
+        verify(airSensorDAO, never()).findSensorByData_LocalDateTimeBetween(any(), any());
+        verify(airSensorDAO, never()).findHumidityByData_LocalDateTimeBetween(any(), any());
     }
 
     @Test
-    @Disabled("Test completely depends on getAllSensorData() method, which is tested")
-    void canGetTemperatureData() {
+    void canGetLatestSensorDataAfterCreatingIt() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        given(airSensorDAO.save(any())).willAnswer(invocation -> invocation.getArgument(0));
+        AirSensor sensor = airSensorService.createSensorData(new AirSensorDTO(dateTime, 70.6, 23.38));
+
+        // when
+        AirSensor latestSensor = airSensorService.getLatestSensorData();
+
+        // then
+        assertThat(latestSensor).isSameAs(sensor);
+    }
+
+    @Test
+    void throwExceptionInGetLatestSensorDataWhenThereIsNoData() {
+
+        // when
+        // then
+        assertThatThrownBy(() -> airSensorService.getLatestSensorData())
+                .isInstanceOf(NoDataFoundException.class)
+                .hasMessageContaining("There is no data for the air sensor yet");
+    }
+
+    @Test
+    void canGetSensorDataPageAfterId() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        AirSensor airSensor = new AirSensor(5L, new AirSensor.Data(dateTime, 70.6, 23.38));
+        given(airSensorDAO.findPageAfterId(4L, PageRequest.of(0, 1))).willReturn(Collections.singletonList(airSensor));
+
+        // when
+        KeysetPageDTO<AirSensor> page = airSensorService.getSensorDataPage(4L, null, 1);
+
+        // then
+        assertThat(page.getItems()).containsExactly(airSensor);
+        assertThat(page.getNextAfterId()).isEqualTo(5L);
+        assertThat(page.getNextAfterTimestamp()).isNull();
+    }
+
+    @Test
+    void canGetSensorDataPageAfterTimestamp() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        AirSensor airSensor = new AirSensor(3L, new AirSensor.Data(dateTime.plusMinutes(1), 70.6, 23.38));
+        given(airSensorDAO.findPageAfterTimestamp(dateTime, 4L, PageRequest.of(0, 1)))
+                .willReturn(Collections.singletonList(airSensor));
+
+        // when
+        KeysetPageDTO<AirSensor> page = airSensorService.getSensorDataPage(4L, dateTime, 1);
+
+        // then
+        assertThat(page.getItems()).containsExactly(airSensor);
+        assertThat(page.getNextAfterId()).isEqualTo(3L);
+        assertThat(page.getNextAfterTimestamp()).isEqualTo(dateTime.plusMinutes(1));
+    }
+
+    @Test
+    void canGetLastSensorDataPage() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        given(airSensorDAO.findPageAfterTimestamp(dateTime, 0L, PageRequest.of(0, 10)))
+                .willReturn(Collections.emptyList());
+
+        // when
+        KeysetPageDTO<AirSensor> page = airSensorService.getSensorDataPage(null, dateTime, 10);
+
+        // then
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextAfterId()).isNull();
+    }
+
+    @Test
+    void throwExceptionInGetAllSensorDataWhenRangeIsTooLong() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        DateRange range = DateRange.of(from, from.plus(DateRange.MAX_LENGTH).plusSeconds(1));
+
+        // when
+        // then
+        assertThatThrownBy(() -> airSensorService.getAllSensorData(range))
+                .isInstanceOf(WrongDateRangeException.class)
+                .hasMessageContaining("Range is too long");
+        verifyNoInteractions(airSensorDAO);
+    }
+
+    @Test
+    void canGetHumidityDataWhenDateIsNull() {
+
+        // when
+        airSensorService.getHumidityData(null);
+
+        // then
+        verify(airSensorDAO).findAllHumidity();
+    }
+
+    @Test
+    void canGetHumidityDataWhenDateIsGiven() {
+
+        // given
+        LocalDate date = LocalDate.of(2021, Month.MAY, 1);
+
+        // when
+        airSensorService.getHumidityData(DateRange.ofDay(date));
+
+        // then
+        verify(airSensorDAO).findHumidityByData_LocalDateTimeBetween(
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
+        );
+    }
+
+    @Test
+    void canGetTemperatureDataWhenDateIsNull() {
+
+        // when
+        airSensorService.getTemperatureData(null);
+
+        // then
+        verify(airSensorDAO).findAllTemperature();
+    }
+
+    @Test
+    void canGetTemperatureDataWhenDateIsGiven() {
+
+        // given
+        LocalDate date = LocalDate.of(2021, Month.MAY, 1);
+
+        // when
+        airSensorService.getTemperatureData(DateRange.ofDay(date));
+
+        // then
+        verify(airSensorDAO).findTemperatureByData_LocalDateTimeBetween(
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
+        );
+    }
+
+    @Test
+    void canGetAggregatedData() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        LocalDateTime to = from.plusDays(1);
+
+        // when
+        airSensorService.getAggregatedData(DateRange.of(from, to), "5m");
+
+        // then
+        verify(rollupService).aggregate(SensorType.AIR, from, to, 300);
+    }
+
+    @Test
+    void throwExceptionInGetAggregatedDataWhenTooManyBuckets() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        DateRange range = DateRange.of(from, from.plusYears(1));
+
+        // when
+        // then
+        assertThatThrownBy(() -> airSensorService.getAggregatedData(range, "1m"))
+                .isInstanceOf(WrongBucketFormatException.class)
+                .hasMessageContaining("too many buckets");
+        verifyNoInteractions(rollupService);
     }
 
     @Test
@@ -119,6 +400,7 @@ class AirSensorServiceImplTest {
         airSensorService.updateDataById(airSensorToUpdateDTO);
 
         // then
+        verify(rollupService).markChanged(SensorType.AIR, dateTime);
         ArgumentCaptor<AirSensor> argumentCaptor = ArgumentCaptor.forClass(AirSensor.class);
         verify(airSensorDAO).save(argumentCaptor.capture());
         AirSensor capturedAirSensor = argumentCaptor.getValue();
@@ -145,11 +427,20 @@ class AirSensorServiceImplTest {
     @Test
     void canDeleteAllSensorDataWhenDateIsNull() {
 
+        // given
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(1L);
+        given(idRange.getMaxId()).willReturn(15_000L);
+        given(airSensorDAO.findIdRange()).willReturn(idRange);
+        given(airSensorDAO.deleteChunk(1L, 10_000L)).willReturn(9_000);
+        given(airSensorDAO.deleteChunk(10_001L, 15_000L)).willReturn(5_000);
+
         // when
-        airSensorService.deleteAllSensorData(null);
+        long deleted = airSensorService.deleteAllSensorData(null);
 
         // then
-        verify(airSensorDAO).deleteAll();
+        assertThat(deleted).isEqualTo(14_000L);
+        verify(rollupService).markAllChanged(SensorType.AIR);
     }
 
     @Test
@@ -158,27 +449,63 @@ class AirSensorServiceImplTest {
         // given
         LocalDate date = LocalDate.of(2021, Month.MAY, 1);
 
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(3L);
+        given(idRange.getMaxId()).willReturn(7L);
+        given(airSensorDAO.findIdRangeByData_LocalDateTimeBetween(date.atStartOfDay(), date.atTime(LAST_MICROSECOND)))
+                .willReturn(idRange);
+
         // when
-        airSensorService.deleteAllSensorData(date.toString());
+        airSensorService.deleteAllSensorData(DateRange.ofDay(date));
 
         // then
-        verify(airSensorDAO).deleteSensorByData_LocalDateTimeBetween(
-                date.atTime(LocalTime.MIN),
-                date.atTime(LocalTime.MAX)
+        verify(airSensorDAO).deleteChunkByData_LocalDateTimeBetween(
+                3L,
+                7L,
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
         );
     }
 
     @Test
-    void throwExceptionInDeleteAllSensorDataWhenWrongDateFormat() {
+    void canDeleteSensorDataOfSeveralDays() {
 
         // given
-        String date = "2002.11.23";
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 6, 0);
+        LocalDateTime to = from.plusDays(3);
+
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(3L);
+        given(idRange.getMaxId()).willReturn(7L);
+        given(airSensorDAO.findIdRangeByData_LocalDateTimeBetween(from, to.minusNanos(1000))).willReturn(idRange);
 
         // when
+        airSensorService.deleteAllSensorData(DateRange.of(from, to));
+
+        // then
+        verify(airSensorDAO).deleteChunkByData_LocalDateTimeBetween(3L, 7L, from, to.minusNanos(1000));
+    }
+
+    @Test
+    void derivedStateIsUpdatedWhenChunkOfDeleteFails() {
+
+        // given
+        DateRange range = DateRange.ofDay(LocalDate.of(2021, Month.MAY, 1));
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(1L);
+        given(idRange.getMaxId()).willReturn(15_000L);
+        given(airSensorDAO.findIdRangeByData_LocalDateTimeBetween(range.getFrom(), range.getLast())).willReturn(idRange);
+        given(airSensorDAO.deleteChunkByData_LocalDateTimeBetween(1L, 10_000L, range.getFrom(), range.getLast()))
+                .willReturn(9_000);
+        given(airSensorDAO.deleteChunkByData_LocalDateTimeBetween(10_001L, 15_000L, range.getFrom(), range.getLast()))
+                .willThrow(new IllegalStateException("Lock wait timeout exceeded"));
+
+        // when
+        assertThatThrownBy(() -> airSensorService.deleteAllSensorData(range))
+                .isInstanceOf(IllegalStateException.class);
+
         // then
-        assertThatThrownBy(() -> airSensorService.deleteAllSensorData(date))
-                .isInstanceOf(WrongDateFormatException.class)
-                .hasMessageContaining("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+        verify(rollupService).markChanged(SensorType.AIR, range);
+        verify(airSensorDAO).findFirstByOrderByData_LocalDateTimeDescIdDesc();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ua.lviv.iot.greenhouse.archive.ArchiveConfig;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.QueryCacheConfig;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.RollupChangedDayDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorDTO;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorToUpdateDTO;
+import ua.lviv.iot.greenhouse.ingestion.IngestionConfig;
+import ua.lviv.iot.greenhouse.metrics.MetricsConfig;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
+import ua.lviv.iot.greenhouse.metrics.SqlStatementCounter;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.recent.RecentReadingsConfig;
+import ua.lviv.iot.greenhouse.rollup.RollupConfig;
+import ua.lviv.iot.greenhouse.services.AirSensorService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.stream.StreamConfig;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Exact number of SQL statements of every service method, so a change that adds queries shows up here.
+// Readings are saved by the DAO, past the readings kept in memory, so reads always go to the DB
+@DataJpaTest(properties = "greenhouse.recent-readings.enabled=false")
+@Import({AirSensorServiceImpl.class, RollupServiceImpl.class, SensorQueryCache.class, SensorMetrics.class,
+        IngestionConfig.class, RollupConfig.class, QueryCacheConfig.class, MetricsConfig.class,
+        SimpleMeterRegistry.class, SensorTimeSeriesDAOs.class, SensorStreamHub.class, StreamConfig.class,
+        ObjectMapper.class, RecentReadings.class, RecentReadingsConfig.class, SensorArchive.class,
+        ArchiveConfig.class})
+class AirSensorServiceStatementsTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, Month.MAY, 1);
+
+    @Autowired
+    private AirSensorService airSensorService;
+    @Autowired
+    private AirSensorDAO airSensorDAO;
+    @Autowired
+    private RollupChangedDayDAO rollupChangedDayDAO;
+    @Autowired
+    private EntityManager entityManager;
+    private SqlStatementCounter sqlStatementCounter;
+
+    @BeforeEach
+    void setUp() {
+        sqlStatementCounter = new SqlStatementCounter(entityManager);
+    }
+
+    // IDs come from a sequence in blocks of 50, so inserts only count the same in a fresh context
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void createSensorData() {
+
+        // given
+        saveReadings(DAY, 1);
+
+        // then
+        sqlStatementCounter.assertStatements(1, () ->
+                airSensorService.createSensorData(new AirSensorDTO(DAY.atTime(12, 0), 70.6, 23.38)));
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    void createSensorDataBatch() {
+
+        // given
+        saveReadings(DAY, 1);
+        List<AirSensorDTO> airSensorDTOs = IntStream.range(0, 40)
+                .mapToObj(i -> new AirSensorDTO(DAY.atTime(12, i), 70.6, 23.38))
+                .collect(Collectors.toList());
+
+        // then
+        sqlStatementCounter.assertStatements(1, () -> airSensorService.createSensorDataBatch(airSensorDTOs));
+    }
+
+    @Test
+    void getAllSensorDataOfPastDayIsReadOnce() {
+
+        // given
+        saveReadings(DAY, 10);
+
+        // then
+        List<AirSensor> sensors = sqlStatementCounter.assertStatements(1, () ->
+                airSensorService.getAllSensorData(DateRange.ofDay(DAY)));
+        sqlStatementCounter.assertStatements(0, () -> airSensorService.getAllSensorData(DateRange.ofDay(DAY)));
+        assertThat(sensors).hasSize(10);
+    }
+
+    @Test
+    void getAllSensorDataOfSeveralDays() {
+
+        // given
+        saveReadings(DAY, 10);
+
+        // then
+        sqlStatementCounter.assertStatements(1, () -> airSensorService.getAllSensorData(
+                DateRange.of(DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay())));
+    }
+
+    @Test
+    void getHumidityData() {
+
+        // given
+        saveReadings(LocalDate.now(), 10);
+
+        // then
+        sqlStatementCounter.assertStatements(1, () -> airSensorService.getHumidityData(DateRange.ofDay(LocalDate.now())));
+    }
+
+    @Test
+    void getSensorDataPage() {
+
+        // given
+        saveReadings(DAY, 10);
+
+        // then
+        sqlStatementCounter.assertStatements(1, () -> airSensorService.getSensorDataPage(null, null, 5));
+    }
+
+    @Test
+    void getAggregatedData() {
+
+        // given
+        saveReadings(DAY, 10);
+
+        // then
+        sqlStatementCounter.assertStatements(2, () -> airSensorService.getAggregatedData(
+                DateRange.ofDay(DAY), "1h"));
+    }
+
+    // The reading is updated and its day is marked for rollups to be recomputed
+    @Test
+    void updateDataById() {
+
+        // given
+        AirSensor sensor = saveReadings(DAY, 1).get(0);
+
+        // then
+        sqlStatementCounter.assertStatements(3, () ->
+                airSensorService.updateDataById(new AirSensorToUpdateDTO(sensor.getId(), 60.0, 20.0)));
+    }
+
+    // Deletes run outside of the transaction of the test, in a transaction per chunk
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void deleteAllSensorData() {
+
+        // given
+        saveReadings(DAY, 10);
+
+        // then
+        try {
+            sqlStatementCounter.assertStatements(4, () -> airSensorService.deleteAllSensorData(DateRange.ofDay(DAY)));
+        } finally {
+            airSensorDAO.deleteChunk(Long.MIN_VALUE, Long.MAX_VALUE);
+            rollupChangedDayDAO.deleteAllInBatch();
+        }
+    }
+
+    private List<AirSensor> saveReadings(LocalDate day, int count) {
+        List<AirSensor> sensors = airSensorDAO.saveAll(IntStream.range(0, count)
+                .mapToObj(i -> new AirSensor(new AirSensor.Data(day.atTime(1, i), 70.6, 23.38)))
+                .collect(Collectors.toList()));
+        // Without a transaction of the test, saveAll has committed them already
+        if (TestTransaction.isActive()) {
+            entityManager.flush();
+        }
+        return sensors;
+    }
+}
@@ -0,0 +1,112 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ua.lviv.iot.greenhouse.archive.ArchiveConfig;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.services.ArchiveService;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({ArchiveServiceImpl.class, SensorArchive.class, ArchiveConfig.class, SensorTimeSeriesDAOs.class,
+        SimpleMeterRegistry.class})
+class ArchiveServiceImplTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final LocalDate YESTERDAY = TODAY.minusDays(1);
+    private static final LocalDate TWO_DAYS_AGO = TODAY.minusDays(2);
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private AirSensorDAO airSensorDAO;
+    @Autowired
+    private ArchiveService archiveService;
+    @Autowired
+    private SensorArchive sensorArchive;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) {
+        registry.add("greenhouse.archive.enabled", () -> "true");
+        registry.add("greenhouse.archive.directory", () -> directory.toString());
+    }
+
+    @Test
+    void exportsEveryClosedDayOnce() {
+
+        // given
+        save(TWO_DAYS_AGO.atTime(1, 0));
+        save(YESTERDAY.atTime(1, 0));
+        save(YESTERDAY.atTime(2, 0));
+        save(TODAY.atStartOfDay());
+
+        // when
+        long exported = archiveService.export();
+        long exportedAgain = archiveService.export();
+
+        // then
+        assertThat(exported).isEqualTo(2);
+        assertThat(exportedAgain).isZero();
+        DateRange yesterday = DateRange.ofDay(YESTERDAY);
+        assertThat(sensorArchive.findVersion(SensorType.AIR, YESTERDAY))
+                .contains(airSensorDAO.findDataVersionBetween(yesterday.getFrom(), yesterday.getLast()));
+        assertThat(sensorArchive.findVersion(SensorType.AIR, TODAY)).isEmpty();
+    }
+
+    @Test
+    void exportsDayAgainWhenItChanges() {
+
+        // given
+        save(YESTERDAY.atTime(1, 0));
+        archiveService.export();
+        save(YESTERDAY.atTime(3, 0));
+
+        // when
+        long exported = archiveService.export();
+
+        // then
+        assertThat(exported).isEqualTo(1);
+        assertThat(sensorArchive.findVersion(SensorType.AIR, YESTERDAY))
+                .hasValueSatisfying(version -> assertThat(version.getRowCount()).isEqualTo(2));
+    }
+
+    @Test
+    void limitsPurgeToDaysThatAreArchived() {
+
+        // given
+        save(TWO_DAYS_AGO.atTime(1, 0));
+        save(YESTERDAY.atTime(1, 0));
+        archiveService.export();
+        save(YESTERDAY.atTime(5, 0));
+        LocalDateTime now = LocalDateTime.now();
+
+        // when
+        LocalDateTime before = archiveService.limitPurge(SensorType.AIR, now);
+        LocalDateTime beforeTwoDaysAgo = archiveService.limitPurge(SensorType.AIR, TWO_DAYS_AGO.atTime(12, 0));
+
+        // then
+        assertThat(before).isEqualTo(YESTERDAY.atStartOfDay());
+        assertThat(beforeTwoDaysAgo).isEqualTo(TWO_DAYS_AGO.atTime(12, 0));
+    }
+
+    private void save(LocalDateTime time) {
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(time, 60.0, 20.0)));
+    }
+}
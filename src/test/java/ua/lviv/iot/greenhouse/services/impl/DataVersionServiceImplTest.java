@@ -0,0 +1,108 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.recent.RecentReadingsConfig;
+import ua.lviv.iot.greenhouse.rollup.RollupConfig;
+import ua.lviv.iot.greenhouse.services.DataVersionService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.utils.ConditionalRequests;
+import ua.lviv.iot.greenhouse.utils.DateRange;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.Month;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({DataVersionServiceImpl.class, RollupServiceImpl.class, RollupConfig.class, SensorTimeSeriesDAOs.class,
+        RecentReadings.class, RecentReadingsConfig.class, SimpleMeterRegistry.class})
+class DataVersionServiceImplTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+    private static final DateRange RANGE = DateRange.ofDay(DATE_TIME.toLocalDate());
+
+    @Autowired
+    private AirSensorDAO airSensorDAO;
+    @Autowired
+    private DataVersionService dataVersionService;
+    @Autowired
+    private RollupService rollupService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void aggregatesAreModifiedWhenChangedDaysAreRecomputed() {
+
+        // given
+        AirSensor sensor = airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(1), 70.0, 20.0)));
+        entityManager.flush();
+        rollupService.rollUp();
+        rollupService.rollUp();
+        sensor.getData().setAirHumidity(90.0);
+        entityManager.flush();
+        rollupService.markChanged(SensorType.AIR, sensor.getData().getLocalDateTime());
+        String etag = aggregateEtag();
+
+        // when
+        boolean notModifiedBeforeRollUp = isAggregateNotModified(etag);
+        rollupService.rollUp();
+        boolean notModifiedAfterRollUp = isAggregateNotModified(etag);
+
+        // then
+        assertThat(notModifiedBeforeRollUp).isTrue();
+        assertThat(notModifiedAfterRollUp).isFalse();
+    }
+
+    @Test
+    void aggregatesAreNotModifiedWhenWatermarkPassesOtherReadings() {
+
+        // given
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(1), 70.0, 20.0)));
+        entityManager.flush();
+        rollupService.rollUp();
+        rollupService.rollUp();
+        String etag = aggregateEtag();
+
+        // when
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusDays(1), 75.0, 21.0)));
+        entityManager.flush();
+        rollupService.rollUp();
+        rollupService.rollUp();
+
+        // then
+        assertThat(isAggregateNotModified(etag)).isTrue();
+    }
+
+    private boolean isAggregateNotModified(String etag) {
+        return ConditionalRequests.isNotModified(webRequest(etag),
+                dataVersionService.getAggregateVersion(SensorType.AIR, RANGE));
+    }
+
+    private String aggregateEtag() {
+        ServletWebRequest request = webRequest(null);
+        ConditionalRequests.isNotModified(request, dataVersionService.getAggregateVersion(SensorType.AIR, RANGE));
+        return request.getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private static ServletWebRequest webRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/air-sensor/aggregate");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
@@ -1,39 +1,79 @@
 package ua.lviv.iot.greenhouse.services.impl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import ua.lviv.iot.greenhouse.archive.ArchiveProperties;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.QueryCacheProperties;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.dao.IdRange;
 import ua.lviv.iot.greenhouse.dao.LuminositySensorDAO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorToUpdateDTO;
 import ua.lviv.iot.greenhouse.dto.luminosity_sensor.LuminositySensorDTO;
 import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
-import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongBucketFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+import ua.lviv.iot.greenhouse.ingestion.WriteBehindQueue;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
 import ua.lviv.iot.greenhouse.models.LuminositySensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.recent.RecentReadingsProperties;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.DateRange;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 class LuminositySensorServiceImplTest {
 
+    // Readings are stored with microseconds, so this is the last moment of a day the DB can hold
+    private static final LocalTime LAST_MICROSECOND = LocalTime.MAX.truncatedTo(ChronoUnit.MICROS);
+
     @Mock
     private LuminositySensorDAO luminositySensorDAO;
+    @Mock
+    private WriteBehindQueue<LuminositySensor> luminositySensorIngestionQueue;
+    @Mock
+    private RollupService rollupService;
+    @Mock
+    private SensorStreamHub sensorStreamHub;
     private LuminositySensorServiceImpl luminositySensorService;
 
     @BeforeEach
     void setUp() {
-        luminositySensorService = new LuminositySensorServiceImpl(luminositySensorDAO);
+        luminositySensorService = new LuminositySensorServiceImpl(luminositySensorDAO, luminositySensorIngestionQueue, rollupService,
+                new SensorQueryCache(new QueryCacheProperties(), new SimpleMeterRegistry()),
+                new SensorMetrics(new SimpleMeterRegistry()), sensorStreamHub,
+                new RecentReadings(new RecentReadingsProperties(), new SimpleMeterRegistry()),
+                new SensorArchive(new ArchiveProperties()));
     }
 
     @Test
@@ -43,6 +83,7 @@ class LuminositySensorServiceImplTest {
         LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
         LuminositySensorDTO SensorDTO = new LuminositySensorDTO(dateTime, 70.6);
         LuminositySensor expectedLuminositySensor = new LuminositySensor(new LuminositySensor.Data(dateTime, 70.6));
+        given(luminositySensorDAO.save(any())).willAnswer(invocation -> invocation.getArgument(0));
 
         // when
         luminositySensorService.createSensorData(SensorDTO);
@@ -54,6 +95,50 @@ class LuminositySensorServiceImplTest {
         assertThat(capturedLuminositySensor).isEqualTo(expectedLuminositySensor);
     }
 
+    @Test
+    void canQueueSensorDataWhenIngestionIsAsync() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        LuminositySensorDTO luminositySensorDTO = new LuminositySensorDTO(dateTime, 70.6);
+        LuminositySensor expectedLuminositySensor = new LuminositySensor(new LuminositySensor.Data(dateTime, 70.6));
+        given(luminositySensorIngestionQueue.isEnabled()).willReturn(true);
+
+        // when
+        LuminositySensor result = luminositySensorService.createSensorData(luminositySensorDTO);
+
+        // then
+        verify(luminositySensorIngestionQueue).submit(expectedLuminositySensor);
+        verify(luminositySensorDAO, never()).save(any());
+        assertThat(result.getId()).isNull();
+    }
+
+    @Test
+    void canCreateSensorDataBatchAndRejectInvalidRows() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        List<LuminositySensorDTO> luminositySensorDTOs = Arrays.asList(
+                new LuminositySensorDTO(dateTime, 70.6),
+                null,
+                new LuminositySensorDTO(dateTime, Double.POSITIVE_INFINITY),
+                new LuminositySensorDTO(dateTime, 71.2)
+        );
+
+        // when
+        BatchResultDTO<LuminositySensor> result = luminositySensorService.createSensorDataBatch(luminositySensorDTOs);
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LuminositySensor>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(luminositySensorDAO).saveAll(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue()).containsExactly(
+                new LuminositySensor(new LuminositySensor.Data(dateTime, 70.6)),
+                new LuminositySensor(new LuminositySensor.Data(dateTime, 71.2))
+        );
+        assertThat(result.getRejected()).extracting(RejectedRowDTO::getIndex).containsExactly(1, 2);
+    }
+
     @Test
     void canGetAllSensorDataWhenDateIsNull() {
 
@@ -71,27 +156,115 @@ class LuminositySensorServiceImplTest {
         LocalDate date = LocalDate.of(2021, Month.MAY, 1);
 
         // when
-        luminositySensorService.getAllSensorData(date.toString());
+        luminositySensorService.getAllSensorData(DateRange.ofDay(date));
 
         // then
         verify(luminositySensorDAO).findSensorByData_LocalDateTimeBetween(
-                date.atTime(LocalTime.MIN),
-                date.atTime(LocalTime.MAX)
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
         );
     }
 
     @Test
-    void throwExceptionInGetAllSensorDataWhenWrongDateFormat() {
+    void canGetLatestSensorDataAfterCreatingIt() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        given(luminositySensorDAO.save(any())).willAnswer(invocation -> invocation.getArgument(0));
+        LuminositySensor sensor = luminositySensorService.createSensorData(new LuminositySensorDTO(dateTime, 70.6));
+
+        // when
+        LuminositySensor latestSensor = luminositySensorService.getLatestSensorData();
+
+        // then
+        assertThat(latestSensor).isSameAs(sensor);
+    }
+
+    @Test
+    void throwExceptionInGetLatestSensorDataWhenThereIsNoData() {
+
+        // when
+        // then
+        assertThatThrownBy(() -> luminositySensorService.getLatestSensorData())
+                .isInstanceOf(NoDataFoundException.class)
+                .hasMessageContaining("There is no data for the luminosity sensor yet");
+    }
+
+    @Test
+    void canGetSensorDataPageAfterId() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        LuminositySensor luminositySensor = new LuminositySensor(5L, new LuminositySensor.Data(dateTime, 70.6));
+        given(luminositySensorDAO.findPageAfterId(4L, PageRequest.of(0, 1))).willReturn(Collections.singletonList(luminositySensor));
+
+        // when
+        KeysetPageDTO<LuminositySensor> page = luminositySensorService.getSensorDataPage(4L, null, 1);
+
+        // then
+        assertThat(page.getItems()).containsExactly(luminositySensor);
+        assertThat(page.getNextAfterId()).isEqualTo(5L);
+        assertThat(page.getNextAfterTimestamp()).isNull();
+    }
+
+    @Test
+    void canGetLastSensorDataPage() {
 
         // given
-        String date = "2002.11.23";
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        given(luminositySensorDAO.findPageAfterTimestamp(dateTime, 0L, PageRequest.of(0, 10)))
+                .willReturn(Collections.emptyList());
 
         // when
+        KeysetPageDTO<LuminositySensor> page = luminositySensorService.getSensorDataPage(null, dateTime, 10);
+
         // then
-        assertThatThrownBy(() -> luminositySensorService.getAllSensorData(date))
-                .isInstanceOf(WrongDateFormatException.class)
-                .hasMessageContaining("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextAfterId()).isNull();
+    }
+
+    @Test
+    void throwExceptionInGetAllSensorDataWhenRangeIsTooLong() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        DateRange range = DateRange.of(from, from.plus(DateRange.MAX_LENGTH).plusSeconds(1));
+
+        // when
+        // then
+        assertThatThrownBy(() -> luminositySensorService.getAllSensorData(range))
+                .isInstanceOf(WrongDateRangeException.class)
+                .hasMessageContaining("Range is too long");
+        verifyNoInteractions(luminositySensorDAO);
+    }
+
+    @Test
+    void canGetAggregatedData() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        LocalDateTime to = from.plusDays(1);
+
+        // when
+        luminositySensorService.getAggregatedData(DateRange.of(from, to), "5m");
+
+        // then
+        verify(rollupService).aggregate(SensorType.LUMINOSITY, from, to, 300);
+    }
+
+    @Test
+    void throwExceptionInGetAggregatedDataWhenTooManyBuckets() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        DateRange range = DateRange.of(from, from.plusYears(1));
+
+        // when
+        // then
+        assertThatThrownBy(() -> luminositySensorService.getAggregatedData(range, "1m"))
+                .isInstanceOf(WrongBucketFormatException.class)
+                .hasMessageContaining("too many buckets");
+        verifyNoInteractions(rollupService);
     }
 
     @Test
@@ -108,6 +281,7 @@ class LuminositySensorServiceImplTest {
         luminositySensorService.updateDataById(luminositySensorToUpdateDTO);
 
         // then
+        verify(rollupService).markChanged(SensorType.LUMINOSITY, dateTime);
         ArgumentCaptor<LuminositySensor> argumentCaptor = ArgumentCaptor.forClass(LuminositySensor.class);
         verify(luminositySensorDAO).save(argumentCaptor.capture());
         LuminositySensor capturedLuminositySensor = argumentCaptor.getValue();
@@ -133,11 +307,20 @@ class LuminositySensorServiceImplTest {
     @Test
     void canDeleteAllSensorDataWhenDateIsNull() {
 
+        // given
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(1L);
+        given(idRange.getMaxId()).willReturn(15_000L);
+        given(luminositySensorDAO.findIdRange()).willReturn(idRange);
+        given(luminositySensorDAO.deleteChunk(1L, 10_000L)).willReturn(9_000);
+        given(luminositySensorDAO.deleteChunk(10_001L, 15_000L)).willReturn(5_000);
+
         // when
-        luminositySensorService.deleteAllSensorData(null);
+        long deleted = luminositySensorService.deleteAllSensorData(null);
 
         // then
-        verify(luminositySensorDAO).deleteAll();
+        assertThat(deleted).isEqualTo(14_000L);
+        verify(rollupService).markAllChanged(SensorType.LUMINOSITY);
     }
 
     @Test
@@ -146,27 +329,40 @@ class LuminositySensorServiceImplTest {
         // given
         LocalDate date = LocalDate.of(2021, Month.MAY, 1);
 
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(3L);
+        given(idRange.getMaxId()).willReturn(7L);
+        given(luminositySensorDAO.findIdRangeByData_LocalDateTimeBetween(date.atStartOfDay(), date.atTime(LAST_MICROSECOND)))
+                .willReturn(idRange);
+
         // when
-        luminositySensorService.deleteAllSensorData(date.toString());
+        luminositySensorService.deleteAllSensorData(DateRange.ofDay(date));
 
         // then
-        verify(luminositySensorDAO).deleteSensorByData_LocalDateTimeBetween(
-                date.atTime(LocalTime.MIN),
-                date.atTime(LocalTime.MAX)
+        verify(luminositySensorDAO).deleteChunkByData_LocalDateTimeBetween(
+                3L,
+                7L,
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
         );
     }
 
     @Test
-    void throwExceptionInDeleteAllSensorDataWhenWrongDateFormat() {
+    void canDeleteSensorDataOfSeveralDays() {
 
         // given
-        String date = "2002.11.23";
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 6, 0);
+        LocalDateTime to = from.plusDays(3);
+
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(3L);
+        given(idRange.getMaxId()).willReturn(7L);
+        given(luminositySensorDAO.findIdRangeByData_LocalDateTimeBetween(from, to.minusNanos(1000))).willReturn(idRange);
 
         // when
+        luminositySensorService.deleteAllSensorData(DateRange.of(from, to));
+
         // then
-        assertThatThrownBy(() -> luminositySensorService.deleteAllSensorData(date))
-                .isInstanceOf(WrongDateFormatException.class)
-                .hasMessageContaining("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+        verify(luminositySensorDAO).deleteChunkByData_LocalDateTimeBetween(3L, 7L, from, to.minusNanos(1000));
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ua.lviv.iot.greenhouse.archive.ArchiveConfig;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.QueryCacheConfig;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.SensorRollupDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.RollupResolution;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.recent.RecentReadingsConfig;
+import ua.lviv.iot.greenhouse.retention.RetentionConfig;
+import ua.lviv.iot.greenhouse.rollup.RollupConfig;
+import ua.lviv.iot.greenhouse.services.RetentionService;
+import ua.lviv.iot.greenhouse.services.RollupService;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "greenhouse.retention.defaults.raw=7d")
+@Import({RollupServiceImpl.class, RetentionServiceImpl.class, SensorQueryCache.class, RollupConfig.class,
+        RetentionConfig.class, QueryCacheConfig.class, SimpleMeterRegistry.class, SensorTimeSeriesDAOs.class,
+        RecentReadings.class, RecentReadingsConfig.class, ArchiveServiceImpl.class, SensorArchive.class,
+        ArchiveConfig.class})
+class RetentionServiceImplTest {
+
+    // Raw readings are kept for 7 days, and 1-minute rollups for the default 90 days
+    private static final LocalDateTime OLD = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusDays(30);
+    private static final LocalDateTime ANCIENT = OLD.minusDays(100);
+    private static final LocalDateTime RECENT = LocalDateTime.now().minusHours(1);
+
+    @Autowired
+    private AirSensorDAO airSensorDAO;
+    @Autowired
+    private SensorRollupDAO sensorRollupDAO;
+    @Autowired
+    private RollupService rollupService;
+    @Autowired
+    private RetentionService retentionService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void purgesOldReadingsOnlyAfterTheyAreRolledUp() {
+
+        // given
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(OLD.plusMinutes(1), 70.0, 20.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(OLD.plusMinutes(2), 80.0, 22.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(RECENT, 60.0, 19.0)));
+        entityManager.flush();
+
+        // when
+        long deletedBeforeRollup = retentionService.purge();
+        rollupService.rollUp();
+        rollupService.rollUp();
+        List<Object[]> aggregatesBeforePurge = rollupService.aggregate(SensorType.AIR, OLD, OLD.plusDays(1), 3600);
+        long deleted = retentionService.purge();
+
+        // then
+        assertThat(deletedBeforeRollup).isZero();
+        assertThat(deleted).isEqualTo(2);
+        assertThat(airSensorDAO.findAll()).extracting(sensor -> sensor.getData().getLocalDateTime())
+                .containsExactly(RECENT);
+        assertThat(rollupService.aggregate(SensorType.AIR, OLD, OLD.plusDays(1), 3600))
+                .usingRecursiveComparison()
+                .isEqualTo(aggregatesBeforePurge);
+        assertThat(meterRegistry.counter("greenhouse.retention.deleted.rows", "type", "air", "data", "raw").count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void purgesOldMinuteRollupsAndKeepsCoarserOnes() {
+
+        // given
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(ANCIENT.plusMinutes(1), 70.0, 20.0)));
+        entityManager.flush();
+        rollupService.rollUp();
+        rollupService.rollUp();
+
+        // when
+        retentionService.purge();
+
+        // then
+        assertThat(sensorRollupDAO.findByBucketStartBetween(
+                SensorType.AIR, RollupResolution.MINUTE, ANCIENT, ANCIENT.plusDays(1))).isEmpty();
+        assertThat(sensorRollupDAO.findByBucketStartBetween(
+                SensorType.AIR, RollupResolution.HOUR, ANCIENT, ANCIENT.plusDays(1))).hasSize(2);
+        assertThat(sensorRollupDAO.findByBucketStartBetween(
+                SensorType.AIR, RollupResolution.DAY, ANCIENT, ANCIENT.plusDays(1))).hasSize(2);
+    }
+}
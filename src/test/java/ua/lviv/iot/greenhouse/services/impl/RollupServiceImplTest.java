@@ -0,0 +1,164 @@
+package ua.lviv.iot.greenhouse.services.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import ua.lviv.iot.greenhouse.dao.AirSensorDAO;
+import ua.lviv.iot.greenhouse.dao.RollupChangedDayDAO;
+import ua.lviv.iot.greenhouse.dao.RollupWatermarkDAO;
+import ua.lviv.iot.greenhouse.dao.SensorRollupDAO;
+import ua.lviv.iot.greenhouse.dao.SensorTimeSeriesDAOs;
+import ua.lviv.iot.greenhouse.dto.air_sensor.AirSensorAggregateDTO;
+import ua.lviv.iot.greenhouse.mappers.AirSensorMapper;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.RollupWatermark;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.rollup.RollupConfig;
+import ua.lviv.iot.greenhouse.rollup.RollupProperties;
+import ua.lviv.iot.greenhouse.services.RollupService;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({RollupServiceImpl.class, RollupConfig.class, SensorTimeSeriesDAOs.class})
+class RollupServiceImplTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+
+    @Autowired
+    private AirSensorDAO airSensorDAO;
+    @Autowired
+    private RollupWatermarkDAO rollupWatermarkDAO;
+    @Autowired
+    private RollupService rollupService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private SensorTimeSeriesDAOs sensorDAOs;
+    @Autowired
+    private SensorRollupDAO sensorRollupDAO;
+    @Autowired
+    private RollupChangedDayDAO rollupChangedDayDAO;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private RollupProperties rollupProperties;
+
+    @Test
+    void rollupsWithNewerReadingsGiveSameAggregatesAsRawReadings() {
+
+        // given
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(61), 70.0, 20.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(63), 80.0, 22.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(62), 75.0, 21.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusHours(5), 60.0, 19.0)));
+        entityManager.flush();
+        // The first run only remembers max ID, the second one rolls up everything up to it
+        rollupService.rollUp();
+        rollupService.rollUp();
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(64), 50.0, 25.0)));
+        entityManager.flush();
+
+        // when
+        List<AirSensorAggregateDTO> aggregates = aggregate(SensorType.AIR, 3600);
+
+        // then
+        assertThat(rollupWatermarkDAO.findById(SensorType.AIR).map(RollupWatermark::getLastRolledUpId))
+                .hasValueSatisfying(watermark -> assertThat(watermark).isPositive());
+        assertThat(aggregates).hasSize(2);
+        assertThat(aggregates.get(0).getCount()).isEqualTo(4);
+        assertThat(aggregates.get(0).getAirHumidity().getMin()).isEqualTo(50.0);
+        assertThat(aggregates.get(0).getAirHumidity().getLast()).isEqualTo(50.0);
+        assertThat(aggregates).usingRecursiveComparison().isEqualTo(aggregateRawReadings(3600));
+    }
+
+    @Test
+    void lastValuesComeFromNewestReadingsByTime() {
+
+        // given
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(63), 80.0, 22.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(61), 70.0, 20.0)));
+        entityManager.flush();
+        rollupService.rollUp();
+        rollupService.rollUp();
+        // Saved late, but taken before the newest reading of the rollups
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(62), 50.0, 25.0)));
+        entityManager.flush();
+
+        // when
+        List<AirSensorAggregateDTO> aggregates = aggregate(SensorType.AIR, 3600);
+
+        // then
+        assertThat(aggregates).hasSize(1);
+        assertThat(aggregates.get(0).getAirHumidity().getLast()).isEqualTo(80.0);
+        assertThat(aggregates.get(0).getAirTemperature().getLast()).isEqualTo(22.0);
+        assertThat(aggregates).usingRecursiveComparison().isEqualTo(aggregateRawReadings(3600));
+    }
+
+    @Test
+    void changedDaysAreRecomputedFromRawReadings() {
+
+        // given
+        AirSensor sensor = airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(1), 70.0, 20.0)));
+        airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(2), 75.0, 21.0)));
+        entityManager.flush();
+        rollupService.rollUp();
+        rollupService.rollUp();
+
+        // when
+        sensor.getData().setAirHumidity(90.0);
+        entityManager.flush();
+        rollupService.markChanged(SensorType.AIR, sensor.getData().getLocalDateTime());
+        rollupService.rollUp();
+
+        // then
+        List<AirSensorAggregateDTO> aggregates = aggregate(SensorType.AIR, 60);
+        assertThat(aggregates.get(0).getAirHumidity().getMax()).isEqualTo(90.0);
+        assertThat(aggregates).usingRecursiveComparison().isEqualTo(aggregateRawReadings(60));
+    }
+
+    @Test
+    void daysChangedThroughOneNodeAreRecomputedByAnother() {
+
+        // given
+        AirSensor sensor = airSensorDAO.save(new AirSensor(new AirSensor.Data(DATE_TIME.plusMinutes(1), 70.0, 20.0)));
+        entityManager.flush();
+        rollupService.rollUp();
+        rollupService.rollUp();
+        sensor.getData().setAirHumidity(90.0);
+        entityManager.flush();
+        rollupService.markChanged(SensorType.AIR, sensor.getData().getLocalDateTime());
+        // Like a node that has just started, it knows nothing about the change
+        RollupService otherNode = new RollupServiceImpl(sensorDAOs, sensorRollupDAO, rollupWatermarkDAO,
+                rollupChangedDayDAO, transactionManager, rollupProperties);
+
+        // when
+        otherNode.rollUp();
+
+        // then
+        assertThat(rollupChangedDayDAO.findDays(SensorType.AIR)).isEmpty();
+        assertThat(aggregate(SensorType.AIR, 60).get(0).getAirHumidity().getMax()).isEqualTo(90.0);
+        assertThat(aggregate(SensorType.AIR, 60)).usingRecursiveComparison().isEqualTo(aggregateRawReadings(60));
+    }
+
+    private List<AirSensorAggregateDTO> aggregate(SensorType sensorType, long bucketSeconds) {
+        return rollupService.aggregate(sensorType, DATE_TIME, DATE_TIME.plusDays(1), bucketSeconds).stream()
+                .map(row -> AirSensorMapper.mapRowToAirSensorAggregateDTO(row, bucketSeconds))
+                .collect(Collectors.toList());
+    }
+
+    private List<AirSensorAggregateDTO> aggregateRawReadings(long bucketSeconds) {
+        return airSensorDAO.aggregateByBucket(DATE_TIME, DATE_TIME.plusDays(1), 0, Long.MAX_VALUE, bucketSeconds)
+                .stream()
+                .map(row -> AirSensorMapper.mapRowToAirSensorAggregateDTO(row, bucketSeconds))
+                .collect(Collectors.toList());
+    }
+}
@@ -1,40 +1,79 @@
 package ua.lviv.iot.greenhouse.services.impl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import ua.lviv.iot.greenhouse.archive.ArchiveProperties;
+import ua.lviv.iot.greenhouse.archive.SensorArchive;
+import ua.lviv.iot.greenhouse.cache.QueryCacheProperties;
+import ua.lviv.iot.greenhouse.cache.SensorQueryCache;
+import ua.lviv.iot.greenhouse.dao.IdRange;
 import ua.lviv.iot.greenhouse.dao.SoilSensorDAO;
+import ua.lviv.iot.greenhouse.dto.batch.BatchResultDTO;
+import ua.lviv.iot.greenhouse.dto.batch.RejectedRowDTO;
+import ua.lviv.iot.greenhouse.dto.page.KeysetPageDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorDTO;
 import ua.lviv.iot.greenhouse.dto.soil_sesnor.SoilSensorToUpdateDTO;
 import ua.lviv.iot.greenhouse.exception.NoDataFoundException;
-import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongBucketFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+import ua.lviv.iot.greenhouse.ingestion.WriteBehindQueue;
+import ua.lviv.iot.greenhouse.metrics.SensorMetrics;
 import ua.lviv.iot.greenhouse.models.SoilSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.RecentReadings;
+import ua.lviv.iot.greenhouse.recent.RecentReadingsProperties;
+import ua.lviv.iot.greenhouse.services.RollupService;
+import ua.lviv.iot.greenhouse.stream.SensorStreamHub;
+import ua.lviv.iot.greenhouse.utils.DateRange;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class) // Automatically opens and closes Mocks
 class SoilSensorServiceImplTest {
 
+    // Readings are stored with microseconds, so this is the last moment of a day the DB can hold
+    private static final LocalTime LAST_MICROSECOND = LocalTime.MAX.truncatedTo(ChronoUnit.MICROS);
+
     @Mock
     private SoilSensorDAO soilSensorDAO;
+    @Mock
+    private WriteBehindQueue<SoilSensor> soilSensorIngestionQueue;
+    @Mock
+    private RollupService rollupService;
+    @Mock
+    private SensorStreamHub sensorStreamHub;
     private SoilSensorServiceImpl soilSensorService;
 
     @BeforeEach
     void setUp() {
-        soilSensorService = new SoilSensorServiceImpl(soilSensorDAO);
+        soilSensorService = new SoilSensorServiceImpl(soilSensorDAO, soilSensorIngestionQueue, rollupService,
+                new SensorQueryCache(new QueryCacheProperties(), new SimpleMeterRegistry()),
+                new SensorMetrics(new SimpleMeterRegistry()), sensorStreamHub,
+                new RecentReadings(new RecentReadingsProperties(), new SimpleMeterRegistry()),
+                new SensorArchive(new ArchiveProperties()));
     }
 
     @Test
@@ -44,6 +83,7 @@ class SoilSensorServiceImplTest {
         LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
         SoilSensorDTO soilSensorDTO = new SoilSensorDTO(dateTime, 70.6, 23.38);
         SoilSensor expectedSoilSensor = new SoilSensor(new SoilSensor.Data(dateTime, 70.6, 23.38));
+        given(soilSensorDAO.save(any())).willAnswer(invocation -> invocation.getArgument(0));
 
         // when
         soilSensorService.createSensorData(soilSensorDTO);
@@ -55,6 +95,50 @@ class SoilSensorServiceImplTest {
         assertThat(capturedSoilSensor).isEqualTo(expectedSoilSensor);
     }
 
+    @Test
+    void canQueueSensorDataWhenIngestionIsAsync() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        SoilSensorDTO soilSensorDTO = new SoilSensorDTO(dateTime, 70.6, 23.38);
+        SoilSensor expectedSoilSensor = new SoilSensor(new SoilSensor.Data(dateTime, 70.6, 23.38));
+        given(soilSensorIngestionQueue.isEnabled()).willReturn(true);
+
+        // when
+        SoilSensor result = soilSensorService.createSensorData(soilSensorDTO);
+
+        // then
+        verify(soilSensorIngestionQueue).submit(expectedSoilSensor);
+        verify(soilSensorDAO, never()).save(any());
+        assertThat(result.getId()).isNull();
+    }
+
+    @Test
+    void canCreateSensorDataBatchAndRejectInvalidRows() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        List<SoilSensorDTO> soilSensorDTOs = Arrays.asList(
+                new SoilSensorDTO(dateTime, 70.6, 23.38),
+                null,
+                new SoilSensorDTO(dateTime, Double.NaN, 23.38),
+                new SoilSensorDTO(dateTime, 71.2, 23.5)
+        );
+
+        // when
+        BatchResultDTO<SoilSensor> result = soilSensorService.createSensorDataBatch(soilSensorDTOs);
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SoilSensor>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(soilSensorDAO).saveAll(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue()).containsExactly(
+                new SoilSensor(new SoilSensor.Data(dateTime, 70.6, 23.38)),
+                new SoilSensor(new SoilSensor.Data(dateTime, 71.2, 23.5))
+        );
+        assertThat(result.getRejected()).extracting(RejectedRowDTO::getIndex).containsExactly(1, 2);
+    }
+
     @Test
     void canGetAllSensorDataWhenDateIsNull() {
 
@@ -72,37 +156,167 @@ class SoilSensorServiceImplTest {
         LocalDate date = LocalDate.of(2021, Month.MAY, 1);
 
         // when
-        soilSensorService.getAllSensorData(date.toString());
+        soilSensorService.getAllSensorData(DateRange.ofDay(date));
 
         // then
         verify(soilSensorDAO).findSensorByData_LocalDateTimeBetween(
-                date.atTime(LocalTime.MIN),
-                date.atTime(LocalTime.MAX)
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
         );
     }
 
     @Test
-    void throwExceptionInGetAllSensorDataWhenWrongDateFormat() {
+    void canGetLatestSensorDataAfterCreatingIt() {
 
         // given
-        String date = "2002.11.23";
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        given(soilSensorDAO.save(any())).willAnswer(invocation -> invocation.getArgument(0));
+        SoilSensor sensor = soilSensorService.createSensorData(new SoilSensorDTO(dateTime, 70.6, 23.38));
 
         // when
+        SoilSensor latestSensor = soilSensorService.getLatestSensorData();
+
         // then
-        assertThatThrownBy(() -> soilSensorService.getAllSensorData(date))
-                .isInstanceOf(WrongDateFormatException.class)
-                .hasMessageContaining("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+        assertThat(latestSensor).isSameAs(sensor);
     }
 
     @Test
-    @Disabled("Test completely depends on getAllSensorData() method, which is tested")
-    void canGetHumidityData() {
+    void throwExceptionInGetLatestSensorDataWhenThereIsNoData() {
+
+        // when
+        // then
+        assertThatThrownBy(() -> soilSensorService.getLatestSensorData())
+                .isInstanceOf(NoDataFoundException.class)
+                .hasMessageContaining("There is no data for the soil sensor yet");
     }
 
     @Test
-    @Disabled("Test completely depends on getAllSensorData() method, which is tested")
-    void canGetTemperatureData() {
+    void canGetSensorDataPageAfterId() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        SoilSensor soilSensor = new SoilSensor(5L, new SoilSensor.Data(dateTime, 70.6, 23.38));
+        given(soilSensorDAO.findPageAfterId(4L, PageRequest.of(0, 1))).willReturn(Collections.singletonList(soilSensor));
+
+        // when
+        KeysetPageDTO<SoilSensor> page = soilSensorService.getSensorDataPage(4L, null, 1);
+
+        // then
+        assertThat(page.getItems()).containsExactly(soilSensor);
+        assertThat(page.getNextAfterId()).isEqualTo(5L);
+        assertThat(page.getNextAfterTimestamp()).isNull();
+    }
+
+    @Test
+    void canGetLastSensorDataPage() {
+
+        // given
+        LocalDateTime dateTime = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+        given(soilSensorDAO.findPageAfterTimestamp(dateTime, 0L, PageRequest.of(0, 10)))
+                .willReturn(Collections.emptyList());
+
+        // when
+        KeysetPageDTO<SoilSensor> page = soilSensorService.getSensorDataPage(null, dateTime, 10);
+
+        // then
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextAfterId()).isNull();
+    }
+
+    @Test
+    void throwExceptionInGetAllSensorDataWhenRangeIsTooLong() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        DateRange range = DateRange.of(from, from.plus(DateRange.MAX_LENGTH).plusSeconds(1));
+
+        // when
+        // then
+        assertThatThrownBy(() -> soilSensorService.getAllSensorData(range))
+                .isInstanceOf(WrongDateRangeException.class)
+                .hasMessageContaining("Range is too long");
+        verifyNoInteractions(soilSensorDAO);
+    }
+
+    @Test
+    void canGetHumidityDataWhenDateIsNull() {
+
+        // when
+        soilSensorService.getHumidityData(null);
+
+        // then
+        verify(soilSensorDAO).findAllHumidity();
+    }
+
+    @Test
+    void canGetHumidityDataWhenDateIsGiven() {
+
+        // given
+        LocalDate date = LocalDate.of(2021, Month.MAY, 1);
+
+        // when
+        soilSensorService.getHumidityData(DateRange.ofDay(date));
+
+        // then
+        verify(soilSensorDAO).findHumidityByData_LocalDateTimeBetween(
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
+        );
+    }
+
+    @Test
+    void canGetTemperatureDataWhenDateIsNull() {
+
+        // when
+        soilSensorService.getTemperatureData(null);
+
+        // then
+        verify(soilSensorDAO).findAllTemperature();
+    }
+
+    @Test
+    void canGetTemperatureDataWhenDateIsGiven() {
+
+        // given
+        LocalDate date = LocalDate.of(2021, Month.MAY, 1);
+
+        // when
+        soilSensorService.getTemperatureData(DateRange.ofDay(date));
+
+        // then
+        verify(soilSensorDAO).findTemperatureByData_LocalDateTimeBetween(
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
+        );
+    }
+
+    @Test
+    void canGetAggregatedData() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        LocalDateTime to = from.plusDays(1);
+
+        // when
+        soilSensorService.getAggregatedData(DateRange.of(from, to), "5m");
+
+        // then
+        verify(rollupService).aggregate(SensorType.SOIL, from, to, 300);
+    }
+
+    @Test
+    void throwExceptionInGetAggregatedDataWhenTooManyBuckets() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        DateRange range = DateRange.of(from, from.plusYears(1));
+
+        // when
+        // then
+        assertThatThrownBy(() -> soilSensorService.getAggregatedData(range, "1m"))
+                .isInstanceOf(WrongBucketFormatException.class)
+                .hasMessageContaining("too many buckets");
+        verifyNoInteractions(rollupService);
     }
 
     @Test
@@ -119,6 +333,7 @@ class SoilSensorServiceImplTest {
         soilSensorService.updateDataById(soilSensorToUpdateDTO);
 
         // then
+        verify(rollupService).markChanged(SensorType.SOIL, dateTime);
         ArgumentCaptor<SoilSensor> argumentCaptor = ArgumentCaptor.forClass(SoilSensor.class);
         verify(soilSensorDAO).save(argumentCaptor.capture());
         SoilSensor capturedSoilSensor = argumentCaptor.getValue();
@@ -145,11 +360,20 @@ class SoilSensorServiceImplTest {
     @Test
     void canDeleteAllSensorDataWhenDateIsNull() {
 
+        // given
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(1L);
+        given(idRange.getMaxId()).willReturn(15_000L);
+        given(soilSensorDAO.findIdRange()).willReturn(idRange);
+        given(soilSensorDAO.deleteChunk(1L, 10_000L)).willReturn(9_000);
+        given(soilSensorDAO.deleteChunk(10_001L, 15_000L)).willReturn(5_000);
+
         // when
-        soilSensorService.deleteAllSensorData(null);
+        long deleted = soilSensorService.deleteAllSensorData(null);
 
         // then
-        verify(soilSensorDAO).deleteAll();
+        assertThat(deleted).isEqualTo(14_000L);
+        verify(rollupService).markAllChanged(SensorType.SOIL);
     }
 
     @Test
@@ -158,27 +382,40 @@ class SoilSensorServiceImplTest {
         // given
         LocalDate date = LocalDate.of(2021, Month.MAY, 1);
 
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(3L);
+        given(idRange.getMaxId()).willReturn(7L);
+        given(soilSensorDAO.findIdRangeByData_LocalDateTimeBetween(date.atStartOfDay(), date.atTime(LAST_MICROSECOND)))
+                .willReturn(idRange);
+
         // when
-        soilSensorService.deleteAllSensorData(date.toString());
+        soilSensorService.deleteAllSensorData(DateRange.ofDay(date));
 
         // then
-        verify(soilSensorDAO).deleteSensorByData_LocalDateTimeBetween(
-                date.atTime(LocalTime.MIN),
-                date.atTime(LocalTime.MAX)
+        verify(soilSensorDAO).deleteChunkByData_LocalDateTimeBetween(
+                3L,
+                7L,
+                date.atStartOfDay(),
+                date.atTime(LAST_MICROSECOND)
         );
     }
 
     @Test
-    void throwExceptionInDeleteAllSensorDataWhenWrongDateFormat() {
+    void canDeleteSensorDataOfSeveralDays() {
 
         // given
-        String date = "2002.11.23";
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 6, 0);
+        LocalDateTime to = from.plusDays(3);
+
+        IdRange idRange = mock(IdRange.class);
+        given(idRange.getMinId()).willReturn(3L);
+        given(idRange.getMaxId()).willReturn(7L);
+        given(soilSensorDAO.findIdRangeByData_LocalDateTimeBetween(from, to.minusNanos(1000))).willReturn(idRange);
 
         // when
+        soilSensorService.deleteAllSensorData(DateRange.of(from, to));
+
         // then
-        assertThatThrownBy(() -> soilSensorService.deleteAllSensorData(date))
-                .isInstanceOf(WrongDateFormatException.class)
-                .hasMessageContaining("Wrong date format. Change to match yyyy-mm-dd and " +
-                        "and make sure entered values are valid");
+        verify(soilSensorDAO).deleteChunkByData_LocalDateTimeBetween(3L, 7L, from, to.minusNanos(1000));
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import ua.lviv.iot.greenhouse.dao.IdRange;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentAirSensorDAOTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, Month.MAY, 1);
+
+    @TempDir
+    Path directory;
+
+    private SegmentAirSensorDAO airSensorDAO;
+
+    @BeforeEach
+    void setUp() {
+        airSensorDAO = new SegmentAirSensorDAO(
+                new SegmentStore<>(directory, SensorType.AIR, ReadingColumns.AIR, new StorageProperties()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        airSensorDAO.close();
+    }
+
+    @Test
+    void saveAssignsIdsAndModificationTime() {
+
+        // given
+        List<AirSensor> sensors = List.of(reading(DAY.atTime(1, 0), 60.0), reading(DAY.atTime(2, 0), 61.0));
+
+        // when
+        List<AirSensor> saved = airSensorDAO.saveAll(sensors);
+
+        // then
+        assertThat(saved).extracting(AirSensor::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(saved).extracting(AirSensor::getModifiedAt).doesNotContainNull();
+        assertThat(airSensorDAO.findSensorById(saved.get(1).getId())).contains(saved.get(1));
+        assertThat(airSensorDAO.findFirstByOrderByData_LocalDateTimeDescIdDesc()).contains(saved.get(1));
+    }
+
+    @Test
+    void aggregatesBucketsLikeTheDatabase() {
+
+        // given
+        List<AirSensor> saved = airSensorDAO.saveAll(List.of(reading(DAY.atTime(1, 50), 64.0),
+                reading(DAY.atTime(1, 10), 60.0), reading(DAY.atTime(2, 30), 70.0)));
+
+        // when
+        List<Object[]> rows = airSensorDAO.aggregateByBucket(DAY.atStartOfDay(), DAY.atTime(2, 0),
+                saved.get(0).getId() - 1, saved.get(2).getId(), 3600);
+
+        // then
+        assertThat(rows).hasSize(1);
+        Object[] row = rows.get(0);
+        assertThat(row[0]).isEqualTo(DAY.atTime(1, 0).toEpochSecond(ZoneOffset.UTC) / 3600);
+        assertThat(row[1]).isEqualTo(2L);
+        assertThat(Arrays.asList(row).subList(2, 7)).containsExactly(60.0, 64.0, 124.0, 2L, 64.0);
+        assertThat(row[12]).isEqualTo(DAY.atTime(1, 50));
+        assertThat(row[13]).isEqualTo(saved.get(0).getId());
+    }
+
+    @Test
+    void pagesAndStreamsReadings() {
+
+        // given
+        List<AirSensor> saved = airSensorDAO.saveAll(List.of(reading(DAY.atTime(3, 0), 60.0),
+                reading(DAY.atTime(1, 0), 61.0), reading(DAY.atTime(1, 0), 62.0)));
+
+        // when
+        List<AirSensor> afterTimestamp = airSensorDAO.findPageAfterTimestamp(DAY.atTime(1, 0),
+                saved.get(1).getId(), PageRequest.of(0, 10));
+        List<AirSensor> afterId = airSensorDAO.findPageAfterId(saved.get(0).getId(), PageRequest.of(0, 1));
+
+        // then
+        assertThat(afterTimestamp).containsExactly(saved.get(2), saved.get(0));
+        assertThat(afterId).containsExactly(saved.get(1));
+        assertThat(airSensorDAO.streamAll().collect(Collectors.toList())).isEqualTo(saved);
+    }
+
+    @Test
+    void deletesRolledUpReadingsBeforeTime() {
+
+        // given
+        List<AirSensor> saved = airSensorDAO.saveAll(List.of(reading(DAY.atTime(1, 0), 60.0),
+                reading(DAY.plusDays(1).atTime(1, 0), 61.0), reading(DAY.plusDays(2).atTime(1, 0), 62.0)));
+
+        // when
+        IdRange idRange = airSensorDAO.findIdRangeBefore(DAY.plusDays(2).atStartOfDay(), saved.get(0).getId());
+        int deleted = airSensorDAO.deleteChunkBefore(idRange.getMinId(), idRange.getMaxId(),
+                DAY.plusDays(2).atStartOfDay());
+
+        // then
+        assertThat(deleted).isEqualTo(1);
+        assertThat(airSensorDAO.findOldestTime()).isEqualTo(DAY.plusDays(1).atTime(1, 0));
+        assertThat(airSensorDAO.findDataVersion().getRowCount()).isEqualTo(2);
+    }
+
+    private static AirSensor reading(LocalDateTime time, double humidity) {
+        return new AirSensor(new AirSensor.Data(time, humidity, 20.0));
+    }
+}
@@ -0,0 +1,147 @@
+package ua.lviv.iot.greenhouse.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+import ua.lviv.iot.greenhouse.models.SensorType;
+import ua.lviv.iot.greenhouse.recent.ReadingColumns;
+import ua.lviv.iot.greenhouse.recent.ReadingRing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, Month.MAY, 1);
+
+    @TempDir
+    Path directory;
+
+    private StorageProperties properties;
+    private SegmentStore<AirSensor> store;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void dropsTornRecordsWhenSegmentIsOpened() throws IOException {
+
+        // given
+        store.insertAll(List.of(reading(DAY.atTime(1, 0), 60.0), reading(DAY.atTime(2, 0), 61.0),
+                reading(DAY.atTime(3, 0), 62.0)));
+        store.close();
+        // Header of 16 bytes, then records of time, ID, modification time, kind, two metrics and checksum
+        try (FileChannel channel = FileChannel.open(directory.resolve(DAY + ".seg"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 16 + 2 * 45 + 30);
+        }
+
+        // when
+        store = open();
+        store.insertAll(List.of(reading(DAY.atTime(4, 0), 63.0)));
+        store.close();
+        store = open();
+
+        // then
+        assertThat(store.find(ReadingBounds.all(), ReadingColumns.AIR::toSensor))
+                .extracting(sensor -> sensor.getData().getAirHumidity())
+                .containsExactly(60.0, 61.0, 63.0);
+    }
+
+    @Test
+    void dropsSegmentsOfDeletedDaysAndRewritesPartlyDeletedOnes() {
+
+        // given
+        store.insertAll(List.of(reading(DAY.atTime(23, 0), 60.0), reading(DAY.plusDays(1).atTime(1, 0), 61.0),
+                reading(DAY.plusDays(1).atTime(2, 0), 62.0), reading(DAY.plusDays(2).atTime(1, 0), 63.0)));
+
+        // when
+        int deleted = store.delete(ReadingBounds.ofTime(ReadingRing.toMicros(DAY.atTime(12, 0)),
+                ReadingRing.toMicros(DAY.plusDays(1).atTime(1, 0))));
+
+        // then
+        assertThat(deleted).isEqualTo(2);
+        assertThat(Files.exists(directory.resolve(DAY + ".seg"))).isFalse();
+        assertThat(Files.exists(directory.resolve(DAY.plusDays(1) + ".seg"))).isTrue();
+        store.close();
+        store = open();
+        assertThat(store.find(ReadingBounds.all(), ReadingColumns.AIR::toSensor))
+                .extracting(sensor -> sensor.getData().getAirHumidity())
+                .containsExactly(62.0, 63.0);
+    }
+
+    @Test
+    void keepsNewestVersionOfUpdatedReadingAfterRestart() {
+
+        // given
+        AirSensor sensor = reading(DAY.atTime(1, 0), 60.0);
+        store.insertAll(List.of(sensor, reading(DAY.atTime(2, 0), 61.0)));
+
+        // when
+        sensor.getData().setAirHumidity(70.0);
+        store.update(sensor);
+        sensor.getData().setLocalDateTime(DAY.plusDays(1).atTime(1, 0));
+        sensor.getData().setAirHumidity(80.0);
+        store.update(sensor);
+        store.close();
+        store = open();
+
+        // then
+        assertThat(store.count()).isEqualTo(2);
+        assertThat(store.find(ReadingBounds.all(), ReadingColumns.AIR::toSensor))
+                .extracting(reading -> reading.getData().getAirHumidity())
+                .containsExactly(61.0, 80.0);
+    }
+
+    @Test
+    void ordersReadingsByTimeAndDoesNotReuseIdsAfterRestart() {
+
+        // given
+        AirSensor late = reading(DAY.atTime(5, 0), 60.0);
+        AirSensor early = reading(DAY.atTime(1, 0), 61.0);
+        store.insertAll(List.of(late, early));
+        store.close();
+
+        // when
+        store = open();
+        long nextId = store.nextId();
+
+        // then
+        assertThat(nextId).isGreaterThan(early.getId());
+        assertThat(store.find(ReadingBounds.all(), true, 1, ReadingColumns.AIR::toSensor))
+                .containsExactly(late);
+        assertThat(store.find(ReadingBounds.all(), ReadingColumns.AIR::toSensor))
+                .containsExactly(early, late);
+        assertThat(store.findAfterId(late.getId(), 10, ReadingColumns.AIR::toSensor))
+                .containsExactly(early);
+    }
+
+    private SegmentStore<AirSensor> open() {
+        return new SegmentStore<>(directory, SensorType.AIR, ReadingColumns.AIR, properties);
+    }
+
+    private AirSensor reading(LocalDateTime time, double humidity) {
+        AirSensor sensor = new AirSensor(store.nextId(), new AirSensor.Data(time, humidity, 20.0));
+        sensor.setModifiedAt(time);
+        return sensor;
+    }
+}
@@ -0,0 +1,258 @@
+package ua.lviv.iot.greenhouse.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.lviv.iot.greenhouse.models.SensorType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorStreamHubTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2021, Month.MAY, 1, 1, 0);
+    // Readings are numbers of minutes after START, and their own IDs
+    private static final Function<Integer, LocalDateTime> TIME = START::plusMinutes;
+    private static final Function<Integer, Long> ID = Integer::longValue;
+
+    private StreamProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private SensorStreamHub hub;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StreamProperties();
+        properties.setSubscriberBufferSize(2);
+        properties.setReplaySize(3);
+        properties.setSenderThreads(1);
+        meterRegistry = new SimpleMeterRegistry();
+        hub = new SensorStreamHub(new ObjectMapper(), properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+    }
+
+    @Test
+    void canSendReadingsToEverySubscriberOfTheirType() throws InterruptedException {
+
+        // given
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+        RecordingSink soil = new RecordingSink();
+        hub.subscribe(SensorType.AIR, null, null, first);
+        hub.subscribe(SensorType.AIR, null, null, second);
+        hub.subscribe(SensorType.SOIL, null, null, soil);
+
+        // when
+        hub.publishAll(SensorType.AIR, List.of(1, 2), ID, TIME);
+
+        // then
+        assertThat(first.await(2)).containsExactly("1", "2");
+        assertThat(second.await(2)).containsExactly("1", "2");
+        assertThat(soil.events).isEmpty();
+        assertThat(meterRegistry.get("greenhouse.stream.subscribers").tag("type", "air").gauge().value())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void canReplayReadingsTakenAfterSince() throws InterruptedException {
+
+        // given
+        hub.publishAll(SensorType.AIR, List.of(1, 2, 3, 4), ID, TIME);
+        RecordingSink sink = new RecordingSink();
+
+        // when
+        hub.subscribe(SensorType.AIR, START.plusMinutes(2), null, sink);
+
+        // then
+        assertThat(sink.await(2)).containsExactly("3", "4");
+    }
+
+    @Test
+    void canReplayReadingsAfterLastEventId() throws InterruptedException {
+
+        // given
+        hub.publishAll(SensorType.AIR, List.of(1, 2, 3, 4), ID, TIME);
+        RecordingSink sink = new RecordingSink();
+
+        // when
+        hub.subscribe(SensorType.AIR, START, 3L, sink);
+
+        // then
+        assertThat(sink.await(1)).containsExactly("4");
+        assertThat(sink.ids).containsExactly(4L);
+    }
+
+    @Test
+    void replaysReadingsTakenAfterSinceWhenLastEventIdIsUnknown() throws InterruptedException {
+
+        // given
+        hub.publishAll(SensorType.AIR, List.of(1, 2, 3, 4), ID, TIME);
+        RecordingSink sink = new RecordingSink();
+
+        // when
+        hub.subscribe(SensorType.AIR, START.plusMinutes(2), 42L, sink);
+
+        // then
+        assertThat(sink.await(2)).containsExactly("3", "4");
+    }
+
+    @Test
+    void replaysReadingsAfterNewestEventOfLastEventId() throws InterruptedException {
+
+        // given
+        hub.publishAll(SensorType.AIR, List.of(1, 2), ID, TIME);
+        hub.publish(SensorType.AIR, 3, reading -> null, TIME);
+        hub.publish(SensorType.AIR, 1, ID, TIME);
+        RecordingSink sink = new RecordingSink();
+
+        // when
+        hub.subscribe(SensorType.AIR, null, 2L, sink);
+
+        // then
+        assertThat(sink.await(2)).containsExactly("3", "1");
+        assertThat(sink.ids).containsExactly(null, 1L);
+    }
+
+    @Test
+    void dropsOldestReadingsOfSlowSubscriber() throws InterruptedException {
+
+        // given
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink() {
+            @Override
+            public void send(StreamEvent event) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(event);
+            }
+        };
+        hub.subscribe(SensorType.AIR, null, null, sink);
+        hub.publish(SensorType.AIR, 1, ID, TIME);
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // when
+        hub.publishAll(SensorType.AIR, List.of(2, 3, 4, 5), ID, TIME);
+        release.countDown();
+
+        // then
+        assertThat(sink.await(3)).containsExactly("1", "4", "5");
+        assertThat(meterRegistry.get("greenhouse.stream.dropped").tag("type", "air").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void removesSubscriberWhenSendFails() throws InterruptedException {
+
+        // given
+        CountDownLatch closed = new CountDownLatch(1);
+        hub.subscribe(SensorType.AIR, null, null, new RecordingSink() {
+            @Override
+            public void send(StreamEvent event) {
+                throw new IllegalStateException("Client is gone");
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        });
+
+        // when
+        hub.publish(SensorType.AIR, 1, ID, TIME);
+
+        // then
+        assertThat(closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("greenhouse.stream.subscribers").tag("type", "air").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    void closesSubscriberThatHoldsSenderPastDeadline() throws InterruptedException {
+
+        // given
+        hub.close();
+        properties.setSendTimeout(Duration.ofMillis(100));
+        meterRegistry = new SimpleMeterRegistry();
+        hub = new SensorStreamHub(new ObjectMapper(), properties, meterRegistry);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        hub.subscribe(SensorType.AIR, null, null, new RecordingSink() {
+            @Override
+            public void send(StreamEvent event) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        });
+        hub.publish(SensorType.AIR, 1, ID, TIME);
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe(SensorType.AIR, null, null, sink);
+
+        // when
+        hub.publish(SensorType.AIR, 2, ID, TIME);
+
+        // then
+        assertThat(sink.await(1)).containsExactly("2");
+        assertThat(meterRegistry.get("greenhouse.stream.subscribers").tag("type", "air").gauge().value())
+                .isEqualTo(1.0);
+        release.countDown();
+        assertThat(closed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static class RecordingSink implements EventSink {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void send(StreamEvent event) {
+            ids.add(event.getId());
+            events.add(event.getJson());
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private List<String> await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            return new ArrayList<>(events);
+        }
+    }
+}
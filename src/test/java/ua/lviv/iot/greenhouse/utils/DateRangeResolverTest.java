@@ -0,0 +1,165 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import ua.lviv.iot.greenhouse.exception.WrongDateFormatException;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DateRangeResolverTest {
+
+    private final DateRangeResolver dateRangeResolver = new DateRangeResolver();
+
+    @Test
+    void returnsNullWhenNoRangeIsGiven() {
+
+        // when
+        DateRange range = dateRangeResolver.resolve(null, null, null, null);
+
+        // then
+        assertThat(range).isNull();
+    }
+
+    @Test
+    void returnsSameRangeForSameDay() {
+
+        // when
+        DateRange range = dateRangeResolver.resolve("2021-05-01", null, null, null);
+
+        // then
+        assertThat(dateRangeResolver.resolve("2021-05-01", null, null, null)).isSameAs(range);
+    }
+
+    @Test
+    void canParseSingleDay() {
+
+        // when
+        DateRange range = dateRangeResolver.resolve("2021-05-01", null, null, null);
+
+        // then
+        assertThat(range.getFrom()).isEqualTo(LocalDateTime.of(2021, Month.MAY, 1, 0, 0));
+        assertThat(range.getTo()).isEqualTo(LocalDateTime.of(2021, Month.MAY, 2, 0, 0));
+        assertThat(range.getLast()).isEqualTo(LocalDateTime.of(2021, Month.MAY, 1, 23, 59, 59, 999_999_000));
+        assertThat(range.getDay()).isEqualTo(LocalDate.of(2021, Month.MAY, 1));
+    }
+
+    @Test
+    void canParseRangeOfSeveralDays() {
+
+        // when
+        DateRange range = dateRangeResolver.resolve(null, "2021-05-01T06:30:00", "2021-05-03", null);
+
+        // then
+        assertThat(range.getFrom()).isEqualTo(LocalDateTime.of(2021, Month.MAY, 1, 6, 30));
+        assertThat(range.getTo()).isEqualTo(LocalDateTime.of(2021, Month.MAY, 3, 0, 0));
+        assertThat(range.getDay()).isNull();
+        assertThat(range.getDays()).containsExactly(LocalDate.of(2021, Month.MAY, 1), LocalDate.of(2021, Month.MAY, 2));
+    }
+
+    @Test
+    void convertsRangeToServerZone() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+        LocalDateTime expectedFrom = ZonedDateTime.of(from, ZoneId.of("+05:00"))
+                .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+
+        // when
+        DateRange range = dateRangeResolver.resolve("2021-05-01", null, null, "+05:00");
+
+        // then
+        assertThat(range.getFrom()).isEqualTo(expectedFrom);
+        assertThat(range.getTo()).isEqualTo(expectedFrom.plusDays(1));
+    }
+
+    @Test
+    void convertsDateTimesWithOffsetsToServerZone() {
+
+        // given
+        LocalDateTime expectedFrom = ZonedDateTime.of(2021, 5, 1, 6, 30, 0, 0, ZoneOffset.UTC)
+                .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        LocalDateTime expectedTo = ZonedDateTime.of(2021, 5, 1, 8, 30, 0, 0, ZoneOffset.ofHours(-2))
+                .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+
+        // when
+        DateRange range = dateRangeResolver.resolve(null, "2021-05-01T06:30:00Z", "2021-05-01T08:30-02:00", null);
+
+        // then
+        assertThat(range.getFrom()).isEqualTo(expectedFrom);
+        assertThat(range.getTo()).isEqualTo(expectedTo);
+    }
+
+    @Test
+    void acceptsOffsetsThatMatchTheZone() {
+
+        // given
+        LocalDateTime expectedFrom = ZonedDateTime.of(2021, 5, 1, 0, 0, 0, 0, ZoneOffset.ofHours(3))
+                .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+
+        // when
+        DateRange range = dateRangeResolver.resolve(null, "2021-05-01T00:00+03:00", "2021-05-02", "Europe/Kiev");
+
+        // then
+        assertThat(range.getFrom()).isEqualTo(expectedFrom);
+        assertThat(range.getTo()).isEqualTo(expectedFrom.plusDays(1));
+    }
+
+    @Test
+    void throwExceptionWhenOffsetConflictsWithZone() {
+
+        // when
+        // then
+        assertThatThrownBy(() -> dateRangeResolver.resolve(null, "2021-05-01T00:00Z", "2021-05-02", "+03:00"))
+                .isInstanceOf(WrongDateFormatException.class)
+                .hasMessageContaining("doesn't match the zone");
+    }
+
+    @ParameterizedTest
+    @CsvSource({"2021-05-01T06:30, 2021-05-01T06:30", "2021-05-01T06:30:15, 2021-05-01T06:30:15",
+            "2021-05-01T06:30:15.5, 2021-05-01T06:30:15.500", "2021-05-01T06:30:15.123456789, 2021-05-01T06:30:15.123456789",
+            "2020-02-29, 2020-02-29T00:00"})
+    void canParseDateTime(String text, LocalDateTime expected) {
+
+        // when
+        LocalDateTime dateTime = DateRangeResolver.parseDateTime(text);
+
+        // then
+        assertThat(dateTime).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"2002.11.23,,,", "2021-02-29,,,", "21-05-01,,,", "2021-13-01,,,", ",2021-05-01T25:00:00,2021-05-02,",
+            ",2021-05-01T10:60,2021-05-02,", ",2021-05-01T10:00:00.,2021-05-02,", ",2021-05-01 10:00,2021-05-02,",
+            ",2021-05-01T10:00:00.1234567890,2021-05-02,", "2021-05-01,,,Mars/Olympus", ",2021-05-01Z,2021-05-02,",
+            ",2021-05-01T10:00+19:00,2021-05-02,", ",2021-05-01T10:00+0300,2021-05-02,", ",2021-05-01T10:00:00.Z,2021-05-02,"})
+    void throwExceptionWhenWrongDateFormat(String date, String from, String to, String zone) {
+
+        // when
+        // then
+        // Stack trace is not filled in, wrong input is cheap to reject
+        assertThatThrownBy(() -> dateRangeResolver.resolve(date, from, to, zone))
+                .isInstanceOf(WrongDateFormatException.class)
+                .hasMessageContaining("Wrong")
+                .satisfies(e -> assertThat(e.getStackTrace()).isEmpty());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"2021-05-01,2021-05-01,2021-05-02", ",2021-05-01,", ",2021-05-02,2021-05-01"})
+    void throwExceptionWhenWrongRange(String date, String from, String to) {
+
+        // when
+        // then
+        assertThatThrownBy(() -> dateRangeResolver.resolve(date, from, to, null))
+                .isInstanceOf(WrongDateRangeException.class);
+    }
+}
@@ -0,0 +1,67 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import org.junit.jupiter.api.Test;
+import ua.lviv.iot.greenhouse.exception.WrongDateRangeException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DateRangeTest {
+
+    @Test
+    void rangeOfWholeDayIsDay() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+
+        // when
+        DateRange range = DateRange.of(from, from.plusDays(1));
+
+        // then
+        assertThat(range).isEqualTo(DateRange.ofDay(LocalDate.of(2021, Month.MAY, 1)));
+        assertThat(range.getLast()).isEqualTo(LocalDateTime.of(2021, Month.MAY, 1, 23, 59, 59, 999_999_000));
+    }
+
+    @Test
+    void canListDaysOfRange() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 6, 30);
+
+        // when
+        DateRange range = DateRange.of(from, LocalDateTime.of(2021, Month.MAY, 3, 0, 0));
+
+        // then
+        assertThat(range.getDay()).isNull();
+        assertThat(range.getDays()).containsExactly(LocalDate.of(2021, Month.MAY, 1), LocalDate.of(2021, Month.MAY, 2));
+    }
+
+    @Test
+    void throwExceptionWhenRangeIsEmpty() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+
+        // when
+        // then
+        assertThatThrownBy(() -> DateRange.of(from, from))
+                .isInstanceOf(WrongDateRangeException.class);
+    }
+
+    @Test
+    void throwExceptionWhenRangeIsTooLong() {
+
+        // given
+        DateRange range = DateRange.of(LocalDateTime.of(2021, Month.MAY, 1, 0, 0), LocalDateTime.of(2021, Month.JUNE, 2, 0, 0));
+
+        // when
+        // then
+        assertThatThrownBy(range::checkMaxLength)
+                .isInstanceOf(WrongDateRangeException.class)
+                .hasMessageContaining("Range is too long");
+    }
+}
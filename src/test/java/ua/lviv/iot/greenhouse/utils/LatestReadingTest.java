@@ -0,0 +1,88 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ua.lviv.iot.greenhouse.models.AirSensor;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatestReadingTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2021, Month.MAY, 1, 23, 45, 2);
+
+    private final LatestReading<AirSensor> latestReading =
+            new LatestReading<>(sensor -> sensor.getData().getLocalDateTime(), AirSensor::getId);
+
+    @Test
+    void isEmptyUntilFirstReading() {
+
+        // then
+        assertThat(latestReading.get()).isEmpty();
+    }
+
+    @Test
+    void keepsNewestReading() {
+
+        // given
+        AirSensor newest = new AirSensor(2L, new AirSensor.Data(DATE_TIME, 70.6, 23.38));
+
+        // when
+        latestReading.offer(newest);
+        latestReading.offer(new AirSensor(1L, new AirSensor.Data(DATE_TIME.minusMinutes(1), 60.0, 20.0)));
+        latestReading.offer(new AirSensor(1L, new AirSensor.Data(DATE_TIME, 60.0, 20.0)));
+
+        // then
+        assertThat(latestReading.get()).containsSame(newest);
+    }
+
+    @Test
+    void replacesReadingWithItsUpdate() {
+
+        // given
+        AirSensor updated = new AirSensor(2L, new AirSensor.Data(DATE_TIME, 50.0, 21.0));
+        latestReading.offer(new AirSensor(2L, new AirSensor.Data(DATE_TIME, 70.6, 23.38)));
+
+        // when
+        latestReading.offer(updated);
+
+        // then
+        assertThat(latestReading.get()).containsSame(updated);
+    }
+
+    @Test
+    void canBeReset() {
+
+        // given
+        latestReading.offer(new AirSensor(2L, new AirSensor.Data(DATE_TIME, 70.6, 23.38)));
+
+        // when
+        latestReading.reset(null);
+
+        // then
+        assertThat(latestReading.get()).isEmpty();
+    }
+
+    @Test
+    void isUpdatedOnlyAfterCommit() {
+
+        // given
+        AirSensor sensor = new AirSensor(1L, new AirSensor.Data(DATE_TIME, 70.6, 23.38));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+
+            // when
+            latestReading.offer(sensor);
+
+            // then
+            assertThat(latestReading.get()).isEmpty();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(latestReading.get()).containsSame(sensor);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
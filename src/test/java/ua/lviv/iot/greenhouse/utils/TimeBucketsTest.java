@@ -0,0 +1,51 @@
+package ua.lviv.iot.greenhouse.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import ua.lviv.iot.greenhouse.exception.WrongBucketFormatException;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimeBucketsTest {
+
+    @ParameterizedTest
+    @CsvSource({"30s, 30", "5m, 300", "1h, 3600", "2d, 172800"})
+    void canParseBucketSeconds(String bucket, long expectedSeconds) {
+
+        // when
+        long seconds = TimeBuckets.parseBucketSeconds(bucket);
+
+        // then
+        assertThat(seconds).isEqualTo(expectedSeconds);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "5", "0m", "-5m", "5w", "m5", "1.5h"})
+    void throwExceptionWhenWrongBucketFormat(String bucket) {
+
+        // when
+        // then
+        assertThatThrownBy(() -> TimeBuckets.parseBucketSeconds(bucket))
+                .isInstanceOf(WrongBucketFormatException.class)
+                .hasMessageContaining("Wrong bucket format");
+    }
+
+    @Test
+    void throwExceptionWhenRangeHasTooManyBuckets() {
+
+        // given
+        LocalDateTime from = LocalDateTime.of(2021, Month.MAY, 1, 0, 0);
+
+        // when
+        // then
+        assertThatThrownBy(() -> TimeBuckets.checkBucketCount(from, from.plusYears(1), 60))
+                .isInstanceOf(WrongBucketFormatException.class)
+                .hasMessageContaining("too many buckets");
+    }
+}